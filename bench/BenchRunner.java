@@ -0,0 +1,291 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal benchmark harness in the manner of JMH, for the benchmarks of this repository
+ * (JMH can not generate benchmarks of classes in the default package, which all the classes here are).
+ * <p>
+ * A case is a named operation on a state object, with parameters (e.g. shape=GRID, size=10000).
+ * Every case runs in a fresh JVM (a fork), so the JIT profile of one case does not leak into the next:
+ * the state is built, then warmup iterations and measurement iterations run the operation in batches
+ * of about a millisecond (so the clock is not read around every nanosecond operation), and the average time
+ * of an operation is reported, with the 99.9% confidence half-width over the measurement iterations.
+ * The result of every operation is summed into a sink that is published at the end, so the JIT can not drop it.
+ * The results are written as JSON in the format of JMH (benchmark, mode, params, primaryMetric, ...),
+ * so the tools that compare JMH runs read them too.
+ * <p>
+ * Command line: [regex] [-p name=v1,v2] [-wi n] [-i n] [-r seconds] [-f 0|1] [-jvmArgs "..."] [-rff file].
+ * The regex selects the cases by "Class.method", -p replaces the values of a parameter,
+ * -f 0 runs all the cases in this JVM (for debugging only).
+ *
+ * @author davidfeust
+ */
+class BenchRunner {
+
+    /**
+     * An operation of a benchmark on its state.
+     */
+    private static final class Case {
+        private final String _name;
+        private final Map<String, String> _params;
+        private final TimeUnit _unit;
+        private final Supplier<?> _setup;
+        private final ToDoubleFunction<Object> _op;
+
+        @SuppressWarnings("unchecked")
+        private <S> Case(String name, Map<String, String> params, TimeUnit unit, Supplier<S> setup, ToDoubleFunction<S> op) {
+            _name = name;
+            _params = params;
+            _unit = unit;
+            _setup = setup;
+            _op = (ToDoubleFunction<Object>) op;
+        }
+    }
+
+    private static final String RESULT = "RESULT ";
+    private static final double[] T_999 = {636.62, 31.6, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78, 4.59};
+
+    private final List<Case> _cases = new ArrayList<>();
+    private final Map<String, String[]> _param_overrides = new LinkedHashMap<>();
+    private Pattern _include = Pattern.compile(".*");
+    private int _warmup_iterations = 3;
+    private int _iterations = 5;
+    private double _iteration_seconds = 1;
+    private int _forks = 1;
+    private String _jvm_args = "-Xms4g -Xmx4g";
+    private String _result_file = "bench-results.json";
+    private int _child_case = -1;
+    private double _sink;
+
+    /**
+     * Constructor, parses the command line.
+     *
+     * @param args the command line
+     */
+    BenchRunner(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-p":
+                    String[] kv = args[++i].split("=", 2);
+                    _param_overrides.put(kv[0], kv[1].split(","));
+                    break;
+                case "-wi":
+                    _warmup_iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    _iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-r":
+                    _iteration_seconds = Double.parseDouble(args[++i]);
+                    break;
+                case "-f":
+                    _forks = Integer.parseInt(args[++i]);
+                    break;
+                case "-jvmArgs":
+                    _jvm_args = args[++i];
+                    break;
+                case "-rff":
+                    _result_file = args[++i];
+                    break;
+                case "--case":
+                    _child_case = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    _include = Pattern.compile(args[i]);
+            }
+        }
+    }
+
+    /**
+     * The values of a parameter: the values of the command line (-p name=...), or the defaults.
+     *
+     * @param name     the name of the parameter
+     * @param defaults the default values
+     * @return the values to run
+     */
+    String[] param(String name, String... defaults) {
+        return _param_overrides.getOrDefault(name, defaults);
+    }
+
+    /**
+     * Add a case (if the regex selects it).
+     *
+     * @param name   "Class.method"
+     * @param params the parameters of the case, in their order
+     * @param unit   the time unit of the result
+     * @param setup  builds the state, once per fork (if the state is AutoCloseable, it is closed at the end)
+     * @param op     the measured operation, its result goes to the sink
+     */
+    <S> void add(String name, Map<String, String> params, TimeUnit unit, Supplier<S> setup, ToDoubleFunction<S> op) {
+        if (_include.matcher(name).find())
+            _cases.add(new Case(name, params, unit, setup, op));
+    }
+
+    /**
+     * Run the cases: every case in a fork and write the results, or (in a fork) run the one case of the fork.
+     */
+    void run() throws IOException, InterruptedException {
+        if (_child_case >= 0) {
+            System.out.println(RESULT + measure(_cases.get(_child_case)));
+            return;
+        }
+        List<String> results = new ArrayList<>();
+        for (int c = 0; c < _cases.size(); c++) {
+            Case k = _cases.get(c);
+            System.out.printf("# %s %s%n", k._name, k._params);
+            String json = _forks == 0 ? measure(k) : fork(c);
+            if (json == null) {
+                System.out.println("# FAILED");
+                continue;
+            }
+            results.add(json);
+        }
+        try (Writer w = new FileWriter(_result_file)) {
+            w.write("[\n" + String.join(",\n", results) + "\n]\n");
+        }
+        System.out.println("# results: " + new File(_result_file).getAbsolutePath());
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * Run the case c in a new JVM with the same class path.
+     *
+     * @return the JSON of the result, null if the fork failed
+     */
+    private String fork(int c) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        cmd.addAll(Arrays.asList(_jvm_args.trim().split("\\s+")));
+        cmd.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), Benchmarks.class.getName()));
+        for (Map.Entry<String, String[]> p : _param_overrides.entrySet())
+            cmd.addAll(Arrays.asList("-p", p.getKey() + "=" + String.join(",", p.getValue())));
+        cmd.addAll(Arrays.asList("-wi", "" + _warmup_iterations, "-i", "" + _iterations,
+                "-r", "" + _iteration_seconds, "-jvmArgs", _jvm_args, "--case", "" + c, _include.pattern()));
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        String json = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(RESULT))
+                    json = line.substring(RESULT.length());
+                else
+                    System.out.println(line);
+            }
+        }
+        return p.waitFor() == 0 ? json : null;
+    }
+
+    /**
+     * Build the state of k, run the warmup and the measurement iterations, and print every iteration.
+     *
+     * @return the JSON of the result
+     */
+    private String measure(Case k) {
+        Object state = k._setup.get();
+        long batch = 1;
+        for (int i = 0; i < _warmup_iterations; i++) {
+            double per_op = iteration(k, state, batch);
+            batch = Math.max(1, (long) (1e6 / Math.max(per_op, 1)));
+            System.out.printf("# warmup %d: %s%n", i + 1, format(per_op, k._unit));
+        }
+        double[] raw = new double[_iterations];
+        for (int i = 0; i < _iterations; i++) {
+            raw[i] = iteration(k, state, batch) / k._unit.toNanos(1);
+            System.out.printf("# iteration %d: %.3f %s%n", i + 1, raw[i], unit(k._unit));
+        }
+        if (state instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) state).close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        System.out.println("# sink " + _sink);
+        return json(k, raw);
+    }
+
+    /**
+     * Run batches of the operation for the time of an iteration.
+     *
+     * @return nanoseconds per operation
+     */
+    private double iteration(Case k, Object state, long batch) {
+        long deadline = (long) (_iteration_seconds * 1e9);
+        long ops = 0, start = System.nanoTime(), elapsed;
+        double sink = 0;
+        do {
+            for (long b = 0; b < batch; b++)
+                sink += k._op.applyAsDouble(state);
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < deadline);
+        _sink += sink;
+        return (double) elapsed / ops;
+    }
+
+    private String json(Case k, double[] raw) {
+        double mean = 0, var = 0;
+        for (double v : raw)
+            mean += v / raw.length;
+        for (double v : raw)
+            var += (v - mean) * (v - mean) / Math.max(1, raw.length - 1);
+        int dof = raw.length - 1;
+        double error = dof < 1 ? Double.NaN : (dof <= T_999.length ? T_999[dof - 1] : 3.29) * Math.sqrt(var / raw.length);
+        StringBuilder params = new StringBuilder();
+        for (Map.Entry<String, String> p : k._params.entrySet())
+            params.append(params.length() == 0 ? "" : ", ").append('"').append(p.getKey()).append("\": \"")
+                    .append(p.getValue()).append('"');
+        StringBuilder data = new StringBuilder();
+        for (double v : raw)
+            data.append(data.length() == 0 ? "" : ", ").append(number(v));
+        return String.format(Locale.ROOT, "  {\"benchmark\": \"%s\", \"mode\": \"avgt\", \"threads\": 1, \"forks\": %d, "
+                        + "\"jvm\": \"%s\", \"jvmArgs\": \"%s\", \"jdkVersion\": \"%s\", "
+                        + "\"warmupIterations\": %d, \"warmupTime\": \"%s s\", \"measurementIterations\": %d, "
+                        + "\"measurementTime\": \"%s s\", \"params\": {%s}, \"primaryMetric\": {\"score\": %s, "
+                        + "\"scoreError\": %s, \"scoreUnit\": \"%s\", \"rawData\": [[%s]]}, \"secondaryMetrics\": {}}",
+                k._name, Math.max(_forks, 1), System.getProperty("java.home").replace("\\", "\\\\"),
+                _forks == 0 ? "" : _jvm_args, System.getProperty("java.version"),
+                _warmup_iterations, seconds(), _iterations, seconds(),
+                params, number(mean), number(error), unit(k._unit), data);
+    }
+
+    private String seconds() {
+        return _iteration_seconds == Math.rint(_iteration_seconds) ? "" + (long) _iteration_seconds : "" + _iteration_seconds;
+    }
+
+    private static String number(double v) {
+        return Double.isNaN(v) ? "\"NaN\"" : String.format(Locale.ROOT, "%.6f", v);
+    }
+
+    private static String format(double nanos, TimeUnit unit) {
+        return String.format(Locale.ROOT, "%.3f %s", nanos / unit.toNanos(1), unit(unit));
+    }
+
+    private static String unit(TimeUnit unit) {
+        switch (unit) {
+            case NANOSECONDS:
+                return "ns/op";
+            case MICROSECONDS:
+                return "us/op";
+            case MILLISECONDS:
+                return "ms/op";
+            default:
+                return "s/op";
+        }
+    }
+}
@@ -0,0 +1,26 @@
+import java.io.IOException;
+
+/**
+ * Entry point of the benchmarks ({@link WGraph_DSBench}, {@link WGraph_ConcurrentBench}, {@link WGraph_AlgoBench},
+ * {@link MixedWorkloadBench} and {@link ShortestPathTreeBench}),
+ * see {@link BenchRunner}.
+ * The results are written as JSON (to bench-results.json unless -rff names another file),
+ * so the results of two commits can be compared. For example:
+ * <pre>
+ * java -cp out Benchmarks "WGraph_AlgoBench.shortestPath" -p shape=ROAD -p size=1000000 -rff road.json
+ * </pre>
+ *
+ * @author davidfeust
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        BenchRunner r = new BenchRunner(args);
+        WGraph_DSBench.register(r);
+        WGraph_ConcurrentBench.register(r);
+        WGraph_AlgoBench.register(r);
+        MixedWorkloadBench.register(r);
+        ShortestPathTreeBench.register(r);
+        r.run();
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.Random;
+
+/**
+ * Generators of the graphs of the benchmarks, every one with a fixed seed so all the runs measure the same graphs.
+ * The graphs are built with {@link WGraph_Builder}, so building a million nodes graph does not dominate the setup.
+ * <ul>
+ * <li>GRID - a square grid, weights 1..10.</li>
+ * <li>RANDOM - uniform random edges, average degree 8, weights in [0, 1).</li>
+ * <li>POWER_LAW - preferential attachment (Barabasi-Albert), every new node connects to 3 nodes
+ * chosen by their degree, so a few hubs have a huge degree.</li>
+ * <li>ROAD - a grid with jittered coordinates, about a third of its edges removed and a few long highways,
+ * the weight of an edge is the euclidean length (like a road network: low degree, long shortest paths).</li>
+ * </ul>
+ *
+ * @author davidfeust
+ */
+public enum GraphShape {
+    GRID, RANDOM, POWER_LAW, ROAD;
+
+    private static final long SEED = 18;
+
+    /**
+     * Build a graph of this shape with about n nodes (a grid has the nearest square size).
+     *
+     * @param n number of nodes
+     * @return the graph, with the keys 0..nodeSize()-1
+     */
+    public WGraph_DS build(int n) {
+        WGraph_Builder b = builder(n);
+        return b.build();
+    }
+
+    /**
+     * Add the nodes and the edges of a graph of this shape to a new builder.
+     *
+     * @param n number of nodes
+     * @return the builder
+     */
+    public WGraph_Builder builder(int n) {
+        Random r = new Random(SEED);
+        switch (this) {
+            case GRID:
+                return grid(n, r);
+            case RANDOM:
+                return random(n, r);
+            case POWER_LAW:
+                return powerLaw(n, r);
+            default:
+                return road(n, r);
+        }
+    }
+
+    ////////////////////// Private /////////////////////
+
+    private static WGraph_Builder grid(int n, Random r) {
+        int side = Math.max(2, (int) Math.round(Math.sqrt(n)));
+        WGraph_Builder b = new WGraph_Builder(side * side, 2 * side * side);
+        for (int i = 0; i < side * side; i++)
+            b.addNode(i);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                if (x + 1 < side) b.connect(y * side + x, y * side + x + 1, 1 + r.nextInt(10));
+                if (y + 1 < side) b.connect(y * side + x, (y + 1) * side + x, 1 + r.nextInt(10));
+            }
+        }
+        return b;
+    }
+
+    private static WGraph_Builder random(int n, Random r) {
+        WGraph_Builder b = new WGraph_Builder(n, 4 * n);
+        for (int i = 0; i < n; i++)
+            b.addNode(i);
+        for (int i = 0; i < 4 * n; i++)
+            b.connect(r.nextInt(n), r.nextInt(n), r.nextDouble());
+        return b;
+    }
+
+    private static WGraph_Builder powerLaw(int n, Random r) {
+        int m = 3;
+        WGraph_Builder b = new WGraph_Builder(n, m * n);
+        // every end of every edge, so a uniform pick from it is a pick by degree
+        int[] ends = new int[2 * m * n];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            b.addNode(i);
+            if (i <= m) {
+                for (int j = 0; j < i; j++) {
+                    b.connect(i, j, r.nextDouble());
+                    ends[size++] = i;
+                    ends[size++] = j;
+                }
+                continue;
+            }
+            for (int k = 0; k < m; k++) {
+                int j = ends[r.nextInt(size)];
+                b.connect(i, j, r.nextDouble());
+                ends[size++] = i;
+                ends[size++] = j;
+            }
+        }
+        return b;
+    }
+
+    private static WGraph_Builder road(int n, Random r) {
+        int side = Math.max(2, (int) Math.round(Math.sqrt(n)));
+        int size = side * side;
+        double[] x = new double[size], y = new double[size];
+        WGraph_Builder b = new WGraph_Builder(size, 2 * size);
+        for (int i = 0; i < size; i++) {
+            x[i] = i % side + r.nextDouble() * 0.6;
+            y[i] = i / side + r.nextDouble() * 0.6;
+            b.addNode(i);
+        }
+        for (int i = 0; i < size; i++) {
+            // keep the first column and row, so the graph stays connected
+            boolean keep_all = i % side == 0 || i / side == 0;
+            if (i % side + 1 < side && (keep_all || r.nextInt(3) > 0))
+                b.connect(i, i + 1, length(x, y, i, i + 1));
+            if (i / side + 1 < side && (keep_all || r.nextInt(3) > 0))
+                b.connect(i, i + side, length(x, y, i, i + side));
+        }
+        for (int k = 0; k < side; k++) {
+            int i = r.nextInt(size), j = r.nextInt(size);
+            b.connect(i, j, 0.5 * length(x, y, i, j));
+        }
+        return b;
+    }
+
+    private static double length(double[] x, double[] y, int i, int j) {
+        return Math.hypot(x[i] - x[j], y[i] - y[j]);
+    }
+}
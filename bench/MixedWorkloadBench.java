@@ -0,0 +1,81 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of a workload that mixes changes and queries of {@link WGraph_Algo}: every operation connects
+ * one random edge and then asks shortestPathDist between two nodes whose keys are 3 apart,
+ * so no query finds the graph it queried before (the queries after a change run on the live graph,
+ * see WGraph_Algo#shortestPathDist). With -p mode=BIDIRECTIONAL,... the other modes run too.
+ * An object of this class is the state of one shape, size and mode, see {@link Benchmarks}.
+ *
+ * @author davidfeust
+ */
+public class MixedWorkloadBench {
+
+    private static final int OPS = 1 << 12;
+
+    private final WGraph_DS _graph;
+    private final WGraph_Algo _algo;
+    private final int[] _from;
+    private final int[] _to;
+    private final int[] _src;
+    private int _next;
+
+    /**
+     * Constructor, builds the graph, the edges to connect and the queries.
+     *
+     * @param shape the shape of the graph
+     * @param size  number of nodes
+     * @param mode  the search mode of the queries
+     */
+    public MixedWorkloadBench(GraphShape shape, int size, WGraph_Algo.Mode mode) {
+        _graph = shape.build(size);
+        _algo = new WGraph_Algo(_graph);
+        _algo.setMode(mode);
+        int n = _graph.nodeSize();
+        Random r = new Random(size);
+        _from = new int[OPS];
+        _to = new int[OPS];
+        _src = new int[OPS];
+        for (int i = 0; i < OPS; i++) {
+            _from[i] = r.nextInt(n);
+            _to[i] = r.nextInt(n);
+            _src[i] = r.nextInt(n - 3);
+        }
+        _algo.shortestPathDist(0, 3);
+    }
+
+    /**
+     * Add the benchmarks of this class to the runner.
+     *
+     * @param r the runner
+     */
+    static void register(BenchRunner r) {
+        for (String shape : r.param("shape", "GRID", "RANDOM")) {
+            for (String size : r.param("size", "200000")) {
+                for (String mode : r.param("mode", "DIJKSTRA")) {
+                    Map<String, String> p = new LinkedHashMap<>();
+                    p.put("shape", shape);
+                    p.put("size", size);
+                    p.put("mode", mode);
+                    GraphShape s = GraphShape.valueOf(shape);
+                    int n = Integer.parseInt(size);
+                    WGraph_Algo.Mode m = WGraph_Algo.Mode.valueOf(mode);
+                    r.add("MixedWorkloadBench.connectAndQuery", p, TimeUnit.MICROSECONDS,
+                            () -> new MixedWorkloadBench(s, n, m), MixedWorkloadBench::connectAndQuery);
+                }
+            }
+        }
+    }
+
+    /**
+     * Connect one random edge, then one shortestPathDist query.
+     */
+    public double connectAndQuery() {
+        int i = _next++ & (OPS - 1);
+        _graph.connect(_from[i], _to[i], 1);
+        return _algo.shortestPathDist(_src[i], _src[i] + 3);
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the single source shortest paths of {@link WGraph_Algo}: the sequential dijkstra of
+ * shortestPathTree against the parallel delta-stepping of parallelShortestPathTree, on grid and power-law graphs
+ * (pass -p shape=RANDOM,ROAD for the other shapes), see {@link Benchmarks}.
+ * The speedup of delta-stepping depends on the cores of the fork - the Gradle task pins 4 processors.
+ * An object of this class is the state of one shape and size, the runs cycle over a fixed array of random sources.
+ *
+ * @author davidfeust
+ */
+public class ShortestPathTreeBench {
+
+    private static final int SOURCES = 16;
+
+    private final WGraph_Algo _algo;
+    private final int[] _src;
+    private int _next;
+
+    /**
+     * Constructor, builds the graph and the sources.
+     *
+     * @param shape the shape of the graph
+     * @param size  number of nodes
+     */
+    public ShortestPathTreeBench(GraphShape shape, int size) {
+        WGraph_DS g = shape.build(size);
+        _algo = new WGraph_Algo(g);
+        Random r = new Random(size);
+        _src = new int[SOURCES];
+        for (int i = 0; i < SOURCES; i++)
+            _src[i] = r.nextInt(g.nodeSize());
+    }
+
+    /**
+     * Add the benchmarks of this class to the runner.
+     *
+     * @param r the runner
+     */
+    static void register(BenchRunner r) {
+        for (String shape : r.param("shape", "GRID", "POWER_LAW")) {
+            for (String size : r.param("size", "100000", "1000000")) {
+                Map<String, String> p = new LinkedHashMap<>();
+                p.put("shape", shape);
+                p.put("size", size);
+                GraphShape s = GraphShape.valueOf(shape);
+                int n = Integer.parseInt(size);
+                String c = "ShortestPathTreeBench.";
+                r.add(c + "dijkstra", p, TimeUnit.MILLISECONDS, () -> new ShortestPathTreeBench(s, n), ShortestPathTreeBench::dijkstra);
+                r.add(c + "deltaStepping", p, TimeUnit.MILLISECONDS, () -> new ShortestPathTreeBench(s, n), ShortestPathTreeBench::deltaStepping);
+            }
+        }
+    }
+
+    /**
+     * The tree of one source by dijkstra.
+     */
+    public double dijkstra() {
+        return _algo.shortestPathTree(_src[_next++ % SOURCES]).reachedCount();
+    }
+
+    /**
+     * The tree of one source by delta-stepping.
+     */
+    public double deltaStepping() {
+        return _algo.parallelShortestPathTree(_src[_next++ % SOURCES]).reachedCount();
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the hot paths of {@link WGraph_Algo}: isConnected, shortestPathDist/shortestPath,
+ * copy() and save/load, on every {@link GraphShape} and size, see {@link Benchmarks}.
+ * An object of this class is the state of one shape, size and mode.
+ * The path queries cycle over a fixed array of random pairs, with the search mode of the mode parameter
+ * (pass -p mode=DIJKSTRA,CONTRACTION_HIERARCHY to measure the hierarchy too - its preprocessing runs in the setup).
+ * isConnected is measured twice: on the {@link WGraph_DS} itself (followed by the {@link DynamicConnectivity} of trackConnectivity())
+ * and on a {@link WGraph_CSR} snapshot (a BFS every call).
+ *
+ * @author davidfeust
+ */
+public class WGraph_AlgoBench implements AutoCloseable {
+
+    private static final int QUERIES = 1 << 12;
+
+    private final WGraph_Algo _algo;
+    private final WGraph_Algo _snapshot_algo;
+    private final DynamicConnectivity _connectivity;
+    private final int[] _src;
+    private final int[] _dest;
+    private int _next;
+    private final File _save_file;
+    private final File _load_file;
+
+    /**
+     * Constructor, builds the graph, the queries and the file of load.
+     *
+     * @param shape the shape of the graph
+     * @param size  number of nodes
+     * @param mode  the search mode of the path queries
+     */
+    public WGraph_AlgoBench(GraphShape shape, int size, WGraph_Algo.Mode mode) {
+        WGraph_DS g = shape.build(size);
+        _algo = new WGraph_Algo(g);
+        _algo.setMode(mode);
+        _connectivity = _algo.trackConnectivity();
+        if (mode == WGraph_Algo.Mode.CONTRACTION_HIERARCHY)
+            _algo.getHierarchy();
+        _snapshot_algo = new WGraph_Algo(g.freeze());
+        Random r = new Random(size);
+        int n = g.nodeSize();
+        _src = new int[QUERIES];
+        _dest = new int[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            _src[q] = r.nextInt(n);
+            _dest[q] = r.nextInt(n);
+        }
+        try {
+            _save_file = File.createTempFile("wgraph_save", ".bin");
+            _load_file = File.createTempFile("wgraph_load", ".bin");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!_algo.save(_load_file.getPath()))
+            throw new UncheckedIOException(new IOException("can not write " + _load_file));
+    }
+
+    /**
+     * Add the benchmarks of this class to the runner.
+     * The benchmarks that do not search paths run only with the first mode.
+     *
+     * @param r the runner
+     */
+    static void register(BenchRunner r) {
+        String[] modes = r.param("mode", "DIJKSTRA", "BIDIRECTIONAL");
+        for (String shape : r.param("shape", "GRID", "RANDOM", "POWER_LAW", "ROAD")) {
+            for (String size : r.param("size", "10000", "100000")) {
+                for (String mode : modes) {
+                    Map<String, String> p = new LinkedHashMap<>();
+                    p.put("shape", shape);
+                    p.put("size", size);
+                    p.put("mode", mode);
+                    GraphShape s = GraphShape.valueOf(shape);
+                    int n = Integer.parseInt(size);
+                    WGraph_Algo.Mode m = WGraph_Algo.Mode.valueOf(mode);
+                    String c = "WGraph_AlgoBench.";
+                    r.add(c + "shortestPathDist", p, TimeUnit.MICROSECONDS, () -> new WGraph_AlgoBench(s, n, m), WGraph_AlgoBench::shortestPathDist);
+                    r.add(c + "shortestPath", p, TimeUnit.MICROSECONDS, () -> new WGraph_AlgoBench(s, n, m), WGraph_AlgoBench::shortestPath);
+                    if (!mode.equals(modes[0]))
+                        continue;
+                    r.add(c + "isConnected", p, TimeUnit.NANOSECONDS, () -> new WGraph_AlgoBench(s, n, m), WGraph_AlgoBench::isConnected);
+                    r.add(c + "isConnectedBfs", p, TimeUnit.MICROSECONDS, () -> new WGraph_AlgoBench(s, n, m), WGraph_AlgoBench::isConnectedBfs);
+                    r.add(c + "copy", p, TimeUnit.MILLISECONDS, () -> new WGraph_AlgoBench(s, n, m), WGraph_AlgoBench::copy);
+                    r.add(c + "save", p, TimeUnit.MILLISECONDS, () -> new WGraph_AlgoBench(s, n, m), WGraph_AlgoBench::save);
+                    r.add(c + "load", p, TimeUnit.MILLISECONDS, () -> new WGraph_AlgoBench(s, n, m), WGraph_AlgoBench::load);
+                }
+            }
+        }
+    }
+
+    /**
+     * isConnected of the graph (incremental).
+     */
+    public double isConnected() {
+        return _algo.isConnected() ? 1 : 0;
+    }
+
+    /**
+     * isConnected of the snapshot (a BFS).
+     */
+    public double isConnectedBfs() {
+        return _snapshot_algo.isConnected() ? 1 : 0;
+    }
+
+    /**
+     * One shortestPathDist query.
+     */
+    public double shortestPathDist() {
+        int q = _next++ & (QUERIES - 1);
+        return _algo.shortestPathDist(_src[q], _dest[q]);
+    }
+
+    /**
+     * One shortestPath query.
+     */
+    public double shortestPath() {
+        int q = _next++ & (QUERIES - 1);
+        List<node_info> path = _algo.shortestPath(_src[q], _dest[q]);
+        return path == null ? 0 : path.size();
+    }
+
+    /**
+     * A deep copy of the graph.
+     */
+    public double copy() {
+        return _algo.copy().edgeSize();
+    }
+
+    /**
+     * Save the graph to a file.
+     */
+    public double save() {
+        return _algo.save(_save_file.getPath()) ? 1 : 0;
+    }
+
+    /**
+     * Load the graph from a file.
+     */
+    public double load() {
+        WGraph_Algo ga = new WGraph_Algo();
+        ga.load(_load_file.getPath());
+        return ga.getGraph().edgeSize();
+    }
+
+    /**
+     * Delete the files of save and load, and stop tracking the graph.
+     */
+    @Override
+    public void close() {
+        _connectivity.close();
+        _save_file.delete();
+        _load_file.delete();
+        new File(_save_file.getPath() + ".ch").delete();
+        new File(_load_file.getPath() + ".ch").delete();
+    }
+}
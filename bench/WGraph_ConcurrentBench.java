@@ -0,0 +1,96 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the throughput of {@link WGraph_Concurrent} by the number of threads: a batch of a mixed
+ * connect/removeEdge/getEdge load (1/4, 1/4, 1/2) on random pairs of nodes, split between the threads.
+ * The time of a batch of 1, 2 and 4 threads shows how the lock striping scales with the cores of the fork
+ * (the Gradle task pins 4 processors), see {@link Benchmarks}.
+ * An object of this class is the state of one size and thread count, with its own pool of threads.
+ *
+ * @author davidfeust
+ */
+public class WGraph_ConcurrentBench implements AutoCloseable {
+
+    private static final int BATCH = 1 << 16;
+
+    private final WGraph_Concurrent _graph;
+    private final int _size;
+    private final int _threads;
+    private final ExecutorService _pool;
+    private final Future<?>[] _tasks;
+    private int _next;
+
+    /**
+     * Constructor, builds the graph (nodes only, the load adds the edges) and the pool.
+     *
+     * @param size    number of nodes
+     * @param threads number of threads of the load
+     */
+    public WGraph_ConcurrentBench(int size, int threads) {
+        _graph = new WGraph_Concurrent();
+        for (int i = 0; i < size; i++)
+            _graph.addNode(i);
+        _size = size;
+        _threads = threads;
+        _pool = Executors.newFixedThreadPool(threads);
+        _tasks = new Future[threads];
+    }
+
+    /**
+     * Add the benchmarks of this class to the runner.
+     *
+     * @param r the runner
+     */
+    static void register(BenchRunner r) {
+        for (String size : r.param("size", "100000")) {
+            for (String threads : r.param("threads", "1", "2", "4")) {
+                Map<String, String> p = new LinkedHashMap<>();
+                p.put("size", size);
+                p.put("threads", threads);
+                int n = Integer.parseInt(size), t = Integer.parseInt(threads);
+                r.add("WGraph_ConcurrentBench.mixed", p, TimeUnit.MICROSECONDS,
+                        () -> new WGraph_ConcurrentBench(n, t), WGraph_ConcurrentBench::mixed);
+            }
+        }
+    }
+
+    /**
+     * One batch of the mixed load, BATCH / threads operations on every thread.
+     */
+    public double mixed() {
+        int per = BATCH / _threads;
+        for (int t = 0; t < _threads; t++) {
+            Random rnd = new Random(_next++);
+            _tasks[t] = _pool.submit(() -> {
+                for (int i = 0; i < per; i++) {
+                    int a = rnd.nextInt(_size), b = rnd.nextInt(_size);
+                    int op = rnd.nextInt(4);
+                    if (op == 0)
+                        _graph.connect(a, b, 1);
+                    else if (op == 1)
+                        _graph.removeEdge(a, b);
+                    else
+                        _graph.getEdge(a, b);
+                }
+            });
+        }
+        try {
+            for (Future<?> f : _tasks)
+                f.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return _graph.edgeSize();
+    }
+
+    @Override
+    public void close() {
+        _pool.shutdown();
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the hot paths of {@link WGraph_DS}: building a graph by addNode/connect
+ * (and by {@link WGraph_Builder}, for comparison), iterating getV, and the hasEdge/getEdge lookups.
+ * Every benchmark runs on every {@link GraphShape} and size, see {@link Benchmarks}.
+ * An object of this class is the state of one shape and size.
+ * The lookups cycle over a fixed array of queries - half of them edges of the graph, half random pairs.
+ *
+ * @author davidfeust
+ */
+public class WGraph_DSBench {
+
+    private static final int QUERIES = 1 << 16;
+
+    private final WGraph_DS _graph;
+    private final int[] _keys;
+    private final int[] _from;
+    private final int[] _to;
+    private final double[] _weights;
+    private final int[] _query1;
+    private final int[] _query2;
+    private int _next;
+
+    /**
+     * Constructor, builds the graph and the queries.
+     *
+     * @param shape the shape of the graph
+     * @param size  number of nodes
+     */
+    public WGraph_DSBench(GraphShape shape, int size) {
+        _graph = shape.build(size);
+        int n = _graph.nodeSize(), m = _graph.edgeSize();
+        _keys = new int[n];
+        _from = new int[m];
+        _to = new int[m];
+        _weights = new double[m];
+        int i = 0;
+        int[] e = {0};
+        for (node_info node : _graph.getV()) {
+            int key = node.getKey();
+            _keys[i++] = key;
+            _graph.forEachNeighbor(key, (nei, w) -> {
+                if (key < nei) {
+                    _from[e[0]] = key;
+                    _to[e[0]] = nei;
+                    _weights[e[0]++] = w;
+                }
+            });
+        }
+        Random r = new Random(size);
+        _query1 = new int[QUERIES];
+        _query2 = new int[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            if (q % 2 == 0 && m > 0) {
+                int edge = r.nextInt(m);
+                _query1[q] = _from[edge];
+                _query2[q] = _to[edge];
+            } else {
+                _query1[q] = _keys[r.nextInt(n)];
+                _query2[q] = _keys[r.nextInt(n)];
+            }
+        }
+    }
+
+    /**
+     * Add the benchmarks of this class to the runner.
+     *
+     * @param r the runner
+     */
+    static void register(BenchRunner r) {
+        for (String shape : r.param("shape", "GRID", "RANDOM", "POWER_LAW", "ROAD")) {
+            for (String size : r.param("size", "10000", "100000")) {
+                Map<String, String> p = new LinkedHashMap<>();
+                p.put("shape", shape);
+                p.put("size", size);
+                GraphShape s = GraphShape.valueOf(shape);
+                int n = Integer.parseInt(size);
+                String c = "WGraph_DSBench.";
+                r.add(c + "addNodeConnect", p, TimeUnit.MILLISECONDS, () -> new WGraph_DSBench(s, n), WGraph_DSBench::addNodeConnect);
+                r.add(c + "builder", p, TimeUnit.MILLISECONDS, () -> new WGraph_DSBench(s, n), WGraph_DSBench::builder);
+                r.add(c + "getV", p, TimeUnit.MICROSECONDS, () -> new WGraph_DSBench(s, n), WGraph_DSBench::getV);
+                r.add(c + "getVNeighbors", p, TimeUnit.MILLISECONDS, () -> new WGraph_DSBench(s, n), WGraph_DSBench::getVNeighbors);
+                r.add(c + "forEachNeighbor", p, TimeUnit.MILLISECONDS, () -> new WGraph_DSBench(s, n), WGraph_DSBench::forEachNeighbor);
+                r.add(c + "hasEdge", p, TimeUnit.NANOSECONDS, () -> new WGraph_DSBench(s, n), WGraph_DSBench::hasEdge);
+                r.add(c + "getEdge", p, TimeUnit.NANOSECONDS, () -> new WGraph_DSBench(s, n), WGraph_DSBench::getEdge);
+            }
+        }
+    }
+
+    /**
+     * Build the graph by addNode and connect.
+     */
+    public double addNodeConnect() {
+        weighted_graph g = new WGraph_DS();
+        for (int key : _keys)
+            g.addNode(key);
+        for (int i = 0; i < _from.length; i++)
+            g.connect(_from[i], _to[i], _weights[i]);
+        return g.edgeSize();
+    }
+
+    /**
+     * Build the graph by {@link WGraph_Builder}.
+     */
+    public double builder() {
+        WGraph_Builder b = new WGraph_Builder(_keys.length, _from.length);
+        for (int key : _keys)
+            b.addNode(key);
+        for (int i = 0; i < _from.length; i++)
+            b.connect(_from[i], _to[i], _weights[i]);
+        return b.build().edgeSize();
+    }
+
+    /**
+     * Iterate all the nodes.
+     */
+    public double getV() {
+        double sum = 0;
+        for (node_info n : _graph.getV())
+            sum += n.getKey();
+        return sum;
+    }
+
+    /**
+     * Iterate the neighbors of all the nodes by getV(key).
+     */
+    public double getVNeighbors() {
+        double sum = 0;
+        for (int key : _keys) {
+            for (node_info nei : _graph.getV(key))
+                sum += nei.getKey();
+        }
+        return sum;
+    }
+
+    /**
+     * Iterate the neighbors of all the nodes by forEachNeighbor.
+     */
+    public double forEachNeighbor() {
+        double[] sum = {0};
+        for (int key : _keys)
+            _graph.forEachNeighbor(key, (nei, w) -> sum[0] += w);
+        return sum[0];
+    }
+
+    /**
+     * One hasEdge lookup.
+     */
+    public double hasEdge() {
+        int q = _next++ & (QUERIES - 1);
+        return _graph.hasEdge(_query1[q], _query2[q]) ? 1 : 0;
+    }
+
+    /**
+     * One getEdge lookup.
+     */
+    public double getEdge() {
+        int q = _next++ & (QUERIES - 1);
+        return _graph.getEdge(_query1[q], _query2[q]);
+    }
+}
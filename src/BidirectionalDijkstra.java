@@ -0,0 +1,142 @@
+/**
+ * Bidirectional dijkstra for point to point queries over {@link WGraph_CSR} snapshots.
+ * The graph is undirected, so the backward search from dest is a plain dijkstra from dest.
+ * Two {@link DijkstraEngine}s run alternately - each step settles the node with the smallest distance
+ * of the two queues. When a side settles a node, every neighbor that the other side has reached closes
+ * a candidate path, and the shortest candidate so far is kept in _best (with its meeting arc).
+ * The search stops when the sum of the smallest distances of both queues is at least _best
+ * (no path through unsettled nodes can be shorter), so it settles about two balls of half the radius
+ * instead of one ball of the full radius.
+ * A search is not thread safe - every thread uses its own, see {@link #local()}.
+ *
+ * @author davidfeust
+ */
+class BidirectionalDijkstra {
+
+    private static final ThreadLocal<BidirectionalDijkstra> LOCAL = ThreadLocal.withInitial(BidirectionalDijkstra::new);
+
+    private final DijkstraEngine _forward;
+    private final DijkstraEngine _backward;
+    private double _best;
+    private int _meet_forward;
+    private int _meet_backward;
+
+    /**
+     * Constructor.
+     */
+    BidirectionalDijkstra() {
+        _forward = new DijkstraEngine(0);
+        _backward = new DijkstraEngine(0);
+    }
+
+    /**
+     * @return the search of the current thread
+     */
+    static BidirectionalDijkstra local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Run the bidirectional search on g from src to dest.
+     *
+     * @param g    the snapshot to run on
+     * @param src  dense index of the source
+     * @param dest dense index of the destination
+     * @return the distance from src to dest, or infinity if there is no path
+     */
+    double run(WGraph_CSR g, int src, int dest) {
+        _forward.start(g, src);
+        _backward.start(g, dest);
+        _best = src == dest ? 0 : Double.POSITIVE_INFINITY;
+        _meet_forward = _meet_backward = src == dest ? src : -1;
+
+        while (!_forward.isDone() && !_backward.isDone()) {
+            double f = _forward.peekDist(), b = _backward.peekDist();
+            if (f + b >= _best)
+                break;
+            if (f <= b) {
+                int u = _forward.settleNext(g);
+                meet(g, u, _forward, _backward, true);
+            } else {
+                int u = _backward.settleNext(g);
+                meet(g, u, _backward, _forward, false);
+            }
+        }
+        return _best;
+    }
+
+    /**
+     * Return the path found by the last run, as dense indices from src to dest.
+     *
+     * @return the path, or null if there is no path
+     */
+    int[] path() {
+        if (_meet_forward < 0)
+            return null;
+        int len = 0;
+        for (int i = _meet_forward; i != -1; i = _forward.prev(i))
+            len++;
+        int mid = len;
+        if (_meet_backward != _meet_forward) {
+            for (int i = _meet_backward; i != -1; i = _backward.prev(i))
+                len++;
+        }
+        int[] path = new int[len];
+        int k = mid;
+        for (int i = _meet_forward; i != -1; i = _forward.prev(i))
+            path[--k] = i;
+        k = mid;
+        if (_meet_backward != _meet_forward) {
+            for (int i = _meet_backward; i != -1; i = _backward.prev(i))
+                path[k++] = i;
+        }
+        return path;
+    }
+
+    /**
+     * @return the number of nodes settled by both sides of the last run
+     */
+    int settledCount() {
+        return _forward.settledCount() + _backward.settledCount();
+    }
+
+    /**
+     * @return the number of arcs scanned by both sides of the last run
+     */
+    long relaxedCount() {
+        return _forward.relaxedCount() + _backward.relaxedCount();
+    }
+
+    /**
+     * @return the number of heap operations of both sides of the last run
+     */
+    long heapOps() {
+        return _forward.heapOps() + _backward.heapOps();
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * Check the candidate paths through the arcs of u, that was just settled by side.
+     *
+     * @param forward true iff side is the forward search (so the meeting arc is u -> nei)
+     */
+    private void meet(WGraph_CSR g, int u, DijkstraEngine side, DijkstraEngine other, boolean forward) {
+        double du = side.dist(u);
+        if (other.isReached(u) && du + other.dist(u) < _best) {
+            _best = du + other.dist(u);
+            _meet_forward = _meet_backward = u;
+        }
+        for (int arc = g.arcStart(u), end = g.arcEnd(u); arc < end; arc++) {
+            int nei = g.arcTarget(arc);
+            if (!other.isReached(nei))
+                continue;
+            double t = du + g.arcWeight(arc) + other.dist(nei);
+            if (t < _best) {
+                _best = t;
+                _meet_forward = forward ? u : nei;
+                _meet_backward = forward ? nei : u;
+            }
+        }
+    }
+}
@@ -0,0 +1,412 @@
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Contraction Hierarchies (CH) of a weighted graph, for fast point to point queries on a static graph.
+ * The preprocessing contracts the nodes one by one, in the order of their importance: contracting a node v
+ * removes it from the remaining graph, and for every pair of its remaining neighbors u, w whose only shortest
+ * path goes through v, adds a shortcut edge u - w of weight w(u, v) + w(v, w), that remembers v as its middle node.
+ * The rank of a node is its position in that order. Every edge and shortcut is kept as an upward arc,
+ * from its lower ranked end to its higher ranked end, in compressed-sparse-row layout like {@link WGraph_CSR}.
+ * <p>
+ * The order is chosen greedily by a lazy priority queue: the priority of a node is twice its edge difference
+ * (shortcuts added minus edges removed by its contraction) plus the number of its neighbors that were
+ * already contracted (so the contracted nodes spread evenly over the graph). When a node is polled its priority is computed again, and if it is no longer the smallest,
+ * it goes back to the queue. Whether a shortcut is needed is decided by a witness search - a dijkstra from u
+ * that skips v, limited to {@link #WITNESS_SETTLE_LIMIT} settled nodes. If the search gives up,
+ * the shortcut is added anyway, which is never wrong, only less sparse.
+ * <p>
+ * A query runs dijkstra upward from both ends (see {@link HierarchyQuery}), and settles a few hundred nodes
+ * even on big graphs. Shortcuts are unpacked into the original edges by their middle nodes.
+ * The hierarchy describes the graph at the time it was built, by the keys of its nodes, its edge count,
+ * its mode count and a fingerprint of its edges and weights - see {@link #describes(WGraph_CSR)}.
+ * It can be saved next to the graph file, with a stamp of the graph, see {@link WGraph_Algo#save(String)}.
+ *
+ * @author davidfeust
+ */
+public class ContractionHierarchy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * maximal number of nodes a witness search settles before it gives up.
+     */
+    static final int WITNESS_SETTLE_LIMIT = 500;
+
+    private final int[] _keys;
+    private final int _edges_size;
+    private final int _mode_count;
+    private final long _fingerprint;
+    private final int[] _rank;
+    private final int[] _offsets;
+    private final int[] _targets;
+    private final double[] _weights;
+    private final int[] _middles;
+    private final int _shortcuts;
+    private transient volatile WGraph_CSR _checked;
+
+    /**
+     * Constructor.
+     * contracts all the nodes of g and builds the upward arcs.
+     *
+     * @param g the graph
+     */
+    public ContractionHierarchy(weighted_graph g) {
+        WGraph_CSR csr = WGraph_CSR.of(g);
+        int n = csr.nodeSize();
+        _keys = new int[n];
+        for (int i = 0; i < n; i++)
+            _keys[i] = csr.keyAt(i);
+        _edges_size = csr.edgeSize();
+        _mode_count = csr.getMC();
+        _fingerprint = csr.fingerprint();
+
+        Contraction c = new Contraction(csr);
+        c.contractAll();
+        _rank = c._rank;
+        _offsets = new int[n + 1];
+        for (int i = 0; i < n; i++)
+            _offsets[i + 1] = _offsets[i] + c._up[i]._size;
+        _targets = new int[_offsets[n]];
+        _weights = new double[_offsets[n]];
+        _middles = new int[_offsets[n]];
+        for (int i = 0; i < n; i++) {
+            Arcs up = c._up[i];
+            System.arraycopy(up._targets, 0, _targets, _offsets[i], up._size);
+            System.arraycopy(up._weights, 0, _weights, _offsets[i], up._size);
+            System.arraycopy(up._middles, 0, _middles, _offsets[i], up._size);
+        }
+        _shortcuts = c._shortcuts;
+        _checked = csr;
+    }
+
+    /**
+     * @return the number of nodes of the graph
+     */
+    public int nodeSize() {
+        return _keys.length;
+    }
+
+    /**
+     * @return the number of shortcuts added by the preprocessing
+     */
+    public int shortcutCount() {
+        return _shortcuts;
+    }
+
+    /**
+     * Return true iff this hierarchy was built from a graph with the same nodes, edge count and mode count as g,
+     * and the same edges and weights (by their fingerprint), so its dense indices are the dense indices of g.
+     * The last snapshot that was checked is remembered, so checking it again runs in O(1) time
+     * (checking a new snapshot runs in O(V+E) time).
+     *
+     * @param g snapshot of a graph
+     * @return true iff this hierarchy describes g
+     */
+    public boolean describes(WGraph_CSR g) {
+        if (g == _checked)
+            return true;
+        if (g.nodeSize() != _keys.length || g.edgeSize() != _edges_size || g.getMC() != _mode_count)
+            return false;
+        for (int i = 0; i < _keys.length; i++) {
+            if (g.keyAt(i) != _keys[i])
+                return false;
+        }
+        if (g.fingerprint() != _fingerprint)
+            return false;
+        _checked = g;
+        return true;
+    }
+
+    /**
+     * Saves this hierarchy to the given file name, with {@link ObjectOutputStream},
+     * after a stamp of the graph it belongs to.
+     *
+     * @param file  the file name (may include a relative path).
+     * @param stamp the stamp of the graph
+     * @return true - iff the file was successfully saved
+     */
+    public boolean save(String file, long stamp) {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file, false)))) {
+            oos.writeLong(stamp);
+            oos.writeObject(this);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Load a hierarchy saved by {@link #save(String, long)}.
+     *
+     * @param file  file name
+     * @param stamp the stamp of the graph the hierarchy must belong to
+     * @return the hierarchy, or null if it was not loaded or it was saved with another stamp
+     */
+    public static ContractionHierarchy load(String file, long stamp) {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (ois.readLong() != stamp)
+                return null;
+            return (ContractionHierarchy) ois.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ContractionHierarchy{" +
+                "node_size=" + _keys.length +
+                ", edge_size=" + _edges_size +
+                ", shortcuts=" + _shortcuts +
+                '}';
+    }
+
+    ////////////////////// Upward arcs /////////////////////
+
+    /**
+     * @param i dense index
+     * @return the rank of the node with index i (its position in the contraction order)
+     */
+    int rank(int i) {
+        return _rank[i];
+    }
+
+    /**
+     * @param i dense index
+     * @return first upward arc of the node with index i
+     */
+    int arcStart(int i) {
+        return _offsets[i];
+    }
+
+    /**
+     * @param i dense index
+     * @return one past the last upward arc of the node with index i
+     */
+    int arcEnd(int i) {
+        return _offsets[i + 1];
+    }
+
+    /**
+     * @param arc arc number
+     * @return dense index of the (higher ranked) head of this arc
+     */
+    int arcTarget(int arc) {
+        return _targets[arc];
+    }
+
+    /**
+     * @param arc arc number
+     * @return weight of this arc
+     */
+    double arcWeight(int arc) {
+        return _weights[arc];
+    }
+
+    /**
+     * @param arc arc number
+     * @return dense index of the middle node of this shortcut, or -1 if the arc is an edge of the graph
+     */
+    int arcMiddle(int arc) {
+        return _middles[arc];
+    }
+
+    /**
+     * find the arc between a and b, in the upward arcs of the lower ranked of them.
+     *
+     * @return the arc number, or -1 if there is no such arc
+     */
+    int arcOf(int a, int b) {
+        int low = _rank[a] < _rank[b] ? a : b;
+        int high = low == a ? b : a;
+        for (int arc = _offsets[low]; arc < _offsets[low + 1]; arc++) {
+            if (_targets[arc] == high)
+                return arc;
+        }
+        return -1;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * Growable arrays of arcs (target, weight, middle node) of one node.
+     */
+    private static class Arcs {
+        private int[] _targets = new int[4];
+        private double[] _weights = new double[4];
+        private int[] _middles = new int[4];
+        private int _size;
+
+        void add(int target, double w, int middle) {
+            if (_size == _targets.length) {
+                _targets = Arrays.copyOf(_targets, _size * 2);
+                _weights = Arrays.copyOf(_weights, _size * 2);
+                _middles = Arrays.copyOf(_middles, _size * 2);
+            }
+            _targets[_size] = target;
+            _weights[_size] = w;
+            _middles[_size++] = middle;
+        }
+
+        /**
+         * add the arc, or lower the weight of the existing arc to target.
+         */
+        void addOrLower(int target, double w, int middle) {
+            for (int i = 0; i < _size; i++) {
+                if (_targets[i] == target) {
+                    if (w < _weights[i]) {
+                        _weights[i] = w;
+                        _middles[i] = middle;
+                    }
+                    return;
+                }
+            }
+            add(target, w, middle);
+        }
+
+        void remove(int target) {
+            for (int i = 0; i < _size; i++) {
+                if (_targets[i] == target) {
+                    _size--;
+                    _targets[i] = _targets[_size];
+                    _weights[i] = _weights[_size];
+                    _middles[i] = _middles[_size];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of the preprocessing: the remaining graph, the order queue and the witness search.
+     * It is dropped when the hierarchy is built.
+     */
+    private static class Contraction {
+        private final int _n;
+        private final Arcs[] _adj;
+        private final Arcs[] _up;
+        private final int[] _rank;
+        private final int[] _deleted;
+        private final IndexedHeap _order;
+        private final IndexedHeap _heap;
+        private final double[] _dist;
+        private final int[] _reached;
+        private int _epoch;
+        private int _shortcuts;
+
+        Contraction(WGraph_CSR g) {
+            _n = g.nodeSize();
+            _adj = new Arcs[_n];
+            _up = new Arcs[_n];
+            _rank = new int[_n];
+            _deleted = new int[_n];
+            _order = new IndexedHeap(_n);
+            _heap = new IndexedHeap(_n);
+            _dist = new double[_n];
+            _reached = new int[_n];
+            for (int i = 0; i < _n; i++) {
+                _adj[i] = new Arcs();
+                _up[i] = new Arcs();
+                for (int arc = g.arcStart(i); arc < g.arcEnd(i); arc++)
+                    _adj[i].add(g.arcTarget(arc), g.arcWeight(arc), -1);
+            }
+        }
+
+        /**
+         * Contract all the nodes, in the order of the lazy priority queue.
+         */
+        void contractAll() {
+            for (int v = 0; v < _n; v++)
+                _order.insertOrDecrease(v, priority(v));
+            int rank = 0;
+            while (!_order.isEmpty()) {
+                int v = _order.poll();
+                double p = priority(v);
+                if (!_order.isEmpty() && p > _order.peekKey()) {
+                    _order.insertOrDecrease(v, p);
+                    continue;
+                }
+                contract(v, false);
+                _rank[v] = rank++;
+                Arcs adj = _adj[v];
+                for (int i = 0; i < adj._size; i++) {
+                    int u = adj._targets[i];
+                    _up[v].add(u, adj._weights[i], adj._middles[i]);
+                    _adj[u].remove(v);
+                    _deleted[u]++;
+                }
+                _adj[v] = null;
+            }
+        }
+
+        private double priority(int v) {
+            return 2 * (contract(v, true) - _adj[v]._size) + _deleted[v];
+        }
+
+        /**
+         * Find the shortcuts needed to contract v, and add them unless simulate.
+         * For every neighbor u, one witness search from u decides the pairs (u, w) of the neighbors after it.
+         *
+         * @return the number of shortcuts
+         */
+        private int contract(int v, boolean simulate) {
+            Arcs adj = _adj[v];
+            int count = 0;
+            for (int i = 0; i + 1 < adj._size; i++) {
+                int u = adj._targets[i];
+                double max = 0;
+                for (int j = i + 1; j < adj._size; j++)
+                    max = Math.max(max, adj._weights[j]);
+                witness(u, v, adj._weights[i] + max);
+                for (int j = i + 1; j < adj._size; j++) {
+                    int w = adj._targets[j];
+                    double via = adj._weights[i] + adj._weights[j];
+                    if (_reached[w] == _epoch && _dist[w] <= via)
+                        continue;
+                    count++;
+                    if (!simulate) {
+                        _adj[u].addOrLower(w, via, v);
+                        _adj[w].addOrLower(u, via, v);
+                    }
+                }
+            }
+            if (!simulate)
+                _shortcuts += count;
+            return count;
+        }
+
+        /**
+         * dijkstra from src in the remaining graph without skip, until the distances exceed limit
+         * or {@link #WITNESS_SETTLE_LIMIT} nodes were settled.
+         */
+        private void witness(int src, int skip, double limit) {
+            _heap.clear();
+            if (++_epoch == 0) {
+                Arrays.fill(_reached, 0);
+                _epoch = 1;
+            }
+            _dist[src] = 0;
+            _reached[src] = _epoch;
+            _heap.insertOrDecrease(src, 0);
+            int settled = 0;
+            while (!_heap.isEmpty() && _heap.peekKey() <= limit && settled++ < WITNESS_SETTLE_LIMIT) {
+                int curr = _heap.poll();
+                Arcs adj = _adj[curr];
+                for (int i = 0; i < adj._size; i++) {
+                    int nei = adj._targets[i];
+                    if (nei == skip)
+                        continue;
+                    double t = _dist[curr] + adj._weights[i];
+                    if (_reached[nei] != _epoch || t < _dist[nei]) {
+                        _dist[nei] = t;
+                        _reached[nei] = _epoch;
+                        _heap.insertOrDecrease(nei, t);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * A* heuristic by the coordinates of the nodes, parsed from {@link node_info#getInfo()} as "x,y"
+ * (or "lat,lon" in degrees for the haversine distance). The coordinates are parsed once, into arrays
+ * indexed by the dense index of a {@link WGraph_CSR} snapshot of the graph.
+ * The estimate is the straight line (or great circle) distance times a scale that converts length to weight.
+ * The scale is calibrated on the edges of the graph - the smallest weight / length ratio of all the edges -
+ * so by the triangle inequality the estimate is consistent on this graph, whatever the units of the weights are.
+ * If some node has no coordinates the scale is 0 and A* is plain dijkstra.
+ * The heuristic describes the graph at the time it was built (its mode count, keys and weights, see {@link #describes(WGraph_CSR)}),
+ * after the graph is changed {@link WGraph_Algo} runs dijkstra instead of A* until a new heuristic is set.
+ *
+ * @author davidfeust
+ */
+public class CoordinateHeuristic implements path_heuristic {
+
+    private static final double EARTH_RADIUS = 6371008.8;
+
+    private final WGraph_CSR _graph;
+    private final long _fingerprint;
+    private volatile WGraph_CSR _checked;
+    private final double[] _x;
+    private final double[] _y;
+    private final boolean _haversine;
+    private final double _scale;
+
+    /**
+     * Constructor.
+     *
+     * @param g         the graph, every node has "x,y" (or "lat,lon") in its info
+     * @param haversine true for great circle distance of "lat,lon" in degrees, false for euclidean distance
+     */
+    private CoordinateHeuristic(weighted_graph g, boolean haversine) {
+        _graph = WGraph_CSR.of(g);
+        _fingerprint = _graph.fingerprint();
+        _haversine = haversine;
+        int n = _graph.nodeSize();
+        _x = new double[n];
+        _y = new double[n];
+        boolean complete = true;
+        for (int i = 0; i < n; i++)
+            complete &= parse(_graph.nodeAt(i).getInfo(), i);
+        _scale = complete ? calibrate() : 0;
+    }
+
+    /**
+     * Build a heuristic by the euclidean distance of the "x,y" coordinates of the nodes.
+     *
+     * @param g the graph
+     * @return the heuristic
+     */
+    public static CoordinateHeuristic euclidean(weighted_graph g) {
+        return new CoordinateHeuristic(g, false);
+    }
+
+    /**
+     * Build a heuristic by the great circle distance of the "lat,lon" coordinates (degrees) of the nodes.
+     *
+     * @param g the graph
+     * @return the heuristic
+     */
+    public static CoordinateHeuristic haversine(weighted_graph g) {
+        return new CoordinateHeuristic(g, true);
+    }
+
+    /**
+     * return scale * distance(node, target), or 0 if one of them is not in the graph.
+     */
+    @Override
+    public double estimate(int node, int target) {
+        int a = _graph.indexOf(node), b = _graph.indexOf(target);
+        if (a < 0 || b < 0 || _scale == 0)
+            return 0;
+        return _scale * length(a, b);
+    }
+
+    /**
+     * @return weight per unit of length, 0 if the heuristic is disabled
+     */
+    public double scale() {
+        return _scale;
+    }
+
+    @Override
+    public String toString() {
+        return "CoordinateHeuristic{" +
+                (_haversine ? "haversine" : "euclidean") +
+                ", scale=" + _scale +
+                '}';
+    }
+
+    /**
+     * return true iff g is a snapshot of the version of the graph this heuristic was built from,
+     * with the same weights (by their {@link WGraph_CSR#fingerprint()}), so a reweighted graph is not described.
+     * The last snapshot that was checked is remembered, so checking it again runs in O(1) time
+     * (checking a new snapshot runs in O(V+E) time).
+     */
+    @Override
+    public boolean describes(WGraph_CSR g) {
+        if (g == _checked)
+            return true;
+        if (!_graph.sameVersion(g) || g.fingerprint() != _fingerprint)
+            return false;
+        _checked = g;
+        return true;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * Parse "x,y" (separated by a comma, a semicolon or spaces) into _x[i] and _y[i].
+     *
+     * @return true iff info holds two numbers
+     */
+    private boolean parse(String info, int i) {
+        if (info == null)
+            return false;
+        String[] parts = info.trim().split("[,;\\s]+");
+        if (parts.length != 2)
+            return false;
+        try {
+            _x[i] = Double.parseDouble(parts[0]);
+            _y[i] = Double.parseDouble(parts[1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return !Double.isNaN(_x[i]) && !Double.isNaN(_y[i]);
+    }
+
+    /**
+     * @return the smallest weight / length ratio of the edges of the graph (edges of length 0 are ignored)
+     */
+    private double calibrate() {
+        double scale = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < _graph.nodeSize(); i++) {
+            for (int arc = _graph.arcStart(i), end = _graph.arcEnd(i); arc < end; arc++) {
+                int j = _graph.arcTarget(arc);
+                double len = length(i, j);
+                if (j > i && len > 0)
+                    scale = Math.min(scale, _graph.arcWeight(arc) / len);
+            }
+        }
+        return scale == Double.POSITIVE_INFINITY ? 0 : scale;
+    }
+
+    /**
+     * @return the distance between the coordinates of the dense indices a and b
+     */
+    private double length(int a, int b) {
+        if (!_haversine)
+            return Math.hypot(_x[a] - _x[b], _y[a] - _y[b]);
+        double lat1 = Math.toRadians(_x[a]), lat2 = Math.toRadians(_x[b]);
+        double sinLat = Math.sin((lat2 - lat1) / 2);
+        double sinLon = Math.sin(Math.toRadians(_y[b] - _y[a]) / 2);
+        double h = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+}
@@ -0,0 +1,348 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel delta-stepping single source shortest paths (Meyer and Sanders) over a {@link WGraph_CSR} snapshot.
+ * The frontier is a ring of buckets of width delta: bucket b holds the nodes with a distance in [b * delta, (b+1) * delta).
+ * The buckets are emptied in increasing order. An arc is light if its weight is at most delta, heavy otherwise.
+ * While the current bucket is not empty, its nodes relax their light arcs (which may refill the bucket).
+ * When it stays empty, every node that was in it relaxes its heavy arcs once (they never lead back into it).
+ * The nodes of a round are relaxed in parallel on the common {@link java.util.concurrent.ForkJoinPool},
+ * in chunks of CHUNK nodes, and a distance is lowered by compare-and-set, so no lock is taken.
+ * The nodes whose distance was lowered are moved to their buckets between the rounds, by the calling thread.
+ * A large delta does less rounds but relaxes more arcs of nodes whose distance is not final yet (like Bellman-Ford),
+ * a small delta relaxes less but does more rounds (like dijkstra), see {@link #delta(WGraph_CSR)}.
+ * The previous nodes are not kept during the run (a racy write could leave a previous node that does not match the distance):
+ * they are restored at the end, from the final distances.
+ *
+ * @author davidfeust
+ */
+class DeltaStepping {
+
+    private static final VarHandle DIST = MethodHandles.arrayElementVarHandle(double[].class);
+    /**
+     * The number of nodes of a task of a round - a smaller round runs on the calling thread.
+     */
+    private static final int CHUNK = 256;
+    /**
+     * The largest number of buckets in the ring (delta is at least the heaviest weight / MAX_BUCKETS).
+     */
+    static final int MAX_BUCKETS = 1 << 16;
+    private static final int SAMPLE = 4096;
+
+    private final WGraph_CSR _g;
+    private final double _delta;
+    private final double[] _dist;
+    private final long[] _queued;
+    private final int[][] _buckets;
+    private final int[] _sizes;
+    private long _pending;
+    private long _settled;
+    private long _relaxed;
+    private long _inserts;
+
+    /**
+     * Constructor.
+     *
+     * @param g     the snapshot to run on
+     * @param delta the width of a bucket, positive
+     */
+    DeltaStepping(WGraph_CSR g, double delta) {
+        double max = maxWeight(g);
+        _g = g;
+        _delta = Math.max(delta, max / MAX_BUCKETS);
+        _dist = new double[g.nodeSize()];
+        _queued = new long[g.nodeSize()];
+        // a relaxation from bucket b lands in a bucket in [b, b + max / delta + 1]
+        int ring = (int) Math.ceil(max / _delta) + 2;
+        _buckets = new int[ring][];
+        _sizes = new int[ring];
+    }
+
+    /**
+     * Choose delta by the weights of g: the weight at the 1/(average degree) quantile of a sample of the arcs.
+     * For uniform weights in [0, w] this is w / degree, the delta of Meyer and Sanders, where a node has about one light arc -
+     * and a quantile (not the mean) is not moved by a few very heavy arcs.
+     *
+     * @param g the snapshot
+     * @return positive delta
+     */
+    static double delta(WGraph_CSR g) {
+        int n = g.nodeSize();
+        int arcs = n == 0 ? 0 : g.arcEnd(n - 1);
+        if (arcs == 0)
+            return 1;
+        int size = Math.min(arcs, SAMPLE);
+        double[] sample = new double[size];
+        for (int k = 0; k < size; k++)
+            sample[k] = g.arcWeight((int) ((long) k * arcs / size));
+        Arrays.sort(sample);
+        double q = Math.min(1, (double) n / arcs);
+        double delta = sample[(int) (q * (size - 1))];
+        if (delta > 0)
+            return delta;
+        // zero weights: the smallest positive weight of the sample
+        for (double w : sample) {
+            if (w > 0)
+                return w;
+        }
+        return 1;
+    }
+
+    /**
+     * Run from src, and compute the distances and the previous nodes of all the nodes.
+     *
+     * @param src  dense index of the source
+     * @param prev the previous nodes, filled by dense index, -1 for src and the nodes that were not reached
+     * @return the distances by dense index, infinity for a node that was not reached (owned by the caller)
+     */
+    double[] run(int src, int[] prev) {
+        Arrays.fill(_dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(_queued, -1);
+        _dist[src] = 0;
+        push(0, src);
+        int[] bucket_nodes = new int[16];
+        for (long b = 0; _pending > 0; b++) {
+            int slot = (int) (b % _buckets.length);
+            if (_sizes[slot] == 0)
+                continue;
+            int count = 0;
+            while (_sizes[slot] > 0) {
+                int[] frontier = take(slot, b);
+                if (count + frontier.length > bucket_nodes.length)
+                    bucket_nodes = Arrays.copyOf(bucket_nodes, Math.max(2 * bucket_nodes.length, count + frontier.length));
+                System.arraycopy(frontier, 0, bucket_nodes, count, frontier.length);
+                count += frontier.length;
+                _settled += frontier.length;
+                relax(frontier, true);
+            }
+            relax(distinct(bucket_nodes, count), false);
+        }
+        restorePrev(src, prev);
+        return _dist;
+    }
+
+    /**
+     * @return the width of a bucket of the run
+     */
+    double delta() {
+        return _delta;
+    }
+
+    /**
+     * @return the number of times a node was taken from a bucket (a node may be taken more than once)
+     */
+    long settledCount() {
+        return _settled;
+    }
+
+    /**
+     * @return the number of arcs relaxed by the run
+     */
+    long relaxedCount() {
+        return _relaxed;
+    }
+
+    /**
+     * @return the number of inserts to the buckets
+     */
+    long bucketInserts() {
+        return _inserts;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * The lowered nodes and the relaxed arcs of a chunk of a round.
+     */
+    private static final class Updates {
+        int[] nodes = new int[16];
+        int size;
+        long relaxed;
+    }
+
+    /**
+     * Relax the light (or the heavy) arcs of the nodes of frontier, in parallel, and move every node whose
+     * distance was lowered to its bucket.
+     */
+    private void relax(int[] frontier, boolean light) {
+        int len = frontier.length;
+        int chunks = (len + CHUNK - 1) / CHUNK;
+        if (chunks <= 1) {
+            merge(relaxChunk(frontier, 0, len, light));
+            return;
+        }
+        List<Updates> updates = IntStream.range(0, chunks).parallel()
+                .mapToObj(c -> relaxChunk(frontier, c * CHUNK, Math.min(len, (c + 1) * CHUNK), light))
+                .collect(Collectors.toList());
+        for (Updates u : updates)
+            merge(u);
+    }
+
+    /**
+     * Relax the arcs of frontier[from..to) - the task of one chunk.
+     * A distance is lowered by compare-and-set, so two tasks can lower the distance of the same node at once.
+     */
+    private Updates relaxChunk(int[] frontier, int from, int to, boolean light) {
+        Updates u = new Updates();
+        double delta = _delta;
+        for (int k = from; k < to; k++) {
+            int v = frontier[k];
+            double dv = (double) DIST.getVolatile(_dist, v);
+            for (int arc = _g.arcStart(v), end = _g.arcEnd(v); arc < end; arc++) {
+                double w = _g.arcWeight(arc);
+                if (w <= delta != light)
+                    continue;
+                u.relaxed++;
+                int t = _g.arcTarget(arc);
+                double nd = dv + w;
+                double old = (double) DIST.getVolatile(_dist, t);
+                while (nd < old) {
+                    if (DIST.compareAndSet(_dist, t, old, nd)) {
+                        if (u.size == u.nodes.length)
+                            u.nodes = Arrays.copyOf(u.nodes, 2 * u.size);
+                        u.nodes[u.size++] = t;
+                        break;
+                    }
+                    old = (double) DIST.getVolatile(_dist, t);
+                }
+            }
+        }
+        return u;
+    }
+
+    /**
+     * Move the lowered nodes of a chunk to the buckets of their (final for the round) distances.
+     */
+    private void merge(Updates u) {
+        _relaxed += u.relaxed;
+        for (int k = 0; k < u.size; k++) {
+            int v = u.nodes[k];
+            long b = (long) (_dist[v] / _delta);
+            if (_queued[v] != b)
+                push(b, v);
+        }
+    }
+
+    /**
+     * Insert v to bucket b. An older entry of v in another bucket becomes stale (see {@link #take}).
+     */
+    private void push(long b, int v) {
+        int slot = (int) (b % _buckets.length);
+        int[] nodes = _buckets[slot];
+        if (nodes == null)
+            nodes = _buckets[slot] = new int[16];
+        else if (_sizes[slot] == nodes.length)
+            nodes = _buckets[slot] = Arrays.copyOf(nodes, 2 * nodes.length);
+        nodes[_sizes[slot]++] = v;
+        _queued[v] = b;
+        _pending++;
+        _inserts++;
+    }
+
+    /**
+     * Empty the bucket of slot, and return the nodes that are still queued in bucket b.
+     */
+    private int[] take(int slot, long b) {
+        int[] nodes = _buckets[slot];
+        int size = _sizes[slot];
+        _sizes[slot] = 0;
+        _pending -= size;
+        int valid = 0;
+        for (int k = 0; k < size; k++) {
+            int v = nodes[k];
+            if (_queued[v] == b) {
+                _queued[v] = -1;
+                nodes[valid++] = v;
+            }
+        }
+        return Arrays.copyOf(nodes, valid);
+    }
+
+    /**
+     * @return the distinct nodes of nodes[0..count), the nodes that were taken from a bucket more than once appear once
+     */
+    private int[] distinct(int[] nodes, int count) {
+        int[] out = new int[count];
+        int size = 0;
+        for (int k = 0; k < count; k++) {
+            int v = nodes[k];
+            // every node of the bucket is out of the buckets now (-1), -2 marks the nodes that were added
+            if (_queued[v] == -1) {
+                _queued[v] = -2;
+                out[size++] = v;
+            }
+        }
+        for (int k = 0; k < size; k++)
+            _queued[out[k]] = -1;
+        return Arrays.copyOf(out, size);
+    }
+
+    /**
+     * Restore a previous node for every reached node from the final distances: a neighbor u with dist[u] + w == dist[v].
+     * The final distance of v is exactly the minimum of dist[u] + w over its arcs (every node relaxed its arcs with its
+     * final distance), so such a neighbor exists. A neighbor with a smaller distance is taken in parallel, and the nodes
+     * that have only neighbors with the same distance (over zero weights) are attached by a BFS from the other nodes,
+     * so the previous nodes never form a cycle.
+     */
+    private void restorePrev(int src, int[] prev) {
+        int n = _dist.length;
+        IntStream.range(0, n).parallel().forEach(v -> {
+            prev[v] = -1;
+            if (v == src || _dist[v] == Double.POSITIVE_INFINITY)
+                return;
+            for (int arc = _g.arcStart(v), end = _g.arcEnd(v); arc < end; arc++) {
+                int u = _g.arcTarget(arc);
+                if (_dist[u] < _dist[v] && _dist[u] + _g.arcWeight(arc) == _dist[v]) {
+                    prev[v] = u;
+                    return;
+                }
+            }
+            prev[v] = -2;
+        });
+        int[] queue = new int[16];
+        int tail = 0;
+        for (int v = 0; v < n; v++) {
+            if (prev[v] != -2)
+                continue;
+            for (int arc = _g.arcStart(v), end = _g.arcEnd(v); arc < end; arc++) {
+                int u = _g.arcTarget(arc);
+                if (prev[u] != -2 && (u == src || prev[u] != -1) && _dist[u] + _g.arcWeight(arc) == _dist[v]) {
+                    prev[v] = u;
+                    if (tail == queue.length)
+                        queue = Arrays.copyOf(queue, 2 * tail);
+                    queue[tail++] = v;
+                    break;
+                }
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int u = queue[head];
+            for (int arc = _g.arcStart(u), end = _g.arcEnd(u); arc < end; arc++) {
+                int v = _g.arcTarget(arc);
+                if (prev[v] == -2 && _dist[u] + _g.arcWeight(arc) == _dist[v]) {
+                    prev[v] = u;
+                    if (tail == queue.length)
+                        queue = Arrays.copyOf(queue, 2 * tail);
+                    queue[tail++] = v;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the heaviest weight of an arc of g
+     */
+    private static double maxWeight(WGraph_CSR g) {
+        int n = g.nodeSize();
+        int arcs = n == 0 ? 0 : g.arcEnd(n - 1);
+        double max = 0;
+        for (int arc = 0; arc < arcs; arc++)
+            max = Math.max(max, g.arcWeight(arc));
+        return max;
+    }
+}
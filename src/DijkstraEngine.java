@@ -0,0 +1,445 @@
+import java.util.Arrays;
+
+/**
+ * Allocation free implementation of dijkstra algorithm (and BFS) over {@link WGraph_CSR} snapshots.
+ * The distance, the previous node and the visited state of every node are kept in primitive arrays
+ * indexed by the dense index of the snapshot, and the frontier is an {@link IndexedHeap} with decrease-key,
+ * so every node enters the queue at most once.
+ * This is query-local scratch state - the algorithms do not write into the tags of the nodes.
+ * The arrays are reset lazily by epochs: every run increments _epoch, and the distance of a node is valid
+ * only if its _reached stamp equals the current epoch (the same for _settled),
+ * so a run costs time proportional to the part of the graph it explores, not to the whole graph.
+ * The arrays are allocated once (and grown if the engine runs on a bigger graph),
+ * so running a query does not allocate.
+ * An engine is not thread safe - every thread uses its own engine, see {@link #local()}.
+ *
+ * @author davidfeust
+ */
+class DijkstraEngine {
+
+    private static final ThreadLocal<DijkstraEngine> LOCAL = ThreadLocal.withInitial(() -> new DijkstraEngine(0));
+
+    private double[] _dist;
+    private int[] _prev;
+    private int[] _reached;
+    private int[] _settled;
+    private int[] _queue;
+    private int[] _target;
+    private double[] _estimate;
+    private int _epoch;
+    private int _settled_count;
+    private long _relaxed_count;
+    private long _heap_ops_start;
+    private final IndexedHeap _heap;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity number of nodes of the biggest expected graph (the arrays grow if needed)
+     */
+    DijkstraEngine(int capacity) {
+        _heap = new IndexedHeap(capacity);
+        _dist = new double[capacity];
+        _prev = new int[capacity];
+        _reached = new int[capacity];
+        _settled = new int[capacity];
+        _queue = new int[capacity];
+        _target = new int[capacity];
+        _estimate = new double[capacity];
+    }
+
+    /**
+     * Return the engine of the calling thread.
+     * The engine keeps the arrays of the biggest graph the thread has queried.
+     *
+     * @return the engine of the current thread
+     */
+    static DijkstraEngine local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Take the engine of the calling thread, for a step by step run that calls back into user code between its steps.
+     * Until the engine is given back, a query of the same thread (from the callback) gets a new engine
+     * by {@link #local()}, instead of overwriting the state of the run.
+     *
+     * @return the engine of the current thread
+     */
+    static DijkstraEngine borrow() {
+        DijkstraEngine engine = LOCAL.get();
+        LOCAL.remove();
+        return engine;
+    }
+
+    /**
+     * Give back an engine of {@link #borrow()} to the calling thread.
+     *
+     * @param engine the borrowed engine
+     */
+    static void giveBack(DijkstraEngine engine) {
+        LOCAL.set(engine);
+    }
+
+    /**
+     * Run dijkstra on g from src, stops when dest is polled from the queue.
+     * The engine does not keep a reference to g after the run.
+     * At first src enters the queue with distance 0 (every other node has distance infinity, by its stale stamp).
+     * In each iteration the node with the smallest distance is polled and marked as visited,
+     * and every neighbor that is not visited and gets a smaller distance through it
+     * is inserted to the queue or has its distance decreased, with the polled node as its prev.
+     *
+     * @param g    the snapshot to run on
+     * @param src  dense index of the source
+     * @param dest dense index of the destination, or -1 to compute the distances to all the nodes
+     * @return true iff dest was reached
+     */
+    boolean run(WGraph_CSR g, int src, int dest) {
+        int epoch = begin(g.nodeSize());
+
+        _dist[src] = 0;
+        _prev[src] = -1;
+        _reached[src] = epoch;
+        _heap.insertOrDecrease(src, 0);
+
+        while (!_heap.isEmpty()) {
+            int curr = _heap.poll();
+            _settled[curr] = epoch;
+            _settled_count++;
+            if (curr == dest)
+                return true;
+            relax(g, curr, epoch);
+        }
+        return dest < 0;
+    }
+
+    /**
+     * Run dijkstra on g from src, until the queue is empty or a cut-off is hit:
+     * a node farther than max_dist is never settled, and the run stops after max_settled nodes were settled.
+     * Like {@link #run(WGraph_CSR, int, int)} with no destination, but the reached nodes that were not settled
+     * (see {@link #isSettled(int)}) may have a distance that is not the shortest.
+     *
+     * @param g           the snapshot to run on
+     * @param src         dense index of the source
+     * @param max_dist    the largest distance to settle (infinity for no cut-off)
+     * @param max_settled the largest number of nodes to settle (Integer.MAX_VALUE for no cut-off)
+     * @return true iff no cut-off was hit, so every node with a path from src was settled
+     */
+    boolean runBounded(WGraph_CSR g, int src, double max_dist, int max_settled) {
+        int epoch = begin(g.nodeSize());
+
+        _dist[src] = 0;
+        _prev[src] = -1;
+        _reached[src] = epoch;
+        _heap.insertOrDecrease(src, 0);
+
+        while (!_heap.isEmpty()) {
+            if (_settled_count >= max_settled || _heap.peekKey() > max_dist)
+                return false;
+            int curr = _heap.poll();
+            _settled[curr] = epoch;
+            _settled_count++;
+            relax(g, curr, epoch);
+        }
+        return true;
+    }
+
+    /**
+     * Run A* on g from src to dest with the heuristic h.
+     * Like dijkstra, but the priority of a node in the queue is its distance plus its estimated distance to dest.
+     * The estimate of a node is computed once, when it is first reached, and kept in _estimate.
+     * Since h is consistent, a settled node never has to be opened again.
+     *
+     * @param g    the snapshot to run on
+     * @param src  dense index of the source
+     * @param dest dense index of the destination
+     * @param h    consistent heuristic over the keys of the nodes
+     * @return true iff dest was reached
+     */
+    boolean runAStar(WGraph_CSR g, int src, int dest, path_heuristic h) {
+        int epoch = begin(g.nodeSize());
+        int target = g.keyAt(dest);
+
+        _dist[src] = 0;
+        _prev[src] = -1;
+        _reached[src] = epoch;
+        _estimate[src] = h.estimate(g.keyAt(src), target);
+        _heap.insertOrDecrease(src, _estimate[src]);
+
+        while (!_heap.isEmpty()) {
+            int curr = _heap.poll();
+            _settled[curr] = epoch;
+            _settled_count++;
+            if (curr == dest)
+                return true;
+            double d = _dist[curr];
+            _relaxed_count += g.arcEnd(curr) - g.arcStart(curr);
+            for (int arc = g.arcStart(curr), end = g.arcEnd(curr); arc < end; arc++) {
+                int nei = g.arcTarget(arc);
+                if (_settled[nei] == epoch)
+                    continue;
+                double t = d + g.arcWeight(arc);
+                if (_reached[nei] != epoch) {
+                    _estimate[nei] = h.estimate(g.keyAt(nei), target);
+                } else if (t >= _dist[nei]) {
+                    continue;
+                }
+                _dist[nei] = t;
+                _prev[nei] = curr;
+                _reached[nei] = epoch;
+                _heap.insertOrDecrease(nei, t + _estimate[nei]);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Run dijkstra on g from src, stops as soon as all the given targets were polled from the queue
+     * (or the queue is empty). Used by the batch queries, so every source runs once for all its targets.
+     * The targets are marked by the _target stamp, and the run counts down the distinct targets it settles.
+     *
+     * @param g       the snapshot to run on
+     * @param src     dense index of the source
+     * @param targets dense indices of the targets (negative entries are ignored)
+     * @param from    first entry of targets to use
+     * @param to      one past the last entry of targets to use
+     */
+    void run(WGraph_CSR g, int src, int[] targets, int from, int to) {
+        int epoch = begin(g.nodeSize());
+        int remaining = 0;
+        for (int i = from; i < to; i++) {
+            int t = targets[i];
+            if (t >= 0 && _target[t] != epoch) {
+                _target[t] = epoch;
+                remaining++;
+            }
+        }
+        if (remaining == 0)
+            return;
+
+        _dist[src] = 0;
+        _prev[src] = -1;
+        _reached[src] = epoch;
+        _heap.insertOrDecrease(src, 0);
+
+        while (!_heap.isEmpty()) {
+            int curr = _heap.poll();
+            _settled[curr] = epoch;
+            _settled_count++;
+            if (_target[curr] == epoch && --remaining == 0)
+                return;
+            relax(g, curr, epoch);
+        }
+    }
+
+    /**
+     * Start a step by step run on g from src (used by searches that interleave several runs).
+     *
+     * @param g   the snapshot to run on
+     * @param src dense index of the source
+     */
+    void start(WGraph_CSR g, int src) {
+        int epoch = begin(g.nodeSize());
+        _dist[src] = 0;
+        _prev[src] = -1;
+        _reached[src] = epoch;
+        _heap.insertOrDecrease(src, 0);
+    }
+
+    /**
+     * @return true iff the queue of the current run is empty
+     */
+    boolean isDone() {
+        return _heap.isEmpty();
+    }
+
+    /**
+     * @return the smallest distance in the queue of the current run (the queue must not be empty)
+     */
+    double peekDist() {
+        return _heap.peekKey();
+    }
+
+    /**
+     * Poll the next node of the current run, mark it as settled and relax its arcs.
+     *
+     * @param g the snapshot of the current run
+     * @return dense index of the settled node
+     */
+    int settleNext(WGraph_CSR g) {
+        int curr = _heap.poll();
+        _settled[curr] = _epoch;
+        _settled_count++;
+        relax(g, curr, _epoch);
+        return curr;
+    }
+
+    /**
+     * Run BFS on g from src, and count the nodes it reaches (including src).
+     * The queue is an int array of dense indices, and the visited state is the _reached stamp.
+     *
+     * @param g   the snapshot to run on
+     * @param src dense index of the source
+     * @return the number of nodes in the connected component of src
+     */
+    int countReachable(WGraph_CSR g, int src) {
+        int epoch = begin(g.nodeSize());
+        int head = 0, tail = 0;
+        _queue[tail++] = src;
+        _reached[src] = epoch;
+        while (head < tail) {
+            int curr = _queue[head++];
+            for (int arc = g.arcStart(curr), end = g.arcEnd(curr); arc < end; arc++) {
+                int nei = g.arcTarget(arc);
+                if (_reached[nei] != epoch) {
+                    _reached[nei] = epoch;
+                    _queue[tail++] = nei;
+                }
+            }
+            _relaxed_count += g.arcEnd(curr) - g.arcStart(curr);
+        }
+        _settled_count = tail;
+        return tail;
+    }
+
+    /**
+     * Count the connected components of g: BFS from every node that was not reached yet,
+     * all in the same epoch, in O(V+E) time.
+     *
+     * @param g the snapshot to run on
+     * @return the number of connected components
+     */
+    int countComponents(WGraph_CSR g) {
+        int n = g.nodeSize();
+        int epoch = begin(n);
+        int components = 0;
+        for (int src = 0; src < n; src++) {
+            if (_reached[src] == epoch)
+                continue;
+            components++;
+            int head = 0, tail = 0;
+            _queue[tail++] = src;
+            _reached[src] = epoch;
+            while (head < tail) {
+                int curr = _queue[head++];
+                for (int arc = g.arcStart(curr), end = g.arcEnd(curr); arc < end; arc++) {
+                    int nei = g.arcTarget(arc);
+                    if (_reached[nei] != epoch) {
+                        _reached[nei] = epoch;
+                        _queue[tail++] = nei;
+                    }
+                }
+                _relaxed_count += g.arcEnd(curr) - g.arcStart(curr);
+            }
+        }
+        _settled_count = n;
+        return components;
+    }
+
+    /**
+     * @param i dense index
+     * @return the distance of i from the source of the last run, infinity if not reached
+     */
+    double dist(int i) {
+        return _reached[i] == _epoch ? _dist[i] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @param i dense index
+     * @return the previous node of i on the shortest path of the last run, -1 for the source
+     */
+    int prev(int i) {
+        return _prev[i];
+    }
+
+    /**
+     * @param i dense index
+     * @return true iff i was settled (has its shortest distance) in the last run
+     */
+    boolean isSettled(int i) {
+        return _settled[i] == _epoch;
+    }
+
+    /**
+     * @param i dense index
+     * @return true iff i was reached (has a finite distance) in the last run
+     */
+    boolean isReached(int i) {
+        return _reached[i] == _epoch;
+    }
+
+    /**
+     * @return the number of nodes settled by the last run (reached, by a BFS)
+     */
+    int settledCount() {
+        return _settled_count;
+    }
+
+    /**
+     * @return the number of arcs scanned by the last run
+     */
+    long relaxedCount() {
+        return _relaxed_count;
+    }
+
+    /**
+     * @return the number of heap operations of the last run
+     */
+    long heapOps() {
+        return _heap.ops() - _heap_ops_start;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * Relax all the arcs of curr (which was just settled): every neighbor that is not settled
+     * and gets a smaller distance through curr is inserted to the queue or has its distance decreased,
+     * with curr as its prev.
+     */
+    private void relax(WGraph_CSR g, int curr, int epoch) {
+        double d = _dist[curr];
+        _relaxed_count += g.arcEnd(curr) - g.arcStart(curr);
+        for (int arc = g.arcStart(curr), end = g.arcEnd(curr); arc < end; arc++) {
+            int nei = g.arcTarget(arc);
+            if (_settled[nei] == epoch)
+                continue;
+            double t = d + g.arcWeight(arc);
+            if (_reached[nei] != epoch || t < _dist[nei]) {
+                _dist[nei] = t;
+                _prev[nei] = curr;
+                _reached[nei] = epoch;
+                _heap.insertOrDecrease(nei, t);
+            }
+        }
+    }
+
+    /**
+     * Start a new run on a graph of n nodes - grow the arrays if needed, empty the heap and move to the next epoch.
+     * Only when the epoch counter wraps around, the stamps are cleared.
+     *
+     * @param n number of nodes
+     * @return the epoch of the new run
+     */
+    private int begin(int n) {
+        if (n > _dist.length) {
+            _dist = new double[n];
+            _prev = new int[n];
+            _reached = new int[n];
+            _settled = new int[n];
+            _queue = new int[n];
+            _target = new int[n];
+            _estimate = new double[n];
+            _epoch = 0;
+        }
+        _heap.ensureCapacity(n);
+        _settled_count = 0;
+        _relaxed_count = 0;
+        _heap_ops_start = _heap.ops();
+        if (++_epoch == 0) {
+            Arrays.fill(_reached, 0);
+            Arrays.fill(_settled, 0);
+            Arrays.fill(_target, 0);
+            _epoch = 1;
+        }
+        return _epoch;
+    }
+}
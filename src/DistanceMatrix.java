@@ -0,0 +1,161 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Distance matrices over {@link WGraph_CSR} snapshots, in a flat row-major double[]:
+ * the distance from the source of row r to the target of column c is out[r * columns + c], -1 if there is no path.
+ * Two engines compute them:
+ * <ul>
+ * <li>{@link #dijkstraRows} - one dijkstra per row, the rows in parallel on the common
+ * {@link java.util.concurrent.ForkJoinPool}, each worker thread with its own {@link DijkstraEngine}.
+ * A row stops as soon as all its targets were settled.</li>
+ * <li>{@link #floydWarshall} - blocked Floyd-Warshall over all the pairs of the graph, in O(V^3) time and O(V^2) memory.
+ * The matrix is split into tiles of TILE x TILE, and every round of TILE pivots updates the pivot tile,
+ * then the tiles of its row and column, then all the other tiles (in parallel),
+ * so the inner loop streams over rows of tiles that stay in the cache.</li>
+ * </ul>
+ * {@link #compute} picks the cheaper of the two by an estimate of their work.
+ *
+ * @author davidfeust
+ */
+class DistanceMatrix {
+
+    private static final int TILE = 64;
+    /**
+     * The largest graph of Floyd-Warshall (its matrix is 8 * FLOYD_MAX^2 bytes).
+     */
+    static final int FLOYD_MAX = 2048;
+    /**
+     * The costs of settling a node (a poll of the heap) and of relaxing an arc in dijkstra,
+     * in inner loop steps of Floyd-Warshall.
+     */
+    private static final int SETTLE_COST = 250;
+    private static final int ARC_COST = 8;
+
+    private DistanceMatrix() {
+    }
+
+    /**
+     * Compute the matrix of srcs x dests on g by the cheaper engine.
+     * A row of dijkstra costs a settle per node and a relax per arc (at worst - a row may stop early),
+     * Floyd-Warshall costs V^3 steps, for all the pairs at once (the costs were measured on random graphs
+     * of 300..2000 nodes, where this estimate picks the faster engine except in near ties).
+     *
+     * @param g     the snapshot
+     * @param srcs  dense indices of the sources, -1 for a missing node
+     * @param dests dense indices of the targets, -1 for a missing node
+     * @param out   the matrix, at least srcs.length * dests.length long
+     * @return the work of the rows (see {@link #dijkstraRows}), null if Floyd-Warshall was used
+     */
+    static long[] compute(WGraph_CSR g, int[] srcs, int[] dests, double[] out) {
+        long n = g.nodeSize();
+        double rows_cost = (double) srcs.length * (n * SETTLE_COST + 2L * g.edgeSize() * ARC_COST);
+        if (n <= FLOYD_MAX && (double) n * n * n < rows_cost) {
+            fromAllPairs(floydWarshall(g), g.nodeSize(), srcs, dests, out);
+            return null;
+        }
+        return dijkstraRows(g, srcs, dests, out);
+    }
+
+    /**
+     * Compute the matrix of srcs x dests on g by one dijkstra per row, see {@link DijkstraEngine#run(WGraph_CSR, int, int[], int, int)}.
+     *
+     * @param g     the snapshot
+     * @param srcs  dense indices of the sources, -1 for a missing node
+     * @param dests dense indices of the targets, -1 for a missing node
+     * @param out   the matrix, at least srcs.length * dests.length long
+     * @return the settled nodes, the relaxed arcs and the heap operations of all the rows
+     */
+    static long[] dijkstraRows(WGraph_CSR g, int[] srcs, int[] dests, double[] out) {
+        int cols = dests.length;
+        LongAdder settled = new LongAdder(), relaxed = new LongAdder(), heap_ops = new LongAdder();
+        IntStream.range(0, srcs.length).parallel().forEach(r -> {
+            int base = r * cols;
+            if (srcs[r] < 0) {
+                Arrays.fill(out, base, base + cols, -1);
+                return;
+            }
+            DijkstraEngine engine = DijkstraEngine.local();
+            engine.run(g, srcs[r], dests, 0, cols);
+            for (int c = 0; c < cols; c++) {
+                double d = dests[c] < 0 ? Double.POSITIVE_INFINITY : engine.dist(dests[c]);
+                out[base + c] = d == Double.POSITIVE_INFINITY ? -1 : d;
+            }
+            settled.add(engine.settledCount());
+            relaxed.add(engine.relaxedCount());
+            heap_ops.add(engine.heapOps());
+        });
+        return new long[]{settled.sum(), relaxed.sum(), heap_ops.sum()};
+    }
+
+    /**
+     * Compute the distances between all the pairs of nodes of g by blocked Floyd-Warshall.
+     *
+     * @param g the snapshot, at most {@link #FLOYD_MAX} nodes
+     * @return the n x n row-major matrix of the dense indices, infinity if there is no path
+     */
+    static double[] floydWarshall(WGraph_CSR g) {
+        int n = g.nodeSize();
+        double[] d = new double[n * n];
+        Arrays.fill(d, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < n; i++) {
+            d[i * n + i] = 0;
+            for (int arc = g.arcStart(i), end = g.arcEnd(i); arc < end; arc++) {
+                int j = g.arcTarget(arc);
+                d[i * n + j] = Math.min(d[i * n + j], g.arcWeight(arc));
+            }
+        }
+        int tiles = (n + TILE - 1) / TILE;
+        for (int k = 0; k < tiles; k++) {
+            int kb = k;
+            tile(d, n, kb, kb, kb);
+            IntStream.range(0, tiles).parallel().filter(t -> t != kb).forEach(t -> {
+                tile(d, n, kb, t, kb);
+                tile(d, n, t, kb, kb);
+            });
+            IntStream.range(0, tiles * tiles).parallel()
+                    .filter(t -> t / tiles != kb && t % tiles != kb)
+                    .forEach(t -> tile(d, n, t / tiles, t % tiles, kb));
+        }
+        return d;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * Relax the tile (ti, tj) through the pivots of tile k: d[i][j] = min(d[i][j], d[i][p] + d[p][j]).
+     * The pivots are the outer loop, so this is also right for the tiles of the pivot row and column themselves.
+     */
+    private static void tile(double[] d, int n, int ti, int tj, int k) {
+        int i0 = ti * TILE, i1 = Math.min(i0 + TILE, n);
+        int j0 = tj * TILE, j1 = Math.min(j0 + TILE, n);
+        int p0 = k * TILE, p1 = Math.min(p0 + TILE, n);
+        for (int p = p0; p < p1; p++) {
+            int row_p = p * n;
+            for (int i = i0; i < i1; i++) {
+                double dip = d[i * n + p];
+                if (dip == Double.POSITIVE_INFINITY)
+                    continue;
+                int row_i = i * n;
+                for (int j = j0; j < j1; j++) {
+                    double t = dip + d[row_p + j], c = d[row_i + j];
+                    d[row_i + j] = t < c ? t : c;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the entries of srcs x dests from the all pairs matrix all.
+     */
+    private static void fromAllPairs(double[] all, int n, int[] srcs, int[] dests, double[] out) {
+        int cols = dests.length;
+        for (int r = 0; r < srcs.length; r++) {
+            for (int c = 0; c < cols; c++) {
+                double v = srcs[r] < 0 || dests[c] < 0 ? Double.POSITIVE_INFINITY : all[srcs[r] * n + dests[c]];
+                out[r * cols + c] = v == Double.POSITIVE_INFINITY ? -1 : v;
+            }
+        }
+    }
+}
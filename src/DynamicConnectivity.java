@@ -0,0 +1,315 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The connected components of a {@link WGraph_DS}, kept up to date while the graph changes,
+ * so isConnected() and connectedComponents() are answered in O(1) time instead of a BFS of the whole graph.
+ * The object listens to the graph (see {@link graph_listener}). Every node has the id of its component:
+ * <ul>
+ * <li>A new edge between two components: the smaller component gets the id of the bigger one
+ * (weighted union - every node changes its id at most log(n) times while edges are only added).</li>
+ * <li>A removed edge: BFS from both ends of the edge alternately, one node at a time, until the two searches
+ * meet (still connected, e.g. the edge was on a cycle) or one of them runs out of nodes.
+ * Then the nodes of that search are the new component, and get a new id.
+ * A removal that splits a component costs about twice the nodes and edges of the smaller side.
+ * A removal that does not split it costs until the two searches meet, which is O(V+E) in the worst case -
+ * e.g. an edge of a long cycle, where both searches walk half of the cycle, or an edge in a big grid.</li>
+ * <li>A new node is a new component, a removed node (without edges by then) removes its component.</li>
+ * </ul>
+ * The ids, and the sizes of the components by id, are kept in arrays; the ids of removed components are reused.
+ * <p>
+ * This is a simple two sided BFS, not a polylogarithmic dynamic connectivity structure
+ * (like Holm, de Lichtenberg and Thorup): it is cheap when edges are added, or when a removal splits off
+ * a small part or the removed edge lies on a short cycle, and no better than a BFS of the component otherwise.
+ * <p>
+ * Call close() when it is not needed anymore, otherwise the graph keeps updating it.
+ * Not thread safe - the graph must be changed by one thread at a time (like {@link WGraph_DS} itself).
+ *
+ * @author davidfeust
+ */
+public class DynamicConnectivity implements AutoCloseable {
+
+    private final WGraph_DS _graph;
+    private final HashMap<Integer, Integer> _slots;
+    private int[] _keys;
+    private int[] _comp;
+    private int[] _seen;
+    private byte[] _side;
+    private int _epoch;
+    private int[] _free_slots;
+    private int _free_slots_size;
+    private int _slots_size;
+    private int[] _size;
+    private int[] _free_ids;
+    private int _free_ids_size;
+    private int _ids_size;
+    private int _components;
+    private final int[][] _queue;
+    private final int[] _head;
+    private final int[] _tail;
+    private int _from;
+    private int _to;
+    private byte _current_side;
+    private boolean _met;
+    private final graph_listener _listener;
+    private volatile boolean _closed;
+
+    /**
+     * Constructor. Finds the components of graph with one BFS pass, and starts listening to it.
+     *
+     * @param graph the graph
+     */
+    public DynamicConnectivity(WGraph_DS graph) {
+        _graph = graph;
+        int n = Math.max(graph.nodeSize(), 16);
+        _slots = new HashMap<>(n * 2);
+        _keys = new int[n];
+        _comp = new int[n];
+        _seen = new int[n];
+        _side = new byte[n];
+        _free_slots = new int[16];
+        _size = new int[n];
+        _free_ids = new int[16];
+        _queue = new int[][]{new int[16], new int[16]};
+        _head = new int[2];
+        _tail = new int[2];
+        for (node_info i : graph.getV())
+            slot(i.getKey());
+        for (node_info i : graph.getV()) {
+            int s = _slots.get(i.getKey());
+            if (_comp[s] < 0)
+                label(s, -1, newId());
+        }
+        _listener = new Update();
+        graph.addListener(_listener);
+    }
+
+    /**
+     * @return true iff there is a path between every two nodes of the graph, in O(1) time
+     */
+    public boolean isConnected() {
+        return _components <= 1;
+    }
+
+    /**
+     * @return the number of the connected components of the graph, in O(1) time
+     */
+    public int connectedComponents() {
+        return _components;
+    }
+
+    /**
+     * return true iff node1 and node2 are in the same connected component, in O(1) time.
+     *
+     * @param node1 node id of node1
+     * @param node2 node id of node2
+     * @return true iff there is a path between node1 and node2, false if one of them is not in the graph
+     */
+    public boolean connected(int node1, int node2) {
+        Integer s1 = _slots.get(node1), s2 = _slots.get(node2);
+        return null != s1 && null != s2 && _comp[s1] == _comp[s2];
+    }
+
+    /**
+     * @param key node id
+     * @return the number of nodes in the connected component of key, 0 if key is not in the graph
+     */
+    public int componentSize(int key) {
+        Integer s = _slots.get(key);
+        return null == s ? 0 : _size[_comp[s]];
+    }
+
+    /**
+     * Stop listening to the graph. The components are not updated anymore.
+     * Closing a closed object does nothing.
+     */
+    @Override
+    public synchronized void close() {
+        if (_closed)
+            return;
+        _closed = true;
+        _graph.removeListener(_listener);
+    }
+
+    /**
+     * @return true iff close() was called, so the components are not up to date anymore
+     */
+    public boolean isClosed() {
+        return _closed;
+    }
+
+    @Override
+    public String toString() {
+        return "DynamicConnectivity:" +
+                " nodes=" + _slots.size() +
+                ", components=" + _components;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * The listener of the graph, kept private so the update methods are not part of the api.
+     */
+    private class Update implements graph_listener {
+
+        @Override
+        public void nodeAdded(int key) {
+            int s = slot(key);
+            _comp[s] = newId();
+            _size[_comp[s]] = 1;
+        }
+
+        @Override
+        public void nodeRemoved(int key) {
+            // the edges were removed before, so the node is a component of its own
+            int s = _slots.remove(key);
+            freeId(_comp[s]);
+            _comp[s] = -1;
+            if (_free_slots_size == _free_slots.length)
+                _free_slots = Arrays.copyOf(_free_slots, _free_slots_size * 2);
+            _free_slots[_free_slots_size++] = s;
+        }
+
+        @Override
+        public void edgeChanged(int node1, int node2, double old_w, double w) {
+            int s1 = _slots.get(node1), s2 = _slots.get(node2);
+            if (old_w < 0 && w >= 0)
+                union(s1, s2);
+            else if (old_w >= 0 && w < 0)
+                split(s1, s2);
+        }
+    }
+
+    /**
+     * A new edge (s1, s2): relabel the smaller component of the two by the id of the bigger one.
+     */
+    private void union(int s1, int s2) {
+        int c1 = _comp[s1], c2 = _comp[s2];
+        if (c1 == c2)
+            return;
+        if (_size[c1] > _size[c2]) {
+            label(s2, c2, c1);
+        } else {
+            label(s1, c1, c2);
+        }
+    }
+
+    /**
+     * A removed edge (s1, s2): search from both ends alternately until they meet or one side is done.
+     */
+    private void split(int s1, int s2) {
+        if (++_epoch == 0) {
+            Arrays.fill(_seen, 0);
+            _epoch = 1;
+        }
+        _met = false;
+        _head[0] = _head[1] = _tail[0] = _tail[1] = 0;
+        enqueue(s1, (byte) 0);
+        enqueue(s2, (byte) 1);
+        while (true) {
+            for (byte side = 0; side < 2; side++) {
+                if (_head[side] == _tail[side]) {
+                    // this side is a whole component, which does not contain the other end
+                    int c = _comp[s1], id = newId();
+                    int[] q = _queue[side];
+                    for (int k = 0; k < _tail[side]; k++)
+                        _comp[q[k]] = id;
+                    _size[id] = _tail[side];
+                    _size[c] -= _tail[side];
+                    return;
+                }
+                _current_side = side;
+                _graph.forEachNeighbor(_keys[_queue[side][_head[side]++]], (nei, w) -> {
+                    int t = _slots.get(nei);
+                    if (_seen[t] != _epoch)
+                        enqueue(t, _current_side);
+                    else if (_side[t] != _current_side)
+                        _met = true;
+                });
+                if (_met)
+                    return;
+            }
+        }
+    }
+
+    private void enqueue(int s, byte side) {
+        _seen[s] = _epoch;
+        _side[s] = side;
+        push(side, s);
+    }
+
+    private void push(int side, int s) {
+        if (_tail[side] == _queue[side].length)
+            _queue[side] = Arrays.copyOf(_queue[side], _tail[side] * 2);
+        _queue[side][_tail[side]++] = s;
+    }
+
+    /**
+     * BFS from s over the nodes with the id from (any id if from is -1, for the first labeling),
+     * and give them the id to. The size of to grows by the number of the relabeled nodes.
+     */
+    private void label(int s, int from, int to) {
+        _from = from;
+        _to = to;
+        _head[0] = _tail[0] = 0;
+        _comp[s] = to;
+        push(0, s);
+        while (_head[0] < _tail[0]) {
+            _graph.forEachNeighbor(_keys[_queue[0][_head[0]++]], (nei, w) -> {
+                int t = _slots.get(nei);
+                if (_comp[t] != _to && (_from < 0 || _comp[t] == _from)) {
+                    _comp[t] = _to;
+                    push(0, t);
+                }
+            });
+        }
+        _size[to] += _tail[0];
+        if (from >= 0)
+            freeId(from);
+    }
+
+    /**
+     * Give a slot to a new node (without a component yet), reusing the slots of removed nodes.
+     */
+    private int slot(int key) {
+        int s;
+        if (_free_slots_size > 0) {
+            s = _free_slots[--_free_slots_size];
+        } else {
+            s = _slots_size++;
+            if (s == _keys.length) {
+                int n = s * 2;
+                _keys = Arrays.copyOf(_keys, n);
+                _comp = Arrays.copyOf(_comp, n);
+                _seen = Arrays.copyOf(_seen, n);
+                _side = Arrays.copyOf(_side, n);
+            }
+        }
+        _slots.put(key, s);
+        _keys[s] = key;
+        _comp[s] = -1;
+        return s;
+    }
+
+    private int newId() {
+        int id;
+        if (_free_ids_size > 0) {
+            id = _free_ids[--_free_ids_size];
+        } else {
+            id = _ids_size++;
+            if (id == _size.length)
+                _size = Arrays.copyOf(_size, id * 2);
+        }
+        _size[id] = 0;
+        _components++;
+        return id;
+    }
+
+    private void freeId(int id) {
+        _size[id] = 0;
+        if (_free_ids_size == _free_ids.length)
+            _free_ids = Arrays.copyOf(_free_ids, _free_ids_size * 2);
+        _free_ids[_free_ids_size++] = id;
+        _components--;
+    }
+}
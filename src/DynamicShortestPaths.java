@@ -0,0 +1,292 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Single source shortest paths of a {@link WGraph_DS} that are kept up to date while the graph changes,
+ * in the style of Ramalingam and Reps: instead of running dijkstra again after every change,
+ * the tree is repaired only where the change matters.
+ * The object listens to the graph (see {@link graph_listener}), and repairs the tree right after every change:
+ * <ul>
+ * <li>A new edge, or a lower weight: if the edge shortens the path to one of its ends, dijkstra is started
+ * from that end only, and it stops at the nodes that do not get shorter.</li>
+ * <li>A removed edge, or a higher weight: nothing happens unless the edge is in the tree.
+ * Otherwise the affected nodes are the subtree below the edge (found by the prev of the neighbors).
+ * Every affected node gets the best distance through a neighbor outside the subtree,
+ * and dijkstra runs on the subtree only.</li>
+ * </ul>
+ * So the work of a change is proportional to the nodes whose distance changed (and their edges),
+ * not to the whole graph. The distance and the prev of every node are kept in arrays indexed by slots,
+ * a slot is given to every node when it is added.
+ * <p>
+ * Call close() when the paths are not needed anymore, otherwise the graph keeps repairing them.
+ * Not thread safe - the graph must be changed by one thread at a time (like {@link WGraph_DS} itself).
+ *
+ * @author davidfeust
+ */
+public class DynamicShortestPaths implements AutoCloseable {
+
+    private final WGraph_DS _graph;
+    private final int _src;
+    private final HashMap<Integer, Integer> _slots;
+    private int[] _keys;
+    private double[] _dist;
+    private int[] _prev;
+    private int[] _affected;
+    private int _epoch;
+    private int[] _free;
+    private int _free_size;
+    private int _slots_size;
+    private final IndexedHeap _heap;
+    private int[] _stack;
+    private int _stack_size;
+    private int _current;
+    private double _best;
+    private int _best_prev;
+    private int _last_affected;
+    private final graph_listener _listener;
+
+    /**
+     * Constructor. Runs dijkstra once from src, and starts listening to the graph.
+     * src does not have to be in the graph - until it is added, no node is reachable.
+     *
+     * @param graph the graph
+     * @param src   start node
+     */
+    public DynamicShortestPaths(WGraph_DS graph, int src) {
+        _graph = graph;
+        _src = src;
+        int n = Math.max(graph.nodeSize(), 16);
+        _slots = new HashMap<>(n * 2);
+        _keys = new int[n];
+        _dist = new double[n];
+        _prev = new int[n];
+        _affected = new int[n];
+        _free = new int[16];
+        _stack = new int[16];
+        _heap = new IndexedHeap(n);
+        for (node_info i : graph.getV())
+            slot(i.getKey());
+        Integer s = _slots.get(src);
+        if (null != s) {
+            _dist[s] = 0;
+            _heap.insertOrDecrease(s, 0);
+            _last_affected = propagate();
+        }
+        _listener = new Repair();
+        graph.addListener(_listener);
+    }
+
+    /**
+     * @return the start node
+     */
+    public int getSrc() {
+        return _src;
+    }
+
+    /**
+     * returns the length of the shortest path between src to dest, in O(1) time.
+     * if no such path -> returns -1
+     *
+     * @param dest - end (target) node
+     * @return the shortest path distance between src to dest
+     */
+    public double dist(int dest) {
+        Integer d = _slots.get(dest);
+        if (null == d || _dist[d] == Double.POSITIVE_INFINITY)
+            return -1;
+        return _dist[d];
+    }
+
+    /**
+     * returns the the shortest path between src to dest - as an ordered List of nodes:
+     * src--> n1-->n2-->...dest, in O(length of the path) time.
+     * if no such path -> returns null
+     *
+     * @param dest - end (target) node
+     * @return List<node_info> contains all the nodes in the path in the order
+     */
+    public List<node_info> path(int dest) {
+        Integer d = _slots.get(dest);
+        if (null == d || _dist[d] == Double.POSITIVE_INFINITY)
+            return null;
+        List<node_info> path = new ArrayList<>();
+        for (int i = d; i >= 0; i = _prev[i])
+            path.add(_graph.getNode(_keys[i]));
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * @return the number of nodes whose distance was examined by the last repair (or by the first dijkstra)
+     */
+    public int lastAffectedCount() {
+        return _last_affected;
+    }
+
+    /**
+     * Stop listening to the graph. The paths are not updated anymore.
+     */
+    @Override
+    public void close() {
+        _graph.removeListener(_listener);
+    }
+
+    @Override
+    public String toString() {
+        return "DynamicShortestPaths:" +
+                " src=" + _src +
+                ", nodes=" + _slots.size() +
+                ", last_affected=" + _last_affected;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * The listener of the graph, kept private so the repair methods are not part of the api.
+     */
+    private class Repair implements graph_listener {
+
+        @Override
+        public void nodeAdded(int key) {
+            int s = slot(key);
+            if (key == _src)
+                _dist[s] = 0;
+            _last_affected = 1;
+        }
+
+        @Override
+        public void nodeRemoved(int key) {
+            // the edges were removed before, so the node is not in the tree of any other node
+            int s = _slots.remove(key);
+            _dist[s] = Double.POSITIVE_INFINITY;
+            _prev[s] = -1;
+            if (_free_size == _free.length)
+                _free = Arrays.copyOf(_free, _free_size * 2);
+            _free[_free_size++] = s;
+            _last_affected = 1;
+        }
+
+        @Override
+        public void edgeChanged(int node1, int node2, double old_w, double w) {
+            int s1 = _slots.get(node1), s2 = _slots.get(node2);
+            _last_affected = 0;
+            if (w >= 0 && (old_w < 0 || w < old_w)) {
+                relax(s1, s2, w);
+                relax(s2, s1, w);
+                _last_affected = propagate();
+            } else if (old_w >= 0 && (w < 0 || w > old_w)) {
+                if (_prev[s2] == s1)
+                    _last_affected = repairSubtree(s2);
+                else if (_prev[s1] == s2)
+                    _last_affected = repairSubtree(s1);
+            }
+        }
+    }
+
+    /**
+     * The distance of root (and maybe of its subtree) grew: collect the subtree, give every node of it
+     * the best distance through the nodes outside of it, and run dijkstra inside it.
+     * The src is never in the subtree, its prev is -1.
+     *
+     * @return the number of nodes in the subtree
+     */
+    private int repairSubtree(int root) {
+        _epoch++;
+        _stack_size = 0;
+        _affected[root] = _epoch;
+        push(root);
+        for (int k = 0; k < _stack_size; k++) {
+            _current = _stack[k];
+            _graph.forEachNeighbor(_keys[_current], (nei, w) -> {
+                int s = _slots.get(nei);
+                if (_prev[s] == _current && _affected[s] != _epoch) {
+                    _affected[s] = _epoch;
+                    push(s);
+                }
+            });
+        }
+        int size = _stack_size;
+        for (int k = 0; k < size; k++) {
+            int s = _stack[k];
+            _dist[s] = Double.POSITIVE_INFINITY;
+            _prev[s] = -1;
+        }
+        for (int k = 0; k < size; k++) {
+            int s = _stack[k];
+            _best = Double.POSITIVE_INFINITY;
+            _best_prev = -1;
+            _graph.forEachNeighbor(_keys[s], (nei, w) -> {
+                int t = _slots.get(nei);
+                if (_affected[t] != _epoch && _dist[t] + w < _best) {
+                    _best = _dist[t] + w;
+                    _best_prev = t;
+                }
+            });
+            if (_best_prev >= 0) {
+                _dist[s] = _best;
+                _prev[s] = _best_prev;
+                _heap.insertOrDecrease(s, _best);
+            }
+        }
+        propagate();
+        return size;
+    }
+
+    private void push(int s) {
+        if (_stack_size == _stack.length)
+            _stack = Arrays.copyOf(_stack, _stack_size * 2);
+        _stack[_stack_size++] = s;
+    }
+
+    /**
+     * dijkstra from the nodes in the heap, relaxing only the edges that shorten a path.
+     *
+     * @return the number of settled nodes
+     */
+    private int propagate() {
+        int settled = 0;
+        while (!_heap.isEmpty()) {
+            _current = _heap.poll();
+            settled++;
+            _graph.forEachNeighbor(_keys[_current], (nei, w) -> relax(_current, _slots.get(nei), w));
+        }
+        return settled;
+    }
+
+    private void relax(int from, int to, double w) {
+        double d = _dist[from] + w;
+        if (d < _dist[to]) {
+            _dist[to] = d;
+            _prev[to] = from;
+            _heap.insertOrDecrease(to, d);
+        }
+    }
+
+    /**
+     * Give a slot to a new node, reusing the slots of removed nodes.
+     */
+    private int slot(int key) {
+        int s;
+        if (_free_size > 0) {
+            s = _free[--_free_size];
+        } else {
+            s = _slots_size++;
+            if (s == _keys.length) {
+                int n = s * 2;
+                _keys = Arrays.copyOf(_keys, n);
+                _dist = Arrays.copyOf(_dist, n);
+                _prev = Arrays.copyOf(_prev, n);
+                _affected = Arrays.copyOf(_affected, n);
+                _heap.ensureCapacity(n);
+            }
+        }
+        _slots.put(key, s);
+        _keys[s] = key;
+        _dist[s] = Double.POSITIVE_INFINITY;
+        _prev[s] = -1;
+        return s;
+    }
+}
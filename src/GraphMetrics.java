@@ -0,0 +1,174 @@
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The default {@link graph_metrics}: for every query, the number of queries and the sums of their settled nodes,
+ * scanned arcs and heap operations in {@link LongAdder}s, and their latencies in a {@link LatencyHistogram};
+ * for every mutation, the number of mutations, so their rate is the count over {@link #elapsedNanos()}.
+ * All the counters are thread safe and recording never allocates.
+ * <p>
+ * Metrics are off by default. Starting the JVM with -Dwgraph.metrics=true turns them on without a recompile:
+ * every {@link WGraph_DS} and {@link WGraph_Algo} created after that reports to {@link #global()}.
+ * Independently, every query of {@link WGraph_Algo} is a {@link QueryEvent} of JFR, recorded only while
+ * a JFR recording enables it.
+ *
+ * @author davidfeust
+ */
+public class GraphMetrics implements graph_metrics {
+
+    private static final GraphMetrics GLOBAL = new GraphMetrics();
+    private static final boolean ENABLED = Boolean.getBoolean("wgraph.metrics");
+
+    /**
+     * The counters of one query.
+     */
+    private static final class QueryStats {
+        private final LongAdder _count = new LongAdder();
+        private final LongAdder _settled = new LongAdder();
+        private final LongAdder _relaxed = new LongAdder();
+        private final LongAdder _heap_ops = new LongAdder();
+        private final LatencyHistogram _latency = new LatencyHistogram();
+    }
+
+    private final Map<Query, QueryStats> _queries = new EnumMap<>(Query.class);
+    private final Map<Mutation, LongAdder> _mutations = new EnumMap<>(Mutation.class);
+    private volatile long _since = System.nanoTime();
+
+    /**
+     * Constructor.
+     */
+    public GraphMetrics() {
+        for (Query q : Query.values())
+            _queries.put(q, new QueryStats());
+        for (Mutation m : Mutation.values())
+            _mutations.put(m, new LongAdder());
+    }
+
+    /**
+     * @return the metrics shared by all the graphs of -Dwgraph.metrics=true
+     */
+    public static GraphMetrics global() {
+        return GLOBAL;
+    }
+
+    @Override
+    public void query(Query q, long nanos, long settled, long relaxed, long heap_ops) {
+        QueryStats s = _queries.get(q);
+        s._count.increment();
+        s._settled.add(settled);
+        s._relaxed.add(relaxed);
+        s._heap_ops.add(heap_ops);
+        s._latency.record(nanos);
+    }
+
+    @Override
+    public void mutation(Mutation m) {
+        _mutations.get(m).increment();
+    }
+
+    /**
+     * @param q the query
+     * @return the number of queries q
+     */
+    public long count(Query q) {
+        return _queries.get(q)._count.sum();
+    }
+
+    /**
+     * @param q the query
+     * @return the number of nodes settled by all the queries q
+     */
+    public long settled(Query q) {
+        return _queries.get(q)._settled.sum();
+    }
+
+    /**
+     * @param q the query
+     * @return the number of arcs scanned by all the queries q
+     */
+    public long relaxed(Query q) {
+        return _queries.get(q)._relaxed.sum();
+    }
+
+    /**
+     * @param q the query
+     * @return the number of heap operations of all the queries q
+     */
+    public long heapOps(Query q) {
+        return _queries.get(q)._heap_ops.sum();
+    }
+
+    /**
+     * @param q the query
+     * @return the histogram of the latencies of the queries q, in nanoseconds
+     */
+    public LatencyHistogram latency(Query q) {
+        return _queries.get(q)._latency;
+    }
+
+    /**
+     * @param m the mutation
+     * @return the number of mutations m
+     */
+    public long count(Mutation m) {
+        return _mutations.get(m).sum();
+    }
+
+    /**
+     * @param m the mutation
+     * @return the number of mutations m per second, since the construction or the last reset
+     */
+    public double rate(Mutation m) {
+        return count(m) * 1e9 / Math.max(1, elapsedNanos());
+    }
+
+    /**
+     * @return the time since the construction or the last reset
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - _since;
+    }
+
+    /**
+     * Zero all the counters and the histograms.
+     */
+    public void reset() {
+        for (QueryStats s : _queries.values()) {
+            s._count.reset();
+            s._settled.reset();
+            s._relaxed.reset();
+            s._heap_ops.reset();
+            s._latency.reset();
+        }
+        for (LongAdder a : _mutations.values())
+            a.reset();
+        _since = System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("GraphMetrics{");
+        for (Query q : Query.values()) {
+            if (count(q) == 0)
+                continue;
+            sb.append(q).append("={count=").append(count(q))
+                    .append(", settled=").append(settled(q))
+                    .append(", relaxed=").append(relaxed(q))
+                    .append(", heap_ops=").append(heapOps(q))
+                    .append(", latency=").append(latency(q)).append("}, ");
+        }
+        for (Mutation m : Mutation.values())
+            sb.append(m).append('=').append(count(m)).append(", ");
+        return sb.append("elapsed_ms=").append(elapsedNanos() / 1_000_000).append('}').toString();
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * @return the metrics of a new graph or algorithms object: the global metrics if they are on, null otherwise
+     */
+    static graph_metrics defaults() {
+        return ENABLED ? GLOBAL : null;
+    }
+}
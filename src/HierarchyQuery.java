@@ -0,0 +1,216 @@
+import java.util.Arrays;
+
+/**
+ * Point to point query over a {@link ContractionHierarchy}.
+ * Two dijkstra searches, from src and from dest, relax only upward arcs (to higher ranked nodes).
+ * Every shortest path in the hierarchy goes up and then down, so the two searches meet at its highest node.
+ * Each side stops when the smallest distance in its queue is at least the best path found so far,
+ * so a query settles only the few nodes above its ends. A node that was reached by a suboptimal path
+ * is stalled (stall on demand) - it is settled, but its arcs are not relaxed.
+ * Like {@link DijkstraEngine}, the scratch arrays are reset lazily by epochs and grown once,
+ * and the path of the last query is restored by the prev nodes and prev arcs of both sides,
+ * with every shortcut unpacked into the edges of the graph.
+ * A query is not thread safe - every thread uses its own, see {@link #local()}.
+ *
+ * @author davidfeust
+ */
+class HierarchyQuery {
+
+    private static final ThreadLocal<HierarchyQuery> LOCAL = ThreadLocal.withInitial(HierarchyQuery::new);
+
+    private final double[][] _dist = new double[2][0];
+    private final int[][] _prev = new int[2][0];
+    private final int[][] _prev_arc = new int[2][0];
+    private final int[][] _reached = new int[2][0];
+    private final IndexedHeap[] _heap = {new IndexedHeap(0), new IndexedHeap(0)};
+    private int[] _stack = new int[16];
+    private int _epoch;
+    private int _settled_count;
+    private long _relaxed_count;
+    private long _heap_ops_start;
+    private ContractionHierarchy _hierarchy;
+    private int _src;
+    private int _meet;
+
+    /**
+     * @return the query of the current thread
+     */
+    static HierarchyQuery local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Run the query on h from src to dest.
+     *
+     * @param h    the hierarchy to run on
+     * @param src  dense index of the source
+     * @param dest dense index of the destination
+     * @return the distance from src to dest, or infinity if there is no path
+     */
+    double run(ContractionHierarchy h, int src, int dest) {
+        begin(h.nodeSize());
+        _hierarchy = h;
+        _src = src;
+        _meet = -1;
+        double best = Double.POSITIVE_INFINITY;
+        reach(0, src, 0, -1, -1);
+        reach(1, dest, 0, -1, -1);
+
+        while (true) {
+            boolean f = !_heap[0].isEmpty() && _heap[0].peekKey() < best;
+            boolean b = !_heap[1].isEmpty() && _heap[1].peekKey() < best;
+            if (!f && !b)
+                break;
+            int side = f && (!b || _heap[0].peekKey() <= _heap[1].peekKey()) ? 0 : 1;
+            int curr = _heap[side].poll();
+            _settled_count++;
+            double d = _dist[side][curr];
+            if (_reached[1 - side][curr] == _epoch && d + _dist[1 - side][curr] < best) {
+                best = d + _dist[1 - side][curr];
+                _meet = curr;
+            }
+            if (stalled(h, side, curr, d))
+                continue;
+            _relaxed_count += h.arcEnd(curr) - h.arcStart(curr);
+            for (int arc = h.arcStart(curr), end = h.arcEnd(curr); arc < end; arc++) {
+                int nei = h.arcTarget(arc);
+                double t = d + h.arcWeight(arc);
+                if (_reached[side][nei] != _epoch || t < _dist[side][nei])
+                    reach(side, nei, t, curr, arc);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Return the path found by the last run, as dense indices from src to dest, with the shortcuts unpacked.
+     *
+     * @return the path, or null if there is no path
+     */
+    int[] path() {
+        if (_meet < 0)
+            return null;
+        int len = 0;
+        for (int i = _meet; i != -1; i = _prev[0][i])
+            len++;
+        int[] chain = new int[len];
+        for (int i = _meet, k = len; i != -1; i = _prev[0][i])
+            chain[--k] = i;
+
+        IntList res = new IntList();
+        res.add(_src);
+        for (int k = 1; k < len; k++)
+            unpack(chain[k - 1], chain[k], _prev_arc[0][chain[k]], res);
+        for (int i = _meet; _prev[1][i] != -1; i = _prev[1][i])
+            unpack(i, _prev[1][i], _prev_arc[1][i], res);
+        return Arrays.copyOf(res._values, res._size);
+    }
+
+    /**
+     * @return the number of nodes settled by both sides of the last run
+     */
+    int settledCount() {
+        return _settled_count;
+    }
+
+    /**
+     * @return the number of upward arcs relaxed by both sides of the last run
+     */
+    long relaxedCount() {
+        return _relaxed_count;
+    }
+
+    /**
+     * @return the number of heap operations of both sides of the last run
+     */
+    long heapOps() {
+        return _heap[0].ops() + _heap[1].ops() - _heap_ops_start;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * Stall on demand: if a higher neighbor of curr was reached by side with a shorter path to curr than d,
+     * the distance of curr is not the shortest, so relaxing its arcs is useless.
+     * The graph is undirected, so the arcs from the higher neighbors are the upward arcs of curr.
+     */
+    private boolean stalled(ContractionHierarchy h, int side, int curr, double d) {
+        for (int arc = h.arcStart(curr), end = h.arcEnd(curr); arc < end; arc++) {
+            int nei = h.arcTarget(arc);
+            if (_reached[side][nei] == _epoch && _dist[side][nei] + h.arcWeight(arc) < d)
+                return true;
+        }
+        return false;
+    }
+
+    private void reach(int side, int i, double d, int prev, int arc) {
+        _dist[side][i] = d;
+        _prev[side][i] = prev;
+        _prev_arc[side][i] = arc;
+        _reached[side][i] = _epoch;
+        _heap[side].insertOrDecrease(i, d);
+    }
+
+    /**
+     * Append the nodes of the path from a to b along arc (a - b), without a, with b, all shortcuts unpacked.
+     * The shortcuts are unpacked by an explicit stack of pairs, so a deep hierarchy can not overflow the call stack.
+     */
+    private void unpack(int a, int b, int arc, IntList out) {
+        int top = 0;
+        _stack[top++] = a;
+        _stack[top++] = b;
+        while (top > 0) {
+            int y = _stack[--top], x = _stack[--top];
+            int m = _hierarchy.arcMiddle(x == a && y == b ? arc : _hierarchy.arcOf(x, y));
+            if (m < 0) {
+                out.add(y);
+                continue;
+            }
+            if (top + 4 > _stack.length)
+                _stack = Arrays.copyOf(_stack, _stack.length * 2);
+            _stack[top++] = m;
+            _stack[top++] = y;
+            _stack[top++] = x;
+            _stack[top++] = m;
+        }
+    }
+
+    /**
+     * Start a new run on a hierarchy of n nodes - grow the arrays if needed, empty the heaps and move to the next epoch.
+     */
+    private void begin(int n) {
+        if (n > _dist[0].length) {
+            for (int side = 0; side < 2; side++) {
+                _dist[side] = new double[n];
+                _prev[side] = new int[n];
+                _prev_arc[side] = new int[n];
+                _reached[side] = new int[n];
+            }
+            _epoch = 0;
+        }
+        _heap[0].ensureCapacity(n);
+        _heap[1].ensureCapacity(n);
+        _settled_count = 0;
+        _relaxed_count = 0;
+        _heap_ops_start = _heap[0].ops() + _heap[1].ops();
+        if (++_epoch == 0) {
+            Arrays.fill(_reached[0], 0);
+            Arrays.fill(_reached[1], 0);
+            _epoch = 1;
+        }
+    }
+
+    /**
+     * Growable int array.
+     */
+    private static class IntList {
+        private int[] _values = new int[16];
+        private int _size;
+
+        void add(int v) {
+            if (_size == _values.length)
+                _values = Arrays.copyOf(_values, _size * 2);
+            _values[_size++] = v;
+        }
+    }
+}
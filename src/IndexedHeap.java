@@ -0,0 +1,189 @@
+import java.util.Arrays;
+
+/**
+ * Indexed 4-ary min heap over dense node indices 0..n-1, with double priorities and decrease-key.
+ * Used by the shortest path algorithms instead of {@link java.util.PriorityQueue}:
+ * every node is in the heap at most once, and after the arrays have been grown to the size of the graph
+ * no operation allocates.
+ * _pos[i] is the position of node i in _heap, or -1 if i is not in the heap.
+ * _ops counts the inserts, decreases and polls since the construction, for the metrics of the searches.
+ *
+ * @author davidfeust
+ */
+class IndexedHeap {
+
+    private int[] _heap;
+    private double[] _keys;
+    private int[] _pos;
+    private int _size;
+    private long _ops;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity number of nodes (max index + 1)
+     */
+    IndexedHeap(int capacity) {
+        _heap = new int[capacity];
+        _keys = new double[capacity];
+        _pos = new int[capacity];
+        Arrays.fill(_pos, -1);
+    }
+
+    /**
+     * Grow the heap so it can hold the indices 0..capacity-1.
+     * Also empties the heap.
+     *
+     * @param capacity number of nodes
+     */
+    void ensureCapacity(int capacity) {
+        clear();
+        if (capacity <= _pos.length)
+            return;
+        _heap = new int[capacity];
+        _keys = new double[capacity];
+        _pos = new int[capacity];
+        Arrays.fill(_pos, -1);
+    }
+
+    /**
+     * Grow the heap so it can hold the indices 0..capacity-1, keeping the nodes in it
+     * (for a search that numbers its nodes while it runs).
+     *
+     * @param capacity number of nodes
+     */
+    void grow(int capacity) {
+        if (capacity <= _pos.length)
+            return;
+        int old = _pos.length;
+        _heap = Arrays.copyOf(_heap, capacity);
+        _keys = Arrays.copyOf(_keys, capacity);
+        _pos = Arrays.copyOf(_pos, capacity);
+        Arrays.fill(_pos, old, capacity, -1);
+    }
+
+    /**
+     * Remove all the nodes from the heap, in O(size) time.
+     */
+    void clear() {
+        for (int i = 0; i < _size; i++)
+            _pos[_heap[i]] = -1;
+        _size = 0;
+    }
+
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    int size() {
+        return _size;
+    }
+
+    /**
+     * @return the number of inserts, decreases and polls since the construction
+     */
+    long ops() {
+        return _ops;
+    }
+
+    /**
+     * @param node index
+     * @return true iff node is in the heap
+     */
+    boolean contains(int node) {
+        return _pos[node] >= 0;
+    }
+
+    /**
+     * @return the smallest priority in the heap (the heap must not be empty)
+     */
+    double peekKey() {
+        return _keys[_heap[0]];
+    }
+
+    /**
+     * Insert node with priority key, or lower its priority if it is already in the heap with a bigger one.
+     *
+     * @param node index
+     * @param key  priority
+     * @return true iff the node was inserted or its priority decreased
+     */
+    boolean insertOrDecrease(int node, double key) {
+        int p = _pos[node];
+        if (p < 0) {
+            p = _size++;
+            _heap[p] = node;
+            _pos[node] = p;
+        } else if (key >= _keys[node]) {
+            return false;
+        }
+        _keys[node] = key;
+        _ops++;
+        siftUp(p);
+        return true;
+    }
+
+    /**
+     * Remove and return the node with the smallest priority (the heap must not be empty).
+     *
+     * @return index of the removed node
+     */
+    int poll() {
+        int top = _heap[0];
+        _pos[top] = -1;
+        _ops++;
+        int last = _heap[--_size];
+        if (_size > 0) {
+            _heap[0] = last;
+            _pos[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    private void siftUp(int p) {
+        int node = _heap[p];
+        double key = _keys[node];
+        while (p > 0) {
+            int parent = (p - 1) >>> 2;
+            int pn = _heap[parent];
+            if (_keys[pn] <= key)
+                break;
+            _heap[p] = pn;
+            _pos[pn] = p;
+            p = parent;
+        }
+        _heap[p] = node;
+        _pos[node] = p;
+    }
+
+    private void siftDown(int p) {
+        int node = _heap[p];
+        double key = _keys[node];
+        while (true) {
+            int first = (p << 2) + 1;
+            if (first >= _size)
+                break;
+            int best = first;
+            double bestKey = _keys[_heap[first]];
+            int end = Math.min(first + 4, _size);
+            for (int c = first + 1; c < end; c++) {
+                double k = _keys[_heap[c]];
+                if (k < bestKey) {
+                    best = c;
+                    bestKey = k;
+                }
+            }
+            if (bestKey >= key)
+                break;
+            int bn = _heap[best];
+            _heap[p] = bn;
+            _pos[bn] = p;
+            p = best;
+        }
+        _heap[p] = node;
+        _pos[node] = p;
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.Arrays;
+
+/**
+ * ALT heuristic for A* (A*, Landmarks and the Triangle inequality).
+ * The precomputation picks a few landmark nodes and runs dijkstra from each of them to all the nodes.
+ * For every landmark L, by the triangle inequality |d(L, target) - d(L, node)| <= d(node, target),
+ * and the estimate is the maximum of these bounds over the landmarks - consistent, without any coordinates.
+ * The landmarks are picked by farthest selection: each new landmark is the node farthest from the landmarks
+ * picked so far (nodes that no landmark reaches first, so every connected component gets a landmark).
+ * The distances take landmarks * nodeSize doubles.
+ * The heuristic describes the graph at the time it was built (its mode count, keys and weights, see {@link #describes(WGraph_CSR)}),
+ * after the graph is changed {@link WGraph_Algo} runs dijkstra instead of A* until a new heuristic is set.
+ *
+ * @author davidfeust
+ */
+public class LandmarkHeuristic implements path_heuristic {
+
+    private final WGraph_CSR _graph;
+    private final long _fingerprint;
+    private volatile WGraph_CSR _checked;
+    private final int[] _landmarks;
+    private final double[][] _dist;
+
+    /**
+     * Constructor.
+     * picks the landmarks and computes their distances to all the nodes.
+     *
+     * @param g         the graph
+     * @param landmarks number of landmarks (typically 8-16)
+     * @throws IllegalArgumentException if landmarks is not positive
+     */
+    public LandmarkHeuristic(weighted_graph g, int landmarks) {
+        if (landmarks <= 0)
+            throw new IllegalArgumentException("landmarks must be positive: " + landmarks);
+        _graph = WGraph_CSR.of(g);
+        _fingerprint = _graph.fingerprint();
+        int n = _graph.nodeSize();
+        int count = Math.min(landmarks, n);
+        _landmarks = new int[count];
+        _dist = new double[count][];
+
+        DijkstraEngine engine = new DijkstraEngine(n);
+        double[] closest = new double[n];
+        Arrays.fill(closest, Double.POSITIVE_INFINITY);
+        int next = farthest(engine, 0);
+        for (int l = 0; l < count; l++) {
+            _landmarks[l] = next;
+            engine.run(_graph, next, -1);
+            double[] dist = new double[n];
+            next = -1;
+            for (int i = 0; i < n; i++) {
+                dist[i] = engine.dist(i);
+                closest[i] = Math.min(closest[i], dist[i]);
+                if (next < 0 || closest[i] > closest[next])
+                    next = i;
+            }
+            _dist[l] = dist;
+        }
+    }
+
+    /**
+     * return max over the landmarks of |d(L, target) - d(L, node)|, or 0 if one of them is not in the graph.
+     */
+    @Override
+    public double estimate(int node, int target) {
+        int a = _graph.indexOf(node), b = _graph.indexOf(target);
+        if (a < 0 || b < 0)
+            return 0;
+        double best = 0;
+        for (double[] dist : _dist) {
+            double da = dist[a], db = dist[b];
+            if (da != Double.POSITIVE_INFINITY && db != Double.POSITIVE_INFINITY)
+                best = Math.max(best, Math.abs(db - da));
+        }
+        return best;
+    }
+
+    /**
+     * @return the keys of the landmarks
+     */
+    public int[] landmarks() {
+        int[] keys = new int[_landmarks.length];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = _graph.keyAt(_landmarks[i]);
+        return keys;
+    }
+
+    @Override
+    public String toString() {
+        return "LandmarkHeuristic{" +
+                "landmarks=" + Arrays.toString(landmarks()) +
+                '}';
+    }
+
+    /**
+     * return true iff g is a snapshot of the version of the graph this heuristic was built from,
+     * with the same weights (by their {@link WGraph_CSR#fingerprint()}), so a reweighted graph is not described.
+     * The last snapshot that was checked is remembered, so checking it again runs in O(1) time
+     * (checking a new snapshot runs in O(V+E) time).
+     */
+    @Override
+    public boolean describes(WGraph_CSR g) {
+        if (g == _checked)
+            return true;
+        if (!_graph.sameVersion(g) || g.fingerprint() != _fingerprint)
+            return false;
+        _checked = g;
+        return true;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * @return the node farthest from src (the first landmark is on the rim of the graph, not in its middle)
+     */
+    private int farthest(DijkstraEngine engine, int src) {
+        if (_graph.nodeSize() == 0)
+            return -1;
+        engine.run(_graph, src, -1);
+        int far = src;
+        for (int i = 0; i < _graph.nodeSize(); i++) {
+            if (engine.isReached(i) && engine.dist(i) > engine.dist(far))
+                far = i;
+        }
+        return far;
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of latencies in nanoseconds, in the layout of HdrHistogram:
+ * the values are grouped by their power of 2 (a bucket), and every bucket is split linearly into 64 sub-buckets,
+ * so every recorded value is kept with a relative error below 1/64 (about 1.5%), from 1 ns up to about 39 hours
+ * (longer values are recorded as the longest). The counts are a fixed {@link AtomicLongArray},
+ * so recording is one atomic increment and never allocates.
+ * The percentiles are computed from the counts, so they are the highest value of the sub-bucket they fall in.
+ *
+ * @author davidfeust
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_HALF = 1 << (SUB_BUCKET_BITS - 1);
+    private static final int BUCKETS = 41;
+    private static final long MAX_VALUE = (1L << (BUCKETS + SUB_BUCKET_BITS - 1)) - 1;
+
+    private final AtomicLongArray _counts = new AtomicLongArray((BUCKETS + 1) * SUB_BUCKET_HALF);
+    private final LongAdder _total = new LongAdder();
+    private final LongAdder _sum = new LongAdder();
+
+    /**
+     * Record a value.
+     *
+     * @param nanos the latency, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long v = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        _counts.incrementAndGet(index(v));
+        _total.increment();
+        _sum.add(v);
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long count() {
+        return _total.sum();
+    }
+
+    /**
+     * @return the mean of the recorded values, 0 if none
+     */
+    public double mean() {
+        long n = _total.sum();
+        return n == 0 ? 0 : (double) _sum.sum() / n;
+    }
+
+    /**
+     * Return the value at a percentile: at least p percent of the recorded values are not above it.
+     *
+     * @param p the percentile, 0..100
+     * @return the value at p, 0 if nothing was recorded
+     */
+    public long percentile(double p) {
+        long total = 0;
+        long[] counts = new long[_counts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = _counts.get(i);
+            total += counts[i];
+        }
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(Math.max(p, 0), 100) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return highest(i);
+        }
+        return MAX_VALUE;
+    }
+
+    /**
+     * @return the highest recorded value (up to the precision of the histogram), 0 if none
+     */
+    public long max() {
+        for (int i = _counts.length() - 1; i >= 0; i--) {
+            if (_counts.get(i) > 0)
+                return highest(i);
+        }
+        return 0;
+    }
+
+    /**
+     * Remove all the recorded values. Values recorded meanwhile by other threads may be kept or removed.
+     */
+    public void reset() {
+        for (int i = 0; i < _counts.length(); i++)
+            _counts.set(i, 0);
+        _total.reset();
+        _sum.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{" +
+                "count=" + count() +
+                ", mean=" + Math.round(mean()) +
+                ", p50=" + percentile(50) +
+                ", p99=" + percentile(99) +
+                ", p999=" + percentile(99.9) +
+                ", max=" + max() +
+                '}';
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * The index of v: bucket 0 holds 0..127 one by one, and bucket b > 0 holds [64 << b, 128 << b)
+     * in 64 sub-buckets of width 1 << b, right after the sub-buckets of bucket b - 1.
+     */
+    private static int index(long v) {
+        int bucket = 64 - Long.numberOfLeadingZeros(v | ((1 << SUB_BUCKET_BITS) - 1)) - SUB_BUCKET_BITS;
+        return (bucket << (SUB_BUCKET_BITS - 1)) + (int) (v >>> bucket);
+    }
+
+    /**
+     * The highest value of the sub-bucket of index i.
+     */
+    private static long highest(int i) {
+        int bucket = Math.max(0, i / SUB_BUCKET_HALF - 1);
+        long sub = i - ((long) bucket << (SUB_BUCKET_BITS - 1));
+        return (sub << bucket) + (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,219 @@
+import java.util.Arrays;
+
+/**
+ * Dijkstra on a live (changing) graph, through {@link weighted_graph#forEachNeighbor(int, neighbor_visitor)},
+ * for the queries that come between changes of the graph: freezing a new {@link WGraph_CSR} after every change
+ * costs O(V+E) per query, while this search costs time proportional to the part of the graph it explores.
+ * The nodes a run reaches get slots 0, 1, ... in the order they are reached, by an open addressing table
+ * from key to slot. The table is reset lazily by epochs, like the stamps of {@link DijkstraEngine},
+ * so a run never touches the entries of the runs before it. The arrays grow with the biggest run, and are kept.
+ * Every arc costs a lookup in the table, so on an unchanged graph the snapshot and {@link DijkstraEngine}
+ * are faster - see WGraph_Algo#pointSnapshot for when each of them runs.
+ * A search is not thread safe - every thread uses its own, see {@link #local()}.
+ *
+ * @author davidfeust
+ */
+class LiveDijkstra {
+
+    private static final ThreadLocal<LiveDijkstra> LOCAL = ThreadLocal.withInitial(LiveDijkstra::new);
+
+    // slot of every entry of the table, valid only if the stamp of the entry is the current epoch
+    private int[] _table;
+    private int[] _stamp;
+    private int _epoch;
+    private int[] _keys;
+    private double[] _dist;
+    private int[] _prev;
+    private boolean[] _settled;
+    private int _size;
+    private int _curr;
+    private int _settled_count;
+    private long _relaxed_count;
+    private long _heap_ops_start;
+    private final IndexedHeap _heap;
+    private final neighbor_visitor _relax = this::relax;
+
+    private LiveDijkstra() {
+        _table = new int[16];
+        _stamp = new int[16];
+        _keys = new int[16];
+        _dist = new double[16];
+        _prev = new int[16];
+        _settled = new boolean[16];
+        _heap = new IndexedHeap(16);
+    }
+
+    /**
+     * @return the search of the current thread
+     */
+    static LiveDijkstra local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Run dijkstra on g from src, stops when dest is polled from the queue.
+     * The search does not keep a reference to g after the run. g must not change during the run
+     * (unless it is a {@link WGraph_Concurrent}).
+     *
+     * @param g    the graph to run on
+     * @param src  key of the source, a node of g
+     * @param dest key of the destination
+     * @return true iff dest was reached
+     */
+    boolean run(weighted_graph g, int src, int dest) {
+        begin();
+        int s = slot(src);
+        _dist[s] = 0;
+        _heap.insertOrDecrease(s, 0);
+        while (!_heap.isEmpty()) {
+            int curr = _heap.poll();
+            _settled[curr] = true;
+            _settled_count++;
+            if (_keys[curr] == dest)
+                return true;
+            _curr = curr;
+            g.forEachNeighbor(_keys[curr], _relax);
+        }
+        return false;
+    }
+
+    /**
+     * @param key node id
+     * @return the distance of the last run to key, infinity if it was not reached
+     */
+    double dist(int key) {
+        int slot = find(key);
+        return slot < 0 ? Double.POSITIVE_INFINITY : _dist[slot];
+    }
+
+    /**
+     * @param key node id, reached by the last run
+     * @return the keys of the path of the last run from the source to key
+     */
+    int[] path(int key) {
+        int length = 0;
+        for (int slot = find(key); slot >= 0; slot = _prev[slot])
+            length++;
+        int[] path = new int[length];
+        for (int slot = find(key); slot >= 0; slot = _prev[slot])
+            path[--length] = _keys[slot];
+        return path;
+    }
+
+    /**
+     * @return the number of nodes settled by the last run
+     */
+    int settledCount() {
+        return _settled_count;
+    }
+
+    /**
+     * @return the number of arcs relaxed by the last run
+     */
+    long relaxedCount() {
+        return _relaxed_count;
+    }
+
+    /**
+     * @return the number of heap operations of the last run
+     */
+    long heapOps() {
+        return _heap.ops() - _heap_ops_start;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * Relax the arc from _curr (which was just settled) to key, like {@link DijkstraEngine}.
+     */
+    private void relax(int key, double w) {
+        _relaxed_count++;
+        int nei = slot(key);
+        if (_settled[nei])
+            return;
+        double t = _dist[_curr] + w;
+        if (t < _dist[nei]) {
+            _dist[nei] = t;
+            _prev[nei] = _curr;
+            _heap.insertOrDecrease(nei, t);
+        }
+    }
+
+    /**
+     * @return the slot of key in this run, -1 if it was not reached
+     */
+    private int find(int key) {
+        int mask = _table.length - 1;
+        for (int e = WGraph_CSR.mix(key) & mask; _stamp[e] == _epoch; e = (e + 1) & mask) {
+            if (_keys[_table[e]] == key)
+                return _table[e];
+        }
+        return -1;
+    }
+
+    /**
+     * @return the slot of key in this run, a new unreached slot if key was not reached yet
+     */
+    private int slot(int key) {
+        int mask = _table.length - 1;
+        int e = WGraph_CSR.mix(key) & mask;
+        for (; _stamp[e] == _epoch; e = (e + 1) & mask) {
+            if (_keys[_table[e]] == key)
+                return _table[e];
+        }
+        int slot = _size++;
+        if (slot == _keys.length)
+            growSlots();
+        _keys[slot] = key;
+        _dist[slot] = Double.POSITIVE_INFINITY;
+        _prev[slot] = -1;
+        _settled[slot] = false;
+        _table[e] = slot;
+        _stamp[e] = _epoch;
+        if (2 * _size > _table.length)
+            rehash();
+        return slot;
+    }
+
+    private void growSlots() {
+        int capacity = 2 * _keys.length;
+        _keys = Arrays.copyOf(_keys, capacity);
+        _dist = Arrays.copyOf(_dist, capacity);
+        _prev = Arrays.copyOf(_prev, capacity);
+        _settled = Arrays.copyOf(_settled, capacity);
+        _heap.grow(capacity);
+    }
+
+    /**
+     * Double the table, and put the slots of this run in it.
+     */
+    private void rehash() {
+        _table = new int[2 * _table.length];
+        _stamp = new int[_table.length];
+        _epoch = 1;
+        int mask = _table.length - 1;
+        for (int slot = 0; slot < _size; slot++) {
+            int e = WGraph_CSR.mix(_keys[slot]) & mask;
+            while (_stamp[e] == _epoch)
+                e = (e + 1) & mask;
+            _table[e] = slot;
+            _stamp[e] = _epoch;
+        }
+    }
+
+    /**
+     * Start a new run - empty the heap and the slots, and move to the next epoch.
+     * Only when the epoch counter wraps around, the stamps are cleared.
+     */
+    private void begin() {
+        _heap.clear();
+        _size = 0;
+        _settled_count = 0;
+        _relaxed_count = 0;
+        _heap_ops_start = _heap.ops();
+        if (++_epoch == 0) {
+            Arrays.fill(_stamp, 0);
+            _epoch = 1;
+        }
+    }
+}
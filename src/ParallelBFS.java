@@ -0,0 +1,287 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel, direction optimizing BFS (Beamer, Asanovic and Patterson) over a {@link WGraph_CSR} snapshot,
+ * for the connectivity queries of big graphs. The visited set is a bitset, one bit per dense index.
+ * The BFS runs level by level, every level in one of two directions:
+ * <ul>
+ * <li>top-down - the nodes of the frontier scan their arcs, and claim their unvisited neighbors
+ * by an atomic OR on the word of the neighbor, so a node joins the next frontier once.
+ * The frontier is split into chunks of CHUNK nodes, that run in parallel on the common
+ * {@link java.util.concurrent.ForkJoinPool} (a smaller frontier runs on the calling thread).</li>
+ * <li>bottom-up - every unvisited node scans its arcs until it finds a neighbor in the frontier (a second bitset).
+ * On a wide frontier most unvisited nodes find one at their first arcs, so this scans much less than top-down,
+ * which scans every arc of the frontier. The nodes are split into chunks of whole words of the bitset,
+ * so every word is written by one task and no atomic operation is needed.</li>
+ * </ul>
+ * A level goes bottom-up when the arcs of the frontier are more than 1/ALPHA of the arcs of the unvisited nodes,
+ * and back top-down when the frontier is smaller than 1/BETA of the nodes (the constants of the paper).
+ * The graph is undirected, so a neighbor in the frontier is a parent, and bottom-up is exact.
+ *
+ * @author davidfeust
+ */
+class ParallelBFS {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int CHUNK = 1024;
+    private static final int CHUNK_WORDS = 64;
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+    /**
+     * The smallest graph worth this BFS - on a smaller graph the sequential BFS of {@link DijkstraEngine} is faster
+     * (on one core, the two break even at about this size on grid, random and power-law graphs).
+     */
+    static final int MIN_NODES = 1 << 17;
+
+    private final WGraph_CSR _g;
+    private final int _n;
+    private final long[] _visited;
+    private final int[] _labels;
+    private long[] _front;
+    private int[] _frontier;
+    private int[] _next;
+    private int _next_size;
+    private final long _arcs;
+    private long _visited_arcs;
+    private long _scanned;
+    private int _bottom_up_levels;
+
+    /**
+     * Constructor, nothing is visited yet.
+     *
+     * @param g      the snapshot to run on
+     * @param labels the component of every reached node is written to it (by dense index), null for no labels
+     */
+    ParallelBFS(WGraph_CSR g, int[] labels) {
+        _g = g;
+        _n = g.nodeSize();
+        _visited = new long[(_n + 63) >>> 6];
+        // the bits of the last word after the last node are visited, so bottom-up never takes them
+        if ((_n & 63) != 0)
+            _visited[_visited.length - 1] = -1L << (_n & 63);
+        _labels = labels;
+        _frontier = new int[Math.max(_n, 1)];
+        _next = new int[Math.max(_n, 1)];
+        _arcs = _n == 0 ? 0 : g.arcEnd(_n - 1);
+    }
+
+    /**
+     * BFS from src (which must not be visited yet).
+     *
+     * @param src   dense index of the source
+     * @param label the label of the reached nodes
+     * @return the number of nodes reached from src (including src)
+     */
+    int reach(int src, int label) {
+        claim(src, label);
+        _frontier[0] = src;
+        int size = 1, reached = 1;
+        long frontier_arcs = degree(src);
+        _visited_arcs += frontier_arcs;
+        boolean bottom_up = false;
+        while (size > 0) {
+            long unvisited_arcs = _arcs - _visited_arcs;
+            if (!bottom_up && frontier_arcs > unvisited_arcs / ALPHA && size >= CHUNK)
+                bottom_up = true;
+            else if (bottom_up && size < _n / BETA)
+                bottom_up = false;
+            long next_arcs;
+            if (bottom_up) {
+                _bottom_up_levels++;
+                next_arcs = bottomUp(size, label);
+            } else {
+                next_arcs = topDown(size, label);
+            }
+            int[] t = _frontier;
+            _frontier = _next;
+            _next = t;
+            size = _next_size;
+            reached += size;
+            frontier_arcs = next_arcs;
+            _visited_arcs += next_arcs;
+        }
+        return reached;
+    }
+
+    /**
+     * Label the connected components: BFS from every node that was not reached yet.
+     * The components are numbered 0, 1, ... in the order of their smallest dense index.
+     *
+     * @return the number of connected components
+     */
+    int labelAll() {
+        int components = 0;
+        for (int w = 0; w < _visited.length; w++) {
+            long unvisited;
+            while ((unvisited = ~_visited[w]) != 0)
+                reach((w << 6) + Long.numberOfTrailingZeros(unvisited), components++);
+        }
+        return components;
+    }
+
+    /**
+     * @return the number of arcs scanned by all the BFS of this object
+     */
+    long scannedCount() {
+        return _scanned;
+    }
+
+    /**
+     * @return the number of levels that ran bottom-up
+     */
+    int bottomUpLevels() {
+        return _bottom_up_levels;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * The nodes and the scanned arcs of a chunk of a level.
+     */
+    private static final class Level {
+        int[] nodes = new int[16];
+        int size;
+        long arcs;
+        long scanned;
+
+        void add(int v, long degree) {
+            if (size == nodes.length)
+                nodes = Arrays.copyOf(nodes, 2 * size);
+            nodes[size++] = v;
+            arcs += degree;
+        }
+    }
+
+    /**
+     * A top-down level: the first size nodes of _frontier claim their unvisited neighbors into _next.
+     *
+     * @return the arcs of the next frontier
+     */
+    private long topDown(int size, int label) {
+        if (size <= CHUNK) {
+            Level l = topDownChunk(0, size, label, _next);
+            _scanned += l.scanned;
+            _next_size = l.size;
+            return l.arcs;
+        }
+        int chunks = (size + CHUNK - 1) / CHUNK;
+        List<Level> levels = IntStream.range(0, chunks).parallel()
+                .mapToObj(c -> topDownChunk(c * CHUNK, Math.min(size, (c + 1) * CHUNK), label, null))
+                .collect(Collectors.toList());
+        return gather(levels);
+    }
+
+    /**
+     * The task of a chunk of a top-down level, _frontier[from..to).
+     *
+     * @param out the array of the claimed nodes, null for a new array of the chunk
+     */
+    private Level topDownChunk(int from, int to, int label, int[] out) {
+        Level l = new Level();
+        if (out != null)
+            l.nodes = out;
+        for (int k = from; k < to; k++) {
+            int v = _frontier[k];
+            int start = _g.arcStart(v), end = _g.arcEnd(v);
+            l.scanned += end - start;
+            for (int arc = start; arc < end; arc++) {
+                int t = _g.arcTarget(arc);
+                if (claim(t, label))
+                    l.add(t, degree(t));
+            }
+        }
+        return l;
+    }
+
+    /**
+     * A bottom-up level: every unvisited node looks for a neighbor in the first size nodes of _frontier.
+     *
+     * @return the arcs of the next frontier
+     */
+    private long bottomUp(int size, int label) {
+        if (_front == null)
+            _front = new long[_visited.length];
+        int[] frontier = _frontier;
+        IntStream.range(0, size).parallel().forEach(k -> setFront(frontier[k]));
+        int chunks = (_visited.length + CHUNK_WORDS - 1) / CHUNK_WORDS;
+        List<Level> levels = IntStream.range(0, chunks).parallel()
+                .mapToObj(c -> bottomUpChunk(c * CHUNK_WORDS, Math.min(_visited.length, (c + 1) * CHUNK_WORDS), label))
+                .collect(Collectors.toList());
+        IntStream.range(0, size).parallel().forEach(k -> _front[frontier[k] >>> 6] = 0);
+        return gather(levels);
+    }
+
+    /**
+     * The task of a chunk of a bottom-up level, the nodes of the words [from..to) of the bitset.
+     * Only this task writes these words.
+     */
+    private Level bottomUpChunk(int from, int to, int label) {
+        Level l = new Level();
+        for (int w = from; w < to; w++) {
+            long unvisited = ~_visited[w];
+            while (unvisited != 0) {
+                long bit = unvisited & -unvisited;
+                unvisited ^= bit;
+                int v = (w << 6) + Long.numberOfTrailingZeros(bit);
+                for (int arc = _g.arcStart(v), end = _g.arcEnd(v); arc < end; arc++) {
+                    l.scanned++;
+                    int t = _g.arcTarget(arc);
+                    if ((_front[t >>> 6] & (1L << t)) != 0) {
+                        _visited[w] |= bit;
+                        if (_labels != null)
+                            _labels[v] = label;
+                        l.add(v, degree(v));
+                        break;
+                    }
+                }
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Copy the nodes of the chunks of a level to _next.
+     *
+     * @return the arcs of the next frontier
+     */
+    private long gather(List<Level> levels) {
+        int size = 0;
+        long arcs = 0;
+        for (Level l : levels) {
+            System.arraycopy(l.nodes, 0, _next, size, l.size);
+            size += l.size;
+            arcs += l.arcs;
+            _scanned += l.scanned;
+        }
+        _next_size = size;
+        return arcs;
+    }
+
+    /**
+     * Mark v as visited, if it was not.
+     *
+     * @return true iff v was not visited (by this or by another thread)
+     */
+    private boolean claim(int v, int label) {
+        int w = v >>> 6;
+        long bit = 1L << v;
+        if ((_visited[w] & bit) != 0 || ((long) WORDS.getAndBitwiseOr(_visited, w, bit) & bit) != 0)
+            return false;
+        if (_labels != null)
+            _labels[v] = label;
+        return true;
+    }
+
+    private void setFront(int v) {
+        WORDS.getAndBitwiseOr(_front, v >>> 6, 1L << v);
+    }
+
+    private long degree(int v) {
+        return _g.arcEnd(v) - _g.arcStart(v);
+    }
+}
@@ -0,0 +1,321 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the shortest path results of {@link WGraph_Algo}, see {@link WGraph_Algo#setCache(PathCache)}.
+ * The cache keeps the distance (and the path, once it was asked for) of every (src, dest) query,
+ * and the whole dijkstra tree of a source that was queried again and again: after tree_after misses
+ * of the same source, the query runs dijkstra from it to all the nodes, and every later query from that source
+ * is answered by the tree. The trees of {@link WGraph_Algo#shortestPathTree(int)} are kept too (as {@link ShortestPathTree}s).
+ * The results are kept by the dense indices of the {@link WGraph_CSR} snapshot they were computed on,
+ * and the whole cache is dropped when it is asked about another snapshot - the snapshot of {@link WGraph_Algo}
+ * is replaced exactly when the Mode Count (or the node count) of the graph changes.
+ * So a hit costs one hash lookup, and the cache never returns the result of an older graph.
+ * <p>
+ * The memory of every entry is estimated (the map entry, the boxed key, the result and its arrays),
+ * and the least recently used entries are evicted while the total is above the cap.
+ * A tree bigger than a quarter of the cap is not kept.
+ * Thread safe - the methods are synchronized, the searches of the misses run outside the lock.
+ *
+ * @author davidfeust
+ */
+public class PathCache {
+
+    /**
+     * The default number of misses of a source before its whole tree is cached.
+     */
+    public static final int DEFAULT_TREE_AFTER = 3;
+
+    private static final long ENTRY_BYTES = 96;
+    private static final long ARRAY_BYTES = 16;
+    private static final long TREE_KEY = 0xFFFFFFFFL;
+    private static final int MAX_SOURCES = 1 << 16;
+    private static final int[] NO_PATH = new int[0];
+
+    private final long _max_bytes;
+    private final int _tree_after;
+    private final LinkedHashMap<Long, Entry> _entries;
+    private final HashMap<Integer, Integer> _source_misses;
+    private WGraph_CSR _snapshot;
+    private long _bytes;
+    private long _hits;
+    private long _misses;
+    private long _evictions;
+
+    /**
+     * Constructor.
+     *
+     * @param max_bytes  the memory cap of the cache (estimated)
+     * @param tree_after number of misses of a source before its whole tree is cached, 0 to cache only the trees that were asked for
+     */
+    public PathCache(long max_bytes, int tree_after) {
+        _max_bytes = max_bytes;
+        _tree_after = tree_after;
+        _entries = new LinkedHashMap<>(16, 0.75f, true);
+        _source_misses = new HashMap<>();
+    }
+
+    /**
+     * Constructor, with the default tree_after.
+     *
+     * @param max_bytes the memory cap of the cache (estimated)
+     */
+    public PathCache(long max_bytes) {
+        this(max_bytes, DEFAULT_TREE_AFTER);
+    }
+
+    /**
+     * @return the number of queries answered by the cache
+     */
+    public synchronized long hits() {
+        return _hits;
+    }
+
+    /**
+     * @return the number of queries that were not in the cache
+     */
+    public synchronized long misses() {
+        return _misses;
+    }
+
+    /**
+     * @return the number of entries evicted to keep the cache under its memory cap
+     */
+    public synchronized long evictions() {
+        return _evictions;
+    }
+
+    /**
+     * @return the number of entries (results and trees) in the cache
+     */
+    public synchronized int size() {
+        return _entries.size();
+    }
+
+    /**
+     * @return the estimated memory of the entries in the cache
+     */
+    public synchronized long bytes() {
+        return _bytes;
+    }
+
+    /**
+     * @return the memory cap of the cache
+     */
+    public long maxBytes() {
+        return _max_bytes;
+    }
+
+    /**
+     * Remove all the entries (the metrics are kept).
+     */
+    public synchronized void clear() {
+        _entries.clear();
+        _source_misses.clear();
+        _bytes = 0;
+        _snapshot = null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PathCache:" +
+                " size=" + _entries.size() +
+                ", bytes=" + _bytes +
+                ", max_bytes=" + _max_bytes +
+                ", hits=" + _hits +
+                ", misses=" + _misses +
+                ", evictions=" + _evictions;
+    }
+
+    /**
+     * Return the cached distance from s to d.
+     *
+     * @return the distance (infinity if there is no path), or NaN on a miss
+     */
+    synchronized double dist(WGraph_CSR snapshot, int s, int d) {
+        sync(snapshot);
+        Entry e = _entries.get(key(s, d));
+        if (null == e)
+            e = _entries.get(key(s, -1));
+        if (null == e) {
+            _misses++;
+            return Double.NaN;
+        }
+        _hits++;
+        return e.dist(d);
+    }
+
+    /**
+     * Return the cached path from s to d.
+     *
+     * @return dense indices of the path, an empty array if there is no path, or null on a miss
+     */
+    synchronized int[] path(WGraph_CSR snapshot, int s, int d) {
+        sync(snapshot);
+        Entry e = _entries.get(key(s, d));
+        if (null == e || null == e.path(d))
+            e = _entries.get(key(s, -1));
+        if (null == e) {
+            _misses++;
+            return null;
+        }
+        _hits++;
+        int[] path = e.path(d);
+        return null == path ? NO_PATH : path;
+    }
+
+    /**
+     * Count a miss of the source s.
+     *
+     * @return true iff the whole tree of s should be computed and cached now
+     */
+    synchronized boolean promote(WGraph_CSR snapshot, int s) {
+        sync(snapshot);
+        if (_tree_after <= 0 || !fits(snapshot))
+            return false;
+        if (_source_misses.size() >= MAX_SOURCES)
+            _source_misses.clear();
+        return _source_misses.merge(s, 1, Integer::sum) >= _tree_after;
+    }
+
+    /**
+     * Cache the distance (and the path, if not null) from s to d.
+     */
+    synchronized void put(WGraph_CSR snapshot, int s, int d, double dist, int[] path) {
+        sync(snapshot);
+        put(key(s, d), new Result(dist, path));
+    }
+
+    /**
+     * Return the cached tree of s.
+     *
+     * @return the tree, or null on a miss
+     */
+    synchronized ShortestPathTree tree(WGraph_CSR snapshot, int s) {
+        sync(snapshot);
+        Entry e = _entries.get(key(s, -1));
+        if (null == e) {
+            _misses++;
+            return null;
+        }
+        _hits++;
+        return ((Tree) e)._tree;
+    }
+
+    /**
+     * Cache the complete tree of s on snapshot.
+     */
+    synchronized void putTree(WGraph_CSR snapshot, int s, ShortestPathTree tree) {
+        sync(snapshot);
+        _source_misses.remove(s);
+        put(key(s, -1), new Tree(tree));
+    }
+
+    /**
+     * @param snapshot the snapshot of the tree
+     * @return true iff a tree of snapshot is not too big to be cached
+     */
+    boolean fits(WGraph_CSR snapshot) {
+        return treeBytes(snapshot.nodeSize()) <= _max_bytes / 4;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * A cached result: the distance from a source to a destination, or the tree of a source.
+     */
+    private abstract static class Entry {
+        abstract double dist(int d);
+
+        /**
+         * @return the path to d, null if there is no path (or the path is not known)
+         */
+        abstract int[] path(int d);
+
+        abstract long bytes();
+    }
+
+    private static class Result extends Entry {
+        private final double _dist;
+        private final int[] _path;
+
+        Result(double dist, int[] path) {
+            _dist = dist;
+            _path = path;
+        }
+
+        @Override
+        double dist(int d) {
+            return _dist;
+        }
+
+        @Override
+        int[] path(int d) {
+            return _dist == Double.POSITIVE_INFINITY ? NO_PATH : _path;
+        }
+
+        @Override
+        long bytes() {
+            return ENTRY_BYTES + (null == _path ? 0 : ARRAY_BYTES + 4L * _path.length);
+        }
+    }
+
+    private static class Tree extends Entry {
+        private final ShortestPathTree _tree;
+
+        Tree(ShortestPathTree tree) {
+            _tree = tree;
+        }
+
+        @Override
+        double dist(int d) {
+            return _tree.distAt(d);
+        }
+
+        @Override
+        int[] path(int d) {
+            int[] path = _tree.pathAt(d);
+            return null == path ? NO_PATH : path;
+        }
+
+        @Override
+        long bytes() {
+            return treeBytes(_tree.nodeSize());
+        }
+    }
+
+    /**
+     * Drop all the entries if they were computed on another snapshot.
+     */
+    private void sync(WGraph_CSR snapshot) {
+        if (_snapshot != snapshot) {
+            _entries.clear();
+            _source_misses.clear();
+            _bytes = 0;
+            _snapshot = snapshot;
+        }
+    }
+
+    private void put(long key, Entry e) {
+        Entry old = _entries.put(key, e);
+        if (null != old)
+            _bytes -= old.bytes();
+        _bytes += e.bytes();
+        Iterator<Map.Entry<Long, Entry>> it = _entries.entrySet().iterator();
+        while (_bytes > _max_bytes && it.hasNext()) {
+            _bytes -= it.next().getValue().bytes();
+            it.remove();
+            _evictions++;
+        }
+    }
+
+    private static long treeBytes(int n) {
+        return ENTRY_BYTES + 2 * ARRAY_BYTES + 12L * n;
+    }
+
+    private static long key(int s, int d) {
+        return (long) s << 32 | (d & TREE_KEY);
+    }
+}
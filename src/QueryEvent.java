@@ -0,0 +1,47 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of one query of {@link WGraph_Algo}, with the work the query did.
+ * Until a JFR recording runs the event is not enabled, and the JIT removes it from the queries.
+ * A recording of a running instance starts without a restart, e.g.
+ * <pre>
+ * jcmd &lt;pid&gt; JFR.start name=graph duration=60s filename=graph.jfr
+ * </pre>
+ * and the events are in the "Weighted Graph" category of the recording.
+ * They can be turned off with wgraph.Query#enabled=false, or limited to slow queries with wgraph.Query#threshold.
+ *
+ * @author davidfeust
+ */
+@Name("wgraph.Query")
+@Label("Graph Query")
+@Category({"Weighted Graph"})
+@Description("A query of WGraph_Algo")
+@StackTrace(false)
+class QueryEvent extends Event {
+
+    @Label("Query")
+    String query;
+
+    @Label("Mode")
+    String mode;
+
+    @Label("Source")
+    int src;
+
+    @Label("Destination")
+    int dest;
+
+    @Label("Settled Nodes")
+    long settled;
+
+    @Label("Relaxed Arcs")
+    long relaxed;
+
+    @Label("Heap Operations")
+    long heapOps;
+}
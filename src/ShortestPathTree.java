@@ -0,0 +1,225 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The shortest path tree of a source: the distance and the previous node of every node, from one dijkstra run.
+ * The tree is two primitive arrays over the dense indices of the {@link WGraph_CSR} snapshot it was computed on
+ * (see {@link #keyAt(int)} and {@link #indexOf(int)}), so it costs 12 bytes per node and every distance is O(1).
+ * The paths are not stored - a path is restored from the previous nodes when it is asked for,
+ * in O(length of the path) time.
+ * A tree is immutable and does not follow the changes of the graph: it describes the snapshot it was computed on,
+ * and the nodes of its paths are the nodes of that snapshot.
+ * A tree computed with a cut-off (see {@link WGraph_Algo#shortestPathTree(int, double, int)}) holds only the nodes
+ * that were settled before the cut-off - every other node is not reached, even if it has a longer path.
+ *
+ * @author davidfeust
+ */
+public class ShortestPathTree {
+
+    private final WGraph_CSR _graph;
+    private final int _src;
+    private final double[] _dist;
+    private final int[] _prev;
+    private final int _reached;
+    private final boolean _complete;
+
+    /**
+     * Constructor, copies the settled nodes of the last run of engine.
+     *
+     * @param graph    the snapshot of the run
+     * @param src      dense index of the source of the run
+     * @param engine   the engine, after its run from src
+     * @param complete true iff the run settled every node it could reach
+     */
+    ShortestPathTree(WGraph_CSR graph, int src, DijkstraEngine engine, boolean complete) {
+        int n = graph.nodeSize();
+        _graph = graph;
+        _src = src;
+        _dist = new double[n];
+        _prev = new int[n];
+        int reached = 0;
+        for (int i = 0; i < n; i++) {
+            if (engine.isSettled(i)) {
+                _dist[i] = engine.dist(i);
+                _prev[i] = engine.prev(i);
+                reached++;
+            } else {
+                _dist[i] = Double.POSITIVE_INFINITY;
+                _prev[i] = -1;
+            }
+        }
+        _reached = reached;
+        _complete = complete;
+    }
+
+    /**
+     * Constructor of a complete tree, takes the arrays as they are (they must not be changed after).
+     *
+     * @param graph the snapshot of the run
+     * @param src   dense index of the source of the run
+     * @param dist  the distances by dense index, infinity for a node that was not reached
+     * @param prev  the previous nodes by dense index, -1 for the source and the nodes that were not reached
+     */
+    ShortestPathTree(WGraph_CSR graph, int src, double[] dist, int[] prev) {
+        int reached = 0;
+        for (double d : dist) {
+            if (d != Double.POSITIVE_INFINITY)
+                reached++;
+        }
+        _graph = graph;
+        _src = src;
+        _dist = dist;
+        _prev = prev;
+        _reached = reached;
+        _complete = true;
+    }
+
+    /**
+     * @return the key of the source
+     */
+    public int getSrc() {
+        return _graph.keyAt(_src);
+    }
+
+    /**
+     * returns the length of the shortest path between the source to dest
+     * if no such path (or dest was cut off) -> returns -1
+     *
+     * @param dest - end (target) node
+     * @return the shortest path distance between the source to dest
+     */
+    public double dist(int dest) {
+        int d = _graph.indexOf(dest);
+        return d < 0 || _dist[d] == Double.POSITIVE_INFINITY ? -1 : _dist[d];
+    }
+
+    /**
+     * returns the the shortest path between the source to dest - as an ordered List of nodes:
+     * src--> n1-->n2-->...dest
+     * if no such path (or dest was cut off) -> returns null
+     *
+     * @param dest - end (target) node
+     * @return List<node_info> contains all the nodes in the path in the order
+     */
+    public List<node_info> path(int dest) {
+        int d = _graph.indexOf(dest);
+        if (d < 0 || _dist[d] == Double.POSITIVE_INFINITY)
+            return null;
+        List<node_info> path = new ArrayList<>();
+        for (int i = d; i != -1; i = _prev[i])
+            path.add(_graph.nodeAt(i));
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * @param key node id
+     * @return true iff key is in the tree (has a path from the source, that was not cut off)
+     */
+    public boolean isReached(int key) {
+        int i = _graph.indexOf(key);
+        return i >= 0 && _dist[i] != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return the number of nodes in the tree, including the source
+     */
+    public int reachedCount() {
+        return _reached;
+    }
+
+    /**
+     * @return true iff every node that has a path from the source is in the tree (no cut-off stopped the run)
+     */
+    public boolean isComplete() {
+        return _complete;
+    }
+
+    /**
+     * @return the number of nodes of the snapshot - the dense indices are 0..nodeSize()-1
+     */
+    public int nodeSize() {
+        return _dist.length;
+    }
+
+    /**
+     * @param i dense index
+     * @return the key of the node with index i
+     */
+    public int keyAt(int i) {
+        return _graph.keyAt(i);
+    }
+
+    /**
+     * @param key node id
+     * @return the dense index of key, -1 if it is not in the snapshot
+     */
+    public int indexOf(int key) {
+        return _graph.indexOf(key);
+    }
+
+    /**
+     * @param i dense index
+     * @return the distance of i from the source, infinity if it is not in the tree
+     */
+    public double distAt(int i) {
+        return _dist[i];
+    }
+
+    /**
+     * @param i dense index
+     * @return the dense index of the previous node of i in the tree, -1 for the source or a node that is not in the tree
+     */
+    public int prevAt(int i) {
+        return _prev[i];
+    }
+
+    /**
+     * @return a copy of the distances by dense index, infinity for a node that is not in the tree
+     */
+    public double[] distances() {
+        return Arrays.copyOf(_dist, _dist.length);
+    }
+
+    /**
+     * @return a copy of the previous nodes by dense index, -1 for the source and the nodes that are not in the tree
+     */
+    public int[] predecessors() {
+        return Arrays.copyOf(_prev, _prev.length);
+    }
+
+    @Override
+    public String toString() {
+        return "ShortestPathTree:" +
+                " src=" + getSrc() +
+                ", reached=" + _reached +
+                ", complete=" + _complete;
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * @param i dense index
+     * @return dense indices of the path from the source to i, null if i is not in the tree
+     */
+    int[] pathAt(int i) {
+        if (_dist[i] == Double.POSITIVE_INFINITY)
+            return null;
+        int len = 0;
+        for (int k = i; k != -1; k = _prev[k])
+            len++;
+        int[] path = new int[len];
+        for (int k = i; k != -1; k = _prev[k])
+            path[--len] = k;
+        return path;
+    }
+
+    /**
+     * @return the snapshot of the tree
+     */
+    WGraph_CSR graph() {
+        return _graph;
+    }
+}
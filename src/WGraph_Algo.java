@@ -1,5 +1,10 @@
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 /**
  * This class represents an Undirected (positive) Weighted Graph Theory algorithms implements weighted_graph_algorithms
@@ -11,10 +16,70 @@ import java.util.*;
  * 4. List<node_data> shortestPath(int src, int dest);
  * 5. Save(file);
  * 6. Load(file);
+ * The queries run on an immutable {@link WGraph_CSR} snapshot of the graph with thread-local scratch state,
+ * and never write into the nodes, so many threads can query the same graph at once.
+ * Right after a change of the graph, shortestPathDist and shortestPath run on the live graph instead
+ * ({@link LiveDijkstra}), so a query between changes does not pay for freezing the whole graph.
+ * Every query reports its latency and work to the {@link graph_metrics} of {@link #setMetrics(graph_metrics)}
+ * (if any), and is a {@link QueryEvent} of JFR while a recording runs.
  */
 public class WGraph_Algo implements weighted_graph_algorithms {
 
     private weighted_graph _current_graph;
+    private WGraph_Versions _versions;
+    private volatile WGraph_CSR _snapshot;
+    private volatile LiveWork _live_work;
+    private volatile Mode _mode = Mode.DIJKSTRA;
+    private volatile path_heuristic _heuristic;
+    private volatile ContractionHierarchy _hierarchy;
+    private DynamicConnectivity _connectivity;
+    private volatile PathCache _cache;
+    private volatile graph_metrics _metrics = GraphMetrics.defaults();
+    private final LongAdder _total_settled = new LongAdder();
+
+    private static final String HIERARCHY_SUFFIX = ".ch";
+    // the cost of a settled node or a relaxed arc of LiveDijkstra, in nodes and arcs of freezing a snapshot
+    // (about 4 on WGraph_DS: a hash lookup per arc, against a sequential copy)
+    private static final int LIVE_COST = 4;
+    // settled nodes, relaxed arcs and heap operations of the last path query of the thread
+    private static final ThreadLocal<long[]> LAST_WORK = ThreadLocal.withInitial(() -> new long[3]);
+
+    /**
+     * The search used by shortestPath and shortestPathDist.
+     */
+    public enum Mode {
+        /**
+         * dijkstra from src, until dest is settled.
+         */
+        DIJKSTRA,
+        /**
+         * dijkstra from src and from dest alternately, until the two searches meet.
+         */
+        BIDIRECTIONAL,
+        /**
+         * A* from src to dest, guided by the heuristic of {@link #setHeuristic(path_heuristic)}.
+         */
+        A_STAR,
+        /**
+         * upward bidirectional search over the {@link ContractionHierarchy} of the graph, see {@link #getHierarchy()}.
+         */
+        CONTRACTION_HIERARCHY
+    }
+
+    /**
+     * The work of the live searches on one version of the graph (by its mode count and node count),
+     * see {@link #pointSnapshot(Mode)}.
+     */
+    private static final class LiveWork {
+        private final int _mode_count;
+        private final int _nodes;
+        private final LongAdder _work = new LongAdder();
+
+        private LiveWork(int mode_count, int nodes) {
+            _mode_count = mode_count;
+            _nodes = nodes;
+        }
+    }
 
 
     /**
@@ -27,6 +92,16 @@ public class WGraph_Algo implements weighted_graph_algorithms {
         init(g);
     }
 
+    /**
+     * Constructor.
+     * init a versioned graph to this set of algorithms.
+     *
+     * @param versions versioned snapshots of a live graph
+     */
+    public WGraph_Algo(WGraph_Versions versions) {
+        init(versions);
+    }
+
     /**
      * Empty constructor.
      */
@@ -35,13 +110,36 @@ public class WGraph_Algo implements weighted_graph_algorithms {
 
     /**
      * Init the graph on which this set of algorithms operates on.
-     * init _current_graph to point on g
+     * init _current_graph to point on g, and drop the snapshot of the previous graph
      *
      * @param g weighted_graph
      */
     @Override
     public void init(weighted_graph g) {
+        dropConnectivity();
         _current_graph = g;
+        _versions = null;
+        _snapshot = null;
+        _live_work = null;
+        _hierarchy = null;
+    }
+
+    /**
+     * Init a versioned graph on which this set of algorithms operates on.
+     * Every query pins the current version of versions for its length, and runs on that immutable version,
+     * so it never sees a torn graph while the writer changes the source graph.
+     * The nodes in the results of the queries are the nodes of the pinned version.
+     * getGraph() returns the live source graph.
+     *
+     * @param versions versioned snapshots of a live graph
+     */
+    public void init(WGraph_Versions versions) {
+        dropConnectivity();
+        _current_graph = versions.source();
+        _versions = versions;
+        _snapshot = null;
+        _live_work = null;
+        _hierarchy = null;
     }
 
     /**
@@ -57,57 +155,156 @@ public class WGraph_Algo implements weighted_graph_algorithms {
     /**
      * Compute a deep copy of this weighted graph.
      * uses copy constructor in {@link WGraph_DS}.
+     * a versioned graph is copied from its current version.
      *
      * @return a copy of _current_graph
      */
     @Override
     public weighted_graph copy() {
-        return new WGraph_DS(_current_graph);
+        try (WGraph_Versions.Version v = pin()) {
+            return new WGraph_DS(v == null ? _current_graph : v.graph());
+        }
     }
 
     /**
      * Returns true if and only if (iff) there is a valid path from EVERY node to each other node.
-     * This method starts with a specific node that it receives from the iterator and adds it to the queue.
-     * As long as the queue is not empty, a node comes out of the queue,
-     * and the tag of all its unmarked neighbors is marked, and they enter the queue.
-     * Each poll is counted, so if in the end the counter == nodeSize -> the graph connected.
-     * if counter != nodeSize -> the graph disconnected.
+     * While the tracker of {@link #trackConnectivity()} is open, this method runs in O(1) time.
+     * Otherwise this method runs BFS on the snapshot (or the pinned version) of the graph from the first node,
+     * with the query-local scratch of {@link DijkstraEngine} instead of the tags of the nodes
+     * (on a big graph - the parallel BFS of {@link ParallelBFS}).
+     * Each reached node is counted, so if in the end the counter == nodeSize -> the graph connected.
      *
      * @return true if the graph connected, and false if the graph disconnected.
      */
     @Override
     public boolean isConnected() {
-        Iterator<node_info> it = _current_graph.getV().iterator();
-
-        if (!it.hasNext())
-            return true;
-        setTagsToNeg1();
-        node_info n = it.next();
-        n.setTag(0);
-
-        int counter = 0;
-        Queue<node_info> queue = new LinkedList<>();
-        queue.add(n);
-
-        while (!queue.isEmpty()) {
-            node_info current = queue.poll();
-            counter++;
-
-            for (node_info i : _current_graph.getV(current.getKey())) {
-                if (i.getTag() == -1) {
-                    queue.add(i);
-                    i.setTag(0);
-                }
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        graph_metrics metrics = _metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        DynamicConnectivity c = connectivity();
+        if (c != null) {
+            boolean connected = c.isConnected();
+            done(event, metrics, graph_metrics.Query.IS_CONNECTED, "INCREMENTAL", -1, -1, start, 0, 0, 0);
+            return connected;
+        }
+        try (WGraph_Versions.Version v = pin()) {
+            WGraph_CSR snapshot = v == null ? snapshot() : v.graph();
+            boolean connected = true;
+            if (snapshot.nodeSize() >= ParallelBFS.MIN_NODES) {
+                ParallelBFS bfs = new ParallelBFS(snapshot, null);
+                int counter = bfs.reach(0, 0);
+                connected = counter == snapshot.nodeSize();
+                done(event, metrics, graph_metrics.Query.IS_CONNECTED, "PARALLEL_BFS", -1, -1, start,
+                        counter, bfs.scannedCount(), 0);
+            } else if (snapshot.nodeSize() > 0) {
+                DijkstraEngine engine = DijkstraEngine.local();
+                int counter = engine.countReachable(snapshot, 0);
+                connected = counter == snapshot.nodeSize();
+                done(event, metrics, graph_metrics.Query.IS_CONNECTED, "BFS", -1, -1, start,
+                        engine.settledCount(), engine.relaxedCount(), 0);
+            } else {
+                done(event, metrics, graph_metrics.Query.IS_CONNECTED, "BFS", -1, -1, start, 0, 0, 0);
+            }
+            return connected;
+        }
+    }
+
+    /**
+     * Returns the number of the connected components of the graph (0 for an empty graph).
+     * Like isConnected(), while the tracker of {@link #trackConnectivity()} is open this method runs in O(1) time,
+     * otherwise it runs BFS from every node of the snapshot (or the pinned version) that was not reached yet
+     * (on a big graph - the parallel BFS of {@link ParallelBFS}).
+     *
+     * @return the number of the connected components
+     */
+    public int connectedComponents() {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        graph_metrics metrics = _metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        DynamicConnectivity c = connectivity();
+        if (c != null) {
+            int components = c.connectedComponents();
+            done(event, metrics, graph_metrics.Query.CONNECTED_COMPONENTS, "INCREMENTAL", -1, -1, start, 0, 0, 0);
+            return components;
+        }
+        try (WGraph_Versions.Version v = pin()) {
+            WGraph_CSR snapshot = v == null ? snapshot() : v.graph();
+            if (snapshot.nodeSize() >= ParallelBFS.MIN_NODES) {
+                ParallelBFS bfs = new ParallelBFS(snapshot, null);
+                int components = bfs.labelAll();
+                done(event, metrics, graph_metrics.Query.CONNECTED_COMPONENTS, "PARALLEL_BFS", -1, -1, start,
+                        snapshot.nodeSize(), bfs.scannedCount(), 0);
+                return components;
             }
+            DijkstraEngine engine = DijkstraEngine.local();
+            int components = engine.countComponents(snapshot);
+            done(event, metrics, graph_metrics.Query.CONNECTED_COMPONENTS, "BFS", -1, -1, start,
+                    engine.settledCount(), engine.relaxedCount(), 0);
+            return components;
+        }
+    }
+
+    /**
+     * Start following the connected components of the graph as it changes: until the returned tracker is closed,
+     * isConnected() and connectedComponents() run in O(1) time instead of a BFS of the whole graph.
+     * The tracker listens to the graph (so every change of the graph updates it, and removeNode takes the slower
+     * edge by edge path), and belongs to the caller: close it when it is not needed anymore.
+     * init() stops using the tracker, but does not close it.
+     * While a tracker is open, this method returns it again.
+     *
+     * @return the tracker of the graph
+     * @throws IllegalStateException if the graph is not a {@link WGraph_DS}, or it is versioned
+     */
+    public synchronized DynamicConnectivity trackConnectivity() {
+        if (_versions != null || !(_current_graph instanceof WGraph_DS))
+            throw new IllegalStateException("only an unversioned WGraph_DS can be tracked");
+        DynamicConnectivity c = connectivity();
+        if (c == null) {
+            c = new DynamicConnectivity((WGraph_DS) _current_graph);
+            _connectivity = c;
+        }
+        return c;
+    }
+
+    /**
+     * returns the connected component of every key: keys[i] and keys[j] are connected iff they get the same id.
+     * The ids are 0..connectedComponents()-1, numbered in the order of the nodes of the snapshot.
+     * if no such node -> the entry is -1
+     * This method labels all the nodes of the snapshot (or the pinned version) of the graph by the parallel
+     * BFS of {@link ParallelBFS}, from every node that was not reached yet.
+     *
+     * @param keys - the nodes
+     * @return the component ids, in the order of the keys
+     */
+    public int[] connectedComponents(int[] keys) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        graph_metrics metrics = _metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        try (WGraph_Versions.Version v = pin()) {
+            WGraph_CSR snapshot = v == null ? snapshot() : v.graph();
+            int[] labels = new int[snapshot.nodeSize()];
+            ParallelBFS bfs = new ParallelBFS(snapshot, labels);
+            bfs.labelAll();
+            int[] ids = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                int k = snapshot.indexOf(keys[i]);
+                ids[i] = k < 0 ? -1 : labels[k];
+            }
+            done(event, metrics, graph_metrics.Query.CONNECTED_COMPONENTS, "PARALLEL_BFS", -1, -1, start,
+                    snapshot.nodeSize(), bfs.scannedCount(), 0);
+            return ids;
         }
-        return counter == _current_graph.nodeSize();
     }
 
     /**
      * returns the length of the shortest path between src to dest
      * if no such path -> returns -1
-     * This method uses dijkstraAlgo that gives every node the shortest distance from dest on tag,
-     * so by taking the tag of dest node we get the result.
+     * This method runs the search of the current {@link Mode} on the snapshot (or the pinned version) of the graph
+     * until dest is reached, and returns the distance it found for dest.
+     * Right after a change of the graph, it runs dijkstra on the live graph instead, see {@link LiveDijkstra}.
      *
      * @param src  - start node
      * @param dest - end (target) node
@@ -115,23 +312,23 @@ public class WGraph_Algo implements weighted_graph_algorithms {
      */
     @Override
     public double shortestPathDist(int src, int dest) {
-        node_info start = this._current_graph.getNode(src);
-        node_info end = this._current_graph.getNode(dest);
-
-        if (start == null || end == null)
-            return -1;
-
-        dijkstraAlgo(start, end);
-        return end.getTag();
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        graph_metrics metrics = _metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        Mode mode = _mode;
+        double dist = dist(mode, src, dest);
+        donePath(event, metrics, graph_metrics.Query.SHORTEST_PATH_DIST, mode.name(), src, dest, start);
+        return dist;
     }
 
     /**
      * returns the the shortest path between src to dest - as an ordered List of nodes:
      * src--> n1-->n2-->...dest
      * if no such path -> returns null
-     * This method uses dijkstraAlgo that return {@link TempNode} of the dest node.
-     * To restore the path, the method push to the list the node corresponding to the previous {@link TempNode}
-     * until we get the src node.
+     * This method runs the search of the current {@link Mode} on the snapshot (or the pinned version) of the graph
+     * until dest is reached, and restores the path by the prev indices of the search.
+     * Right after a change of the graph, it runs dijkstra on the live graph instead, see {@link LiveDijkstra}.
      *
      * @param src  - start node
      * @param dest - end (target) node
@@ -139,32 +336,361 @@ public class WGraph_Algo implements weighted_graph_algorithms {
      */
     @Override
     public List<node_info> shortestPath(int src, int dest) {
-        node_info start = this._current_graph.getNode(src);
-        node_info end = this._current_graph.getNode(dest);
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        graph_metrics metrics = _metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        Mode mode = _mode;
+        List<node_info> path = path(mode, src, dest);
+        donePath(event, metrics, graph_metrics.Query.SHORTEST_PATH, mode.name(), src, dest, start);
+        return path;
+    }
 
-        if (start == null || end == null)
-            return null;
+    /**
+     * returns the shortest path tree of src: the distances from src to all the nodes, and the paths to them.
+     * This method runs dijkstra once from src to all the nodes of the snapshot (or the pinned version) of the graph,
+     * whatever the {@link Mode} is. With a cache (see {@link #setCache(PathCache)}) the tree is cached, and a cached
+     * tree is returned as is.
+     * if src is not in the graph -> returns null
+     *
+     * @param src - start node
+     * @return the tree of src, see {@link ShortestPathTree}
+     */
+    @Override
+    public ShortestPathTree shortestPathTree(int src) {
+        return shortestPathTree(src, Double.POSITIVE_INFINITY, Integer.MAX_VALUE);
+    }
 
-        TempNode curr = dijkstraAlgo(start, end);
+    /**
+     * returns the shortest path tree of src, cut off by distance and by size:
+     * dijkstra stops before it settles a node farther than max_dist, or after it settled max_settled nodes
+     * (e.g. the nodes within a radius, or the k nearest nodes). The nodes that were not settled are not in the tree.
+     * A tree that was not cut off is complete, and is cached like in {@link #shortestPathTree(int)}.
+     * if src is not in the graph -> returns null
+     *
+     * @param src         - start node
+     * @param max_dist    - the largest distance in the tree (infinity for no cut-off)
+     * @param max_settled - the largest number of nodes in the tree, src included (Integer.MAX_VALUE for no cut-off)
+     * @return the tree of src, see {@link ShortestPathTree}
+     * @throws IllegalArgumentException if max_dist is negative (or NaN), or max_settled is less than 1
+     */
+    public ShortestPathTree shortestPathTree(int src, double max_dist, int max_settled) {
+        if (!(max_dist >= 0) || max_settled < 1)
+            throw new IllegalArgumentException("max_dist must be >= 0 and max_settled >= 1");
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        graph_metrics metrics = _metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        ShortestPathTree tree = tree(src, max_dist, max_settled);
+        donePath(event, metrics, graph_metrics.Query.SHORTEST_PATH_TREE, Mode.DIJKSTRA.name(), src, -1, start);
+        return tree;
+    }
 
-        if (end.getTag() == -1 || curr == null)
-            return null;
+    /**
+     * returns the shortest path tree of src, like {@link #shortestPathTree(int)}, computed by parallel delta-stepping:
+     * the nodes are kept in buckets of distance ranges of width delta, and the nodes of a bucket relax their arcs in parallel
+     * on the common {@link java.util.concurrent.ForkJoinPool}, see {@link DeltaStepping}. Delta is chosen by the weights
+     * of the graph. This uses all the cores for a single huge run, but does more work than dijkstra in total,
+     * so it pays off only on big graphs with enough nodes in a bucket.
+     * With a cache (see {@link #setCache(PathCache)}) the tree is cached like the tree of dijkstra.
+     * if src is not in the graph -> returns null
+     *
+     * @param src - start node
+     * @return the tree of src, see {@link ShortestPathTree}
+     */
+    public ShortestPathTree parallelShortestPathTree(int src) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        graph_metrics metrics = _metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        ShortestPathTree tree = parallelTree(src);
+        donePath(event, metrics, graph_metrics.Query.SHORTEST_PATH_TREE, "DELTA_STEPPING", src, -1, start);
+        return tree;
+    }
+
+    /**
+     * Visit the nodes within distance radius from src (src included), in increasing order of distance.
+     * Same as nearest(src, radius, Integer.MAX_VALUE, null, visitor).
+     *
+     * @param src     - start node
+     * @param radius  - the largest distance of a visited node
+     * @param visitor - receives the nodes and their distances, may stop the search by returning false
+     * @return the number of visited nodes
+     * @see #nearest(int, double, int, Predicate, distance_visitor)
+     */
+    public int withinDistance(int src, double radius, distance_visitor visitor) {
+        return nearest(src, radius, Integer.MAX_VALUE, null, visitor);
+    }
+
+    /**
+     * Visit the k nearest nodes to src whose info matches info (src included, if it matches), in increasing order of distance.
+     * Same as nearest(src, infinity, k, info, visitor).
+     *
+     * @param src     - start node
+     * @param k       - the largest number of visited nodes
+     * @param info    - selects the nodes by their info, null for all the nodes
+     * @param visitor - receives the nodes and their distances, may stop the search by returning false
+     * @return the number of visited nodes
+     * @see #nearest(int, double, int, Predicate, distance_visitor)
+     */
+    public int nearest(int src, int k, Predicate<String> info, distance_visitor visitor) {
+        return nearest(src, Double.POSITIVE_INFINITY, k, info, visitor);
+    }
+
+    /**
+     * Visit the nearest nodes to src: every node within distance max_dist from src whose info matches info,
+     * in increasing order of distance, until k nodes were visited (src is the first node, if it matches).
+     * This method runs dijkstra from src on the snapshot (or the pinned version) of the graph, whatever the
+     * {@link Mode} is, and passes every matching node to the visitor as soon as it is settled. The search stops
+     * before it settles a node farther than max_dist, after the k-th match, or when the visitor returns false,
+     * so it costs time proportional to the ball around src it explored, not to the graph.
+     * The visitor may run other queries (and change the graph - the search goes on over the snapshot it started on).
+     * if src is not in the graph -> visits nothing and returns 0
+     *
+     * @param src      - start node
+     * @param max_dist - the largest distance of a visited node (infinity for no cut-off)
+     * @param k        - the largest number of visited nodes (Integer.MAX_VALUE for no cut-off)
+     * @param info     - selects the nodes by their info (see {@link node_info#getInfo()}), null for all the nodes
+     * @param visitor  - receives the nodes and their distances, may stop the search by returning false
+     * @return the number of visited nodes
+     * @throws IllegalArgumentException if max_dist is negative (or NaN), or k is less than 1
+     */
+    public int nearest(int src, double max_dist, int k, Predicate<String> info, distance_visitor visitor) {
+        if (!(max_dist >= 0) || k < 1)
+            throw new IllegalArgumentException("max_dist must be >= 0 and k >= 1");
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        graph_metrics metrics = _metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        int visited = visitNearest(src, max_dist, k, info, visitor);
+        donePath(event, metrics, graph_metrics.Query.NEAREST, Mode.DIJKSTRA.name(), src, -1, start);
+        return visited;
+    }
+
+    /**
+     * Select the search used by shortestPath and shortestPathDist.
+     *
+     * @param mode the search mode
+     */
+    public void setMode(Mode mode) {
+        _mode = mode;
+    }
+
+    /**
+     * @return the search mode of shortestPath and shortestPathDist
+     */
+    public Mode getMode() {
+        return _mode;
+    }
+
+    /**
+     * Set the heuristic of the {@link Mode#A_STAR} mode, see {@link CoordinateHeuristic} and {@link LandmarkHeuristic}.
+     * Without a heuristic, or with a heuristic that does not describe the current graph
+     * (see {@link path_heuristic#describes(WGraph_CSR)}), A* is plain dijkstra.
+     *
+     * @param h consistent heuristic over the keys of the nodes, or null
+     */
+    public void setHeuristic(path_heuristic h) {
+        _heuristic = h;
+    }
+
+    /**
+     * @return the heuristic of the {@link Mode#A_STAR} mode, null if none
+     */
+    public path_heuristic getHeuristic() {
+        return _heuristic;
+    }
+
+    /**
+     * Set the cache of the results of shortestPath and shortestPathDist (the batch shortestPathDists is not cached).
+     * The cache follows the snapshot of the graph, so it is dropped after every change of the graph.
+     * One cache should serve one WGraph_Algo (and one version of a versioned graph at a time).
+     *
+     * @param cache the cache, or null for no cache
+     */
+    public void setCache(PathCache cache) {
+        _cache = cache;
+    }
+
+    /**
+     * @return the cache of shortestPath and shortestPathDist, null if none
+     */
+    public PathCache getCache() {
+        return _cache;
+    }
+
+    /**
+     * Return the {@link ContractionHierarchy} of the graph, used by the {@link Mode#CONTRACTION_HIERARCHY} mode.
+     * The hierarchy is built on the first call, and built again only after the graph was changed
+     * (a versioned graph is described by its current version).
+     * The preprocessing is slow - call it once after the graph was built, and before the queries.
+     *
+     * @return the hierarchy of the current graph
+     */
+    public ContractionHierarchy getHierarchy() {
+        try (WGraph_Versions.Version v = pin()) {
+            return hierarchy(v == null ? snapshot() : v.graph());
+        }
+    }
+
+    /**
+     * Set the sink of the metrics of the queries of this object.
+     * By default it is {@link GraphMetrics#global()} if the JVM runs with -Dwgraph.metrics=true, otherwise null.
+     *
+     * @param metrics the metrics, or null to stop measuring the queries
+     */
+    public void setMetrics(graph_metrics metrics) {
+        _metrics = metrics;
+    }
+
+    /**
+     * @return the sink of the metrics of the queries, null if none
+     */
+    public graph_metrics getMetrics() {
+        return _metrics;
+    }
+
+    /**
+     * @return the number of nodes settled by the last shortestPath, shortestPathDist, shortestPathTree (or parallelShortestPathTree) or nearest query of the calling thread
+     */
+    public int lastSettledCount() {
+        return (int) LAST_WORK.get()[0];
+    }
+
+    /**
+     * @return the number of nodes settled by all the shortestPath, shortestPathDist, shortestPathTree and nearest queries of this object
+     */
+    public long totalSettledCount() {
+        return _total_settled.sum();
+    }
 
-        LinkedList<node_info> path = new LinkedList<>();
+    /**
+     * returns the lengths of the shortest paths between srcs[i] to dests[i], for every i
+     * if no such path (or no such node) -> the entry is -1
+     * The queries are converted to dense indices of the snapshot and sorted by source (packed into longs),
+     * so the queries of every source form one group. Each group runs dijkstra once, until all its targets
+     * were reached. The groups run in parallel on the common {@link java.util.concurrent.ForkJoinPool},
+     * each worker thread with its own {@link DijkstraEngine}.
+     *
+     * @param srcs  - start nodes
+     * @param dests - end (target) nodes
+     * @return the distances, in the order of the queries
+     * @throws IllegalArgumentException if srcs and dests are not of the same length
+     */
+    @Override
+    public double[] shortestPathDists(int[] srcs, int[] dests) {
+        if (srcs.length != dests.length)
+            throw new IllegalArgumentException("srcs and dests must be of the same length");
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        graph_metrics metrics = _metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        LongAdder settled = new LongAdder(), relaxed = new LongAdder(), heap_ops = new LongAdder();
+        double[] res = new double[srcs.length];
+        try (WGraph_Versions.Version v = pin()) {
+            WGraph_CSR snapshot = v == null ? snapshot() : v.graph();
+            int n = 0;
+            long[] order = new long[srcs.length];
+            int[] targets = new int[srcs.length];
+            for (int i = 0; i < srcs.length; i++) {
+                int s = snapshot.indexOf(srcs[i]);
+                int d = snapshot.indexOf(dests[i]);
+                res[i] = -1;
+                if (s >= 0 && d >= 0)
+                    order[n++] = (long) s << 32 | i;
+            }
+            Arrays.sort(order, 0, n);
 
-        while (curr.getPrev() != null) {
-            path.push(curr.getN());
-            curr = curr.getPrev();
+            int groups = 0;
+            int[] starts = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                targets[i] = snapshot.indexOf(dests[(int) order[i]]);
+                if (i == 0 || order[i] >>> 32 != order[i - 1] >>> 32)
+                    starts[groups++] = i;
+            }
+            starts[groups] = n;
+
+            int[] bounds = starts;
+            IntStream.range(0, groups).parallel().forEach(gr -> {
+                int from = bounds[gr], to = bounds[gr + 1];
+                int src = (int) (order[from] >>> 32);
+                DijkstraEngine engine = DijkstraEngine.local();
+                engine.run(snapshot, src, targets, from, to);
+                for (int i = from; i < to; i++) {
+                    double d = engine.dist(targets[i]);
+                    res[(int) order[i]] = d == Double.POSITIVE_INFINITY ? -1 : d;
+                }
+                settled.add(engine.settledCount());
+                relaxed.add(engine.relaxedCount());
+                heap_ops.add(engine.heapOps());
+            });
         }
-        path.push(curr.getN());
-        return path;
+        done(event, metrics, graph_metrics.Query.SHORTEST_PATH_DISTS, Mode.DIJKSTRA.name(), -1, -1, start,
+                settled.sum(), relaxed.sum(), heap_ops.sum());
+        return res;
     }
 
+    /**
+     * returns the matrix of the lengths of the shortest paths from every node of srcs to every node of dests,
+     * flat in row-major order: the entry of srcs[r] and dests[c] is at r * dests.length + c
+     * if no such path (or no such node) -> the entry is -1
+     * see {@link #distanceMatrix(int[], int[], double[])}.
+     *
+     * @param srcs  - start nodes (the rows)
+     * @param dests - end (target) nodes (the columns)
+     * @return the distances, srcs.length * dests.length entries
+     */
+    @Override
+    public double[] distanceMatrix(int[] srcs, int[] dests) {
+        double[] out = new double[Math.multiplyExact(srcs.length, dests.length)];
+        distanceMatrix(srcs, dests, out);
+        return out;
+    }
+
+    /**
+     * Compute the matrix of the lengths of the shortest paths from every node of srcs to every node of dests
+     * into out, flat in row-major order (so a caller can reuse one array for many matrices).
+     * The nodes are converted to dense indices of the snapshot once. Every row runs dijkstra once, until all the
+     * targets were settled, and the rows run in parallel on the common {@link java.util.concurrent.ForkJoinPool}.
+     * On a small dense graph, when the rows would cost more than all the pairs,
+     * the matrix is taken from a blocked Floyd-Warshall instead, see {@link DistanceMatrix}.
+     * The matrix does not depend on the {@link Mode}, and is not cached.
+     *
+     * @param srcs  - start nodes (the rows)
+     * @param dests - end (target) nodes (the columns)
+     * @param out   - the matrix, at least srcs.length * dests.length long
+     * @throws IllegalArgumentException if out is too short
+     */
+    public void distanceMatrix(int[] srcs, int[] dests, double[] out) {
+        if ((long) srcs.length * dests.length > out.length)
+            throw new IllegalArgumentException("out is shorter than srcs.length * dests.length");
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        graph_metrics metrics = _metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        long[] work;
+        try (WGraph_Versions.Version v = pin()) {
+            WGraph_CSR snapshot = v == null ? snapshot() : v.graph();
+            int[] rows = new int[srcs.length];
+            int[] cols = new int[dests.length];
+            for (int r = 0; r < rows.length; r++)
+                rows[r] = snapshot.indexOf(srcs[r]);
+            for (int c = 0; c < cols.length; c++)
+                cols[c] = snapshot.indexOf(dests[c]);
+            work = DistanceMatrix.compute(snapshot, rows, cols, out);
+        }
+        if (work == null)
+            done(event, metrics, graph_metrics.Query.DISTANCE_MATRIX, "FLOYD_WARSHALL", -1, -1, start, 0, 0, 0);
+        else
+            done(event, metrics, graph_metrics.Query.DISTANCE_MATRIX, Mode.DIJKSTRA.name(), -1, -1, start, work[0], work[1], work[2]);
+    }
 
     /**
      * Saves this weighted (undirected) graph to the give file name
-     * this method uses {@link ObjectInputStream} and {@link FileInputStream},
-     * and that possible because {@link WGraph_DS} and NodeInfo implements {@link Serializable}
+     * this method uses the compact binary format of {@link WGraph_File}, written through a {@link FileOutputStream}.
+     * If a {@link ContractionHierarchy} was built for the current graph, it is saved next to it,
+     * to the file name + ".ch" (with the node count, edge count and mode count of the graph), so loading the graph does not repeat
+     * the preprocessing. Otherwise an old file name + ".ch" is deleted, so it is never loaded with another graph.
      *
      * @param file the file name (may include a relative path).
      * @return true - iff the file was successfully saved
@@ -172,12 +698,33 @@ public class WGraph_Algo implements weighted_graph_algorithms {
     @Override
     public boolean save(String file) {
         boolean isSaved = false;
-        ObjectOutputStream oos;
+        try (OutputStream out = new FileOutputStream(file, false)) {
+            WGraph_File.write(_current_graph, out);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        try {
+            isSaved = saveHierarchy(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return isSaved;
+    }
+
+    /**
+     * Saves this weighted (undirected) graph to the given file name, in the memory mapped layout of {@link WGraph_Mapped}.
+     * Loading such a file maps it instead of reading it, so the startup is near instant and the graph is
+     * not copied into the heap. A {@link ContractionHierarchy} is saved next to it, like in {@link #save(String)}.
+     *
+     * @param file the file name (may include a relative path).
+     * @return true - iff the file was successfully saved
+     */
+    public boolean saveMapped(String file) {
+        boolean isSaved = false;
         try {
-            FileOutputStream fos = new FileOutputStream(file, false);
-            oos = new ObjectOutputStream(fos);
-            oos.writeObject(_current_graph);
-            isSaved = true;
+            WGraph_Mapped.write(_current_graph, file);
+            isSaved = saveHierarchy(file);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -189,7 +736,14 @@ public class WGraph_Algo implements weighted_graph_algorithms {
      * if the file was successfully loaded - the underlying graph
      * of this class will be changed (to the loaded one), in case the
      * graph was not loaded the original graph should remain "as is".
-     * this method uses {@link FileInputStream} and {@link ObjectInputStream}
+     * this method reads the binary format of {@link WGraph_File} through a {@link FileInputStream},
+     * and files saved by older versions with {@link ObjectOutputStream} through {@link ObjectInputStream}
+     * (recognized by the magic number of java serialization).
+     * A file saved by {@link #saveMapped(String)} is not read at all - it is memory mapped as a {@link WGraph_Mapped}.
+     * If there is a saved {@link ContractionHierarchy} next to the file (file name + ".ch") that was saved for a graph
+     * with the node count, edge count and mode count of the loaded graph, it is loaded too, and used as long as it
+     * describes the loaded graph (see {@link ContractionHierarchy#describes(WGraph_CSR)}, that also checks the weights).
+     * The graph file is not read again for this, so a mapped graph still loads in near constant time.
      *
      * @param file - file name
      * @return true - iff the graph was successfully loaded.
@@ -197,10 +751,19 @@ public class WGraph_Algo implements weighted_graph_algorithms {
     @Override
     public boolean load(String file) {
         boolean isLoaded = false;
-        try {
-            FileInputStream fis = new FileInputStream(file);
-            ObjectInputStream ois = new ObjectInputStream(fis);
-            init((weighted_graph) ois.readObject());
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            in.mark(4);
+            byte[] magic = new byte[4];
+            int read = in.read(magic);
+            in.reset();
+            if (read == 4 && magic[0] == 'W' && magic[1] == 'G' && magic[2] == 'R' && magic[3] == 'M')
+                init(WGraph_Mapped.open(file));
+            else if (read >= 2 && magic[0] == (byte) 0xAC && magic[1] == (byte) 0xED)
+                init((weighted_graph) new ObjectInputStream(in).readObject());
+            else
+                init(WGraph_File.read(in));
+            if (new File(file + HIERARCHY_SUFFIX).isFile())
+                _hierarchy = ContractionHierarchy.load(file + HIERARCHY_SUFFIX, stamp(_current_graph));
             isLoaded = true;
         } catch (IOException | ClassNotFoundException e) {
             e.printStackTrace();
@@ -218,115 +781,457 @@ public class WGraph_Algo implements weighted_graph_algorithms {
     ////////////////////// Private /////////////////////
 
     /**
-     * Inner private class.
-     * Used for dijkstraAlgo, because it is required to hold several identical nodes
-     * that came from different node, and with different distance from the sources.
-     * {@link TempNode} contains NodeInfo, the previous {@link TempNode} that represent the previous node,
-     * and the current distance from the source node.
-     * This class implements Comparable<TempNode>, for dijkstraAlgo can uses {@link PriorityQueue}.
+     * The body of shortestPathDist, by the search of mode (the mode is read once per query, so a concurrent
+     * setMode never mixes two searches in one query).
+     *
+     * @return the distance from src to dest, -1 if there is no path
      */
-    private static class TempNode implements Comparable<TempNode> {
-        private final node_info _n;
-        private final double _dist;
-        private final TempNode _prev;
+    private double dist(Mode mode, int src, int dest) {
+        try (WGraph_Versions.Version v = pin()) {
+            WGraph_CSR snapshot = v == null ? pointSnapshot(mode) : v.graph();
+            if (snapshot == null) {
+                LiveDijkstra live = liveSearch(src, dest);
+                double dist = live == null ? Double.POSITIVE_INFINITY : live.dist(dest);
+                return dist == Double.POSITIVE_INFINITY ? -1 : dist;
+            }
+            int s = snapshot.indexOf(src);
+            int d = snapshot.indexOf(dest);
 
-        /**
-         * Constructor.
-         * init _dist by the Tag of the current NodeInfo
-         *
-         * @param n    the current node_info
-         * @param prev the previous TempNode
-         */
-        public TempNode(node_info n, TempNode prev) {
-            this._n = n;
-            this._dist = n.getTag();
-            this._prev = prev;
+            if (s < 0 || d < 0) {
+                lastWork(0, 0, 0);
+                return -1;
+            }
+            PathCache cache = _cache;
+            double dist = cache == null ? search(mode, snapshot, s, d) : cachedDist(mode, cache, snapshot, s, d);
+            return dist == Double.POSITIVE_INFINITY ? -1 : dist;
         }
+    }
 
-        /**
-         * compare this {@link TempNode} to o by _dist, according to the natural order for {@link Double}
-         *
-         * @param o TempNode
-         * @return 1 -> (_dist > o._dist); -1 -> (_dist < o._dist); 0 -> (_dist == o._dist)
-         */
-        @Override
-        public int compareTo(TempNode o) {
-            return Double.compare(_dist, o._dist);
+    /**
+     * The body of shortestPath, by the search of mode, like dist - the path is restored from the search of the same mode.
+     *
+     * @return the nodes of the path from src to dest, null if there is no path
+     */
+    private List<node_info> path(Mode mode, int src, int dest) {
+        try (WGraph_Versions.Version v = pin()) {
+            WGraph_CSR snapshot = v == null ? pointSnapshot(mode) : v.graph();
+            if (snapshot == null) {
+                LiveDijkstra live = liveSearch(src, dest);
+                if (live == null || live.dist(dest) == Double.POSITIVE_INFINITY)
+                    return null;
+                List<node_info> nodes = new ArrayList<>();
+                for (int key : live.path(dest))
+                    nodes.add(_current_graph.getNode(key));
+                return nodes;
+            }
+            int s = snapshot.indexOf(src);
+            int d = snapshot.indexOf(dest);
+
+            if (s < 0 || d < 0) {
+                lastWork(0, 0, 0);
+                return null;
+            }
+            PathCache cache = _cache;
+            int[] path;
+            if (cache != null)
+                path = cachedPath(mode, cache, snapshot, s, d);
+            else
+                path = search(mode, snapshot, s, d) == Double.POSITIVE_INFINITY ? null : lastPath(mode, d);
+            if (path == null)
+                return null;
+            List<node_info> nodes = new ArrayList<>(path.length);
+            for (int i : path)
+                nodes.add(v == null ? _current_graph.getNode(snapshot.keyAt(i)) : snapshot.nodeAt(i));
+            return nodes;
         }
+    }
 
-        /**
-         * get the current NodeInfo
-         *
-         * @return node_info
-         */
-        public node_info getN() {
-            return _n;
+
+    /**
+     * The body of shortestPathTree.
+     *
+     * @return the tree of src, null if src is not in the graph
+     */
+    private ShortestPathTree tree(int src, double max_dist, int max_settled) {
+        try (WGraph_Versions.Version v = pin()) {
+            WGraph_CSR snapshot = v == null ? snapshot() : v.graph();
+            int s = snapshot.indexOf(src);
+            if (s < 0) {
+                lastWork(0, 0, 0);
+                return null;
+            }
+            PathCache cache = _cache;
+            if (cache != null && max_dist == Double.POSITIVE_INFINITY && max_settled == Integer.MAX_VALUE) {
+                ShortestPathTree tree = cache.tree(snapshot, s);
+                if (tree != null) {
+                    lastWork(0, 0, 0);
+                    return tree;
+                }
+            }
+            ShortestPathTree tree = searchTree(snapshot, s, max_dist, max_settled);
+            if (cache != null && tree.isComplete() && cache.fits(snapshot))
+                cache.putTree(snapshot, s, tree);
+            return tree;
         }
+    }
 
-        /**
-         * get the previous {@link TempNode}
-         *
-         * @return TempNode
-         */
-        public TempNode getPrev() {
-            return _prev;
+    /**
+     * The body of parallelShortestPathTree.
+     *
+     * @return the tree of src, null if src is not in the graph
+     */
+    private ShortestPathTree parallelTree(int src) {
+        try (WGraph_Versions.Version v = pin()) {
+            WGraph_CSR snapshot = v == null ? snapshot() : v.graph();
+            int s = snapshot.indexOf(src);
+            if (s < 0) {
+                lastWork(0, 0, 0);
+                return null;
+            }
+            PathCache cache = _cache;
+            ShortestPathTree tree = cache == null ? null : cache.tree(snapshot, s);
+            if (tree != null) {
+                lastWork(0, 0, 0);
+                return tree;
+            }
+            DeltaStepping ds = new DeltaStepping(snapshot, DeltaStepping.delta(snapshot));
+            int[] prev = new int[snapshot.nodeSize()];
+            tree = new ShortestPathTree(snapshot, s, ds.run(s, prev), prev);
+            lastWork(ds.settledCount(), ds.relaxedCount(), ds.bucketInserts());
+            _total_settled.add(ds.settledCount());
+            if (cache != null && cache.fits(snapshot))
+                cache.putTree(snapshot, s, tree);
+            return tree;
         }
+    }
 
+    /**
+     * The body of nearest.
+     * The engine is borrowed for the search, so a query of the visitor does not overwrite it.
+     *
+     * @return the number of visited nodes
+     */
+    private int visitNearest(int src, double max_dist, int k, Predicate<String> info, distance_visitor visitor) {
+        try (WGraph_Versions.Version v = pin()) {
+            WGraph_CSR snapshot = v == null ? snapshot() : v.graph();
+            int s = snapshot.indexOf(src);
+            if (s < 0) {
+                lastWork(0, 0, 0);
+                return 0;
+            }
+            DijkstraEngine engine = DijkstraEngine.borrow();
+            int visited = 0;
+            try {
+                engine.start(snapshot, s);
+                while (visited < k && !engine.isDone() && engine.peekDist() <= max_dist) {
+                    int i = engine.settleNext(snapshot);
+                    node_info n = v == null ? _current_graph.getNode(snapshot.keyAt(i)) : snapshot.nodeAt(i);
+                    if (n == null || (info != null && !info.test(n.getInfo())))
+                        continue;
+                    visited++;
+                    if (!visitor.visit(n, engine.dist(i)))
+                        break;
+                }
+            } finally {
+                DijkstraEngine.giveBack(engine);
+            }
+            lastWork(engine.settledCount(), engine.relaxedCount(), engine.heapOps());
+            _total_settled.add(engine.settledCount());
+            return visited;
+        }
     }
 
     /**
-     * Implementation for dijkstra algorithm.
-     * The algorithm uses {@link PriorityQueue} to save the next nodes it needs to visit,
-     * and {@link HashSet} to know which nodes it has already visited.
-     * At first srs enters the queue. In each iteration it passes through all the neighbors of the current node
-     * that not visited and if the neighbor's distance from the src is smaller than it was before,
-     * it is updated the tag and enters the queue, when curr is marked as prev of this node.
-     * The queue contains {@link TempNode} objects to allow the insertion of identical nodes
-     * that came from different sources and with different distances.
-     * The algorithm stops when it reaches dest,
-     * or if it finishes going through everything and does not find dest, then returns null.
+     * Save the hierarchy of the graph next to file, if it describes the graph, and delete an old one otherwise.
      *
-     * @param src  source node_info
-     * @param dest destination node_info
-     * @return TempNode contains dest node, or null if there no path.
+     * @return true iff there is no hierarchy to save, or it was saved
      */
-    private TempNode dijkstraAlgo(node_info src, node_info dest) {
-        setTagsToNeg1();
+    private boolean saveHierarchy(String file) throws IOException {
+        String sidecar = file + HIERARCHY_SUFFIX;
+        Files.deleteIfExists(Paths.get(sidecar));
+        ContractionHierarchy h = _hierarchy;
+        return h == null || !h.describes(snapshot()) || h.save(sidecar, stamp(_current_graph));
+    }
 
-        PriorityQueue<TempNode> queue = new PriorityQueue<>();
-        HashSet<Integer> visited = new HashSet<>();
+    /**
+     * @return the node count, edge count and mode count of g, packed into one long - a cheap key of the hierarchy
+     * file, that is read from the header of the graph file (the hierarchy checks the rest in describes())
+     */
+    private static long stamp(weighted_graph g) {
+        long h = g.nodeSize();
+        h = h * 0x9E3779B97F4A7C15L + g.edgeSize();
+        return h * 0x9E3779B97F4A7C15L + g.getMC();
+    }
 
-        queue.add(new TempNode(src, null));
-        src.setTag(0);
+    /**
+     * Report a path query that started at start (if metrics is not null) to metrics and to its event,
+     * with the work of the last path query of the calling thread.
+     */
+    private static void donePath(QueryEvent event, graph_metrics metrics, graph_metrics.Query q, String mode, int src, int dest,
+                                 long start) {
+        if (metrics == null && !event.shouldCommit())
+            return;
+        long[] work = LAST_WORK.get();
+        done(event, metrics, q, mode, src, dest, start, work[0], work[1], work[2]);
+    }
 
-        while (!queue.isEmpty()) {
-            TempNode curr = queue.poll();
+    /**
+     * Report a query that started at start (if metrics is not null) to metrics, and commit its event
+     * if JFR records it.
+     */
+    private static void done(QueryEvent event, graph_metrics metrics, graph_metrics.Query q, String mode, int src, int dest,
+                             long start, long settled, long relaxed, long heap_ops) {
+        if (metrics != null)
+            metrics.query(q, System.nanoTime() - start, settled, relaxed, heap_ops);
+        if (event.shouldCommit()) {
+            event.query = q.name();
+            event.mode = mode;
+            event.src = src;
+            event.dest = dest;
+            event.settled = settled;
+            event.relaxed = relaxed;
+            event.heapOps = heap_ops;
+            event.commit();
+        }
+    }
 
-            if (!visited.contains(curr.getN().getKey())) {
-                visited.add(curr.getN().getKey());
+    /**
+     * Keep the work of the last path query of the calling thread.
+     */
+    private static void lastWork(long settled, long relaxed, long heap_ops) {
+        long[] work = LAST_WORK.get();
+        work[0] = settled;
+        work[1] = relaxed;
+        work[2] = heap_ops;
+    }
 
-                if (curr.getN().getKey() == dest.getKey()) {
-                    return curr;
-                }
-                for (node_info n : _current_graph.getV(curr.getN().getKey())) {
-                    if (!visited.contains(n.getKey())) {
-                        double t = curr.getN().getTag() + _current_graph.getEdge(curr.getN().getKey(), n.getKey());
-                        if (n.getTag() == -1 || t <= n.getTag() && n.getTag() != 0) {
-                            n.setTag(t);
-                            queue.add(new TempNode(n, curr));
-                        }
-                    }
-                }
-            }
+    /**
+     * Return an up to date snapshot of _current_graph.
+     * If _current_graph is a {@link WGraph_CSR} it is used as is, otherwise it is frozen into a new snapshot
+     * whenever it was changed since the last snapshot. A change is detected by the mode count and the node count
+     * (removing a node without edges does not change the mode count of {@link WGraph_DS}).
+     * Between changes of the graph, no query allocates a new snapshot.
+     * Many threads may query at once (as long as nobody changes a non-concurrent graph meanwhile):
+     * at worst, each of them freezes its own snapshot after a change.
+     *
+     * @return snapshot of _current_graph
+     */
+    private WGraph_CSR snapshot() {
+        WGraph_CSR snapshot = _snapshot;
+        if (snapshot == null || snapshot.getMC() != _current_graph.getMC()
+                || snapshot.nodeSize() != _current_graph.nodeSize()) {
+            snapshot = WGraph_CSR.of(_current_graph);
+            _snapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Return the snapshot for a shortestPathDist or shortestPath query of mode, or null to run it on the live graph
+     * by {@link LiveDijkstra}.
+     * After a change of the graph, freezing a new snapshot costs O(V+E), more than a local query explores.
+     * So the queries after a change run on the live graph, until the work they did on this version of the graph
+     * (settled nodes and relaxed arcs, times LIVE_COST) adds up to the cost of freezing it, and only then it is frozen -
+     * at most about twice the work of the better of the two in hindsight. A graph that keeps changing between
+     * the queries is not frozen again, a graph that stopped changing is frozen after a few queries.
+     * The live search is dijkstra, whatever the mode (it returns the same distances).
+     * The first snapshot of the graph and the snapshots of the contraction hierarchy are always frozen.
+     *
+     * @return snapshot of _current_graph, null for the live graph
+     */
+    private WGraph_CSR pointSnapshot(Mode mode) {
+        WGraph_CSR snapshot = _snapshot;
+        if (snapshot == null || mode == Mode.CONTRACTION_HIERARCHY || _current_graph instanceof WGraph_CSR)
+            return snapshot();
+        int mc = _current_graph.getMC(), n = _current_graph.nodeSize();
+        if (snapshot.getMC() == mc && snapshot.nodeSize() == n)
+            return snapshot;
+        LiveWork work = _live_work;
+        if (work == null || work._mode_count != mc || work._nodes != n) {
+            work = new LiveWork(mc, n);
+            _live_work = work;
+        }
+        return work._work.sum() * LIVE_COST < n + 2L * _current_graph.edgeSize() ? null : snapshot();
+    }
+
+    /**
+     * Run {@link LiveDijkstra} on _current_graph from src to dest, and count its work.
+     *
+     * @return the search of this thread after the run, null if src or dest is not in the graph
+     */
+    private LiveDijkstra liveSearch(int src, int dest) {
+        if (_current_graph.getNode(src) == null || _current_graph.getNode(dest) == null) {
+            lastWork(0, 0, 0);
+            return null;
+        }
+        LiveDijkstra live = LiveDijkstra.local();
+        live.run(_current_graph, src, dest);
+        lastWork(live.settledCount(), live.relaxedCount(), live.heapOps());
+        _total_settled.add(live.settledCount());
+        LiveWork work = _live_work;
+        if (work != null)
+            work._work.add(live.settledCount() + live.relaxedCount());
+        return live;
+    }
+
+    /**
+     * Run the search of mode on snapshot from s to d, and count the settled nodes.
+     *
+     * @return the distance from s to d, infinity if there is no path
+     */
+    private double search(Mode mode, WGraph_CSR snapshot, int s, int d) {
+        double dist;
+        int settled;
+        if (mode == Mode.BIDIRECTIONAL) {
+            BidirectionalDijkstra bd = BidirectionalDijkstra.local();
+            dist = bd.run(snapshot, s, d);
+            settled = bd.settledCount();
+            lastWork(settled, bd.relaxedCount(), bd.heapOps());
+        } else if (mode == Mode.CONTRACTION_HIERARCHY) {
+            HierarchyQuery q = HierarchyQuery.local();
+            dist = q.run(hierarchy(snapshot), s, d);
+            settled = q.settledCount();
+            lastWork(settled, q.relaxedCount(), q.heapOps());
+        } else {
+            DijkstraEngine engine = DijkstraEngine.local();
+            path_heuristic h = _heuristic;
+            if (mode == Mode.A_STAR && h != null && h.describes(snapshot))
+                engine.runAStar(snapshot, s, d, h);
+            else
+                engine.run(snapshot, s, d);
+            dist = engine.dist(d);
+            settled = engine.settledCount();
+            lastWork(settled, engine.relaxedCount(), engine.heapOps());
         }
-        return null;
+        _total_settled.add(settled);
+        return dist;
     }
 
     /**
-     * Initialize all the tags of the vertices in the graph to -1
+     * The distance from s to d by the cache: a hit settles no node, on a miss the search runs and its result is cached,
+     * or dijkstra runs to all the nodes if the cache asks for the tree of s.
+     *
+     * @return the distance from s to d, infinity if there is no path
+     */
+    private double cachedDist(Mode mode, PathCache cache, WGraph_CSR snapshot, int s, int d) {
+        double dist = cache.dist(snapshot, s, d);
+        if (!Double.isNaN(dist)) {
+            lastWork(0, 0, 0);
+            return dist;
+        }
+        if (cache.promote(snapshot, s))
+            return cachedTree(cache, snapshot, s).distAt(d);
+        dist = search(mode, snapshot, s, d);
+        cache.put(snapshot, s, d, dist, null);
+        return dist;
+    }
+
+    /**
+     * The path from s to d by the cache, like cachedDist.
+     *
+     * @return dense indices of the path, null if there is no path
+     */
+    private int[] cachedPath(Mode mode, PathCache cache, WGraph_CSR snapshot, int s, int d) {
+        int[] path = cache.path(snapshot, s, d);
+        if (path != null) {
+            lastWork(0, 0, 0);
+            return path.length == 0 ? null : path;
+        }
+        if (cache.promote(snapshot, s))
+            return cachedTree(cache, snapshot, s).pathAt(d);
+        double dist = search(mode, snapshot, s, d);
+        path = dist == Double.POSITIVE_INFINITY ? null : lastPath(mode, d);
+        cache.put(snapshot, s, d, dist, path);
+        return path;
+    }
+
+    /**
+     * Run dijkstra from s to all the nodes of snapshot, and cache the tree.
+     *
+     * @return the tree of s
+     */
+    private ShortestPathTree cachedTree(PathCache cache, WGraph_CSR snapshot, int s) {
+        ShortestPathTree tree = searchTree(snapshot, s, Double.POSITIVE_INFINITY, Integer.MAX_VALUE);
+        cache.putTree(snapshot, s, tree);
+        return tree;
+    }
+
+    /**
+     * Run dijkstra from s on snapshot, until the cut-offs, and count the settled nodes.
+     *
+     * @return the tree of s
+     */
+    private ShortestPathTree searchTree(WGraph_CSR snapshot, int s, double max_dist, int max_settled) {
+        DijkstraEngine engine = DijkstraEngine.local();
+        boolean complete = engine.runBounded(snapshot, s, max_dist, max_settled);
+        lastWork(engine.settledCount(), engine.relaxedCount(), engine.heapOps());
+        _total_settled.add(engine.settledCount());
+        return new ShortestPathTree(snapshot, s, engine, complete);
+    }
+
+    /**
+     * Restore the path to d from the last search of mode (on this thread).
+     *
+     * @return dense indices of the path, from the source to d
+     */
+    private int[] lastPath(Mode mode, int d) {
+        return mode == Mode.BIDIRECTIONAL ? BidirectionalDijkstra.local().path()
+                : mode == Mode.CONTRACTION_HIERARCHY ? HierarchyQuery.local().path()
+                : prevPath(DijkstraEngine.local(), d);
+    }
+
+    /**
+     * Return the hierarchy of snapshot - the current hierarchy if it describes snapshot, otherwise a new one.
+     * Like {@link #snapshot()}, many threads may build it at once after a change.
+     *
+     * @return hierarchy of snapshot
+     */
+    private ContractionHierarchy hierarchy(WGraph_CSR snapshot) {
+        ContractionHierarchy h = _hierarchy;
+        if (h == null || !h.describes(snapshot)) {
+            h = new ContractionHierarchy(snapshot);
+            _hierarchy = h;
+        }
+        return h;
+    }
+
+    /**
+     * Restore the path to d by the prev indices of the last run of engine.
+     *
+     * @return dense indices of the path, from the source to d
+     */
+    private static int[] prevPath(DijkstraEngine engine, int d) {
+        int len = 0;
+        for (int i = d; i != -1; i = engine.prev(i))
+            len++;
+        int[] path = new int[len];
+        for (int i = d; i != -1; i = engine.prev(i))
+            path[--len] = i;
+        return path;
+    }
+
+    /**
+     * @return the tracker of trackConnectivity(), or null if there is none or it was closed
+     */
+    private synchronized DynamicConnectivity connectivity() {
+        if (_connectivity != null && _connectivity.isClosed())
+            _connectivity = null;
+        return _connectivity;
+    }
+
+    /**
+     * Stop using the tracker of trackConnectivity() - it belongs to the caller, who closes it.
+     */
+    private synchronized void dropConnectivity() {
+        _connectivity = null;
+    }
+
+    /**
+     * Pin the current version of a versioned graph.
+     *
+     * @return the pinned version, or null if this object does not work on a versioned graph
      */
-    private void setTagsToNeg1() {
-        for (node_info i : _current_graph.getV())
-            i.setTag(-1);
+    private WGraph_Versions.Version pin() {
+        return _versions == null ? null : _versions.pin();
     }
 }
\ No newline at end of file
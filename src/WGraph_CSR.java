@@ -0,0 +1,488 @@
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * This class represents an immutable snapshot of a weighted graph in compressed-sparse-row (CSR) layout,
+ * implements weighted_graph interface, so {@link WGraph_Algo} runs on it unchanged.
+ * The nodes are held by a dense index 0..n-1, in ascending order of their keys.
+ * The adjacency of the node with index i is the range [_offsets[i], _offsets[i+1]) of _neighbors and _weights,
+ * where _neighbors holds the dense index of the neighbor (sorted ascending in every row),
+ * and _weights holds the weight of that edge. Every undirected edge is stored twice, once in each row.
+ * <p>
+ * Memory budget:
+ * per undirected edge - 2 arcs * (4 bytes neighbor + 8 bytes weight) = 24 bytes.
+ * per node - 4 bytes key + 4 bytes offset + 4-8 bytes of lookup table (none if the keys are contiguous)
+ * + one node_info object (about 32 bytes) and its reference.
+ * For comparison, {@link WGraph_DS} spends about 150 bytes per undirected edge on HashMap entries,
+ * boxed Integer keys and boxed Double weights.
+ * <p>
+ * The structure of the graph can not be changed - addNode, connect, removeNode and removeEdge
+ * throw {@link UnsupportedOperationException}. The info and tag of the nodes can still be changed.
+ * <p>
+ * The public methods read the layout only through the dense index accessors (indexOf, keyAt, nodeAt, arc*),
+ * so a subclass may keep the same layout outside of the heap, see {@link WGraph_Mapped}.
+ *
+ * @author davidfeust
+ */
+public class WGraph_CSR implements weighted_graph, Serializable {
+
+    private final int[] _keys;
+    private final int[] _offsets;
+    private final int[] _neighbors;
+    private final double[] _weights;
+    private final int[] _table;
+    private final int _first_key;
+    private final WGraph_DS.NodeInfo[] _nodes;
+    private final List<node_info> _nodes_view;
+    private final int _edges_size;
+    private final int _mode_count;
+
+    /**
+     * Constructor for {@link WGraph_CSR}.
+     * takes a snapshot of g - copy all the nodes (with their info and tag) and all the edges of g.
+     * the keys are sorted, the rows are sized by counting the neighbors of every node,
+     * and then every node fills its own index into the rows of its neighbors,
+     * in ascending order of index, so every row comes out sorted without extra sort.
+     *
+     * @param g weighted_graph to freeze
+     */
+    public WGraph_CSR(weighted_graph g) {
+        int n = g.nodeSize();
+        _keys = new int[n];
+        int k = 0;
+        for (node_info i : g.getV())
+            _keys[k++] = i.getKey();
+        Arrays.sort(_keys);
+
+        _first_key = n == 0 ? 0 : _keys[0];
+        _table = isContiguous(_keys) ? null : buildTable(_keys);
+
+        _nodes = new WGraph_DS.NodeInfo[n];
+        _offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            _nodes[i] = new WGraph_DS.NodeInfo(g.getNode(_keys[i]));
+            g.forEachNeighbor(_keys[i], (key, w) -> _offsets[indexOf(key) + 1]++);
+        }
+        for (int i = 0; i < n; i++)
+            _offsets[i + 1] += _offsets[i];
+
+        _neighbors = new int[_offsets[n]];
+        _weights = new double[_offsets[n]];
+        int[] fill = Arrays.copyOf(_offsets, n);
+        for (int i = 0; i < n; i++) {
+            int src = i;
+            g.forEachNeighbor(_keys[i], (key, w) -> {
+                int j = indexOf(key);
+                _neighbors[fill[j]] = src;
+                _weights[fill[j]++] = w;
+            });
+        }
+        _nodes_view = Collections.unmodifiableList(Arrays.asList(_nodes));
+        _edges_size = g.edgeSize();
+        _mode_count = g.getMC();
+    }
+
+    /**
+     * Constructor from a ready CSR layout (used by the bulk importers, e.g. {@link WGraph_EdgeList}).
+     * The arrays are used as is, not copied. Every node gets the default info and tag.
+     *
+     * @param keys       sorted distinct keys
+     * @param offsets    nodes + 1 row offsets
+     * @param neighbors  dense index of the head of every arc, sorted ascending in every row, both directions
+     * @param weights    weight of every arc
+     * @param mode_count Mode Count of the graph
+     */
+    WGraph_CSR(int[] keys, int[] offsets, int[] neighbors, double[] weights, int mode_count) {
+        int n = keys.length;
+        _keys = keys;
+        _first_key = n == 0 ? 0 : keys[0];
+        _table = isContiguous(keys) ? null : buildTable(keys);
+        _offsets = offsets;
+        _neighbors = neighbors;
+        _weights = weights;
+        _nodes = new WGraph_DS.NodeInfo[n];
+        for (int i = 0; i < n; i++)
+            _nodes[i] = new WGraph_DS.NodeInfo(keys[i]);
+        _nodes_view = Collections.unmodifiableList(Arrays.asList(_nodes));
+        _edges_size = offsets[n] / 2;
+        _mode_count = mode_count;
+    }
+
+    /**
+     * Constructor for subclasses that keep the layout elsewhere, and override the dense index accessors,
+     * nodeSize() and getV().
+     *
+     * @param edges_size number of edges
+     * @param mode_count Mode Count of the graph
+     */
+    WGraph_CSR(int edges_size, int mode_count) {
+        _keys = null;
+        _offsets = null;
+        _neighbors = null;
+        _weights = null;
+        _table = null;
+        _first_key = 0;
+        _nodes = null;
+        _nodes_view = null;
+        _edges_size = edges_size;
+        _mode_count = mode_count;
+    }
+
+    /**
+     * Freeze g into a {@link WGraph_CSR} snapshot.
+     * A {@link WGraph_CSR} is already immutable and is returned as is,
+     * and a {@link WGraph_Concurrent} is frozen under its locks, so the snapshot is consistent
+     * while other threads change the graph.
+     *
+     * @param g weighted_graph
+     * @return snapshot of g
+     */
+    static WGraph_CSR of(weighted_graph g) {
+        if (g instanceof WGraph_CSR)
+            return (WGraph_CSR) g;
+        if (g instanceof WGraph_Concurrent)
+            return ((WGraph_Concurrent) g).freeze();
+        return new WGraph_CSR(g);
+    }
+
+    /**
+     * return the node_data by the node_id.
+     * this method run in O(1) time.
+     *
+     * @param key - the node_id
+     * @return the node_data by the node_id, null if none.
+     */
+    @Override
+    public node_info getNode(int key) {
+        int i = indexOf(key);
+        return i < 0 ? null : nodeAt(i);
+    }
+
+    /**
+     * return true iff (if and only if) there is an edge between node1 and node2
+     * this method run in O(log(k)) time, k - being the degree of node1.
+     * this method binary search node2 in the (sorted) row of node1.
+     *
+     * @param node1 node id of node1
+     * @param node2 node id of node2
+     * @return true iff has edge between node1 and node2
+     */
+    @Override
+    public boolean hasEdge(int node1, int node2) {
+        return arcOf(node1, node2) >= 0;
+    }
+
+    /**
+     * return the weight of the edge (node1, node1).
+     * In case there is no such edge - should return -1
+     * this method run in O(log(k)) time, k - being the degree of node1.
+     *
+     * @param node1 node id of node1
+     * @param node2 node id of node2
+     * @return weight of edge (node1, node2), or -1 if no such edge
+     */
+    @Override
+    public double getEdge(int node1, int node2) {
+        int arc = arcOf(node1, node2);
+        return arc < 0 ? -1 : arcWeight(arc);
+    }
+
+    /**
+     * Not supported - {@link WGraph_CSR} is immutable.
+     *
+     * @param key node id
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void addNode(int key) {
+        throw new UnsupportedOperationException("WGraph_CSR is immutable");
+    }
+
+    /**
+     * Not supported - {@link WGraph_CSR} is immutable.
+     *
+     * @param node1 node id of node1
+     * @param node2 node id of node2
+     * @param w     weight
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void connect(int node1, int node2, double w) {
+        throw new UnsupportedOperationException("WGraph_CSR is immutable");
+    }
+
+    /**
+     * This method return an unmodifiable Collection representing all the nodes in the graph,
+     * in ascending order of their keys.
+     * this method run in O(1) time.
+     *
+     * @return Collection<node_data>
+     */
+    @Override
+    public Collection<node_info> getV() {
+        return _nodes_view;
+    }
+
+    /**
+     * This method returns a Collection containing all the
+     * nodes connected to node_id, in ascending order of their keys.
+     * this method run in O(k) time, k - being the degree of node_id.
+     *
+     * @param node_id the key of the node
+     * @return Collection<node_data>, null if there is no such node
+     */
+    @Override
+    public Collection<node_info> getV(int node_id) {
+        int i = indexOf(node_id);
+        if (i < 0)
+            return null;
+        List<node_info> c = new ArrayList<>(arcEnd(i) - arcStart(i));
+        for (int arc = arcStart(i), end = arcEnd(i); arc < end; arc++)
+            c.add(nodeAt(arcTarget(arc)));
+        return c;
+    }
+
+    /**
+     * Visit all the neighbors of node_id, each one with the weight of the edge to it,
+     * in ascending order of their keys.
+     * this method run in O(k) time, k - being the degree of node_id, and does not allocate.
+     *
+     * @param node_id the key of the node
+     * @param visitor receives the key of every neighbor and the weight of the edge
+     */
+    @Override
+    public void forEachNeighbor(int node_id, neighbor_visitor visitor) {
+        int i = indexOf(node_id);
+        if (i < 0)
+            return;
+        for (int arc = arcStart(i), end = arcEnd(i); arc < end; arc++)
+            visitor.visit(keyAt(arcTarget(arc)), arcWeight(arc));
+    }
+
+    /**
+     * Not supported - {@link WGraph_CSR} is immutable.
+     *
+     * @param key the node id of the node
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public node_info removeNode(int key) {
+        throw new UnsupportedOperationException("WGraph_CSR is immutable");
+    }
+
+    /**
+     * Not supported - {@link WGraph_CSR} is immutable.
+     *
+     * @param node1 node id of node1
+     * @param node2 node id of node2
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void removeEdge(int node1, int node2) {
+        throw new UnsupportedOperationException("WGraph_CSR is immutable");
+    }
+
+    /**
+     * return the number of vertices (nodes) in the graph.
+     *
+     * @return number of vertices
+     */
+    @Override
+    public int nodeSize() {
+        return _keys.length;
+    }
+
+    /**
+     * return the number of edges (unidirectional graph).
+     *
+     * @return number of edges
+     */
+    @Override
+    public int edgeSize() {
+        return _edges_size;
+    }
+
+    /**
+     * return the Mode Count of the graph this snapshot was taken from, at the time of the snapshot.
+     *
+     * @return Mode Count
+     */
+    @Override
+    public int getMC() {
+        return _mode_count;
+    }
+
+    @Override
+    public String toString() {
+        return "WGraph_CSR:" +
+                " mode_count=" + _mode_count +
+                ", node_size=" + nodeSize() +
+                ", edge_size=" + _edges_size +
+                "\n";
+    }
+
+    ////////////////////// Dense index access /////////////////////
+
+    /**
+     * return the dense index of the node with the given key.
+     * the keys are either contiguous (index = key - first key) or looked up in an open addressing table.
+     *
+     * @param key node id
+     * @return index in 0..nodeSize()-1, or -1 if there is no such node
+     */
+    int indexOf(int key) {
+        if (_table == null) {
+            int i = key - _first_key;
+            return i >= 0 && i < _keys.length ? i : -1;
+        }
+        int mask = _table.length - 1;
+        for (int slot = mix(key) & mask; _table[slot] != 0; slot = (slot + 1) & mask) {
+            if (_keys[_table[slot] - 1] == key)
+                return _table[slot] - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * return true iff other is a snapshot of the same version of the graph: the same mode count, edge count and keys
+     * (in the same order, so the dense indices of the two snapshots are the same).
+     *
+     * @param other another snapshot
+     * @return true iff the two snapshots have the same version
+     */
+    boolean sameVersion(WGraph_CSR other) {
+        if (other == this)
+            return true;
+        if (other._mode_count != _mode_count || other._edges_size != _edges_size || other._keys.length != _keys.length)
+            return false;
+        return Arrays.equals(other._keys, _keys);
+    }
+
+    /**
+     * A fingerprint of the edges and weights of this snapshot: the sum of a 64 bit mix of every arc,
+     * so it does not depend on the order of the arcs of a node. Two snapshots of the same version
+     * (see {@link #sameVersion(WGraph_CSR)}) with the same fingerprint have the same weights, up to a hash collision.
+     * Runs in O(V+E) time.
+     *
+     * @return the fingerprint
+     */
+    long fingerprint() {
+        long sum = 0;
+        for (int i = 0, n = nodeSize(); i < n; i++) {
+            for (int arc = arcStart(i), end = arcEnd(i); arc < end; arc++) {
+                long h = ((long) i << 32 | arcTarget(arc)) * 0x9E3779B97F4A7C15L
+                        ^ Double.doubleToLongBits(arcWeight(arc));
+                h ^= h >>> 31;
+                h *= 0xBF58476D1CE4E5B9L;
+                sum += h ^ h >>> 29;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @param i dense index
+     * @return the key of the node with index i
+     */
+    int keyAt(int i) {
+        return _keys[i];
+    }
+
+    /**
+     * @param i dense index
+     * @return the node_info of the node with index i
+     */
+    node_info nodeAt(int i) {
+        return _nodes[i];
+    }
+
+    /**
+     * @param i dense index
+     * @return first arc of the node with index i
+     */
+    int arcStart(int i) {
+        return _offsets[i];
+    }
+
+    /**
+     * @param i dense index
+     * @return one past the last arc of the node with index i
+     */
+    int arcEnd(int i) {
+        return _offsets[i + 1];
+    }
+
+    /**
+     * @param arc arc number
+     * @return dense index of the head of this arc
+     */
+    int arcTarget(int arc) {
+        return _neighbors[arc];
+    }
+
+    /**
+     * @param arc arc number
+     * @return weight of this arc
+     */
+    double arcWeight(int arc) {
+        return _weights[arc];
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * find the arc node1 -> node2 by binary search in the row of node1.
+     *
+     * @return the arc number, or -1 if there is no such edge
+     */
+    private int arcOf(int node1, int node2) {
+        int i = indexOf(node1);
+        int j = indexOf(node2);
+        if (i < 0 || j < 0)
+            return -1;
+        int lo = arcStart(i), hi = arcEnd(i) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int t = arcTarget(mid);
+            if (t < j)
+                lo = mid + 1;
+            else if (t > j)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * @param keys sorted keys
+     * @return true iff keys are k, k+1, k+2...
+     */
+    private static boolean isContiguous(int[] keys) {
+        return keys.length == 0 || (long) keys[keys.length - 1] - keys[0] == keys.length - 1;
+    }
+
+    /**
+     * Build open addressing table (linear probing, load factor <= 0.5) from key to index + 1.
+     */
+    private static int[] buildTable(int[] keys) {
+        int cap = Integer.highestOneBit(Math.max(2, keys.length) * 2 - 1) << 1;
+        int[] table = new int[cap];
+        int mask = cap - 1;
+        for (int i = 0; i < keys.length; i++) {
+            int slot = mix(keys[i]) & mask;
+            while (table[slot] != 0)
+                slot = (slot + 1) & mask;
+            table[slot] = i + 1;
+        }
+        return table;
+    }
+
+    /**
+     * @return the hash of a key in the open addressing tables of the snapshots (and of {@link LiveDijkstra})
+     */
+    static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
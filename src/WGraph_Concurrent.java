@@ -0,0 +1,394 @@
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class represents a thread safe weighted graph, unidirectional graph, implements weighted_graph interface.
+ * The nodes and the edges are held like in {@link WGraph_DS}, but in {@link ConcurrentHashMap}s,
+ * so the reading methods never block.
+ * Every change is done under per-node lock striping: the key of a node is mapped to one of _locks,
+ * connect and removeEdge hold the locks of both ends, and removeNode holds the locks of the node and all its neighbors.
+ * The locks are always taken in ascending order of stripe, so there are no deadlocks.
+ * Every undirected edge has a canonical side - the hash map of the smaller key. connect writes the canonical side last
+ * and removeEdge removes it first, and hasEdge and getEdge read only the canonical side,
+ * so connect, removeEdge, removeNode, hasEdge and getEdge are linearizable.
+ * getV, getV(node_id) and forEachNeighbor are weakly consistent (like the iterators of {@link ConcurrentHashMap}).
+ * The edge count and the mode count are {@link LongAdder}s, so they do not become a point of contention,
+ * they are exact whenever no change is in progress.
+ *
+ * @author davidfeust
+ */
+public class WGraph_Concurrent implements weighted_graph, Serializable {
+
+    private final ConcurrentHashMap<Integer, node_info> _nodes;
+    private final ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, Double>> _edges;
+    private final ReentrantLock[] _locks;
+    private final LongAdder _edges_size;
+    private final LongAdder _mode_count;
+
+    /**
+     * Constructor for {@link WGraph_Concurrent},
+     * with 4 lock stripes for every available processor (rounded up to a power of 2).
+     */
+    public WGraph_Concurrent() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor for {@link WGraph_Concurrent}.
+     *
+     * @param stripes number of locks, rounded up to a power of 2
+     */
+    public WGraph_Concurrent(int stripes) {
+        int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        _locks = new ReentrantLock[n];
+        for (int i = 0; i < n; i++)
+            _locks[i] = new ReentrantLock();
+        _nodes = new ConcurrentHashMap<>();
+        _edges = new ConcurrentHashMap<>();
+        _edges_size = new LongAdder();
+        _mode_count = new LongAdder();
+    }
+
+    /**
+     * Copy constructor for {@link WGraph_Concurrent}.
+     * executing deep copy of all the nodes and the edges of oth.
+     *
+     * @param oth other weighted_graph to copy
+     */
+    public WGraph_Concurrent(weighted_graph oth) {
+        this();
+        for (node_info i : oth.getV()) {
+            _nodes.put(i.getKey(), new WGraph_DS.NodeInfo(i));
+            _edges.put(i.getKey(), new ConcurrentHashMap<>());
+        }
+        for (node_info i : oth.getV()) {
+            ConcurrentHashMap<Integer, Double> nei = _edges.get(i.getKey());
+            oth.forEachNeighbor(i.getKey(), nei::put);
+        }
+        _edges_size.add(oth.edgeSize());
+        _mode_count.add(oth.getMC());
+    }
+
+    /**
+     * return the node_data by the node_id.
+     * this method does not block.
+     *
+     * @param key - the node_id
+     * @return the node_data by the node_id, null if none.
+     */
+    @Override
+    public node_info getNode(int key) {
+        return _nodes.get(key);
+    }
+
+    /**
+     * return true iff (if and only if) there is an edge between node1 and node2
+     * this method run in O(1) time, and does not block.
+     * this method reads the canonical side of the edge.
+     *
+     * @param node1 node id of node1
+     * @param node2 node id of node2
+     * @return true iff has edge between node1 and node2
+     */
+    @Override
+    public boolean hasEdge(int node1, int node2) {
+        return getEdge(node1, node2) != -1;
+    }
+
+    /**
+     * return the weight of the edge (node1, node1).
+     * In case there is no such edge - should return -1
+     * this method run in O(1) time, and does not block.
+     * this method reads the canonical side of the edge.
+     *
+     * @param node1 node id of node1
+     * @param node2 node id of node2
+     * @return weight of edge (node1, node2), or -1 if no such edge
+     */
+    @Override
+    public double getEdge(int node1, int node2) {
+        if (node1 == node2 || !_nodes.containsKey(node1) || !_nodes.containsKey(node2))
+            return -1;
+        ConcurrentHashMap<Integer, Double> nei = _edges.get(Math.min(node1, node2));
+        Double w = nei == null ? null : nei.get(Math.max(node1, node2));
+        return w == null ? -1 : w;
+    }
+
+    /**
+     * Add a new node to the graph with the given key.
+     * if there is already a node with such a key -> no action will be performed.
+     * the hash map of the edges is published before the node, so a visible node always has one.
+     *
+     * @param key node id
+     */
+    @Override
+    public void addNode(int key) {
+        ReentrantLock lock = lockOf(key);
+        lock.lock();
+        try {
+            if (_nodes.containsKey(key))
+                return;
+            _edges.put(key, new ConcurrentHashMap<>());
+            _nodes.put(key, new WGraph_DS.NodeInfo(key));
+            _mode_count.increment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Connect an edge between node1 and node2, with an edge with weight >=0.
+     * if the edge node1-node2 already exists - the method simply updates the weight of the edge.
+     * this method holds the locks of node1 and node2, and writes the canonical side of the edge last.
+     *
+     * @param node1 node id of node1
+     * @param node2 node id of node2
+     * @param w     weight
+     */
+    @Override
+    public void connect(int node1, int node2, double w) {
+        if (node1 == node2 || w < 0)
+            return;
+        int lo = Math.min(node1, node2), hi = Math.max(node1, node2);
+        lockPair(lo, hi);
+        try {
+            if (!_nodes.containsKey(lo) || !_nodes.containsKey(hi))
+                return;
+            _edges.get(hi).put(lo, w);
+            if (_edges.get(lo).put(hi, w) == null)
+                _edges_size.increment();
+            _mode_count.increment();
+        } finally {
+            unlockPair(lo, hi);
+        }
+    }
+
+    /**
+     * This method return a pointer (shallow copy) for a
+     * Collection representing all the nodes in the graph.
+     * the collection is weakly consistent.
+     *
+     * @return Collection<node_data>
+     */
+    @Override
+    public Collection<node_info> getV() {
+        return _nodes.values();
+    }
+
+    /**
+     * This method returns a Collection containing all the
+     * nodes connected to node_id.
+     * this method run in O(k) time, k - being the degree of node_id.
+     * the collection is weakly consistent.
+     *
+     * @param node_id the key of the node
+     * @return Collection<node_data>, null if there is no such node
+     */
+    @Override
+    public Collection<node_info> getV(int node_id) {
+        ConcurrentHashMap<Integer, Double> nei = _edges.get(node_id);
+        if (!_nodes.containsKey(node_id) || nei == null)
+            return null;
+        Collection<node_info> c = new ArrayList<>(nei.size());
+        for (int i : nei.keySet()) {
+            node_info n = _nodes.get(i);
+            if (n != null)
+                c.add(n);
+        }
+        return c;
+    }
+
+    /**
+     * Visit all the neighbors of node_id, each one with the weight of the edge to it.
+     * this method run in O(k) time, k - being the degree of node_id, and it is weakly consistent.
+     *
+     * @param node_id the key of the node
+     * @param visitor receives the key of every neighbor and the weight of the edge
+     */
+    @Override
+    public void forEachNeighbor(int node_id, neighbor_visitor visitor) {
+        ConcurrentHashMap<Integer, Double> nei = _edges.get(node_id);
+        if (null == nei)
+            return;
+        for (Map.Entry<Integer, Double> e : nei.entrySet())
+            visitor.visit(e.getKey(), e.getValue());
+    }
+
+    /**
+     * Delete the node (with the given ID) from the graph -
+     * and removes all edges which starts or ends at this node.
+     * This method run in O(k), k - being the degree of node_id.
+     * The method reads the neighbors, takes the locks of the node and all the neighbors,
+     * and if the neighbors were changed meanwhile - it releases the locks and tries again.
+     * The node is removed first (this is the linearization point), and then its edges.
+     *
+     * @param key the node id of the node
+     * @return the data of the removed node (null if none).
+     */
+    @Override
+    public node_info removeNode(int key) {
+        while (true) {
+            ConcurrentHashMap<Integer, Double> nei = _edges.get(key);
+            if (!_nodes.containsKey(key) || nei == null)
+                return null;
+            Set<Integer> seen = new HashSet<>(nei.keySet());
+            int[] stripes = stripesOf(key, seen);
+            for (int s : stripes)
+                _locks[s].lock();
+            try {
+                node_info n = _nodes.get(key);
+                if (null == n)
+                    return null;
+                if (_edges.get(key) != nei || !seen.equals(nei.keySet()))
+                    continue;
+                _nodes.remove(key);
+                for (int i : seen)
+                    _edges.get(i).remove(key);
+                nei.clear();
+                _edges.remove(key);
+                _edges_size.add(-seen.size());
+                _mode_count.add(seen.size());
+                return n;
+            } finally {
+                for (int i = stripes.length - 1; i >= 0; i--)
+                    _locks[stripes[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * Delete the edge from the graph,
+     * this method run in O(1) time.
+     * this method holds the locks of node1 and node2, and removes the canonical side of the edge first.
+     *
+     * @param node1 node id of node1
+     * @param node2 node id of node2
+     */
+    @Override
+    public void removeEdge(int node1, int node2) {
+        if (node1 == node2)
+            return;
+        int lo = Math.min(node1, node2), hi = Math.max(node1, node2);
+        lockPair(lo, hi);
+        try {
+            if (!_nodes.containsKey(lo) || !_nodes.containsKey(hi))
+                return;
+            if (_edges.get(lo).remove(hi) != null) {
+                _edges.get(hi).remove(lo);
+                _edges_size.decrement();
+                _mode_count.increment();
+            }
+        } finally {
+            unlockPair(lo, hi);
+        }
+    }
+
+    /**
+     * return the number of vertices (nodes) in the graph.
+     *
+     * @return number of vertices
+     */
+    @Override
+    public int nodeSize() {
+        return _nodes.size();
+    }
+
+    /**
+     * return the number of edges (unidirectional graph).
+     * exact whenever no change is in progress.
+     *
+     * @return number of edges
+     */
+    @Override
+    public int edgeSize() {
+        return (int) _edges_size.sum();
+    }
+
+    /**
+     * return the Mode Count - for testing changes in the graph.
+     * Any change in the inner state of the graph should cause an increment in the ModeCount
+     * exact whenever no change is in progress.
+     *
+     * @return Mode Count
+     */
+    @Override
+    public int getMC() {
+        return (int) _mode_count.sum();
+    }
+
+    /**
+     * Take a consistent {@link WGraph_CSR} snapshot of this graph.
+     * All the locks are held while the snapshot is built, so changes wait for O(|V|+|E|) time,
+     * but the reading methods are not blocked.
+     *
+     * @return {@link WGraph_CSR} snapshot of this graph
+     */
+    public WGraph_CSR freeze() {
+        for (ReentrantLock lock : _locks)
+            lock.lock();
+        try {
+            return new WGraph_CSR(this);
+        } finally {
+            for (int i = _locks.length - 1; i >= 0; i--)
+                _locks[i].unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WGraph_Concurrent:" +
+                " mode_count=" + getMC() +
+                ", edge_size=" + edgeSize() +
+                "\n\tnodes=" + _nodes +
+                "\n\tedges=" + _edges +
+                "\n";
+    }
+
+    ////////////////////// Private /////////////////////
+
+    private int stripeOf(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (_locks.length - 1);
+    }
+
+    private ReentrantLock lockOf(int key) {
+        return _locks[stripeOf(key)];
+    }
+
+    /**
+     * lock the stripes of node1 and node2 in ascending order (once, if it is the same stripe).
+     */
+    private void lockPair(int node1, int node2) {
+        int s1 = stripeOf(node1), s2 = stripeOf(node2);
+        _locks[Math.min(s1, s2)].lock();
+        if (s1 != s2)
+            _locks[Math.max(s1, s2)].lock();
+    }
+
+    private void unlockPair(int node1, int node2) {
+        int s1 = stripeOf(node1), s2 = stripeOf(node2);
+        if (s1 != s2)
+            _locks[Math.max(s1, s2)].unlock();
+        _locks[Math.min(s1, s2)].unlock();
+    }
+
+    /**
+     * @return the distinct stripes of key and all the keys in nei, in ascending order
+     */
+    private int[] stripesOf(int key, Set<Integer> nei) {
+        boolean[] used = new boolean[_locks.length];
+        used[stripeOf(key)] = true;
+        for (int i : nei)
+            used[stripeOf(i)] = true;
+        int count = 0;
+        for (boolean u : used)
+            if (u) count++;
+        int[] stripes = new int[count];
+        for (int s = 0, j = 0; s < used.length; s++)
+            if (used[s]) stripes[j++] = s;
+        return stripes;
+    }
+}
@@ -1,7 +1,13 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -21,8 +27,15 @@ public class WGraph_DS implements weighted_graph, Serializable {
     private final HashMap<Integer, HashMap<Integer, Double>> _edges;
     private int _edges_size;
     private int _mode_count;
+    private transient List<graph_listener> _listeners;
+    private transient graph_metrics _metrics = GraphMetrics.defaults();
 
-    private static class NodeInfo implements node_info, Serializable {
+    /**
+     * The vertex type of {@link WGraph_DS}.
+     * package-private so the other graph representations (e.g. {@link WGraph_CSR}) share the same node type,
+     * and nodes of a snapshot are equal to the nodes of the graph it was taken from.
+     */
+    static class NodeInfo implements node_info, Serializable {
 
         private final int _key;
         private String _info;
@@ -142,7 +155,8 @@ public class WGraph_DS implements weighted_graph, Serializable {
     /**
      * Copy constructor for {@link WGraph_DS}.
      * executing deep copy by coping all the values in oth's _nodes
-     * and then connect the same edges like oth in this.
+     * and then putting the same edges like oth in this, visiting the neighbors with forEachNeighbor.
+     * The edges are put straight into the maps, not by connect, so the copy reports no mutation to the metrics.
      *
      * @param oth other weighted_graph to copy
      */
@@ -150,16 +164,35 @@ public class WGraph_DS implements weighted_graph, Serializable {
         _nodes = new HashMap<>();
         _edges = new HashMap<>();
         for (node_info i : oth.getV()) {
-            _nodes.put(i.getKey(), new NodeInfo(i));
-            _edges.put(i.getKey(), new HashMap<>());
-            for (node_info j : oth.getV(i.getKey())) {
-                connect(i.getKey(), j.getKey(), oth.getEdge(i.getKey(), j.getKey()));
-            }
+            int key = i.getKey();
+            _nodes.put(key, new NodeInfo(i));
+            HashMap<Integer, Double> nei = new HashMap<>();
+            oth.forEachNeighbor(key, nei::put);
+            _edges.put(key, nei);
         }
         _edges_size = oth.edgeSize();
         _mode_count = oth.getMC();
     }
 
+    /**
+     * Constructor from ready hash maps (used by {@link WGraph_Builder} and {@link WGraph_File}, so building and
+     * loading a graph report no mutation to the metrics).
+     * The maps are used as is, they must be symmetric: node2 in the edges of node1 iff node1 in the edges of node2,
+     * with the same weight.
+     *
+     * @param nodes      the nodes by their keys
+     * @param edges      the edges of every node, by the keys of its neighbors
+     * @param edges_size number of edges
+     * @param mode_count Mode Count of the graph
+     */
+    WGraph_DS(HashMap<Integer, node_info> nodes, HashMap<Integer, HashMap<Integer, Double>> edges,
+              int edges_size, int mode_count) {
+        _nodes = nodes;
+        _edges = edges;
+        _edges_size = edges_size;
+        _mode_count = mode_count;
+    }
+
     /**
      * return the node_data by the node_id, takes from the hashmap
      *
@@ -223,6 +256,12 @@ public class WGraph_DS implements weighted_graph, Serializable {
         _nodes.put(n.getKey(), n);
         _edges.put(n.getKey(), new HashMap<>());
         _mode_count++;
+        if (null != _metrics)
+            _metrics.mutation(graph_metrics.Mutation.ADD_NODE);
+        if (null != _listeners) {
+            for (graph_listener l : _listeners)
+                l.nodeAdded(key);
+        }
     }
 
     /**
@@ -242,15 +281,14 @@ public class WGraph_DS implements weighted_graph, Serializable {
         if (null == n1 || null == n2 || node1 == node2 || w < 0)
             return;
 
-        if (!hasEdge(node1, node2)) {
-            _edges.get(node1).put(node2, w);
-            _edges.get(node2).put(node1, w);
+        Double old_w = _edges.get(node1).put(node2, w);
+        _edges.get(node2).put(node1, w);
+        if (null == old_w)
             _edges_size++;
-        } else {
-            _edges.get(node1).replace(node2, w);
-            _edges.get(node2).replace(node1, w);
-        }
         _mode_count++;
+        if (null != _metrics)
+            _metrics.mutation(graph_metrics.Mutation.CONNECT);
+        fireEdgeChanged(node1, node2, null == old_w ? -1 : old_w, w);
     }
 
     /**
@@ -286,6 +324,23 @@ public class WGraph_DS implements weighted_graph, Serializable {
         return c;
     }
 
+    /**
+     * Visit all the neighbors of node_id, each one with the weight of the edge to it.
+     * this method run in O(k) time, k - being the degree of node_id.
+     * this method iterates the _edges hash map of node_id directly, without building a Collection of nodes.
+     *
+     * @param node_id the key of the node
+     * @param visitor receives the key of every neighbor and the weight of the edge
+     */
+    @Override
+    public void forEachNeighbor(int node_id, neighbor_visitor visitor) {
+        HashMap<Integer, Double> nei = _edges.get(node_id);
+        if (null == nei)
+            return;
+        for (Map.Entry<Integer, Double> e : nei.entrySet())
+            visitor.visit(e.getKey(), e.getValue());
+    }
+
     /**
      * Delete the node (with the given ID) from the graph -
      * and removes all edges which starts or ends at this node.
@@ -301,6 +356,18 @@ public class WGraph_DS implements weighted_graph, Serializable {
         if (null == n)
             return null;
 
+        if (null != _listeners) {
+            // one edge at a time, so every listener sees a consistent graph
+            Iterator<Map.Entry<Integer, Double>> it = _edges.get(key).entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, Double> e = it.next();
+                it.remove();
+                _edges.get(e.getKey()).remove(key);
+                _edges_size--;
+                _mode_count++;
+                fireEdgeChanged(key, e.getKey(), e.getValue(), -1);
+            }
+        }
         int num_of_nei = _edges.get(key).size();
         for (int i : _edges.get(key).keySet()) {
             _edges.get(i).remove(key);
@@ -309,6 +376,12 @@ public class WGraph_DS implements weighted_graph, Serializable {
         _nodes.remove(key, n);
         _edges_size -= num_of_nei;
         _mode_count += num_of_nei;
+        if (null != _metrics)
+            _metrics.mutation(graph_metrics.Mutation.REMOVE_NODE);
+        if (null != _listeners) {
+            for (graph_listener l : _listeners)
+                l.nodeRemoved(key);
+        }
         return n;
     }
 
@@ -327,13 +400,64 @@ public class WGraph_DS implements weighted_graph, Serializable {
         if (null == n1 || null == n2)
             return;
         if (hasEdge(node1, node2)) {
-            _edges.get(node1).remove(node2);
+            double w = _edges.get(node1).remove(node2);
             _edges.get(node2).remove(node1);
             _edges_size--;
             _mode_count++;
+            if (null != _metrics)
+                _metrics.mutation(graph_metrics.Mutation.REMOVE_EDGE);
+            fireEdgeChanged(node1, node2, w, -1);
         }
     }
 
+    /**
+     * Register a listener, that will be called after every change of this graph
+     * (e.g. {@link DynamicShortestPaths}). The listeners are not serialized with the graph.
+     *
+     * @param l the listener
+     */
+    public void addListener(graph_listener l) {
+        if (null == _listeners)
+            _listeners = new ArrayList<>();
+        _listeners.add(l);
+    }
+
+    /**
+     * Unregister a listener that was registered with addListener.
+     *
+     * @param l the listener
+     */
+    public void removeListener(graph_listener l) {
+        if (null != _listeners && _listeners.remove(l) && _listeners.isEmpty())
+            _listeners = null;
+    }
+
+    /**
+     * Set the sink of the mutation metrics of this graph (not serialized with the graph).
+     * By default it is {@link GraphMetrics#global()} if the JVM runs with -Dwgraph.metrics=true, otherwise null.
+     *
+     * @param metrics the metrics, or null to stop counting the mutations
+     */
+    public void setMetrics(graph_metrics metrics) {
+        _metrics = metrics;
+    }
+
+    /**
+     * @return the sink of the mutation metrics of this graph, null if none
+     */
+    public graph_metrics getMetrics() {
+        return _metrics;
+    }
+
+    /**
+     * The transient fields are not serialized - a deserialized graph reports to the default metrics,
+     * like a new graph, and has no listeners.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        _metrics = GraphMetrics.defaults();
+    }
+
     /**
      * return the number of vertices (nodes) in the graph.
      * this method run in O(1) time.
@@ -368,6 +492,17 @@ public class WGraph_DS implements weighted_graph, Serializable {
         return _mode_count;
     }
 
+    /**
+     * Freeze this graph into an immutable compressed-sparse-row snapshot.
+     * The snapshot does not follow later changes of this graph.
+     *
+     * @return {@link WGraph_CSR} snapshot of this graph
+     * @see WGraph_CSR
+     */
+    public WGraph_CSR freeze() {
+        return new WGraph_CSR(this);
+    }
+
     @Override
     public String toString() {
         return "WGraph_DS:" +
@@ -403,4 +538,13 @@ public class WGraph_DS implements weighted_graph, Serializable {
         }
         return _edges_size == wGraph_ds._edges_size;
     }
-}
\ No newline at end of file
+
+    ////////////////////// Private /////////////////////
+
+    private void fireEdgeChanged(int node1, int node2, double old_w, double w) {
+        if (null == _listeners)
+            return;
+        for (graph_listener l : _listeners)
+            l.edgeChanged(node1, node2, old_w, w);
+    }
+}
@@ -0,0 +1,604 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Import and export of weighted graphs as edge lists: CSV, TSV and the DIMACS shortest path format (.gr).
+ * <p>
+ * The importer builds a {@link WGraph_CSR} directly, in two passes over the file, without a per edge object
+ * and without a list of the edges:
+ * 1. count the arcs of every key (into a primitive open addressing table per chunk, merged at the end),
+ * 2. size the rows by the counts, and fill every arc straight into its row.
+ * The rows are then sorted and the duplicate edges are dropped (keeping the smallest weight),
+ * so the temporary memory is O(nodes) on top of the graph itself, whatever the number of edges.
+ * The file is read through a {@link FileChannel} in chunks cut at line ends, each chunk with its own
+ * buffer, and the chunks of both passes may be parsed in parallel on the common
+ * {@link java.util.concurrent.ForkJoinPool}.
+ * <p>
+ * Text formats:
+ * <pre>
+ * CSV    a,b,w per line (w is optional, default 1). The first line may be a header.
+ * TSV    a b w per line, separated by tabs or spaces. The first line may be a header.
+ * DIMACS c comment / p sp nodes arcs / a u v w - the nodes are 1..nodes.
+ * </pre>
+ * Empty lines and lines starting with '#' are ignored in CSV and TSV. Self loops add only their node,
+ * as in {@link WGraph_DS#connect(int, int, double)}. Negative weights are rejected.
+ * The exporters write every undirected edge once (CSV, TSV - a node without edges is written as a self loop),
+ * or as two arcs (DIMACS, which renumbers the nodes 1..n in ascending order of their keys,
+ * so a graph with the keys 1..n keeps them).
+ *
+ * @author davidfeust
+ */
+public class WGraph_EdgeList {
+
+    /**
+     * The edge list formats.
+     */
+    public enum Format {
+        CSV,
+        TSV,
+        DIMACS
+    }
+
+    private static final int BUFFER = 1 << 20;
+    private static final int MIN_CHUNK = 4 << 20;
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private WGraph_EdgeList() {
+    }
+
+    /**
+     * Import the edge list in file, parsing its chunks in parallel.
+     *
+     * @param file   the file name (may include a relative path).
+     * @param format format of the file
+     * @return the graph
+     * @throws IOException if the file can not be read, or it is malformed
+     */
+    public static WGraph_CSR read(String file, Format format) throws IOException {
+        return read(file, format, true);
+    }
+
+    /**
+     * Import the edge list in file.
+     *
+     * @param file     the file name (may include a relative path).
+     * @param format   format of the file
+     * @param parallel true to parse the chunks of the file in parallel
+     * @return the graph
+     * @throws IOException if the file can not be read, or it is malformed
+     */
+    public static WGraph_CSR read(String file, Format format, boolean parallel) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            long[] bounds = chunks(ch, parallel ? Runtime.getRuntime().availableProcessors() : 1);
+            int chunks = bounds.length - 1;
+
+            // pass 1: count the arcs of every key
+            KeyCounts[] counts = new KeyCounts[chunks];
+            int[] declared = new int[chunks];
+            run(chunks, parallel, c -> {
+                KeyCounts kc = new KeyCounts();
+                counts[c] = kc;
+                new Parser(ch, bounds[c], bounds[c + 1], format, c == 0, false).parse(new EdgeSink() {
+                    @Override
+                    public void edge(int a, int b, double w) {
+                        kc.add(a, a != b ? 1 : 0);
+                        kc.add(b, a != b ? 1 : 0);
+                    }
+
+                    @Override
+                    public void nodes(int n) {
+                        declared[c] = n;
+                    }
+                });
+            });
+            KeyCounts all = counts[0];
+            for (int c = 1; c < chunks; c++)
+                all.addAll(counts[c]);
+            for (int c = 0; c < chunks; c++) {
+                for (int key = 1; key <= declared[c]; key++)
+                    all.add(key, 0);
+            }
+            Arrays.fill(counts, null);
+
+            int[] keys = all.sortedKeys();
+            int n = keys.length;
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i < n; i++)
+                offsets[i + 1] = offsets[i] + all.get(keys[i]);
+            all = null;
+
+            // pass 2: fill every arc into its row
+            int[] neighbors = new int[offsets[n]];
+            double[] weights = new double[offsets[n]];
+            AtomicIntegerArray fill = new AtomicIntegerArray(Arrays.copyOf(offsets, n));
+            boolean contiguous = n == 0 || (long) keys[n - 1] - keys[0] == n - 1;
+            run(chunks, parallel, c -> new Parser(ch, bounds[c], bounds[c + 1], format, c == 0, true).parse((a, b, w) -> {
+                if (a == b)
+                    return;
+                int i = index(keys, contiguous, a), j = index(keys, contiguous, b);
+                int arc = fill.getAndIncrement(i);
+                neighbors[arc] = j;
+                weights[arc] = w;
+                arc = fill.getAndIncrement(j);
+                neighbors[arc] = i;
+                weights[arc] = w;
+            }));
+
+            // sort the rows and drop the duplicate edges, then compact the rows
+            int[] sizes = new int[n];
+            IntStream rows = IntStream.range(0, n);
+            (parallel ? rows.parallel() : rows).forEach(i -> sizes[i] = sortRow(neighbors, weights, offsets[i], offsets[i + 1]));
+            int arcs = 0;
+            for (int i = 0; i < n; i++) {
+                System.arraycopy(neighbors, offsets[i], neighbors, arcs, sizes[i]);
+                System.arraycopy(weights, offsets[i], weights, arcs, sizes[i]);
+                offsets[i] = arcs;
+                arcs += sizes[i];
+            }
+            offsets[n] = arcs;
+            return new WGraph_CSR(keys, offsets, arcs == neighbors.length ? neighbors : Arrays.copyOf(neighbors, arcs),
+                    arcs == weights.length ? weights : Arrays.copyOf(weights, arcs), n + arcs / 2);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Export g to file as an edge list.
+     *
+     * @param g      the graph
+     * @param file   the file name (may include a relative path).
+     * @param format format of the file
+     * @throws IOException if the file can not be written
+     */
+    public static void write(weighted_graph g, String file, Format format) throws IOException {
+        WGraph_CSR c = WGraph_CSR.of(g);
+        int n = c.nodeSize();
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Writer out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(ch), StandardCharsets.US_ASCII), BUFFER)) {
+            if (format == Format.DIMACS) {
+                out.write("c weighted graph, nodes renumbered 1.." + n + " by ascending key\n");
+                out.write("p sp " + n + " " + (n == 0 ? 0 : c.arcEnd(n - 1)) + "\n");
+            }
+            char sep = format == Format.CSV ? ',' : '\t';
+            for (int i = 0; i < n; i++) {
+                for (int arc = c.arcStart(i), end = c.arcEnd(i); arc < end; arc++) {
+                    int j = c.arcTarget(arc);
+                    if (format == Format.DIMACS) {
+                        out.write("a ");
+                        out.write(Integer.toString(i + 1));
+                        out.write(' ');
+                        out.write(Integer.toString(j + 1));
+                        out.write(' ');
+                    } else if (i < j) {
+                        out.write(Integer.toString(c.keyAt(i)));
+                        out.write(sep);
+                        out.write(Integer.toString(c.keyAt(j)));
+                        out.write(sep);
+                    } else {
+                        continue;
+                    }
+                    double w = c.arcWeight(arc);
+                    out.write(w == (long) w ? Long.toString((long) w) : Double.toString(w));
+                    out.write('\n');
+                }
+            }
+            if (format != Format.DIMACS) {
+                for (int i = 0; i < n; i++) {
+                    if (c.arcStart(i) == c.arcEnd(i)) {
+                        String key = Integer.toString(c.keyAt(i));
+                        out.write(key + sep + key + '\n');
+                    }
+                }
+            }
+        }
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * Receives the edges of a parsed chunk.
+     */
+    @FunctionalInterface
+    private interface EdgeSink {
+        void edge(int a, int b, double w);
+
+        /**
+         * the DIMACS problem line declared the nodes 1..n.
+         */
+        default void nodes(int n) {
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkTask {
+        void run(int chunk) throws IOException;
+    }
+
+    private static void run(int chunks, boolean parallel, ChunkTask task) {
+        IntStream range = IntStream.range(0, chunks);
+        (parallel ? range.parallel() : range).forEach(c -> {
+            try {
+                task.run(c);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Cut the file into about the given number of chunks (at least {@link #MIN_CHUNK} bytes each),
+     * every chunk but the last ending right after a line end.
+     *
+     * @return the chunk boundaries, from 0 to the size of the file
+     */
+    private static long[] chunks(FileChannel ch, int count) throws IOException {
+        long size = ch.size();
+        count = (int) Math.max(1, Math.min(count, size / MIN_CHUNK));
+        long[] bounds = new long[count + 1];
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        int k = 1;
+        for (int c = 1; c < count; c++) {
+            long pos = Math.max(size * c / count, bounds[k - 1]);
+            search:
+            while (pos < size) {
+                buf.clear();
+                int read = ch.read(buf, pos);
+                for (int i = 0; i < read; i++) {
+                    if (buf.get(i) == '\n') {
+                        pos += i + 1;
+                        break search;
+                    }
+                }
+                pos += read;
+            }
+            if (pos < size && pos > bounds[k - 1])
+                bounds[k++] = pos;
+        }
+        bounds[k] = size;
+        return Arrays.copyOf(bounds, k + 1);
+    }
+
+    private static int index(int[] keys, boolean contiguous, int key) {
+        return contiguous ? key - keys[0] : Arrays.binarySearch(keys, key);
+    }
+
+    /**
+     * Sort the arcs [from, to) by their heads, and keep one arc per head (the one with the smallest weight)
+     * at the start of the range.
+     *
+     * @return the number of arcs left
+     */
+    private static int sortRow(int[] neighbors, double[] weights, int from, int to) {
+        boolean sorted = true;
+        for (int arc = from + 1; arc < to && sorted; arc++)
+            sorted = neighbors[arc - 1] < neighbors[arc];
+        if (sorted)
+            return to - from;
+        long[] order = new long[to - from];
+        for (int arc = from; arc < to; arc++)
+            order[arc - from] = (long) neighbors[arc] << 32 | (arc - from);
+        Arrays.sort(order);
+        double[] w = Arrays.copyOfRange(weights, from, to);
+        int size = 0;
+        for (long o : order) {
+            int head = (int) (o >>> 32);
+            double weight = w[(int) o];
+            if (size > 0 && neighbors[from + size - 1] == head) {
+                weights[from + size - 1] = Math.min(weights[from + size - 1], weight);
+            } else {
+                neighbors[from + size] = head;
+                weights[from + size] = weight;
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Open addressing table from key to count, with primitive arrays.
+     */
+    private static class KeyCounts {
+        private int[] _keys = new int[1024];
+        private int[] _counts = new int[1024];
+        private boolean[] _used = new boolean[1024];
+        private int _size;
+
+        void add(int key, int count) {
+            if (_size * 2 >= _keys.length)
+                grow();
+            int mask = _keys.length - 1;
+            int slot = mix(key) & mask;
+            while (_used[slot] && _keys[slot] != key)
+                slot = (slot + 1) & mask;
+            if (!_used[slot]) {
+                _used[slot] = true;
+                _keys[slot] = key;
+                _size++;
+            }
+            _counts[slot] += count;
+        }
+
+        int get(int key) {
+            int mask = _keys.length - 1;
+            for (int slot = mix(key) & mask; _used[slot]; slot = (slot + 1) & mask) {
+                if (_keys[slot] == key)
+                    return _counts[slot];
+            }
+            return 0;
+        }
+
+        void addAll(KeyCounts other) {
+            for (int slot = 0; slot < other._keys.length; slot++) {
+                if (other._used[slot])
+                    add(other._keys[slot], other._counts[slot]);
+            }
+        }
+
+        int[] sortedKeys() {
+            int[] keys = new int[_size];
+            int k = 0;
+            for (int slot = 0; slot < _keys.length; slot++) {
+                if (_used[slot])
+                    keys[k++] = _keys[slot];
+            }
+            Arrays.sort(keys);
+            return keys;
+        }
+
+        private void grow() {
+            int[] keys = _keys, counts = _counts;
+            boolean[] used = _used;
+            _keys = new int[keys.length * 2];
+            _counts = new int[keys.length * 2];
+            _used = new boolean[keys.length * 2];
+            _size = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (used[slot])
+                    add(keys[slot], counts[slot]);
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Parser of the lines of one chunk [start, end) of the file, through its own buffer.
+     * Numbers are parsed from the bytes, without a String per line.
+     */
+    private static class Parser {
+        private final FileChannel _ch;
+        private final long _start;
+        private final long _end;
+        private final Format _format;
+        private final boolean _first;
+        private final boolean _weights;
+        private final ByteBuffer _buf = ByteBuffer.allocate(BUFFER);
+        private final byte[] _bytes = _buf.array();
+        private long _line_pos;
+        private int _line_start;
+        private int _pos;
+        private int _line_end;
+
+        /**
+         * @param first   true iff the chunk starts at the start of the file (its first line may be a header)
+         * @param weights false to skip the weights (the first pass needs only the keys)
+         */
+        Parser(FileChannel ch, long start, long end, Format format, boolean first, boolean weights) {
+            _ch = ch;
+            _start = start;
+            _end = end;
+            _format = format;
+            _first = first;
+            _weights = weights;
+        }
+
+        void parse(EdgeSink sink) throws IOException {
+            long file_pos = _start;
+            int limit = 0;
+            boolean first_line = _first;
+            while (true) {
+                int want = (int) Math.min(_bytes.length - limit, _end - file_pos);
+                _buf.clear().position(limit).limit(limit + want);
+                while (_buf.hasRemaining() && _ch.read(_buf, file_pos + _buf.position() - limit) >= 0) {
+                }
+                int read = _buf.position() - limit;
+                file_pos += read;
+                limit += read;
+                boolean last = file_pos >= _end || read < want;
+                long base = file_pos - limit;
+
+                int line_start = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (_bytes[i] != '\n')
+                        continue;
+                    line(sink, line_start, i, first_line, base + line_start);
+                    first_line = false;
+                    line_start = i + 1;
+                }
+                if (last) {
+                    if (line_start < limit)
+                        line(sink, line_start, limit, first_line, base + line_start);
+                    return;
+                }
+                if (line_start == 0 && limit == _bytes.length)
+                    throw new IOException("line too long at byte " + base);
+                System.arraycopy(_bytes, line_start, _bytes, 0, limit - line_start);
+                limit -= line_start;
+            }
+        }
+
+        /**
+         * Parse the line [from, to) of the buffer.
+         */
+        private void line(EdgeSink sink, int from, int to, boolean first_line, long line_pos) throws IOException {
+            _pos = from;
+            _line_start = from;
+            _line_end = to > from && _bytes[to - 1] == '\r' ? to - 1 : to;
+            _line_pos = line_pos;
+            skipSpaces();
+            if (_pos == _line_end)
+                return;
+            byte c = _bytes[_pos];
+            if (_format == Format.DIMACS) {
+                if (c == 'c')
+                    return;
+                _pos++;
+                if (c == 'p') {
+                    skipSpaces();
+                    while (_pos < _line_end && _bytes[_pos] > ' ')
+                        _pos++;
+                    sink.nodes((int) parseLong());
+                } else if (c == 'a') {
+                    int a = (int) parseLong(), b = (int) parseLong();
+                    sink.edge(a, b, weight());
+                } else {
+                    throw error("unknown DIMACS line");
+                }
+                return;
+            }
+            if (c == '#')
+                return;
+            if (first_line && c != '-' && c != '+' && (c < '0' || c > '9'))
+                return;
+            int a = (int) parseLong();
+            separator();
+            int b = (int) parseLong();
+            skipSpaces();
+            if (_pos == _line_end) {
+                sink.edge(a, b, 1);
+                return;
+            }
+            separator();
+            sink.edge(a, b, weight());
+        }
+
+        private double weight() throws IOException {
+            if (!_weights)
+                return 0;
+            double w = parseDouble();
+            if (!(w >= 0))
+                throw error("negative weight");
+            return w;
+        }
+
+        private void separator() throws IOException {
+            skipSpaces();
+            if (_format == Format.CSV) {
+                if (_pos == _line_end || _bytes[_pos] != ',')
+                    throw error("expected ','");
+                _pos++;
+            }
+        }
+
+        private void skipSpaces() {
+            while (_pos < _line_end && (_bytes[_pos] == ' ' || _bytes[_pos] == '\t'))
+                _pos++;
+        }
+
+        private long parseLong() throws IOException {
+            skipSpaces();
+            boolean neg = false;
+            if (_pos < _line_end && (_bytes[_pos] == '-' || _bytes[_pos] == '+'))
+                neg = _bytes[_pos++] == '-';
+            int start = _pos;
+            long v = 0;
+            while (_pos < _line_end && _bytes[_pos] >= '0' && _bytes[_pos] <= '9' && _pos - start < 11)
+                v = v * 10 + (_bytes[_pos++] - '0');
+            if (_pos == start || (_pos < _line_end && _bytes[_pos] > ' ' && _bytes[_pos] != ','))
+                throw error("expected an integer");
+            v = neg ? -v : v;
+            if (v != (int) v)
+                throw error("integer out of range");
+            return v;
+        }
+
+        /**
+         * Parse a decimal number. Up to 15 significant digits with a small exponent are computed exactly
+         * (both the digits and the power of 10 are exact doubles, so one division or multiplication rounds
+         * correctly), anything else goes through {@link Double#parseDouble(String)}.
+         */
+        private double parseDouble() throws IOException {
+            skipSpaces();
+            int start = _pos;
+            boolean neg = false;
+            if (_pos < _line_end && (_bytes[_pos] == '-' || _bytes[_pos] == '+'))
+                neg = _bytes[_pos++] == '-';
+            long digits = 0;
+            int count = 0, scale = 0;
+            boolean dot = false, seen = false;
+            for (; _pos < _line_end; _pos++) {
+                byte b = _bytes[_pos];
+                if (b >= '0' && b <= '9') {
+                    seen = true;
+                    if (count < 18) {
+                        digits = digits * 10 + (b - '0');
+                        if (digits != 0)
+                            count++;
+                        if (dot)
+                            scale--;
+                    } else if (!dot) {
+                        scale++;
+                    }
+                } else if (b == '.' && !dot) {
+                    dot = true;
+                } else {
+                    break;
+                }
+            }
+            if (!seen)
+                return slowDouble(start);
+            int exp = 0;
+            if (_pos < _line_end && (_bytes[_pos] == 'e' || _bytes[_pos] == 'E')) {
+                _pos++;
+                exp = (int) parseLong();
+            }
+            if (_pos < _line_end && _bytes[_pos] > ' ' && _bytes[_pos] != ',')
+                return slowDouble(start);
+            scale += exp;
+            if (count > 15 || scale < -22 || scale > 22)
+                return slowDouble(start);
+            double v = scale < 0 ? digits / POW10[-scale] : digits * POW10[scale];
+            return neg ? -v : v;
+        }
+
+        private double slowDouble(int start) throws IOException {
+            int end = start;
+            while (end < _line_end && _bytes[end] > ' ' && _bytes[end] != ',')
+                end++;
+            _pos = end;
+            try {
+                return Double.parseDouble(new String(_bytes, start, end - start, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw error("expected a number");
+            }
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " in the line at byte " + _line_pos + ": "
+                    + new String(_bytes, _line_start, Math.min(80, _line_end - _line_start), StandardCharsets.US_ASCII));
+        }
+    }
+}
@@ -0,0 +1,403 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary file format of weighted graphs, used by {@link WGraph_Algo#save(String)} and
+ * {@link WGraph_Algo#load(String)} instead of java serialization.
+ * The graph is written from its {@link WGraph_CSR} snapshot, and read straight into a new graph,
+ * without any intermediate object graph.
+ * <p>
+ * Layout (version 1), all the numbers big endian:
+ * <pre>
+ * header    int magic "WGRF", byte version, byte type (0 WGraph_DS, 1 WGraph_Concurrent, 2 WGraph_CSR),
+ *           byte flags (1 float weights, 2 infos, 4 tags), varint nodes, varint edges, varint mode count
+ * keys      nodes varints - zigzag deltas of the sorted keys
+ * infos     if flag 2: per node, varint length + UTF-8 bytes
+ * tags      if flag 4: per node, double
+ * adjacency per node i: varint count of the neighbors j > i, count varint deltas of the dense indices
+ *           (from i, ascending), then count weights (floats if flag 1, otherwise doubles)
+ * checksum  int CRC32 of all the bytes before it
+ * </pre>
+ * The counts of a file are read before its checksum is checked, so they are bounded (neighbors by the nodes,
+ * edges by the pairs of nodes) and no array is sized by them - a corrupt count fails with an IOException
+ * at the end of the file instead of allocating a huge array.
+ * Every undirected edge is written once, by its lower index end. The weights are written as floats
+ * only if all of them are exactly floats, so reading a file always restores the same weights.
+ * Infos and tags are written only if some node has a non default value.
+ *
+ * @author davidfeust
+ */
+public class WGraph_File {
+
+    /**
+     * "WGRF"
+     */
+    static final int MAGIC = 0x57475246;
+    static final int VERSION = 1;
+
+    private static final int TYPE_DS = 0;
+    private static final int TYPE_CONCURRENT = 1;
+    private static final int TYPE_CSR = 2;
+    private static final int FLAG_FLOAT = 1;
+    private static final int FLAG_INFO = 2;
+    private static final int FLAG_TAG = 4;
+    private static final int BUFFER = 1 << 16;
+
+    private WGraph_File() {
+    }
+
+    /**
+     * Write g to out, in the binary format. out is flushed but not closed.
+     *
+     * @param g   the graph
+     * @param out stream to write to
+     * @throws IOException if out fails
+     */
+    public static void write(weighted_graph g, OutputStream out) throws IOException {
+        WGraph_CSR c = WGraph_CSR.of(g);
+        int n = c.nodeSize();
+        int flags = 0;
+        boolean floats = true;
+        for (int arc = 0, arcs = n == 0 ? 0 : c.arcEnd(n - 1); arc < arcs; arc++) {
+            double w = c.arcWeight(arc);
+            if ((double) (float) w != w) {
+                floats = false;
+                break;
+            }
+        }
+        if (floats)
+            flags |= FLAG_FLOAT;
+        for (int i = 0; i < n; i++) {
+            node_info node = c.nodeAt(i);
+            if (node.getInfo() != null && !node.getInfo().isEmpty())
+                flags |= FLAG_INFO;
+            if (Double.compare(node.getTag(), -1) != 0)
+                flags |= FLAG_TAG;
+        }
+
+        Writer w = new Writer(out);
+        w.writeInt(MAGIC);
+        w.writeByte(VERSION);
+        w.writeByte(g instanceof WGraph_Concurrent ? TYPE_CONCURRENT : g instanceof WGraph_CSR ? TYPE_CSR : TYPE_DS);
+        w.writeByte(flags);
+        w.writeVarLong(n);
+        w.writeVarLong(c.edgeSize());
+        w.writeVarLong(zigzag(c.getMC()));
+
+        long prev = 0;
+        for (int i = 0; i < n; i++) {
+            w.writeVarLong(zigzag(c.keyAt(i) - prev));
+            prev = c.keyAt(i);
+        }
+        if ((flags & FLAG_INFO) != 0) {
+            for (int i = 0; i < n; i++) {
+                String info = c.nodeAt(i).getInfo();
+                byte[] bytes = info == null ? new byte[0] : info.getBytes(StandardCharsets.UTF_8);
+                w.writeVarLong(bytes.length);
+                w.writeBytes(bytes);
+            }
+        }
+        if ((flags & FLAG_TAG) != 0) {
+            for (int i = 0; i < n; i++)
+                w.writeLong(Double.doubleToRawLongBits(c.nodeAt(i).getTag()));
+        }
+
+        for (int i = 0; i < n; i++) {
+            int first = c.arcEnd(i);
+            while (first > c.arcStart(i) && c.arcTarget(first - 1) > i)
+                first--;
+            w.writeVarLong(c.arcEnd(i) - first);
+            int last = i;
+            for (int arc = first; arc < c.arcEnd(i); arc++) {
+                w.writeVarLong(c.arcTarget(arc) - last);
+                last = c.arcTarget(arc);
+            }
+            for (int arc = first; arc < c.arcEnd(i); arc++) {
+                if (floats)
+                    w.writeInt(Float.floatToRawIntBits((float) c.arcWeight(arc)));
+                else
+                    w.writeLong(Double.doubleToRawLongBits(c.arcWeight(arc)));
+            }
+        }
+        w.writeChecksum();
+        w.flush();
+        out.flush();
+    }
+
+    /**
+     * Read a graph written by {@link #write(weighted_graph, OutputStream)} from in.
+     * The graph is of the same type as the written graph, with the same mode count. in is not closed.
+     *
+     * @param in stream to read from
+     * @return the graph
+     * @throws IOException if in fails, or it is not a valid graph file (bad magic, version, checksum or content)
+     */
+    public static weighted_graph read(InputStream in) throws IOException {
+        try {
+            return read(new Reader(in));
+        } catch (RuntimeException e) {
+            throw new IOException("corrupt graph file", e);
+        }
+    }
+
+    ////////////////////// Private /////////////////////
+
+    private static weighted_graph read(Reader r) throws IOException {
+        if (r.readInt() != MAGIC)
+            throw new IOException("not a graph file");
+        int version = r.readByte();
+        if (version != VERSION)
+            throw new IOException("unsupported graph file version: " + version);
+        int type = r.readByte();
+        int flags = r.readByte();
+        // the counts are not trusted before the checksum: no array is sized by them, only by the bytes read
+        int n = count(r.readVarLong(), Integer.MAX_VALUE - 8, "nodes");
+        int edges = count(r.readVarLong(), Math.min(Integer.MAX_VALUE, (long) n * (n - 1) / 2), "edges");
+        int mc = (int) unzigzag(r.readVarLong());
+
+        // every key is at least one byte, so keys grows with the file, not with n
+        int[] keys = new int[Math.min(n, BUFFER)];
+        long prev = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == keys.length)
+                keys = Arrays.copyOf(keys, (int) Math.min(n, 2L * i));
+            prev += unzigzag(r.readVarLong());
+            keys[i] = (int) prev;
+        }
+        // the graph is filled straight into its maps, not by addNode and connect, so loading reports no mutation
+        HashMap<Integer, node_info> nodes = new HashMap<>();
+        HashMap<Integer, HashMap<Integer, Double>> adjacency = new HashMap<>();
+        for (int key : keys) {
+            nodes.putIfAbsent(key, new WGraph_DS.NodeInfo(key));
+            adjacency.putIfAbsent(key, new HashMap<>());
+        }
+        if ((flags & FLAG_INFO) != 0) {
+            for (int i = 0; i < n; i++) {
+                byte[] bytes = r.readBytes(count(r.readVarLong(), Integer.MAX_VALUE - 8, "info bytes"));
+                nodes.get(keys[i]).setInfo(new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+        if ((flags & FLAG_TAG) != 0) {
+            for (int i = 0; i < n; i++)
+                nodes.get(keys[i]).setTag(Double.longBitsToDouble(r.readLong()));
+        }
+
+        int[] row = new int[16];
+        int edges_size = 0;
+        for (int i = 0; i < n; i++) {
+            // the neighbors j > i are distinct
+            int count = count(r.readVarLong(), n - i - 1, "neighbors");
+            if (count > row.length)
+                row = new int[Math.max(count, row.length * 2)];
+            int last = i;
+            for (int k = 0; k < count; k++) {
+                last += (int) r.readVarLong();
+                row[k] = last;
+            }
+            for (int k = 0; k < count; k++) {
+                double w = (flags & FLAG_FLOAT) != 0 ? Float.intBitsToFloat(r.readInt())
+                        : Double.longBitsToDouble(r.readLong());
+                // like connect: no self loops and no negative weights, an edge read again keeps the last weight
+                int a = keys[i], b = keys[row[k]];
+                if (a == b || w < 0)
+                    continue;
+                Double weight = w;
+                if (null == adjacency.get(a).put(b, weight))
+                    edges_size++;
+                adjacency.get(b).put(a, weight);
+            }
+        }
+        if (!r.checkChecksum())
+            throw new IOException("graph file checksum mismatch");
+        if (edges_size != edges)
+            throw new IOException("graph file has " + edges_size + " edges, expected " + edges);
+        WGraph_DS g = new WGraph_DS(nodes, adjacency, edges_size, mc);
+
+        if (type == TYPE_CONCURRENT)
+            return new WGraph_Concurrent(g);
+        if (type == TYPE_CSR)
+            return new WGraph_CSR(g);
+        return g;
+    }
+
+    /**
+     * @return v as an int, if it is at most max
+     * @throws IOException if v is more than max (or too big to be a varint of a count)
+     */
+    private static int count(long v, long max, String what) throws IOException {
+        if (v < 0 || v > max)
+            throw new IOException("corrupt graph file: " + v + " " + what + ", at most " + max);
+        return (int) v;
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Buffered writer of the primitives of the format, that updates the CRC32 once per buffer.
+     */
+    private static class Writer {
+        private final OutputStream _out;
+        private final byte[] _buf = new byte[BUFFER];
+        private final CRC32 _crc = new CRC32();
+        private int _pos;
+
+        Writer(OutputStream out) {
+            _out = out;
+        }
+
+        void writeByte(int b) throws IOException {
+            if (_pos == _buf.length)
+                flush();
+            _buf[_pos++] = (byte) b;
+        }
+
+        void writeInt(int v) throws IOException {
+            if (_pos + 4 > _buf.length)
+                flush();
+            _buf[_pos++] = (byte) (v >>> 24);
+            _buf[_pos++] = (byte) (v >>> 16);
+            _buf[_pos++] = (byte) (v >>> 8);
+            _buf[_pos++] = (byte) v;
+        }
+
+        void writeLong(long v) throws IOException {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        /**
+         * unsigned LEB128, 7 bits per byte.
+         */
+        void writeVarLong(long v) throws IOException {
+            if (_pos + 10 > _buf.length)
+                flush();
+            while ((v & ~0x7FL) != 0) {
+                _buf[_pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            _buf[_pos++] = (byte) v;
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            for (byte b : bytes)
+                writeByte(b);
+        }
+
+        void writeChecksum() throws IOException {
+            _crc.update(_buf, 0, _pos);
+            _out.write(_buf, 0, _pos);
+            _pos = 0;
+            writeInt((int) _crc.getValue());
+            _out.write(_buf, 0, _pos);
+            _pos = 0;
+        }
+
+        void flush() throws IOException {
+            _crc.update(_buf, 0, _pos);
+            _out.write(_buf, 0, _pos);
+            _pos = 0;
+        }
+    }
+
+    /**
+     * Buffered reader of the primitives of the format, that updates the CRC32 once per buffer.
+     */
+    private static class Reader {
+        private final InputStream _in;
+        private final byte[] _buf = new byte[BUFFER];
+        private final CRC32 _crc = new CRC32();
+        private int _pos;
+        private int _limit;
+
+        Reader(InputStream in) {
+            _in = in;
+        }
+
+        int readByte() throws IOException {
+            if (_pos == _limit)
+                fill(1);
+            return _buf[_pos++] & 0xFF;
+        }
+
+        int readInt() throws IOException {
+            if (_pos + 4 > _limit)
+                fill(4);
+            int v = (_buf[_pos] & 0xFF) << 24 | (_buf[_pos + 1] & 0xFF) << 16
+                    | (_buf[_pos + 2] & 0xFF) << 8 | (_buf[_pos + 3] & 0xFF);
+            _pos += 4;
+            return v;
+        }
+
+        long readLong() throws IOException {
+            return (long) readInt() << 32 | (readInt() & 0xFFFFFFFFL);
+        }
+
+        long readVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return v;
+            }
+            throw new IOException("malformed varint");
+        }
+
+        /**
+         * read length bytes - the array grows with the bytes read, so a corrupt length fails at the end of the file,
+         * before a huge array is allocated.
+         */
+        byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[Math.min(length, BUFFER)];
+            for (int i = 0; i < length; i++) {
+                if (i == bytes.length)
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * i));
+                bytes[i] = (byte) readByte();
+            }
+            return bytes;
+        }
+
+        /**
+         * read the checksum, and compare it to the CRC32 of all the bytes before it.
+         */
+        boolean checkChecksum() throws IOException {
+            if (_pos + 4 > _limit)
+                fill(4);
+            _crc.update(_buf, 0, _pos);
+            long expected = _crc.getValue();
+            int stored = (_buf[_pos] & 0xFF) << 24 | (_buf[_pos + 1] & 0xFF) << 16
+                    | (_buf[_pos + 2] & 0xFF) << 8 | (_buf[_pos + 3] & 0xFF);
+            _pos += 4;
+            return (int) expected == stored;
+        }
+
+        /**
+         * make at least need bytes available: the consumed bytes go into the CRC32, the rest moves to the start.
+         */
+        private void fill(int need) throws IOException {
+            _crc.update(_buf, 0, _pos);
+            int rest = _limit - _pos;
+            System.arraycopy(_buf, _pos, _buf, 0, rest);
+            _pos = 0;
+            _limit = rest;
+            while (_limit < need) {
+                int read = _in.read(_buf, _limit, _buf.length - _limit);
+                if (read < 0)
+                    throw new EOFException("unexpected end of graph file");
+                _limit += read;
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class represents an immutable weighted graph that is read straight from a memory mapped file
+ * in the CSR layout of {@link WGraph_CSR}, so {@link WGraph_Algo} runs on it unchanged.
+ * Opening the file only maps it - nothing is parsed, so the startup takes the same time for every size.
+ * The queries read the mapped pages directly, and the operating system faults in only the pages they touch.
+ * The pages belong to the page cache, so several JVMs that map the same file share one copy of the graph.
+ * <p>
+ * Layout (version 1), all the numbers little endian:
+ * <pre>
+ * header    64 bytes: bytes "WGRM", int version, int flags (1 infos, 2 contiguous keys),
+ *           int nodes, int arcs, int edges, int mode count, zero padding
+ * keys      int[nodes], sorted ascending
+ * offsets   int[nodes + 1] - the arcs of node i are [offsets[i], offsets[i+1])
+ * neighbors int[arcs] - dense index of the head of every arc, sorted ascending in every row
+ * weights   double[arcs], aligned to 8 bytes
+ * infos     if flag 1: int[nodes + 1] byte offsets, then the UTF-8 bytes of the infos of all the nodes
+ * </pre>
+ * A key is found in O(1) time if the keys are contiguous, and by binary search on the mapped keys otherwise.
+ * The node_info objects are created on demand, and only the nodes that were returned are kept on the heap
+ * (so a change of their info or tag is seen by the next call). The tags start at -1 - they are not stored.
+ * Every section must be smaller than 2GB (about 268 million arcs). The file is not checksummed,
+ * since checking it would fault in the whole file. The mapping is released when the graph is garbage collected.
+ * Serializing a mapped graph writes a {@link WGraph_CSR} copy of it.
+ *
+ * @author davidfeust
+ */
+public class WGraph_Mapped extends WGraph_CSR {
+
+    private static final byte[] MAGIC = {'W', 'G', 'R', 'M'};
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int FLAG_INFO = 1;
+    private static final int FLAG_CONTIGUOUS = 2;
+
+    private final int _n;
+    private final boolean _contiguous;
+    private final int _first_key;
+    private final IntBuffer _keys;
+    private final IntBuffer _offsets;
+    private final IntBuffer _neighbors;
+    private final DoubleBuffer _weights;
+    private final IntBuffer _info_offsets;
+    private final ByteBuffer _infos;
+    private final ConcurrentHashMap<Integer, node_info> _nodes;
+    private final String _file;
+
+    private WGraph_Mapped(String file, int n, int edges, int mc, boolean contiguous, IntBuffer keys, IntBuffer offsets,
+                          IntBuffer neighbors, DoubleBuffer weights, IntBuffer info_offsets, ByteBuffer infos) {
+        super(edges, mc);
+        _file = file;
+        _n = n;
+        _contiguous = contiguous;
+        _keys = keys;
+        _first_key = n == 0 ? 0 : keys.get(0);
+        _offsets = offsets;
+        _neighbors = neighbors;
+        _weights = weights;
+        _info_offsets = info_offsets;
+        _infos = infos;
+        _nodes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Map a graph file written by {@link #write(weighted_graph, String)}.
+     *
+     * @param file the file name (may include a relative path).
+     * @return the mapped graph
+     * @throws IOException if the file can not be mapped, or it is not a valid mapped graph file
+     */
+    public static WGraph_Mapped open(String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            if (ch.size() < HEADER)
+                throw new IOException("not a mapped graph file: " + file);
+            ByteBuffer header = map(ch, 0, HEADER, FileChannel.MapMode.READ_ONLY);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (header.get(i) != MAGIC[i])
+                    throw new IOException("not a mapped graph file: " + file);
+            }
+            if (header.getInt(4) != VERSION)
+                throw new IOException("unsupported mapped graph file version: " + header.getInt(4));
+            int flags = header.getInt(8);
+            int n = header.getInt(12), arcs = header.getInt(16), edges = header.getInt(20), mc = header.getInt(24);
+            if (n < 0 || arcs < 0 || edges < 0)
+                throw new IOException("corrupt mapped graph file: " + file);
+
+            long[] pos = sections(n, arcs);
+            long end = pos[4];
+            IntBuffer info_offsets = null;
+            ByteBuffer infos = null;
+            if ((flags & FLAG_INFO) != 0) {
+                if (ch.size() < end + 4L * (n + 1))
+                    throw new IOException("truncated mapped graph file: " + file);
+                info_offsets = map(ch, end, 4L * (n + 1), FileChannel.MapMode.READ_ONLY).asIntBuffer();
+                long bytes = info_offsets.get(n);
+                if (bytes < 0 || ch.size() < end + 4L * (n + 1) + bytes)
+                    throw new IOException("corrupt mapped graph file: " + file);
+                infos = map(ch, end + 4L * (n + 1), bytes, FileChannel.MapMode.READ_ONLY);
+                end += 4L * (n + 1) + bytes;
+            }
+            if (ch.size() < end)
+                throw new IOException("truncated mapped graph file: " + file);
+            return new WGraph_Mapped(file, n, edges, mc, (flags & FLAG_CONTIGUOUS) != 0,
+                    map(ch, pos[0], 4L * n, FileChannel.MapMode.READ_ONLY).asIntBuffer(),
+                    map(ch, pos[1], 4L * (n + 1), FileChannel.MapMode.READ_ONLY).asIntBuffer(),
+                    map(ch, pos[2], 4L * arcs, FileChannel.MapMode.READ_ONLY).asIntBuffer(),
+                    map(ch, pos[3], 8L * arcs, FileChannel.MapMode.READ_ONLY).asDoubleBuffer(),
+                    info_offsets, infos);
+        }
+    }
+
+    /**
+     * Write g to file in the mapped layout, from the {@link WGraph_CSR} snapshot of g.
+     *
+     * @param g    the graph
+     * @param file the file name (may include a relative path).
+     * @throws IOException if the file can not be written
+     */
+    public static void write(weighted_graph g, String file) throws IOException {
+        WGraph_CSR c = WGraph_CSR.of(g);
+        int n = c.nodeSize();
+        int arcs = n == 0 ? 0 : c.arcEnd(n - 1);
+        byte[][] infos = null;
+        long info_bytes = 0;
+        for (int i = 0; i < n; i++) {
+            String info = c.nodeAt(i).getInfo();
+            if (info != null && !info.isEmpty()) {
+                if (infos == null)
+                    infos = new byte[n][];
+                infos[i] = info.getBytes(StandardCharsets.UTF_8);
+                info_bytes += infos[i].length;
+            }
+        }
+        boolean contiguous = n == 0 || (long) c.keyAt(n - 1) - c.keyAt(0) == n - 1;
+
+        long[] pos = sections(n, arcs);
+        long size = pos[4] + (infos == null ? 0 : 4L * (n + 1) + info_bytes);
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = map(ch, 0, HEADER, FileChannel.MapMode.READ_WRITE);
+            header.put(MAGIC);
+            header.putInt(VERSION);
+            header.putInt((infos == null ? 0 : FLAG_INFO) | (contiguous ? FLAG_CONTIGUOUS : 0));
+            header.putInt(n);
+            header.putInt(arcs);
+            header.putInt(c.edgeSize());
+            header.putInt(c.getMC());
+
+            IntBuffer keys = map(ch, pos[0], 4L * n, FileChannel.MapMode.READ_WRITE).asIntBuffer();
+            IntBuffer offsets = map(ch, pos[1], 4L * (n + 1), FileChannel.MapMode.READ_WRITE).asIntBuffer();
+            IntBuffer neighbors = map(ch, pos[2], 4L * arcs, FileChannel.MapMode.READ_WRITE).asIntBuffer();
+            DoubleBuffer weights = map(ch, pos[3], 8L * arcs, FileChannel.MapMode.READ_WRITE).asDoubleBuffer();
+            for (int i = 0; i < n; i++) {
+                keys.put(c.keyAt(i));
+                offsets.put(c.arcStart(i));
+            }
+            offsets.put(arcs);
+            for (int arc = 0; arc < arcs; arc++) {
+                neighbors.put(c.arcTarget(arc));
+                weights.put(c.arcWeight(arc));
+            }
+
+            if (infos != null) {
+                IntBuffer info_offsets = map(ch, pos[4], 4L * (n + 1), FileChannel.MapMode.READ_WRITE).asIntBuffer();
+                ByteBuffer bytes = map(ch, pos[4] + 4L * (n + 1), info_bytes, FileChannel.MapMode.READ_WRITE);
+                for (int i = 0; i < n; i++) {
+                    info_offsets.put(bytes.position());
+                    if (infos[i] != null)
+                        bytes.put(infos[i]);
+                }
+                info_offsets.put(bytes.position());
+            }
+            ch.truncate(size);
+            ch.force(false);
+        }
+    }
+
+    /**
+     * This method return an unmodifiable Collection representing all the nodes in the graph,
+     * in ascending order of their keys.
+     * this method run in O(1) time, the nodes are created while iterating.
+     *
+     * @return Collection<node_data>
+     */
+    @Override
+    public Collection<node_info> getV() {
+        return Collections.unmodifiableList(new AbstractList<node_info>() {
+            @Override
+            public node_info get(int i) {
+                return nodeAt(i);
+            }
+
+            @Override
+            public int size() {
+                return _n;
+            }
+        });
+    }
+
+    /**
+     * return the number of vertices (nodes) in the graph.
+     *
+     * @return number of vertices
+     */
+    @Override
+    public int nodeSize() {
+        return _n;
+    }
+
+    @Override
+    public String toString() {
+        return "WGraph_Mapped:" +
+                " file=" + _file +
+                ", mode_count=" + getMC() +
+                ", node_size=" + _n +
+                ", edge_size=" + edgeSize() +
+                "\n";
+    }
+
+    ////////////////////// Dense index access /////////////////////
+
+    /**
+     * return the dense index of the node with the given key.
+     * the keys are either contiguous (index = key - first key) or binary searched in the mapped keys.
+     *
+     * @param key node id
+     * @return index in 0..nodeSize()-1, or -1 if there is no such node
+     */
+    @Override
+    int indexOf(int key) {
+        if (_contiguous) {
+            long i = (long) key - _first_key;
+            return i >= 0 && i < _n ? (int) i : -1;
+        }
+        int lo = 0, hi = _n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int k = _keys.get(mid);
+            if (k < key)
+                lo = mid + 1;
+            else if (k > key)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    @Override
+    int keyAt(int i) {
+        return _keys.get(i);
+    }
+
+    /**
+     * return the node_info of the node with index i, created on the first call with the info of the file.
+     */
+    @Override
+    node_info nodeAt(int i) {
+        return _nodes.computeIfAbsent(i, this::createNode);
+    }
+
+    @Override
+    int arcStart(int i) {
+        return _offsets.get(i);
+    }
+
+    @Override
+    int arcEnd(int i) {
+        return _offsets.get(i + 1);
+    }
+
+    @Override
+    int arcTarget(int arc) {
+        return _neighbors.get(arc);
+    }
+
+    @Override
+    double arcWeight(int arc) {
+        return _weights.get(arc);
+    }
+
+    ////////////////////// Private /////////////////////
+
+    private node_info createNode(int i) {
+        WGraph_DS.NodeInfo node = new WGraph_DS.NodeInfo(_keys.get(i));
+        if (_infos != null) {
+            int from = _info_offsets.get(i), to = _info_offsets.get(i + 1);
+            byte[] bytes = new byte[to - from];
+            for (int b = 0; b < bytes.length; b++)
+                bytes[b] = _infos.get(from + b);
+            node.setInfo(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return node;
+    }
+
+    /**
+     * @return the positions of the keys, offsets, neighbors, weights and infos sections
+     */
+    private static long[] sections(int n, int arcs) {
+        long keys = HEADER;
+        long offsets = keys + 4L * n;
+        long neighbors = offsets + 4L * (n + 1);
+        long weights = (neighbors + 4L * arcs + 7) & ~7L;
+        long infos = weights + 8L * arcs;
+        return new long[]{keys, offsets, neighbors, weights, infos};
+    }
+
+    private static MappedByteBuffer map(FileChannel ch, long pos, long size, FileChannel.MapMode mode) throws IOException {
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("mapped graph section is too big: " + size + " bytes");
+        MappedByteBuffer buf = ch.map(mode, pos, size);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        return buf;
+    }
+
+    /**
+     * Serialize a heap copy of this graph, the mapping itself can not be serialized.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return new WGraph_CSR(this);
+    }
+}
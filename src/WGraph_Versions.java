@@ -0,0 +1,203 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class represents versioned (MVCC) snapshots of a live weighted graph.
+ * The writer changes the source graph as usual, and calls {@link #publish()} to publish its current state
+ * as a new immutable {@link WGraph_CSR} version, numbered by the mode count of the source.
+ * A reader calls {@link #pin()} to hold the current version for the length of a query, and closes it when done,
+ * so queries never see a torn graph, and readers never lock each other nor the writer.
+ * Every version counts its holders: the store holds the current version, and every pin holds it once more.
+ * When a version is replaced and its last holder closes it, it is reclaimed - its graph is dropped.
+ * <p>
+ * Typical use:
+ * <pre>
+ * WGraph_Versions versions = new WGraph_Versions(g);
+ * // writer thread
+ * g.connect(1, 2, 0.5);
+ * versions.publish();
+ * // reader threads
+ * try (WGraph_Versions.Version v = versions.pin()) {
+ *     new WGraph_Algo(v.graph()).shortestPathDist(1, 2);
+ * }
+ * </pre>
+ * or {@link WGraph_Algo#WGraph_Algo(WGraph_Versions)}, which pins the current version for every query.
+ *
+ * @author davidfeust
+ */
+public class WGraph_Versions {
+
+    private final weighted_graph _source;
+    private final AtomicReference<Entry> _current;
+    private final AtomicInteger _live;
+
+    /**
+     * A pin of a version of the graph, one per holder - every {@link #pin()} returns a new one.
+     * Closing it releases the pin, closing it again does nothing.
+     */
+    public static final class Version implements AutoCloseable {
+        private final Entry _entry;
+        private final AtomicBoolean _closed;
+
+        private Version(Entry entry) {
+            _entry = entry;
+            _closed = new AtomicBoolean();
+        }
+
+        /**
+         * @return the immutable graph of this version
+         * @throws IllegalStateException if this pin was already closed
+         */
+        public WGraph_CSR graph() {
+            if (_closed.get())
+                throw new IllegalStateException("pin of version " + _entry._version + " was closed");
+            return _entry.graph();
+        }
+
+        /**
+         * @return the mode count of the source graph when this version was published
+         */
+        public int version() {
+            return _entry._version;
+        }
+
+        /**
+         * Release this pin, if it was not released yet.
+         */
+        @Override
+        public void close() {
+            if (_closed.compareAndSet(false, true))
+                _entry.release();
+        }
+
+        @Override
+        public String toString() {
+            return "Version{" + _entry._version + (_closed.get() ? ", closed" : "") + '}';
+        }
+    }
+
+    /**
+     * A published version, shared by its holders: the store holds the current version, and every open pin holds it
+     * once more. When the last holder releases it, it is reclaimed.
+     */
+    private static final class Entry {
+        private volatile WGraph_CSR _graph;
+        private final int _version;
+        private final AtomicInteger _refs;
+        private final AtomicInteger _live;
+
+        private Entry(WGraph_CSR graph, AtomicInteger live) {
+            _graph = graph;
+            _version = graph.getMC();
+            _refs = new AtomicInteger(1);
+            _live = live;
+            live.incrementAndGet();
+        }
+
+        private WGraph_CSR graph() {
+            WGraph_CSR g = _graph;
+            if (g == null)
+                throw new IllegalStateException("version " + _version + " was reclaimed");
+            return g;
+        }
+
+        /**
+         * add a holder, unless the version was already reclaimed.
+         *
+         * @return true iff the version is held
+         */
+        private boolean tryAcquire() {
+            for (int r = _refs.get(); r > 0; r = _refs.get()) {
+                if (_refs.compareAndSet(r, r + 1))
+                    return true;
+            }
+            return false;
+        }
+
+        private void release() {
+            if (_refs.decrementAndGet() == 0) {
+                _graph = null;
+                _live.decrementAndGet();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Version{" + _version + ", refs=" + _refs.get() + '}';
+        }
+    }
+
+    /**
+     * Constructor.
+     * publishes the current state of g as the first version.
+     *
+     * @param g the live source graph
+     */
+    public WGraph_Versions(weighted_graph g) {
+        _source = g;
+        _live = new AtomicInteger();
+        _current = new AtomicReference<>(new Entry(WGraph_CSR.of(g), _live));
+    }
+
+    /**
+     * @return the live source graph
+     */
+    public weighted_graph source() {
+        return _source;
+    }
+
+    /**
+     * Publish the current state of the source as a new version, if it was changed since the current version.
+     * Should be called by the writer (or under the locks of the writers) - a {@link WGraph_DS} source must not
+     * be changed while it is frozen, a {@link WGraph_Concurrent} source is frozen under its own locks.
+     * The replaced version is reclaimed as soon as its last reader closes it.
+     *
+     * @return true iff a new version was published
+     */
+    public boolean publish() {
+        Entry curr = _current.get();
+        WGraph_CSR g = curr._graph;
+        if (g != null && g.getMC() == _source.getMC() && g.nodeSize() == _source.nodeSize())
+            return false;
+        Entry next = new Entry(WGraph_CSR.of(_source), _live);
+        _current.getAndSet(next).release();
+        return true;
+    }
+
+    /**
+     * Pin the current version. Never blocks - if a new version is published meanwhile, it simply pins the new one.
+     * The returned pin must be closed (try-with-resources), it is not shared with any other holder.
+     *
+     * @return a new pin of the current version, held until it is closed
+     */
+    public Version pin() {
+        while (true) {
+            Entry e = _current.get();
+            if (e.tryAcquire())
+                return new Version(e);
+        }
+    }
+
+    /**
+     * @return the version number (mode count) of the current version
+     */
+    public int currentVersion() {
+        return _current.get()._version;
+    }
+
+    /**
+     * @return the number of versions that were not reclaimed yet (the current one and the ones still pinned)
+     */
+    public int liveVersions() {
+        return _live.get();
+    }
+
+    @Override
+    public String toString() {
+        return "WGraph_Versions{" +
+                "current=" + _current.get() +
+                ", live=" + _live.get() +
+                '}';
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * This interface represents a visitor of the nodes found by a bounded search of a weighted graph.
+ * It receives the nodes one by one, in increasing order of their distance from the source,
+ * while the search runs - so the caller can use the nearest nodes before the farther ones were found,
+ * and can stop the search when it has enough.
+ *
+ * @see WGraph_Algo#nearest(int, double, int, java.util.function.Predicate, distance_visitor)
+ */
+@FunctionalInterface
+public interface distance_visitor {
+    /**
+     * Called once for every node the search found.
+     * @param node - the node
+     * @param dist - the length of the shortest path from the source to node
+     * @return true to continue the search, false to stop it
+     */
+    public boolean visit(node_info node, double dist);
+}
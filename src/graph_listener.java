@@ -0,0 +1,29 @@
+/**
+ * This interface represents a listener of the changes of a weighted graph.
+ * Every method is called after the change was done, so the graph it listens to is already changed.
+ * A listener must not change the graph it listens to.
+ *
+ * @see WGraph_DS#addListener(graph_listener)
+ */
+public interface graph_listener {
+    /**
+     * Called after a node was added.
+     * @param key - the key (id) of the new node
+     */
+    public void nodeAdded(int key);
+
+    /**
+     * Called after a node was removed. The edges of the node were removed before, each one with edgeChanged.
+     * @param key - the key (id) of the removed node
+     */
+    public void nodeRemoved(int key);
+
+    /**
+     * Called after an edge was connected, reconnected with a new weight, or removed.
+     * @param node1 - the key (id) of one end of the edge
+     * @param node2 - the key (id) of the other end of the edge
+     * @param old_w - the weight of the edge before the change, -1 if the edge is new
+     * @param w - the weight of the edge after the change, -1 if the edge was removed
+     */
+    public void edgeChanged(int node1, int node2, double old_w, double w);
+}
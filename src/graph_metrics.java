@@ -0,0 +1,51 @@
+/**
+ * This interface represents a sink of the metrics of a weighted graph and its algorithms:
+ * the work and the latency of every query of {@link WGraph_Algo}, and the mutations of {@link WGraph_DS}.
+ * The methods are called on the thread of the query (or of the mutation), so they must be cheap and thread safe.
+ * A graph without metrics (null) does not time its queries at all, see {@link GraphMetrics} for the default sink.
+ *
+ * @see WGraph_Algo#setMetrics(graph_metrics)
+ * @see WGraph_DS#setMetrics(graph_metrics)
+ */
+public interface graph_metrics {
+
+    /**
+     * The measured queries of {@link WGraph_Algo}.
+     */
+    enum Query {
+        SHORTEST_PATH_DIST,
+        SHORTEST_PATH,
+        SHORTEST_PATH_TREE,
+        NEAREST,
+        SHORTEST_PATH_DISTS,
+        DISTANCE_MATRIX,
+        IS_CONNECTED,
+        CONNECTED_COMPONENTS
+    }
+
+    /**
+     * The counted mutations of {@link WGraph_DS}.
+     */
+    enum Mutation {
+        ADD_NODE,
+        REMOVE_NODE,
+        CONNECT,
+        REMOVE_EDGE
+    }
+
+    /**
+     * Called after a query was done.
+     * @param q - the query
+     * @param nanos - the latency of the query
+     * @param settled - the number of nodes the query settled (or reached, for a BFS)
+     * @param relaxed - the number of arcs the query scanned
+     * @param heap_ops - the number of inserts, decreases and polls of the queues of the query
+     */
+    public void query(Query q, long nanos, long settled, long relaxed, long heap_ops);
+
+    /**
+     * Called after a mutation was done.
+     * @param m - the mutation
+     */
+    public void mutation(Mutation m);
+}
@@ -0,0 +1,16 @@
+/**
+ * This interface represents a visitor of the neighbors of a node in a weighted graph.
+ * It receives the key of every neighbor together with the weight of the edge to it,
+ * so iterating the neighbors does not need a Collection of nodes nor a getEdge() lookup per neighbor.
+ *
+ * @see weighted_graph#forEachNeighbor(int, neighbor_visitor)
+ */
+@FunctionalInterface
+public interface neighbor_visitor {
+    /**
+     * Called once for every neighbor of the visited node.
+     * @param key - the key (id) of the neighbor
+     * @param w - the weight of the edge between the visited node and the neighbor
+     */
+    public void visit(int key, double w);
+}
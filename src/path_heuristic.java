@@ -0,0 +1,30 @@
+/**
+ * This interface represents a heuristic for A* search on a weighted graph:
+ * a lower bound of the length of the shortest path between two nodes.
+ * The estimate must be admissible (never more than the real distance) and consistent
+ * (estimate(u, t) <= w(u, v) + estimate(v, t) for every edge (u, v)), otherwise A* may return a longer path.
+ * The zero heuristic turns A* into plain dijkstra.
+ *
+ * @see WGraph_Algo#setHeuristic(path_heuristic)
+ */
+@FunctionalInterface
+public interface path_heuristic {
+    /**
+     * return a lower bound of the length of the shortest path between node and target
+     * @param node - the key (id) of the node
+     * @param target - the key (id) of the target node
+     * @return lower bound >= 0
+     */
+    public double estimate(int node, int target);
+
+    /**
+     * return true iff the estimates of this heuristic are valid on the snapshot g.
+     * A heuristic built from a snapshot of the graph is not admissible after the graph is changed,
+     * and A* runs as plain dijkstra on a snapshot it does not describe.
+     * @param g - snapshot of the graph of the query
+     * @return true by default, for a heuristic that does not depend on the graph
+     */
+    default boolean describes(WGraph_CSR g) {
+        return true;
+    }
+}
@@ -58,6 +58,22 @@ public interface weighted_graph {
      * @return Collection<node_data>
      */
     public Collection<node_info> getV(int node_id);
+    /**
+     * Visit all the neighbors of node_id, each one with the weight of the edge to it.
+     * Unlike getV(node_id), implementations should not allocate a Collection for the neighbors.
+     * Note: this method can run in O(k) time, k - being the degree of node_id.
+     * Note2: the graph must not be changed by the visitor.
+     * If there is no such node -> no action should be performed.
+     * @param node_id the key of the node
+     * @param visitor receives the key of every neighbor and the weight of the edge
+     */
+    public default void forEachNeighbor(int node_id, neighbor_visitor visitor) {
+        Collection<node_info> c = getV(node_id);
+        if (c == null)
+            return;
+        for (node_info n : c)
+            visitor.visit(n.getKey(), getEdge(node_id, n.getKey()));
+    }
     /**
      * Delete the node (with the given ID) from the graph -
      * and removes all edges which starts or ends at this node.
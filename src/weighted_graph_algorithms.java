@@ -54,6 +54,36 @@ public interface weighted_graph_algorithms {
      */
     public List<node_info> shortestPath(int src, int dest);
 
+    /**
+     * returns the shortest path tree of src - the lengths of the shortest paths from src to all the nodes,
+     * from which the path to every node can be restored
+     * Note: if src is not in the graph --> returns null
+     * @param src - start node
+     * @return the tree of src
+     */
+    public ShortestPathTree shortestPathTree(int src);
+
+    /**
+     * returns the lengths of the shortest paths between srcs[i] to dests[i], for every i
+     * Note: if no such path (or no such node) --> the entry is -1
+     * Note2: the queries are grouped by source, so every source is computed once, and the groups may run in parallel.
+     * @param srcs - start nodes
+     * @param dests - end (target) nodes, dests.length == srcs.length
+     * @return the distances, in the order of the queries
+     */
+    public double[] shortestPathDists(int[] srcs, int[] dests);
+
+    /**
+     * returns the matrix of the lengths of the shortest paths from every node of srcs to every node of dests,
+     * flat in row-major order: the entry of srcs[r] and dests[c] is at r * dests.length + c
+     * Note: if no such path (or no such node) --> the entry is -1
+     * Note2: every row is computed by one search that stops when all of dests were reached, and the rows may run in parallel.
+     * @param srcs - start nodes (the rows)
+     * @param dests - end (target) nodes (the columns)
+     * @return the distances, srcs.length * dests.length entries
+     */
+    public double[] distanceMatrix(int[] srcs, int[] dests);
+
     /**
      * Saves this weighted (undirected) graph to the given
      * file name
@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress tests on the large graphs of {@link StressFixtures} (the directory of the fixtures.dir property):
+ * every file is loaded in its format and compared to the manifest, and the search modes and the
+ * connectivity queries of {@link WGraph_Algo} are compared to each other on the loaded graphs.
+ */
+class LargeGraphStressTest {
+
+    private static final int PAIRS = 50;
+    private static final double EPS = 1e-9;
+
+    private static File dir;
+    private static Properties manifest;
+
+    @BeforeAll
+    static void fixtures() throws IOException {
+        dir = new File(System.getProperty("fixtures.dir", "build/fixtures"));
+        manifest = new Properties();
+        try (Reader r = new FileReader(new File(dir, "fixtures.properties"))) {
+            manifest.load(r);
+        }
+    }
+
+    @Test
+    void grid() throws IOException {
+        weighted_graph g;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(new File(dir, manifest.getProperty("grid.file"))))) {
+            g = WGraph_File.read(in);
+        }
+        checkCounts("grid", g);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        assertTrue(ga.isConnected());
+        assertEquals(1, ga.connectedComponents());
+        checkModes(g, false);
+    }
+
+    @Test
+    void random() throws IOException {
+        WGraph_Mapped g = WGraph_Mapped.open(new File(dir, manifest.getProperty("random.file")).getPath());
+        checkCounts("random", g);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        assertEquals(ga.connectedComponents() == 1, ga.isConnected());
+        checkModes(g, false);
+    }
+
+    @Test
+    void road() throws IOException {
+        WGraph_CSR g = WGraph_EdgeList.read(new File(dir, manifest.getProperty("road.file")).getPath(),
+                WGraph_EdgeList.Format.DIMACS);
+        checkCounts("road", g);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        assertEquals(ga.connectedComponents() == 1, ga.isConnected());
+        checkModes(g, true);
+    }
+
+    ////////////////////// Private /////////////////////
+
+    private static void checkCounts(String name, weighted_graph g) {
+        assertEquals(Integer.parseInt(manifest.getProperty(name + ".nodes")), g.nodeSize(), name + " nodes");
+        assertEquals(Integer.parseInt(manifest.getProperty(name + ".edges")), g.edgeSize(), name + " edges");
+    }
+
+    /**
+     * Every mode gives the distance of dijkstra on random pairs, and a path of that weight.
+     */
+    private static void checkModes(weighted_graph g, boolean hierarchy) {
+        WGraph_Algo dijkstra = new WGraph_Algo(g);
+        WGraph_Algo.Mode[] modes = hierarchy ? WGraph_Algo.Mode.values()
+                : new WGraph_Algo.Mode[]{WGraph_Algo.Mode.BIDIRECTIONAL, WGraph_Algo.Mode.A_STAR};
+        int[] keys = new int[g.nodeSize()];
+        int i = 0;
+        for (node_info n : g.getV())
+            keys[i++] = n.getKey();
+        Random r = new Random(19);
+        for (WGraph_Algo.Mode mode : modes) {
+            WGraph_Algo ga = new WGraph_Algo(g);
+            ga.setMode(mode);
+            for (int p = 0; p < PAIRS; p++) {
+                int src = keys[r.nextInt(keys.length)], dest = keys[r.nextInt(keys.length)];
+                double expected = dijkstra.shortestPathDist(src, dest);
+                assertEquals(expected, ga.shortestPathDist(src, dest), EPS * Math.max(1, expected), mode + " " + src + "->" + dest);
+                List<node_info> path = ga.shortestPath(src, dest);
+                if (expected < 0) {
+                    assertNull(path);
+                    continue;
+                }
+                double w = 0;
+                for (int k = 1; k < path.size(); k++)
+                    w += g.getEdge(path.get(k - 1).getKey(), path.get(k).getKey());
+                assertEquals(expected, w, EPS * Math.max(1, expected), mode + " path " + src + "->" + dest);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Soak test of the incremental structures: for soak.seconds seconds (the property, 60 by default)
+ * a graph is changed at random - edges added, reweighted and removed, nodes removed and added back -
+ * while {@link DynamicShortestPaths}, {@link DynamicConnectivity} and a {@link WGraph_Algo} with a
+ * {@link PathCache} follow it. Every few hundred changes all of them are checked against a fresh
+ * {@link WGraph_Algo} on a copy of the graph.
+ */
+class SoakTest {
+
+    private static final int SIDE = 60;
+    private static final int CHECK_EVERY = 500;
+    private static final double EPS = 1e-9;
+
+    @Test
+    void soak() {
+        long seconds = Long.getLong("soak.seconds", 60);
+        Random r = new Random(19);
+        int size = SIDE * SIDE;
+        WGraph_DS g = new WGraph_DS();
+        for (int i = 0; i < size; i++)
+            g.addNode(i);
+        for (int i = 0; i < size; i++) {
+            if (i % SIDE + 1 < SIDE) g.connect(i, i + 1, 1 + r.nextInt(10));
+            if (i / SIDE + 1 < SIDE) g.connect(i, i + SIDE, 1 + r.nextInt(10));
+        }
+        WGraph_Algo cached = new WGraph_Algo(g);
+        cached.setCache(new PathCache(1 << 20));
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long changes = 0, checks = 0;
+        try (DynamicShortestPaths sssp = new DynamicShortestPaths(g, 0);
+             DynamicConnectivity cc = new DynamicConnectivity(g)) {
+            do {
+                for (int k = 0; k < CHECK_EVERY; k++, changes++)
+                    change(g, r, size);
+                check(g, sssp, cc, cached, r, size);
+                checks++;
+            } while (System.nanoTime() < deadline);
+        }
+        assertTrue(checks > 0);
+        assertEquals(checks * CHECK_EVERY, changes);
+    }
+
+    ////////////////////// Private /////////////////////
+
+    private static void change(WGraph_DS g, Random r, int size) {
+        int a = r.nextInt(size), b = r.nextInt(size);
+        int op = r.nextInt(100);
+        if (op < 40) {
+            int near = a + (r.nextBoolean() ? 1 : SIDE);
+            g.connect(a, near < size ? near : b, 1 + r.nextInt(10));
+        } else if (op < 75) {
+            if (g.getNode(a) == null)
+                return;
+            node_info nei = null;
+            for (node_info n : g.getV(a)) {
+                nei = n;
+                break;
+            }
+            if (nei != null) g.removeEdge(a, nei.getKey());
+        } else if (op < 80) {
+            g.connect(a, b, 1 + r.nextInt(50));
+        } else if (op < 85) {
+            if (a != 0) g.removeNode(a);
+        } else {
+            g.addNode(a);
+        }
+    }
+
+    private static void check(WGraph_DS g, DynamicShortestPaths sssp, DynamicConnectivity cc, WGraph_Algo cached,
+                              Random r, int size) {
+        WGraph_Algo fresh = new WGraph_Algo(WGraph_CSR.of(g));
+        assertEquals(fresh.connectedComponents(), cc.connectedComponents());
+        assertEquals(fresh.isConnected(), cc.isConnected());
+        for (int q = 0; q < 50; q++) {
+            int dest = r.nextInt(size);
+            double expected = fresh.shortestPathDist(0, dest);
+            assertEquals(expected, sssp.dist(dest), EPS * Math.max(1, expected), "0->" + dest);
+            assertEquals(expected >= 0, cc.connected(0, dest), "0-" + dest);
+            int src = r.nextInt(8);
+            double d = fresh.shortestPathDist(src, dest);
+            assertEquals(d, cached.shortestPathDist(src, dest), EPS * Math.max(1, d), src + "->" + dest);
+            assertEquals(d, cached.shortestPathDist(src, dest), EPS * Math.max(1, d), src + "->" + dest + " again");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Generates the large graphs of the stress tests (run by the generateFixtures task of the build),
+ * every one with a fixed seed, in the formats the library reads:
+ * <ul>
+ * <li>grid.wgf - a 1000x1000 grid, weights 1..10, in the binary format of {@link WGraph_File}.</li>
+ * <li>random.wgm - 500000 nodes with 2000000 uniform random edges, as a {@link WGraph_Mapped} file.</li>
+ * <li>road.gr - a 500x500 road-like grid (jittered coordinates, some edges removed, a few highways),
+ * as a DIMACS edge list of {@link WGraph_EdgeList}.</li>
+ * </ul>
+ * fixtures.properties describes every file: its format, and the node and edge counts of the graph.
+ *
+ * @author davidfeust
+ */
+public class StressFixtures {
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "build/fixtures");
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("can not create " + dir);
+        Properties manifest = new Properties();
+
+        WGraph_DS grid = grid(1000, new Random(19));
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(dir, "grid.wgf")))) {
+            WGraph_File.write(grid, out);
+        }
+        describe(manifest, "grid", "wgf", grid);
+
+        WGraph_CSR random = random(500000, 2000000, new Random(19));
+        WGraph_Mapped.write(random, new File(dir, "random.wgm").getPath());
+        describe(manifest, "random", "wgm", random);
+
+        WGraph_CSR road = road(500, new Random(19));
+        WGraph_EdgeList.write(road, new File(dir, "road.gr").getPath(), WGraph_EdgeList.Format.DIMACS);
+        describe(manifest, "road", "gr", road);
+
+        try (Writer w = new FileWriter(new File(dir, "fixtures.properties"))) {
+            manifest.store(w, "generated by StressFixtures");
+        }
+        System.out.println("fixtures: " + dir.getAbsolutePath());
+    }
+
+    ////////////////////// Private /////////////////////
+
+    private static void describe(Properties manifest, String name, String format, weighted_graph g) {
+        manifest.setProperty(name + ".file", name + "." + format);
+        manifest.setProperty(name + ".nodes", "" + g.nodeSize());
+        manifest.setProperty(name + ".edges", "" + g.edgeSize());
+    }
+
+    private static WGraph_DS grid(int side, Random r) {
+        WGraph_Builder b = new WGraph_Builder(side * side, 2 * side * side);
+        for (int i = 0; i < side * side; i++)
+            b.addNode(i);
+        for (int i = 0; i < side * side; i++) {
+            if (i % side + 1 < side) b.connect(i, i + 1, 1 + r.nextInt(10));
+            if (i / side + 1 < side) b.connect(i, i + side, 1 + r.nextInt(10));
+        }
+        return b.build();
+    }
+
+    private static WGraph_CSR random(int n, int m, Random r) {
+        WGraph_Builder b = new WGraph_Builder(n, m);
+        for (int i = 0; i < n; i++)
+            b.addNode(i);
+        for (int i = 0; i < m; i++)
+            b.connect(r.nextInt(n), r.nextInt(n), r.nextDouble());
+        return b.buildCSR();
+    }
+
+    private static WGraph_CSR road(int side, Random r) {
+        int size = side * side;
+        double[] x = new double[size], y = new double[size];
+        WGraph_Builder b = new WGraph_Builder(size, 2 * size);
+        for (int i = 0; i < size; i++) {
+            x[i] = i % side + r.nextDouble() * 0.6;
+            y[i] = i / side + r.nextDouble() * 0.6;
+            b.addNode(i);
+        }
+        for (int i = 0; i < size; i++) {
+            boolean keep_all = i % side == 0 || i / side == 0;
+            if (i % side + 1 < side && (keep_all || r.nextInt(3) > 0))
+                b.connect(i, i + 1, Math.hypot(x[i] - x[i + 1], y[i] - y[i + 1]));
+            if (i / side + 1 < side && (keep_all || r.nextInt(3) > 0))
+                b.connect(i, i + side, Math.hypot(x[i] - x[i + side], y[i] - y[i + side]));
+        }
+        for (int k = 0; k < side; k++) {
+            int i = r.nextInt(size), j = r.nextInt(size);
+            b.connect(i, j, 0.5 * Math.hypot(x[i] - x[j], y[i] - y[j]));
+        }
+        return b.buildCSR();
+    }
+}
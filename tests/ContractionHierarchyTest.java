@@ -0,0 +1,154 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ContractionHierarchy}
+ */
+class ContractionHierarchyTest {
+
+    @Test
+    void geometric() {
+        checkHierarchy(CoordinateHeuristicTest.geometric(60, 7), 5);
+    }
+
+    @Test
+    void randomGraph() {
+        checkHierarchy(Ex1Test.graph_creator(2000, 6000, 3), 2);
+    }
+
+    @Test
+    void components() {
+        WGraph_DS g = new WGraph_DS();
+        for (int i = 0; i < 6; i++)
+            g.addNode(i * 10);
+        g.connect(0, 10, 2);
+        g.connect(10, 20, 3);
+        g.connect(0, 20, 6);
+        g.connect(30, 40, 1);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ga.setMode(WGraph_Algo.Mode.CONTRACTION_HIERARCHY);
+        assertEquals(5, ga.shortestPathDist(0, 20));
+        assertEquals(3, ga.shortestPath(0, 20).size());
+        assertEquals(0, ga.shortestPathDist(50, 50));
+        assertEquals(1, ga.shortestPath(50, 50).size());
+        assertEquals(-1, ga.shortestPathDist(0, 40));
+        assertNull(ga.shortestPath(0, 50));
+        assertEquals(-1, ga.shortestPathDist(0, 1));
+    }
+
+    @Test
+    void rebuild() {
+        weighted_graph g = CoordinateHeuristicTest.geometric(10, 1);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ga.setMode(WGraph_Algo.Mode.CONTRACTION_HIERARCHY);
+        ContractionHierarchy h = ga.getHierarchy();
+        assertSame(h, ga.getHierarchy());
+        g.connect(0, 99, 0.5);
+        assertEquals(0.5, ga.shortestPathDist(0, 99));
+        assertNotSame(h, ga.getHierarchy());
+    }
+
+    @Test
+    void saveAndLoad() {
+        String file_name = "saveTestCH";
+        weighted_graph g = CoordinateHeuristicTest.geometric(20, 2);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ga.setMode(WGraph_Algo.Mode.CONTRACTION_HIERARCHY);
+        ContractionHierarchy h = ga.getHierarchy();
+        assertTrue(ga.save(file_name));
+        assertTrue(new File(file_name + ".ch").isFile());
+
+        WGraph_Algo ga1 = new WGraph_Algo();
+        ga1.setMode(WGraph_Algo.Mode.CONTRACTION_HIERARCHY);
+        assertTrue(ga1.load(file_name));
+        ContractionHierarchy h1 = ga1.getHierarchy();
+        assertNotSame(h, h1);
+        assertEquals(h.shortcutCount(), h1.shortcutCount());
+        assertEquals(ga.shortestPathDist(0, 399), ga1.shortestPathDist(0, 399));
+        assertNull(ContractionHierarchy.load(file_name, 0));
+        assertNull(ContractionHierarchy.load(file_name + ".ch", 0));
+
+        new File(file_name).delete();
+        new File(file_name + ".ch").delete();
+    }
+
+    @Test
+    void staleSidecar() {
+        String file_name = "saveTestStaleCH";
+        // the same keys, edge count and mode count, other weights
+        weighted_graph a = new WGraph_DS(), b = new WGraph_DS();
+        Random r = new Random(4);
+        for (int i = 0; i < 300; i++) {
+            a.addNode(i);
+            b.addNode(i);
+        }
+        for (int i = 0; i < 900; i++) {
+            int x = r.nextInt(300), y = r.nextInt(300);
+            double w = r.nextInt(100) + 1;
+            a.connect(x, y, w);
+            b.connect(x, y, w + r.nextInt(50));
+        }
+        assertEquals(a.getMC(), b.getMC());
+        WGraph_Algo ga = new WGraph_Algo(a);
+        ga.setMode(WGraph_Algo.Mode.CONTRACTION_HIERARCHY);
+        assertFalse(ga.getHierarchy().describes(WGraph_CSR.of(b)));
+        assertTrue(ga.save(file_name));
+        assertTrue(new File(file_name + ".ch").isFile());
+
+        // saving another graph to the file deletes the hierarchy of the old one
+        assertTrue(new WGraph_Algo(b).save(file_name));
+        assertFalse(new File(file_name + ".ch").exists());
+        WGraph_Algo gb = new WGraph_Algo(b);
+        gb.setMode(WGraph_Algo.Mode.CONTRACTION_HIERARCHY);
+        assertTrue(gb.saveMapped(file_name));
+        assertTrue(ga.save(file_name + ".other"));
+        new File(file_name + ".other.ch").renameTo(new File(file_name + ".ch"));
+
+        // a hierarchy saved for another graph with the same stamp is loaded, but it is not used
+        WGraph_Algo ch = new WGraph_Algo();
+        ch.setMode(WGraph_Algo.Mode.CONTRACTION_HIERARCHY);
+        assertTrue(ch.load(file_name));
+        WGraph_Algo dijkstra = new WGraph_Algo(b);
+        for (int i = 0; i < 300; i += 7)
+            assertEquals(dijkstra.shortestPathDist(0, i), ch.shortestPathDist(0, i), 1e-9);
+        assertTrue(ch.getHierarchy().describes(WGraph_CSR.of(b)));
+
+        new File(file_name).delete();
+        new File(file_name + ".ch").delete();
+        new File(file_name + ".other").delete();
+    }
+
+    ////////////////////// Private Functions /////////////////////
+
+    /**
+     * The hierarchy returns the same distances as dijkstra on random queries of g, and paths of the same weight
+     * made of edges of g, and settles at most 1 / ratio of the nodes dijkstra settles.
+     */
+    static void checkHierarchy(weighted_graph g, int ratio) {
+        WGraph_Algo dijkstra = new WGraph_Algo(g);
+        WGraph_Algo ch = new WGraph_Algo(g);
+        ch.setMode(WGraph_Algo.Mode.CONTRACTION_HIERARCHY);
+        Random rnd = new Random(1);
+        int n = g.nodeSize();
+        long dijkstraSettled = 0, chSettled = 0;
+        for (int i = 0; i < 300; i++) {
+            int a = rnd.nextInt(n), b = rnd.nextInt(n);
+            double d = dijkstra.shortestPathDist(a, b);
+            dijkstraSettled += dijkstra.lastSettledCount();
+            assertEquals(d, ch.shortestPathDist(a, b), 1e-9);
+            chSettled += ch.lastSettledCount();
+            if (d != -1) {
+                List<node_info> path = ch.shortestPath(a, b);
+                assertEquals(a, path.get(0).getKey());
+                assertEquals(b, path.get(path.size() - 1).getKey());
+                assertEquals(d, WGraph_CSRTest.pathWeight(g, path), 1e-9);
+            }
+        }
+        assertTrue(chSettled * ratio <= dijkstraSettled);
+    }
+}
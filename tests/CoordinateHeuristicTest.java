@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link CoordinateHeuristic}
+ */
+class CoordinateHeuristicTest {
+
+    @Test
+    void euclidean() {
+        weighted_graph g = geometric(100, 3);
+        CoordinateHeuristic h = CoordinateHeuristic.euclidean(g);
+        assertTrue(h.scale() >= 1);
+        checkAStar(g, h, 2);
+    }
+
+    @Test
+    void haversine() {
+        WGraph_DS g = new WGraph_DS();
+        g.addNode(0);
+        g.getNode(0).setInfo("32.0853,34.7818");
+        g.addNode(1);
+        g.getNode(1).setInfo("31.7683 35.2137");
+        g.addNode(2);
+        g.getNode(2).setInfo("32.7940;34.9896");
+        g.connect(0, 1, 60);
+        g.connect(0, 2, 95);
+        g.connect(1, 2, 150);
+        CoordinateHeuristic h = CoordinateHeuristic.haversine(g);
+        assertEquals(0, h.estimate(1, 1));
+        for (int a = 0; a < 3; a++) {
+            for (int b = 0; b < 3; b++)
+                assertTrue(h.estimate(a, b) <= new WGraph_Algo(g).shortestPathDist(a, b) + 1e-9);
+        }
+        assertTrue(h.estimate(0, 1) > 50);
+    }
+
+    @Test
+    void missingCoordinates() {
+        weighted_graph g = geometric(10, 1);
+        g.getNode(5).setInfo("no coordinates");
+        CoordinateHeuristic h = CoordinateHeuristic.euclidean(g);
+        assertEquals(0, h.scale());
+        assertEquals(0, h.estimate(0, 99));
+        assertEquals(0, h.estimate(0, 1000));
+    }
+
+    @Test
+    void reweightedGraph() {
+        // the same keys, edge count and mode count, half the weights: the old estimates are too high
+        weighted_graph g = geometric(20, 5), half = reweighted(g, 0.5);
+        assertEquals(g.getMC(), half.getMC());
+        WGraph_CSR snapshot = WGraph_CSR.of(half);
+        for (path_heuristic h : new path_heuristic[]{CoordinateHeuristic.euclidean(g), new LandmarkHeuristic(g, 4)}) {
+            assertTrue(h.describes(WGraph_CSR.of(g)));
+            assertFalse(h.describes(snapshot));
+            WGraph_Algo aStar = new WGraph_Algo(half);
+            aStar.setMode(WGraph_Algo.Mode.A_STAR);
+            aStar.setHeuristic(h);
+            WGraph_Algo dijkstra = new WGraph_Algo(half);
+            for (int i = 0; i < 400; i += 13)
+                assertEquals(dijkstra.shortestPathDist(0, i), aStar.shortestPathDist(0, i), 1e-9);
+        }
+    }
+
+    ////////////////////// Private Functions /////////////////////
+
+    /**
+     * A copy of g with the same nodes and infos, and every weight times factor.
+     */
+    static weighted_graph reweighted(weighted_graph g, double factor) {
+        WGraph_DS copy = new WGraph_DS();
+        for (node_info node : g.getV()) {
+            copy.addNode(node.getKey());
+            copy.getNode(node.getKey()).setInfo(node.getInfo());
+        }
+        for (node_info node : g.getV()) {
+            for (node_info nei : g.getV(node.getKey())) {
+                if (node.getKey() < nei.getKey())
+                    copy.connect(node.getKey(), nei.getKey(), g.getEdge(node.getKey(), nei.getKey()) * factor);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * A side * side grid of nodes with jittered "x,y" coordinates, every node is connected to its right and lower
+     * neighbors, with weight of 1 to 1.5 times the length of the edge.
+     */
+    static weighted_graph geometric(int side, long seed) {
+        Random rnd = new Random(seed);
+        WGraph_DS g = new WGraph_DS();
+        double[][] xy = new double[side * side][];
+        for (int i = 0; i < side * side; i++) {
+            g.addNode(i);
+            xy[i] = new double[]{i % side + rnd.nextDouble() * 0.5, i / side + rnd.nextDouble() * 0.5};
+            g.getNode(i).setInfo(xy[i][0] + "," + xy[i][1]);
+        }
+        for (int i = 0; i < side * side; i++) {
+            for (int j : new int[]{i % side + 1 < side ? i + 1 : -1, i + side < side * side ? i + side : -1}) {
+                if (j >= 0)
+                    g.connect(i, j, Math.hypot(xy[i][0] - xy[j][0], xy[i][1] - xy[j][1]) * (1 + rnd.nextDouble() * 0.5));
+            }
+        }
+        return g;
+    }
+
+    /**
+     * A* with h returns the same distances as dijkstra on random queries of g, and settles at most
+     * 1 / ratio of the nodes dijkstra settles.
+     */
+    static void checkAStar(weighted_graph g, path_heuristic h, int ratio) {
+        WGraph_Algo dijkstra = new WGraph_Algo(g);
+        WGraph_Algo aStar = new WGraph_Algo(g);
+        aStar.setMode(WGraph_Algo.Mode.A_STAR);
+        aStar.setHeuristic(h);
+        Random rnd = new Random(1);
+        int n = g.nodeSize();
+        long dijkstraSettled = 0, aStarSettled = 0;
+        for (int i = 0; i < 200; i++) {
+            int a = rnd.nextInt(n), b = rnd.nextInt(n);
+            double d = dijkstra.shortestPathDist(a, b);
+            dijkstraSettled += dijkstra.lastSettledCount();
+            assertEquals(d, aStar.shortestPathDist(a, b), 1e-9);
+            aStarSettled += aStar.lastSettledCount();
+            if (d != -1)
+                assertEquals(d, WGraph_CSRTest.pathWeight(g, aStar.shortestPath(a, b)), 1e-9);
+        }
+        assertTrue(aStarSettled * ratio <= dijkstraSettled);
+    }
+}
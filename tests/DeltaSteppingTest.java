@@ -0,0 +1,144 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link DeltaStepping} and {@link WGraph_Algo#parallelShortestPathTree(int)}
+ * every tree is checked against the tree of dijkstra, with deltas from tiny (dijkstra like) to huge (Bellman-Ford like).
+ */
+class DeltaSteppingTest {
+
+    private static final double EPS = 1e-9;
+
+    @Test
+    void sameAsDijkstra() {
+        for (int seed = 0; seed < 4; seed++) {
+            // weights of 2 digits, so there are ties and zero weights
+            weighted_graph g = Ex1Test.graph_creator(400, 600 + 600 * seed, seed);
+            g.addNode(1000);
+            WGraph_Algo ga = new WGraph_Algo(g);
+            ShortestPathTree expected = ga.shortestPathTree(seed);
+            ShortestPathTree t = ga.parallelShortestPathTree(seed);
+            assertTrue(t.isComplete());
+            assertEquals(expected.reachedCount(), t.reachedCount());
+            assertTree(g, expected, t);
+            WGraph_CSR snapshot = WGraph_CSR.of(g);
+            for (double delta : new double[]{0.001, 0.05, 1, 1000}) {
+                int[] prev = new int[snapshot.nodeSize()];
+                int s = snapshot.indexOf(seed);
+                assertTree(g, expected, new ShortestPathTree(snapshot, s, new DeltaStepping(snapshot, delta).run(s, prev), prev));
+            }
+        }
+    }
+
+    @Test
+    void parallelRounds() {
+        // a grid with a huge delta: every round has thousands of nodes, so it runs in many chunks
+        int side = 150;
+        WGraph_Builder b = new WGraph_Builder();
+        Random r = new Random(41);
+        for (int i = 0; i < side * side; i++)
+            b.addNode(i);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                if (x + 1 < side) b.connect(y * side + x, y * side + x + 1, 1 + r.nextInt(10));
+                if (y + 1 < side) b.connect(y * side + x, (y + 1) * side + x, 1 + r.nextInt(10));
+            }
+        }
+        WGraph_DS g = b.build();
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ShortestPathTree expected = ga.shortestPathTree(side * side / 2);
+        WGraph_CSR snapshot = WGraph_CSR.of(g);
+        int s = snapshot.indexOf(side * side / 2);
+        for (double delta : new double[]{DeltaStepping.delta(snapshot), 50, 1e6}) {
+            DeltaStepping ds = new DeltaStepping(snapshot, delta);
+            int[] prev = new int[snapshot.nodeSize()];
+            ShortestPathTree t = new ShortestPathTree(snapshot, s, ds.run(s, prev), prev);
+            for (int i = 0; i < t.nodeSize(); i++)
+                assertEquals(expected.distAt(i), t.distAt(i), EPS);
+            assertTrue(ds.settledCount() >= snapshot.nodeSize());
+        }
+    }
+
+    @Test
+    void zeroWeights() {
+        weighted_graph g = new WGraph_DS();
+        for (int i = 0; i < 8; i++)
+            g.addNode(i);
+        g.connect(0, 1, 2);
+        // a cycle of zero weights, entered from 1 and from 5
+        g.connect(1, 2, 0);
+        g.connect(2, 3, 0);
+        g.connect(3, 4, 0);
+        g.connect(4, 2, 0);
+        g.connect(0, 5, 1);
+        g.connect(5, 4, 1);
+        g.connect(3, 6, 3);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ShortestPathTree t = ga.parallelShortestPathTree(0);
+        assertTree(g, ga.shortestPathTree(0), t);
+        assertEquals(2, t.dist(3));
+        assertEquals(-1, t.dist(7));
+        assertEquals(1, DeltaStepping.delta(WGraph_CSR.of(new WGraph_DS())));
+    }
+
+    @Test
+    void automaticDelta() {
+        WGraph_Builder b = new WGraph_Builder();
+        Random r = new Random(42);
+        int n = 5000;
+        for (int i = 0; i < n; i++)
+            b.addNode(i);
+        // average degree 8, uniform weights in [0, 1), and a few very heavy edges
+        for (int i = 0; i < 4 * n; i++)
+            b.connect(r.nextInt(n), r.nextInt(n), r.nextDouble());
+        for (int i = 0; i < 20; i++)
+            b.connect(r.nextInt(n), r.nextInt(n), 1e6);
+        double delta = DeltaStepping.delta(WGraph_CSR.of(b.build()));
+        assertEquals(1.0 / 8, delta, 0.03);
+        // the ring is bounded by MAX_BUCKETS, whatever delta asked for
+        DeltaStepping ds = new DeltaStepping(WGraph_CSR.of(b.build()), 1e-9);
+        assertEquals(1e6 / DeltaStepping.MAX_BUCKETS, ds.delta(), EPS);
+    }
+
+    @Test
+    void cachedAndMissing() {
+        weighted_graph g = Ex1Test.graph_creator(200, 600, 43);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        GraphMetrics metrics = new GraphMetrics();
+        ga.setMetrics(metrics);
+        assertNull(ga.parallelShortestPathTree(5000));
+        ShortestPathTree t = ga.parallelShortestPathTree(3);
+        assertTrue(ga.lastSettledCount() >= t.reachedCount());
+        assertEquals(2, metrics.count(graph_metrics.Query.SHORTEST_PATH_TREE));
+        ga.setCache(new PathCache(1 << 20, 0));
+        t = ga.parallelShortestPathTree(3);
+        assertSame(t, ga.parallelShortestPathTree(3));
+        assertSame(t, ga.shortestPathTree(3));
+        assertEquals(0, ga.lastSettledCount());
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * Check the distances of t against expected, and that every path of t is a path of g of the length of its distance.
+     */
+    private static void assertTree(weighted_graph g, ShortestPathTree expected, ShortestPathTree t) {
+        for (node_info n : g.getV()) {
+            int key = n.getKey();
+            assertEquals(expected.dist(key), t.dist(key), EPS, "dist of " + key);
+            List<node_info> path = t.path(key);
+            if (t.dist(key) < 0) {
+                assertNull(path);
+                continue;
+            }
+            assertTrue(path.size() <= g.nodeSize());
+            assertEquals(t.getSrc(), path.get(0).getKey());
+            assertEquals(key, path.get(path.size() - 1).getKey());
+            assertEquals(t.dist(key), WGraph_CSRTest.pathWeight(g, path), EPS);
+        }
+    }
+}
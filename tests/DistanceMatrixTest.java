@@ -0,0 +1,93 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link DistanceMatrix} and {@link WGraph_Algo#distanceMatrix(int[], int[])}
+ * every entry is checked against shortestPathDist.
+ */
+class DistanceMatrixTest {
+
+    private static final double EPS = 1e-9;
+
+    @Test
+    void matrix() {
+        weighted_graph g = Ex1Test.graph_creator(400, 1200, 21);
+        g.addNode(1000);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        Random r = new Random(21);
+        int[] srcs = new int[30], dests = new int[45];
+        for (int i = 0; i < srcs.length; i++)
+            srcs[i] = r.nextInt(420);
+        for (int i = 0; i < dests.length; i++)
+            dests[i] = r.nextInt(420);
+        srcs[0] = dests[0] = 1000;
+        srcs[1] = dests[1] = 5000;
+        srcs[2] = srcs[3];
+        double[] m = ga.distanceMatrix(srcs, dests);
+        assertEquals(srcs.length * dests.length, m.length);
+        for (int i = 0; i < srcs.length; i++) {
+            for (int j = 0; j < dests.length; j++)
+                assertEquals(ga.shortestPathDist(srcs[i], dests[j]), m[i * dests.length + j], EPS, srcs[i] + "->" + dests[j]);
+        }
+        assertEquals(0, m[0]);
+        assertEquals(-1, m[dests.length + 1]);
+
+        double[] out = new double[m.length + 3];
+        out[m.length] = 7;
+        ga.distanceMatrix(srcs, dests, out);
+        for (int i = 0; i < m.length; i++)
+            assertEquals(m[i], out[i]);
+        assertEquals(7, out[m.length]);
+        assertThrows(IllegalArgumentException.class, () -> ga.distanceMatrix(srcs, dests, new double[m.length - 1]));
+        assertEquals(0, ga.distanceMatrix(new int[0], dests).length);
+        assertEquals(0, ga.distanceMatrix(srcs, new int[0]).length);
+    }
+
+    @Test
+    void floydWarshall() {
+        for (int seed = 0; seed < 4; seed++) {
+            // 150 nodes, so the matrix has partial tiles, and sparse enough to be disconnected
+            weighted_graph g = Ex1Test.graph_creator(150, 100 + 400 * seed, seed);
+            WGraph_CSR snapshot = WGraph_CSR.of(g);
+            int n = snapshot.nodeSize();
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++)
+                all[i] = i;
+            double[] rows = new double[n * n];
+            DistanceMatrix.dijkstraRows(snapshot, all, all, rows);
+            double[] fw = DistanceMatrix.floydWarshall(snapshot);
+            for (int i = 0; i < n * n; i++)
+                assertEquals(rows[i], fw[i] == Double.POSITIVE_INFINITY ? -1 : fw[i], EPS * Math.max(1, rows[i]));
+        }
+    }
+
+    @Test
+    void denseGraph() {
+        WGraph_Builder b = new WGraph_Builder();
+        Random r = new Random(22);
+        for (int i = 0; i < 200; i++)
+            b.addNode(i);
+        for (int i = 0; i < 200; i++) {
+            for (int j = i + 1; j < 200; j++)
+                b.connect(i, j, 1 + r.nextInt(100));
+        }
+        WGraph_Algo ga = new WGraph_Algo(b.build());
+        GraphMetrics metrics = new GraphMetrics();
+        ga.setMetrics(metrics);
+        int[] all = new int[200];
+        for (int i = 0; i < all.length; i++)
+            all[i] = i;
+        double[] m = ga.distanceMatrix(all, all);
+        // a complete graph: the matrix comes from Floyd-Warshall, which settles no node
+        assertEquals(1, metrics.count(graph_metrics.Query.DISTANCE_MATRIX));
+        assertEquals(0, metrics.settled(graph_metrics.Query.DISTANCE_MATRIX));
+        ga.setMetrics(null);
+        for (int k = 0; k < 500; k++) {
+            int i = r.nextInt(200), j = r.nextInt(200);
+            assertEquals(ga.shortestPathDist(i, j), m[i * 200 + j], EPS);
+        }
+    }
+}
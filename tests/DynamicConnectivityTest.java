@@ -0,0 +1,105 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link DynamicConnectivity}
+ * after every change of the graph the components are checked against a new BFS of the graph.
+ */
+class DynamicConnectivityTest {
+
+    @Test
+    void randomChanges() {
+        WGraph_DS g = (WGraph_DS) Ex1Test.graph_creator(200, 220, 16);
+        DynamicConnectivity dc = new DynamicConnectivity(g);
+        check(g, dc);
+        Random r = new Random(16);
+        for (int i = 0; i < 600; i++) {
+            int a = r.nextInt(210), b = r.nextInt(210);
+            switch (r.nextInt(10)) {
+                case 0:
+                    g.removeNode(a);
+                    break;
+                case 1:
+                    g.addNode(a);
+                    break;
+                case 2:
+                case 3:
+                case 4:
+                case 5:
+                    g.removeEdge(a, b);
+                    break;
+                default:
+                    g.connect(a, b, 1);
+            }
+            check(g, dc);
+        }
+        dc.close();
+        g.addNode(1000);
+        assertEquals(0, dc.componentSize(1000));
+    }
+
+    @Test
+    void cycleAndBridge() {
+        WGraph_DS g = new WGraph_DS();
+        for (int i = 0; i < 6; i++)
+            g.addNode(i);
+        DynamicConnectivity dc = new DynamicConnectivity(g);
+        assertEquals(6, dc.connectedComponents());
+        g.connect(0, 1, 1);
+        g.connect(1, 2, 1);
+        g.connect(2, 0, 1);
+        g.connect(3, 4, 1);
+        g.connect(2, 3, 1);
+        assertEquals(2, dc.connectedComponents());
+        assertEquals(5, dc.componentSize(4));
+        g.removeEdge(0, 1);
+        assertEquals(2, dc.connectedComponents());
+        assertTrue(dc.connected(0, 4));
+        g.removeEdge(2, 3);
+        assertEquals(3, dc.connectedComponents());
+        assertFalse(dc.connected(0, 4));
+        assertEquals(2, dc.componentSize(3));
+        assertEquals(3, dc.componentSize(1));
+        g.removeNode(5);
+        assertEquals(2, dc.connectedComponents());
+        assertFalse(dc.isConnected());
+        assertFalse(dc.connected(5, 5));
+    }
+
+    ////////////////////// Private Functions /////////////////////
+
+    private static void check(WGraph_DS g, DynamicConnectivity dc) {
+        WGraph_Algo ga = new WGraph_Algo(g.freeze());
+        assertEquals(ga.connectedComponents(), dc.connectedComponents());
+        assertEquals(ga.isConnected(), dc.isConnected());
+        HashMap<Integer, Integer> label = new HashMap<>();
+        HashMap<Integer, Integer> size = new HashMap<>();
+        for (node_info n : g.getV()) {
+            if (label.containsKey(n.getKey()))
+                continue;
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(n.getKey());
+            label.put(n.getKey(), n.getKey());
+            int count = 0;
+            while (!queue.isEmpty()) {
+                int curr = queue.poll();
+                count++;
+                for (node_info nei : g.getV(curr)) {
+                    if (label.putIfAbsent(nei.getKey(), n.getKey()) == null)
+                        queue.add(nei.getKey());
+                }
+            }
+            size.put(n.getKey(), count);
+        }
+        for (node_info n : g.getV()) {
+            assertEquals((int) size.get(label.get(n.getKey())), dc.componentSize(n.getKey()));
+            for (node_info m : g.getV())
+                assertEquals(label.get(n.getKey()).equals(label.get(m.getKey())), dc.connected(n.getKey(), m.getKey()));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link DynamicShortestPaths}
+ * after every change of the graph the paths are checked against a new dijkstra of {@link WGraph_Algo}.
+ */
+class DynamicShortestPathsTest {
+
+    @Test
+    void randomChanges() {
+        WGraph_DS g = (WGraph_DS) Ex1Test.graph_creator(150, 400, 15);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        DynamicShortestPaths sp = new DynamicShortestPaths(g, 0);
+        check(ga, sp);
+        Random r = new Random(15);
+        for (int i = 0; i < 400; i++) {
+            int a = r.nextInt(160), b = r.nextInt(160);
+            switch (r.nextInt(10)) {
+                case 0:
+                    g.removeNode(a);
+                    break;
+                case 1:
+                    g.addNode(a);
+                    break;
+                case 2:
+                case 3:
+                case 4:
+                    g.removeEdge(a, b);
+                    break;
+                default:
+                    g.connect(a, b, r.nextInt(4) == 0 ? 0 : r.nextDouble() * 10);
+            }
+            check(ga, sp);
+        }
+        sp.close();
+        g.removeNode(0);
+        assertEquals(0, sp.dist(0));
+    }
+
+    @Test
+    void srcAddedLater() {
+        WGraph_DS g = new WGraph_DS();
+        g.addNode(1);
+        g.addNode(2);
+        g.connect(1, 2, 3);
+        DynamicShortestPaths sp = new DynamicShortestPaths(g, 7);
+        assertEquals(-1, sp.dist(1));
+        assertNull(sp.path(7));
+        g.addNode(7);
+        assertEquals(0, sp.dist(7));
+        g.connect(7, 2, 1);
+        assertEquals(4, sp.dist(1));
+        assertEquals(3, sp.path(1).size());
+        g.connect(7, 2, 5);
+        assertEquals(8, sp.dist(1));
+        g.connect(7, 1, 2);
+        assertEquals(5, sp.dist(2));
+        g.removeNode(7);
+        assertEquals(-1, sp.dist(1));
+        assertEquals(-1, sp.dist(7));
+    }
+
+    @Test
+    void affectedRegion() {
+        int side = 100;
+        WGraph_DS g = new WGraph_DS();
+        for (int i = 0; i < side * side; i++)
+            g.addNode(i);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                if (x + 1 < side) g.connect(y * side + x, y * side + x + 1, 1 + (x * 7 + y * 3) % 5);
+                if (y + 1 < side) g.connect(y * side + x, (y + 1) * side + x, 1 + (x * 3 + y * 11) % 5);
+            }
+        }
+        DynamicShortestPaths sp = new DynamicShortestPaths(g, 0);
+        assertEquals(side * side, sp.lastAffectedCount());
+        WGraph_Algo ga = new WGraph_Algo(g);
+        int corner = side * side - 1;
+        for (int i = 0; i < 20; i++) {
+            List<node_info> path = sp.path(corner);
+            int a = path.get(path.size() - 2).getKey();
+            g.connect(a, corner, g.getEdge(a, corner) + 1);
+            assertTrue(sp.lastAffectedCount() < 10, "affected " + sp.lastAffectedCount());
+            g.connect(a, corner, 0.5);
+            assertTrue(sp.lastAffectedCount() < 10, "affected " + sp.lastAffectedCount());
+            assertEquals(ga.shortestPathDist(0, corner), sp.dist(corner), 1e-9);
+        }
+        g.removeEdge(0, 1);
+        g.removeEdge(0, side);
+        assertEquals(side * side - 1, sp.lastAffectedCount());
+        assertEquals(-1, sp.dist(corner));
+        g.connect(0, 1, 1);
+        check(ga, sp);
+    }
+
+    ////////////////////// Private Functions /////////////////////
+
+    private static void check(WGraph_Algo ga, DynamicShortestPaths sp) {
+        weighted_graph g = ga.getGraph();
+        for (node_info n : g.getV()) {
+            int key = n.getKey();
+            double d = ga.shortestPathDist(sp.getSrc(), key);
+            assertEquals(d, sp.dist(key), 1e-9);
+            List<node_info> path = sp.path(key);
+            if (d < 0) {
+                assertNull(path);
+            } else {
+                assertEquals(sp.getSrc(), path.get(0).getKey());
+                assertEquals(key, path.get(path.size() - 1).getKey());
+                assertEquals(d, WGraph_CSRTest.pathWeight(g, path), 1e-9);
+            }
+        }
+    }
+}
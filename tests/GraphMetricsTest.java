@@ -0,0 +1,192 @@
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link GraphMetrics}, {@link LatencyHistogram} and {@link QueryEvent}
+ * the counted work is checked against the settled counts of {@link WGraph_Algo}.
+ */
+class GraphMetricsTest {
+
+    @Test
+    void offByDefault() {
+        assertNull(new WGraph_DS().getMetrics());
+        assertNull(new WGraph_Algo(new WGraph_DS()).getMetrics());
+    }
+
+    @Test
+    void queries() {
+        weighted_graph g = Ex1Test.graph_creator(500, 2000, 20);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        GraphMetrics m = new GraphMetrics();
+        ga.setMetrics(m);
+        assertSame(m, ga.getMetrics());
+        long settled = 0;
+        for (WGraph_Algo.Mode mode : WGraph_Algo.Mode.values()) {
+            ga.setMode(mode);
+            ga.shortestPathDist(1, 2);
+            settled += ga.lastSettledCount();
+            ga.shortestPath(3, 4);
+            settled += ga.lastSettledCount();
+        }
+        ga.shortestPathDist(1, 1000);
+        assertEquals(0, ga.lastSettledCount());
+        assertEquals(5, m.count(graph_metrics.Query.SHORTEST_PATH_DIST));
+        assertEquals(4, m.count(graph_metrics.Query.SHORTEST_PATH));
+        long total = m.settled(graph_metrics.Query.SHORTEST_PATH_DIST) + m.settled(graph_metrics.Query.SHORTEST_PATH);
+        assertEquals(settled, total);
+        assertEquals(ga.totalSettledCount(), total);
+        assertTrue(m.relaxed(graph_metrics.Query.SHORTEST_PATH_DIST) > 0);
+        assertTrue(m.heapOps(graph_metrics.Query.SHORTEST_PATH_DIST) >= m.settled(graph_metrics.Query.SHORTEST_PATH_DIST));
+        assertEquals(5, m.latency(graph_metrics.Query.SHORTEST_PATH_DIST).count());
+        assertTrue(m.latency(graph_metrics.Query.SHORTEST_PATH).max() > 0);
+
+        WGraph_Algo bfs = new WGraph_Algo(WGraph_CSR.of(g));
+        bfs.setMetrics(m);
+        bfs.isConnected();
+        bfs.connectedComponents();
+        assertEquals(1, m.count(graph_metrics.Query.IS_CONNECTED));
+        assertEquals(g.nodeSize(), m.settled(graph_metrics.Query.CONNECTED_COMPONENTS));
+        assertEquals(2L * g.edgeSize(), m.relaxed(graph_metrics.Query.CONNECTED_COMPONENTS));
+        ga.isConnected();
+        ga.isConnected();
+        assertEquals(3, m.count(graph_metrics.Query.IS_CONNECTED));
+
+        ga.shortestPathDists(new int[]{1, 1, 2}, new int[]{5, 6, 7});
+        assertEquals(1, m.count(graph_metrics.Query.SHORTEST_PATH_DISTS));
+        assertTrue(m.settled(graph_metrics.Query.SHORTEST_PATH_DISTS) > 0);
+
+        m.reset();
+        assertEquals(0, m.count(graph_metrics.Query.SHORTEST_PATH_DIST));
+        assertEquals(0, m.latency(graph_metrics.Query.SHORTEST_PATH).count());
+        ga.setMetrics(null);
+        ga.shortestPathDist(1, 2);
+        assertEquals(0, m.count(graph_metrics.Query.SHORTEST_PATH_DIST));
+    }
+
+    @Test
+    void mutations() {
+        WGraph_DS g = new WGraph_DS();
+        GraphMetrics m = new GraphMetrics();
+        g.setMetrics(m);
+        for (int i = 0; i < 10; i++)
+            g.addNode(i);
+        g.addNode(0);
+        for (int i = 1; i < 10; i++)
+            g.connect(0, i, i);
+        g.connect(0, 0, 1);
+        g.connect(0, 20, 1);
+        g.removeEdge(0, 1);
+        g.removeEdge(0, 1);
+        g.removeNode(0);
+        g.removeNode(0);
+        assertEquals(10, m.count(graph_metrics.Mutation.ADD_NODE));
+        assertEquals(9, m.count(graph_metrics.Mutation.CONNECT));
+        assertEquals(1, m.count(graph_metrics.Mutation.REMOVE_EDGE));
+        assertEquals(1, m.count(graph_metrics.Mutation.REMOVE_NODE));
+        assertTrue(m.rate(graph_metrics.Mutation.ADD_NODE) > 0);
+    }
+
+    @Test
+    void copyAndDeserialize() throws IOException, ClassNotFoundException {
+        WGraph_DS g = (WGraph_DS) Ex1Test.graph_creator(100, 300, 21);
+        GraphMetrics m = new GraphMetrics();
+        g.setMetrics(m);
+        // the copy reports no mutation, to its own metrics (the global ones, if enabled) or to the metrics of g
+        long connects = GraphMetrics.global().count(graph_metrics.Mutation.CONNECT);
+        WGraph_DS copy = new WGraph_DS(g);
+        assertEquals(g, copy);
+        assertEquals(g.getMC(), copy.getMC());
+        assertEquals(connects, GraphMetrics.global().count(graph_metrics.Mutation.CONNECT));
+        assertEquals(0, m.count(graph_metrics.Mutation.CONNECT));
+        assertSame(GraphMetrics.defaults(), copy.getMetrics());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(g);
+        }
+        WGraph_DS read;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            read = (WGraph_DS) ois.readObject();
+        }
+        assertEquals(g, read);
+        assertSame(GraphMetrics.defaults(), read.getMetrics());
+    }
+
+    @Test
+    void readFile() throws IOException {
+        WGraph_DS g = (WGraph_DS) Ex1Test.graph_creator(100, 300, 22);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WGraph_File.write(g, out);
+        // loading reports no mutation (to the global metrics, if enabled), and the loaded graph reports its own
+        long nodes = GraphMetrics.global().count(graph_metrics.Mutation.ADD_NODE);
+        long connects = GraphMetrics.global().count(graph_metrics.Mutation.CONNECT);
+        WGraph_DS read = (WGraph_DS) WGraph_File.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(g, read);
+        assertEquals(g.getMC(), read.getMC());
+        assertEquals(nodes, GraphMetrics.global().count(graph_metrics.Mutation.ADD_NODE));
+        assertEquals(connects, GraphMetrics.global().count(graph_metrics.Mutation.CONNECT));
+        assertSame(GraphMetrics.defaults(), read.getMetrics());
+        GraphMetrics m = new GraphMetrics();
+        read.setMetrics(m);
+        read.connect(0, 1, 1);
+        assertEquals(1, m.count(graph_metrics.Mutation.CONNECT));
+    }
+
+    @Test
+    void histogram() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentile(50));
+        for (long v = 1; v <= 100000; v++)
+            h.record(v * 1000);
+        assertEquals(100000, h.count());
+        assertEquals(50000500.0, h.mean(), 1);
+        assertEquals(50_000_000, h.percentile(50), 50_000_000 / 64.0);
+        assertEquals(99_000_000, h.percentile(99), 99_000_000 / 64.0);
+        assertEquals(100_000_000, h.max(), 100_000_000 / 64.0);
+        assertTrue(h.percentile(50) >= 50_000_000);
+        h.record(-5);
+        h.record(Long.MAX_VALUE);
+        assertEquals(0, h.percentile(0));
+        assertTrue(h.max() > 100_000_000_000_000L);
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.max());
+        for (int v = 0; v < 128; v++) {
+            h.reset();
+            h.record(v);
+            assertEquals(v, h.max());
+        }
+    }
+
+    @Test
+    void jfrEvents() throws IOException {
+        weighted_graph g = Ex1Test.graph_creator(200, 600, 21);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        File file = File.createTempFile("wgraph", ".jfr");
+        try (Recording r = new Recording()) {
+            r.enable("wgraph.Query");
+            r.start();
+            ga.shortestPathDist(1, 2);
+            ga.isConnected();
+            r.stop();
+            r.dump(file.toPath());
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+        file.delete();
+        events.removeIf(e -> !e.getEventType().getName().equals("wgraph.Query"));
+        assertEquals(2, events.size());
+        assertEquals("SHORTEST_PATH_DIST", events.get(0).getString("query"));
+        assertEquals("DIJKSTRA", events.get(0).getString("mode"));
+        assertEquals(1, events.get(0).getInt("src"));
+        assertEquals(2, events.get(0).getInt("dest"));
+        assertEquals(ga.lastSettledCount(), events.get(0).getLong("settled"));
+        assertEquals("IS_CONNECTED", events.get(1).getString("query"));
+    }
+}
@@ -0,0 +1,67 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link LandmarkHeuristic}
+ */
+class LandmarkHeuristicTest {
+
+    @Test
+    void geometric() {
+        weighted_graph g = CoordinateHeuristicTest.geometric(100, 5);
+        LandmarkHeuristic h = new LandmarkHeuristic(g, 8);
+        assertEquals(8, h.landmarks().length);
+        CoordinateHeuristicTest.checkAStar(g, h, 10);
+    }
+
+    @Test
+    void randomGraph() {
+        weighted_graph g = Ex1Test.graph_creator(3000, 9000, 4);
+        CoordinateHeuristicTest.checkAStar(g, new LandmarkHeuristic(g, 8), 1);
+    }
+
+    @Test
+    void components() {
+        WGraph_DS g = new WGraph_DS();
+        for (int i = 0; i < 6; i++)
+            g.addNode(i);
+        g.connect(0, 1, 2);
+        g.connect(1, 2, 3);
+        g.connect(3, 4, 1);
+        LandmarkHeuristic h = new LandmarkHeuristic(g, 10);
+        assertEquals(6, h.landmarks().length);
+        assertEquals(5, h.estimate(0, 2));
+        assertEquals(0, h.estimate(0, 4));
+        assertEquals(0, h.estimate(0, 100));
+        assertThrows(IllegalArgumentException.class, () -> new LandmarkHeuristic(g, 0));
+        assertEquals(0, new LandmarkHeuristic(new WGraph_DS(), 4).landmarks().length);
+    }
+
+    @Test
+    void changedGraph() {
+        weighted_graph g = CoordinateHeuristicTest.geometric(30, 6);
+        LandmarkHeuristic h = new LandmarkHeuristic(g, 8);
+        WGraph_Algo aStar = new WGraph_Algo(g);
+        aStar.setMode(WGraph_Algo.Mode.A_STAR);
+        aStar.setHeuristic(h);
+        assertTrue(h.describes(WGraph_CSR.of(g)));
+        double before = aStar.shortestPathDist(0, 899);
+
+        // a shortcut: the old landmark distances overestimate d(0, 899), A* falls back to dijkstra
+        g.connect(0, 899, 0.001);
+        assertFalse(h.describes(WGraph_CSR.of(g)));
+        assertTrue(h.estimate(0, 899) > 0.001);
+        assertEquals(0.001, aStar.shortestPathDist(0, 899));
+        assertEquals(0.001, new WGraph_Algo(g).shortestPathDist(0, 899));
+
+        // a new heuristic describes the graph again, until a new node changes its keys
+        g.removeEdge(0, 899);
+        LandmarkHeuristic h1 = new LandmarkHeuristic(g, 8);
+        aStar.setHeuristic(h1);
+        assertEquals(before, aStar.shortestPathDist(0, 899), 1e-9);
+        g.addNode(5000);
+        assertFalse(h1.describes(WGraph_CSR.of(g)));
+        assertEquals(before, aStar.shortestPathDist(0, 899), 1e-9);
+    }
+}
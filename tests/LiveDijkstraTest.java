@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link LiveDijkstra} and the queries of {@link WGraph_Algo} between changes of the graph
+ * every distance is checked against dijkstra on a new snapshot of the changed graph.
+ */
+class LiveDijkstraTest {
+
+    @Test
+    void sameAsSnapshot() {
+        Random r = new Random(61);
+        WGraph_DS g = (WGraph_DS) Ex1Test.graph_creator(3000, 9000, 61);
+        // keys far apart, so the table of the slots hashes them
+        for (int i = 0; i < 50; i++) {
+            g.addNode(1_000_000 * (i + 1));
+            g.connect(1_000_000 * (i + 1), r.nextInt(3000), r.nextDouble());
+        }
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ga.shortestPathDist(0, 1);
+        for (int i = 0; i < 300; i++) {
+            int a = r.nextInt(3000), b = r.nextInt(3000);
+            if (i % 3 == 0)
+                g.removeEdge(a, b);
+            else
+                g.connect(a, b, r.nextDouble() * 10);
+            int src = r.nextInt(3000), dest = i % 10 == 0 ? 1_000_000 * (i % 50 + 1) : r.nextInt(3000);
+            double expected = new WGraph_Algo(WGraph_CSR.of(g)).shortestPathDist(src, dest);
+            assertEquals(expected, ga.shortestPathDist(src, dest), 1e-9);
+            List<node_info> path = ga.shortestPath(src, dest);
+            if (expected == -1) {
+                assertNull(path);
+                continue;
+            }
+            assertSame(g.getNode(src), path.get(0));
+            assertSame(g.getNode(dest), path.get(path.size() - 1));
+            assertEquals(expected, WGraph_CSRTest.pathWeight(g, path), 1e-9);
+        }
+        g.addNode(-1);
+        assertEquals(-1, ga.shortestPathDist(0, -1));
+        assertNull(ga.shortestPath(-1, 0));
+        assertEquals(-1, ga.shortestPathDist(0, -2));
+        assertEquals(0, ga.shortestPathDist(-1, -1));
+        assertEquals(1, ga.shortestPath(-1, -1).size());
+    }
+
+    @Test
+    void localWork() {
+        // a long path: a query between neighbors after a change settles a few nodes, not the whole graph
+        int n = 100_000;
+        WGraph_Builder b = new WGraph_Builder();
+        for (int i = 0; i < n; i++) {
+            b.addNode(i);
+            if (i > 0)
+                b.connect(i - 1, i, 1);
+        }
+        WGraph_DS g = b.build();
+        LiveDijkstra live = LiveDijkstra.local();
+        assertTrue(live.run(g, 500, 503));
+        assertEquals(3, live.dist(503));
+        assertArrayEquals(new int[]{500, 501, 502, 503}, live.path(503));
+        assertTrue(live.settledCount() <= 7);
+        assertEquals(Double.POSITIVE_INFINITY, live.dist(600));
+
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ga.setCache(new PathCache(1 << 20, 0));
+        assertEquals(3, ga.shortestPathDist(500, 503));
+        g.connect(0, n - 1, 1);
+        assertEquals(3, ga.shortestPathDist(700, 703));
+        assertTrue(ga.lastSettledCount() <= 7);
+        // once the graph stopped changing, the queries freeze it again (after their work adds up to
+        // the cost of freezing it), and the cache serves them
+        int settled = 1;
+        for (int i = 0; i < n && settled > 0; i++) {
+            assertEquals(2, ga.shortestPathDist(n - 2, 0));
+            settled = ga.lastSettledCount();
+        }
+        assertEquals(0, settled);
+    }
+}
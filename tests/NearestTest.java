@@ -0,0 +1,120 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link WGraph_Algo#nearest(int, double, int, java.util.function.Predicate, distance_visitor)}
+ * the visited nodes are checked against the full shortest path tree of the source.
+ */
+class NearestTest {
+
+    private static final double EPS = 1e-9;
+
+    @Test
+    void withinDistance() {
+        weighted_graph g = Ex1Test.graph_creator(500, 1500, 31);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ShortestPathTree full = ga.shortestPathTree(4);
+        double radius = full.dist(full.keyAt(full.nodeSize() / 2)) + 1;
+        List<Integer> keys = new ArrayList<>();
+        double[] last = {0};
+        int visited = ga.withinDistance(4, radius, (n, d) -> {
+            assertTrue(d >= last[0]);
+            assertEquals(full.dist(n.getKey()), d, EPS);
+            last[0] = d;
+            keys.add(n.getKey());
+            return true;
+        });
+        assertEquals(keys.size(), visited);
+        assertEquals(4, keys.get(0));
+        int inside = 0;
+        for (node_info n : g.getV()) {
+            double d = full.dist(n.getKey());
+            if (d >= 0 && d <= radius)
+                inside++;
+        }
+        assertEquals(inside, visited);
+        assertEquals(visited, ga.lastSettledCount());
+        assertEquals(1, ga.withinDistance(4, 0, (n, d) -> true));
+    }
+
+    @Test
+    void nearestByInfo() {
+        weighted_graph g = Ex1Test.graph_creator(600, 2400, 32);
+        for (node_info n : g.getV())
+            n.setInfo(n.getKey() % 7 == 0 ? "depot" : "house");
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ShortestPathTree full = ga.shortestPathTree(1);
+        List<Double> matching = new ArrayList<>();
+        for (node_info n : g.getV()) {
+            if ("depot".equals(n.getInfo()) && full.dist(n.getKey()) >= 0)
+                matching.add(full.dist(n.getKey()));
+        }
+        matching.sort(null);
+
+        List<Double> found = new ArrayList<>();
+        int visited = ga.nearest(1, 5, "depot"::equals, (n, d) -> {
+            assertEquals("depot", n.getInfo());
+            assertSame(g.getNode(n.getKey()), n);
+            found.add(d);
+            return true;
+        });
+        assertEquals(5, visited);
+        for (int i = 0; i < 5; i++)
+            assertEquals(matching.get(i), found.get(i), EPS);
+        // the search stopped at the 5th depot, far before it settled the whole graph
+        assertTrue(ga.lastSettledCount() < full.reachedCount() / 2);
+
+        // a cap on both the distance and the count: the closer cut-off wins
+        double cap = matching.get(2);
+        long within = matching.stream().filter(d -> d <= cap).count();
+        assertTrue(within < 10);
+        assertEquals(within, ga.nearest(1, cap, 10, "depot"::equals, (n, d) -> true));
+        assertEquals(2, ga.nearest(1, cap, 2, "depot"::equals, (n, d) -> true));
+        assertEquals(matching.size(), ga.nearest(1, Double.POSITIVE_INFINITY, Integer.MAX_VALUE, "depot"::equals, (n, d) -> true));
+    }
+
+    @Test
+    void visitorControl() {
+        weighted_graph g = Ex1Test.graph_creator(300, 900, 33);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ShortestPathTree full = ga.shortestPathTree(2);
+        int[] calls = {0};
+        assertEquals(4, ga.withinDistance(2, Double.POSITIVE_INFINITY, (n, d) -> ++calls[0] < 4));
+        assertEquals(4, calls[0]);
+
+        // the visitor runs queries of its own (on the same thread) and changes the graph while the search runs
+        int visited = ga.nearest(2, 40, null, (n, d) -> {
+            assertEquals(full.dist(n.getKey()), d, EPS);
+            assertEquals(d, ga.shortestPathDist(2, n.getKey()), EPS);
+            ga.shortestPathTree(n.getKey());
+            return true;
+        });
+        assertEquals(40, visited);
+        int removed = ga.nearest(2, 20, null, (n, d) -> {
+            if (n.getKey() != 2)
+                g.removeNode(n.getKey());
+            return true;
+        });
+        assertEquals(20, removed);
+        assertEquals(0, ga.nearest(5000, 3, null, (n, d) -> true));
+        assertEquals(0, ga.lastSettledCount());
+        assertThrows(IllegalArgumentException.class, () -> ga.nearest(2, 0, null, (n, d) -> true));
+        assertThrows(IllegalArgumentException.class, () -> ga.withinDistance(2, -1, (n, d) -> true));
+        assertThrows(IllegalArgumentException.class, () -> ga.withinDistance(2, Double.NaN, (n, d) -> true));
+    }
+
+    @Test
+    void metrics() {
+        weighted_graph g = Ex1Test.graph_creator(200, 600, 34);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        GraphMetrics metrics = new GraphMetrics();
+        ga.setMetrics(metrics);
+        ga.nearest(0, 10, null, (n, d) -> true);
+        assertEquals(1, metrics.count(graph_metrics.Query.NEAREST));
+        assertEquals(10, metrics.settled(graph_metrics.Query.NEAREST));
+    }
+}
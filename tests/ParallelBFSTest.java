@@ -0,0 +1,117 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ParallelBFS} and {@link WGraph_Algo#connectedComponents(int[])}
+ * the reached nodes and the components are checked against the sequential BFS of {@link DijkstraEngine}.
+ */
+class ParallelBFSTest {
+
+    @Test
+    void components() {
+        for (int seed = 0; seed < 4; seed++) {
+            // from many small components to one
+            weighted_graph g = Ex1Test.graph_creator(2000, 300 + 1500 * seed, seed);
+            WGraph_CSR snapshot = WGraph_CSR.of(g);
+            int[] labels = new int[snapshot.nodeSize()];
+            ParallelBFS bfs = new ParallelBFS(snapshot, labels);
+            int components = bfs.labelAll();
+            assertEquals(new DijkstraEngine(0).countComponents(snapshot), components);
+            assertLabels(snapshot, labels, components);
+        }
+    }
+
+    @Test
+    void bottomUp() {
+        // a random graph of average degree 16: the frontier is most of the graph after a few levels
+        int n = 100_000;
+        WGraph_Builder b = new WGraph_Builder();
+        Random r = new Random(51);
+        for (int i = 0; i < n; i++)
+            b.addNode(i);
+        for (int i = 0; i < 8 * n; i++)
+            b.connect(r.nextInt(n), r.nextInt(n), 1);
+        // and a few separate nodes and pairs
+        for (int i = n; i < n + 100; i += 2) {
+            b.addNode(i);
+            b.addNode(i + 1);
+            if (i % 4 == 0)
+                b.connect(i, i + 1, 1);
+        }
+        WGraph_CSR snapshot = WGraph_CSR.of(b.build());
+        ParallelBFS bfs = new ParallelBFS(snapshot, null);
+        assertEquals(new DijkstraEngine(0).countReachable(snapshot, 0), bfs.reach(0, 0));
+        assertTrue(bfs.bottomUpLevels() > 0);
+        // bottom-up stops at the first neighbor in the frontier, so it scans less than all the arcs
+        assertTrue(bfs.scannedCount() < 16L * n);
+
+        int[] labels = new int[snapshot.nodeSize()];
+        bfs = new ParallelBFS(snapshot, labels);
+        int components = bfs.labelAll();
+        assertEquals(new DijkstraEngine(0).countComponents(snapshot), components);
+        assertLabels(snapshot, labels, components);
+    }
+
+    @Test
+    void algo() {
+        int n = ParallelBFS.MIN_NODES + 10;
+        WGraph_Builder b = new WGraph_Builder();
+        for (int i = 0; i < n; i++)
+            b.addNode(i);
+        for (int i = 0; i + 1 < n; i++)
+            b.connect(i, i + 1, 1);
+        WGraph_DS g = b.build();
+        WGraph_Algo ga = new WGraph_Algo(g.freeze());
+        GraphMetrics metrics = new GraphMetrics();
+        ga.setMetrics(metrics);
+        assertTrue(ga.isConnected());
+        assertEquals(1, ga.connectedComponents());
+        assertEquals(n, metrics.settled(graph_metrics.Query.IS_CONNECTED));
+
+        g.removeEdge(100, 101);
+        g.addNode(-5);
+        ga = new WGraph_Algo(g.freeze());
+        assertFalse(ga.isConnected());
+        assertEquals(3, ga.connectedComponents());
+        int[] ids = ga.connectedComponents(new int[]{0, 100, 101, n - 1, -5, n + 7});
+        assertEquals(ids[0], ids[1]);
+        assertEquals(ids[2], ids[3]);
+        assertNotEquals(ids[0], ids[2]);
+        assertNotEquals(ids[4], ids[0]);
+        assertNotEquals(ids[4], ids[2]);
+        assertTrue(ids[4] >= 0 && ids[4] < 3);
+        assertEquals(-1, ids[5]);
+
+        // on the WGraph_DS itself too
+        WGraph_Algo ds = new WGraph_Algo(Ex1Test.graph_creator(100, 60, 52));
+        int[] keys = new int[100];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = i;
+        ids = ds.connectedComponents(keys);
+        for (int i = 0; i < keys.length; i++)
+            assertTrue(ids[i] >= 0 && ids[i] < ds.connectedComponents());
+        assertEquals(0, new WGraph_Algo(new WGraph_DS()).connectedComponents(new int[0]).length);
+    }
+
+    ////////////////////// Private /////////////////////
+
+    /**
+     * Check that the ends of every arc have the same label, and that the labels are numbered by their smallest node.
+     */
+    private static void assertLabels(WGraph_CSR g, int[] labels, int components) {
+        for (int v = 0; v < g.nodeSize(); v++) {
+            for (int arc = g.arcStart(v); arc < g.arcEnd(v); arc++)
+                assertEquals(labels[v], labels[g.arcTarget(arc)]);
+        }
+        int next = 0;
+        for (int v = 0; v < g.nodeSize(); v++) {
+            assertTrue(labels[v] <= next);
+            if (labels[v] == next)
+                next++;
+        }
+        assertEquals(components, next);
+    }
+}
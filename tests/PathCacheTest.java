@@ -0,0 +1,118 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link PathCache}
+ * every cached answer is checked against a {@link WGraph_Algo} without a cache.
+ */
+class PathCacheTest {
+
+    @Test
+    void hitsAndMisses() {
+        weighted_graph g = Ex1Test.graph_creator(300, 1200, 17);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        PathCache cache = new PathCache(1 << 20, 0);
+        ga.setCache(cache);
+        assertSame(cache, ga.getCache());
+        WGraph_Algo plain = new WGraph_Algo(g);
+        double d = ga.shortestPathDist(1, 2);
+        assertEquals(plain.shortestPathDist(1, 2), d);
+        assertEquals(1, cache.misses());
+        assertEquals(d, ga.shortestPathDist(1, 2));
+        assertEquals(0, ga.lastSettledCount());
+        assertEquals(1, cache.hits());
+        List<node_info> path = ga.shortestPath(1, 2);
+        assertEquals(2, cache.misses());
+        assertEquals(path, ga.shortestPath(1, 2));
+        assertEquals(2, cache.hits());
+        assertEquals(d, WGraph_CSRTest.pathWeight(g, path), 1e-9);
+        assertEquals(d, ga.shortestPathDist(1, 2));
+        assertEquals(1, cache.size());
+        assertTrue(cache.bytes() > 0);
+
+        // the first query after a change runs on the live graph, without the cache; it explores the whole
+        // component of 1, so the next query freezes the graph again, and caches that 1000 is unreachable
+        g.addNode(1000);
+        assertNull(ga.shortestPath(1, 1000));
+        assertEquals(2, cache.misses());
+        assertNull(ga.shortestPath(1, 1000));
+        assertEquals(3, cache.misses());
+        assertNull(ga.shortestPath(1, 1000));
+        assertEquals(-1, ga.shortestPathDist(1, 1000));
+        assertEquals(5, cache.hits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void followsChanges() {
+        weighted_graph g = Ex1Test.graph_creator(200, 600, 18);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ga.setCache(new PathCache(1 << 20));
+        WGraph_Algo plain = new WGraph_Algo(g);
+        Random r = new Random(18);
+        for (int i = 0; i < 2000; i++) {
+            int a = r.nextInt(20), b = r.nextInt(200);
+            if (r.nextInt(50) == 0)
+                g.connect(r.nextInt(200), r.nextInt(200), r.nextDouble());
+            if (r.nextInt(100) == 0)
+                g.removeNode(r.nextInt(200));
+            assertEquals(plain.shortestPathDist(a, b), ga.shortestPathDist(a, b), 1e-9);
+            List<node_info> path = ga.shortestPath(a, b);
+            if (plain.shortestPathDist(a, b) < 0) {
+                assertNull(path);
+            } else {
+                assertEquals(a, path.get(0).getKey());
+                assertEquals(b, path.get(path.size() - 1).getKey());
+                assertEquals(plain.shortestPathDist(a, b), WGraph_CSRTest.pathWeight(g, path), 1e-9);
+            }
+        }
+        assertTrue(ga.getCache().hits() > ga.getCache().misses());
+    }
+
+    @Test
+    void trees() {
+        weighted_graph g = Ex1Test.graph_creator(500, 2000, 19);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ga.setMode(WGraph_Algo.Mode.BIDIRECTIONAL);
+        PathCache cache = new PathCache(1 << 20);
+        ga.setCache(cache);
+        WGraph_Algo plain = new WGraph_Algo(g);
+        for (int d = 1; d < PathCache.DEFAULT_TREE_AFTER; d++)
+            ga.shortestPathDist(0, d);
+        assertEquals(PathCache.DEFAULT_TREE_AFTER - 1, cache.size());
+        ga.shortestPath(0, 499);
+        assertTrue(ga.lastSettledCount() > 400);
+        long misses = cache.misses();
+        for (int d = 0; d < 500; d++) {
+            assertEquals(plain.shortestPathDist(0, d), ga.shortestPathDist(0, d), 1e-9);
+            assertEquals(0, ga.lastSettledCount());
+            List<node_info> path = ga.shortestPath(0, d);
+            assertEquals(plain.shortestPathDist(0, d), WGraph_CSRTest.pathWeight(g, path), 1e-9);
+        }
+        assertEquals(misses, cache.misses());
+    }
+
+    @Test
+    void evictions() {
+        weighted_graph g = Ex1Test.graph_creator(300, 1200, 20);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        PathCache cache = new PathCache(4096, 0);
+        ga.setCache(cache);
+        for (int i = 0; i < 300; i++)
+            ga.shortestPath(i, 299 - i);
+        assertTrue(cache.bytes() <= 4096);
+        assertTrue(cache.evictions() > 0);
+        assertEquals(300, cache.misses());
+        ga.shortestPath(299, 0);
+        assertEquals(1, cache.hits());
+        ga.shortestPath(0, 299);
+        assertEquals(301, cache.misses());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+    }
+}
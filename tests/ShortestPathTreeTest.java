@@ -0,0 +1,131 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ShortestPathTree} and {@link WGraph_Algo#shortestPathTree(int, double, int)}
+ * every distance and path of a tree is checked against shortestPathDist.
+ */
+class ShortestPathTreeTest {
+
+    private static final double EPS = 1e-9;
+
+    @Test
+    void fullTree() {
+        weighted_graph g = Ex1Test.graph_creator(500, 1500, 22);
+        g.addNode(1000);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ShortestPathTree t = ga.shortestPathTree(7);
+        assertEquals(7, t.getSrc());
+        assertTrue(t.isComplete());
+        assertEquals(g.nodeSize(), t.nodeSize());
+        assertEquals(ga.lastSettledCount(), t.reachedCount());
+        int reached = 0;
+        for (node_info n : g.getV()) {
+            int key = n.getKey();
+            double d = ga.shortestPathDist(7, key);
+            assertEquals(d, t.dist(key), EPS);
+            assertEquals(d >= 0, t.isReached(key));
+            List<node_info> path = t.path(key);
+            if (d < 0) {
+                assertNull(path);
+                continue;
+            }
+            reached++;
+            assertEquals(7, path.get(0).getKey());
+            assertEquals(key, path.get(path.size() - 1).getKey());
+            assertEquals(d, WGraph_CSRTest.pathWeight(g, path), EPS);
+            int i = t.indexOf(key);
+            assertEquals(key, t.keyAt(i));
+            assertEquals(d, t.distAt(i), EPS);
+        }
+        assertEquals(reached, t.reachedCount());
+        assertEquals(-1, t.dist(1000));
+        assertEquals(-1, t.dist(5000));
+        assertNull(t.path(5000));
+        assertEquals(-1, t.prevAt(t.indexOf(7)));
+        assertEquals(Double.POSITIVE_INFINITY, t.distances()[t.indexOf(1000)]);
+        assertEquals(-1, t.predecessors()[t.indexOf(1000)]);
+        assertNull(ga.shortestPathTree(5000));
+    }
+
+    @Test
+    void immutable() {
+        weighted_graph g = Ex1Test.graph_creator(100, 300, 23);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ShortestPathTree t = ga.shortestPathTree(1);
+        double d = t.dist(2);
+        t.distances()[t.indexOf(2)] = -5;
+        g.removeNode(2);
+        g.connect(1, 3, 0);
+        assertEquals(d, t.dist(2));
+        assertEquals(2, t.path(2).get(t.path(2).size() - 1).getKey());
+        assertEquals(0, ga.shortestPathTree(1).dist(3));
+    }
+
+    @Test
+    void cutOffs() {
+        weighted_graph g = Ex1Test.graph_creator(400, 1600, 24);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ShortestPathTree full = ga.shortestPathTree(0);
+        double radius = 0;
+        for (int i = 0; i < full.nodeSize(); i++) {
+            if (full.distAt(i) != Double.POSITIVE_INFINITY)
+                radius = Math.max(radius, full.distAt(i));
+        }
+        ShortestPathTree near = ga.shortestPathTree(0, radius / 3, Integer.MAX_VALUE);
+        assertFalse(near.isComplete());
+        assertTrue(near.reachedCount() < full.reachedCount());
+        for (node_info n : g.getV()) {
+            double d = full.dist(n.getKey());
+            if (d >= 0 && d <= radius / 3)
+                assertEquals(d, near.dist(n.getKey()), EPS);
+            else
+                assertEquals(-1, near.dist(n.getKey()));
+        }
+
+        ShortestPathTree k = ga.shortestPathTree(0, Double.POSITIVE_INFINITY, 25);
+        assertEquals(25, k.reachedCount());
+        assertEquals(25, ga.lastSettledCount());
+        double farthest = 0;
+        for (node_info n : g.getV()) {
+            double d = k.dist(n.getKey());
+            if (d >= 0)
+                assertEquals(full.dist(n.getKey()), d, EPS);
+            farthest = Math.max(farthest, d);
+        }
+        // the 25 nearest nodes: every node that is closer than the farthest of them is in the tree
+        for (node_info n : g.getV()) {
+            double d = full.dist(n.getKey());
+            if (d >= 0 && d < farthest)
+                assertTrue(k.isReached(n.getKey()));
+        }
+
+        assertTrue(ga.shortestPathTree(0, Double.POSITIVE_INFINITY, full.reachedCount()).isComplete());
+        assertEquals(1, ga.shortestPathTree(0, 0, 1).reachedCount());
+        assertThrows(IllegalArgumentException.class, () -> ga.shortestPathTree(0, -1, 10));
+        assertThrows(IllegalArgumentException.class, () -> ga.shortestPathTree(0, Double.NaN, 10));
+        assertThrows(IllegalArgumentException.class, () -> ga.shortestPathTree(0, 1, 0));
+    }
+
+    @Test
+    void cachedTrees() {
+        weighted_graph g = Ex1Test.graph_creator(300, 900, 25);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        PathCache cache = new PathCache(1 << 20, 0);
+        ga.setCache(cache);
+        ShortestPathTree t = ga.shortestPathTree(3);
+        assertSame(t, ga.shortestPathTree(3));
+        assertEquals(0, ga.lastSettledCount());
+        assertEquals(1, cache.hits());
+        assertEquals(t.dist(17), ga.shortestPathDist(3, 17));
+        assertEquals(0, ga.lastSettledCount());
+        assertEquals(t.path(17), ga.shortestPath(3, 17));
+        assertNotSame(t, ga.shortestPathTree(3, 1, 10));
+        g.connect(3, 17, 0);
+        assertNotSame(t, ga.shortestPathTree(3));
+        assertEquals(0, ga.shortestPathDist(3, 17));
+    }
+}
@@ -1,6 +1,14 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -82,6 +90,49 @@ class WGraph_AlgoTest {
         assertTrue(ga.isConnected());
     }
 
+    @Test
+    void connectedComponents() {
+        WGraph_Algo ga = new WGraph_Algo(g);
+        assertEquals(1, ga.connectedComponents());
+        g.removeEdge(4, 5);
+        g.removeEdge(5, 6);
+        assertEquals(2, ga.connectedComponents());
+        g.addNode(9);
+        assertEquals(3, ga.connectedComponents());
+        g.removeNode(1);
+        assertEquals(3, ga.connectedComponents());
+        assertEquals(3, new WGraph_Algo(WGraph_CSR.of(g)).connectedComponents());
+        assertEquals(0, new WGraph_Algo(new WGraph_DS()).connectedComponents());
+        ga.init(new WGraph_DS(g));
+        g.connect(5, 9, 1);
+        assertEquals(3, ga.connectedComponents());
+    }
+
+    @Test
+    void trackConnectivity() {
+        WGraph_Algo ga = new WGraph_Algo(g);
+        GraphMetrics metrics = new GraphMetrics();
+        ga.setMetrics(metrics);
+        // without a tracker every query is a BFS, and nothing listens to the graph
+        ga.isConnected();
+        assertEquals(g.nodeSize(), metrics.settled(graph_metrics.Query.IS_CONNECTED));
+        DynamicConnectivity c = ga.trackConnectivity();
+        assertSame(c, ga.trackConnectivity());
+        g.removeEdge(4, 5);
+        g.removeEdge(5, 6);
+        assertEquals(2, ga.connectedComponents());
+        assertEquals(0, metrics.settled(graph_metrics.Query.CONNECTED_COMPONENTS));
+        c.close();
+        c.close();
+        assertTrue(c.isClosed());
+        g.addNode(9);
+        assertEquals(3, ga.connectedComponents());
+        assertEquals(2, c.connectedComponents());
+        assertEquals(g.nodeSize(), metrics.settled(graph_metrics.Query.CONNECTED_COMPONENTS));
+        assertNotSame(c, ga.trackConnectivity());
+        assertThrows(IllegalStateException.class, () -> new WGraph_Algo(WGraph_CSR.of(g)).trackConnectivity());
+    }
+
     @Test
     void shortestPathDist() {
         assertEquals(20, ga.shortestPathDist(1, 5));
@@ -142,4 +193,162 @@ class WGraph_AlgoTest {
                 ga.shortestPath(0, 2).toArray());
         assertTrue(ga.isConnected());
     }
-}
\ No newline at end of file
+
+    @Test
+    void queriesFollowChanges() {
+        assertEquals(20, ga.shortestPathDist(1, 5));
+        g.connect(1, 5, 3);
+        assertEquals(3, ga.shortestPathDist(1, 5));
+        g.removeEdge(1, 5);
+        assertEquals(20, ga.shortestPathDist(1, 5));
+        g.addNode(7);
+        assertEquals(-1, ga.shortestPathDist(1, 7));
+        assertNull(ga.shortestPath(7, 1));
+        g.removeNode(7);
+        assertEquals(-1, ga.shortestPathDist(1, 7));
+        g.removeNode(6);
+        assertEquals(26, ga.shortestPathDist(1, 5));
+        assertArrayEquals(new node_info[]{g.getNode(1), g.getNode(3), g.getNode(4), g.getNode(5)},
+                ga.shortestPath(1, 5).toArray());
+    }
+
+    @Test
+    void queriesDoNotTouchTags() {
+        g.getNode(3).setTag(42);
+        assertTrue(ga.isConnected());
+        assertEquals(20, ga.shortestPathDist(1, 5));
+        assertEquals(4, ga.shortestPath(1, 5).size());
+        for (node_info n : g.getV())
+            assertEquals(n.getKey() == 3 ? 42 : -1, n.getTag());
+    }
+
+    @Test
+    void parallelQueries() throws Exception {
+        weighted_graph big = Ex1Test.graph_creator(3000, 12000, 4);
+        WGraph_Algo shared = new WGraph_Algo(big);
+        int q = 200;
+        double[] expected = new double[q];
+        for (int i = 0; i < q; i++)
+            expected[i] = shared.shortestPathDist(i, 2999 - i);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> f = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            f.add(pool.submit(() -> {
+                for (int r = 0; r < 3; r++)
+                    for (int i = 0; i < q; i++)
+                        assertEquals(expected[i], shared.shortestPathDist(i, 2999 - i));
+                assertTrue(shared.isConnected());
+            }));
+        }
+        for (Future<?> i : f)
+            i.get();
+        pool.shutdown();
+    }
+
+    @Test
+    void modeChangedDuringQueries() throws Exception {
+        weighted_graph big = Ex1Test.graph_creator(2000, 8000, 12);
+        WGraph_Algo shared = new WGraph_Algo(big);
+        int q = 100;
+        double[] expected = new double[q];
+        for (int i = 0; i < q; i++)
+            expected[i] = shared.shortestPathDist(i, 1999 - i);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        AtomicBoolean done = new AtomicBoolean();
+        Future<?> modes = pool.submit(() -> {
+            WGraph_Algo.Mode[] all = {WGraph_Algo.Mode.DIJKSTRA, WGraph_Algo.Mode.BIDIRECTIONAL};
+            for (int r = 0; !done.get(); r++)
+                shared.setMode(all[r % all.length]);
+        });
+        List<Future<?>> f = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            f.add(pool.submit(() -> {
+                // every path is restored from the search that found its distance
+                for (int r = 0; r < 3; r++) {
+                    for (int i = 0; i < q; i++) {
+                        List<node_info> path = shared.shortestPath(i, 1999 - i);
+                        if (expected[i] == -1)
+                            assertNull(path);
+                        else
+                            assertEquals(expected[i], WGraph_CSRTest.pathWeight(big, path), 1e-9);
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> i : f)
+                i.get();
+        } finally {
+            done.set(true);
+            pool.shutdown();
+        }
+        modes.get();
+    }
+
+    @Test
+    void shortestPathDists() {
+        double[] d = ga.shortestPathDists(new int[]{1, 5, 1, 6, 1, 10, 3, 1}, new int[]{5, 1, 1, 1, 2, 5, 55, 5});
+        assertArrayEquals(new double[]{20, 20, 0, 11, 7, -1, -1, 20}, d);
+        g.addNode(7);
+        assertArrayEquals(new double[]{-1, 0}, ga.shortestPathDists(new int[]{1, 7}, new int[]{7, 7}));
+        assertEquals(0, ga.shortestPathDists(new int[0], new int[0]).length);
+        assertThrows(IllegalArgumentException.class, () -> ga.shortestPathDists(new int[1], new int[2]));
+
+        weighted_graph big = Ex1Test.graph_creator(2000, 6000, 8);
+        WGraph_Algo ga1 = new WGraph_Algo(big);
+        Random rnd = new Random(3);
+        int[] srcs = new int[500], dests = new int[500];
+        for (int i = 0; i < srcs.length; i++) {
+            srcs[i] = rnd.nextInt(20);
+            dests[i] = rnd.nextInt(2000);
+        }
+        double[] batch = ga1.shortestPathDists(srcs, dests);
+        for (int i = 0; i < srcs.length; i++)
+            assertEquals(ga1.shortestPathDist(srcs[i], dests[i]), batch[i]);
+    }
+
+    @Test
+    void bidirectional() {
+        WGraph_Algo ga1 = new WGraph_Algo(g);
+        ga1.setMode(WGraph_Algo.Mode.BIDIRECTIONAL);
+        assertEquals(WGraph_Algo.Mode.BIDIRECTIONAL, ga1.getMode());
+        assertEquals(20, ga1.shortestPathDist(1, 5));
+        assertEquals(0, ga1.shortestPathDist(4, 4));
+        assertEquals(-1, ga1.shortestPathDist(4, 10));
+        assertArrayEquals(new node_info[]{g.getNode(1), g.getNode(3), g.getNode(6), g.getNode(5)},
+                ga1.shortestPath(1, 5).toArray());
+        assertArrayEquals(new node_info[]{g.getNode(2)}, ga1.shortestPath(2, 2).toArray());
+        g.addNode(7);
+        assertNull(ga1.shortestPath(1, 7));
+
+        weighted_graph big = Ex1Test.graph_creator(3000, 9000, 11);
+        WGraph_Algo uni = new WGraph_Algo(big);
+        WGraph_Algo bi = new WGraph_Algo(big);
+        bi.setMode(WGraph_Algo.Mode.BIDIRECTIONAL);
+        long uniSettled = 0, biSettled = 0;
+        for (int i = 0; i < 100; i++) {
+            double d = uni.shortestPathDist(i, 2999 - i);
+            uniSettled += uni.lastSettledCount();
+            assertEquals(d, bi.shortestPathDist(i, 2999 - i), 1e-9);
+            biSettled += bi.lastSettledCount();
+            if (d != -1)
+                assertEquals(d, WGraph_CSRTest.pathWeight(big, bi.shortestPath(i, 2999 - i)), 1e-9);
+        }
+        assertTrue(biSettled < uniSettled);
+        assertTrue(bi.totalSettledCount() >= biSettled);
+    }
+
+    @Test
+    void aStar() {
+        WGraph_Algo ga1 = new WGraph_Algo(g);
+        ga1.setMode(WGraph_Algo.Mode.A_STAR);
+        assertNull(ga1.getHeuristic());
+        assertEquals(20, ga1.shortestPathDist(1, 5));
+        ga1.setHeuristic((node, target) -> node == target ? 0 : 1);
+        assertEquals(20, ga1.shortestPathDist(1, 5));
+        assertEquals(0, ga1.shortestPathDist(4, 4));
+        assertEquals(-1, ga1.shortestPathDist(4, 10));
+        assertArrayEquals(new node_info[]{g.getNode(1), g.getNode(3), g.getNode(6), g.getNode(5)},
+                ga1.shortestPath(1, 5).toArray());
+    }
+}
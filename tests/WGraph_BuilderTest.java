@@ -0,0 +1,86 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link WGraph_Builder}
+ */
+class WGraph_BuilderTest {
+
+    @Test
+    void sameAsConnect() {
+        weighted_graph g = new WGraph_DS();
+        WGraph_Builder b = new WGraph_Builder(100, 10);
+        Random r = new Random(14);
+        for (int i = 0; i < 1000; i++) {
+            int key = r.nextInt(1000) - 500;
+            g.addNode(key);
+            b.addNode(key);
+        }
+        for (int i = 0; i < 5000; i++) {
+            int a = r.nextInt(1200) - 600, c = r.nextInt(1200) - 600;
+            double w = r.nextInt(3) == 0 ? -1 : r.nextDouble() * 10;
+            g.connect(a, c, w);
+            b.connect(a, c, w);
+        }
+        WGraph_DS built = b.build();
+        assertEquals(g, built);
+        assertEquals(new WGraph_DS(built), new WGraph_DS(b.buildCSR()));
+    }
+
+    @Test
+    void lastWeightAndOrder() {
+        WGraph_Builder b = new WGraph_Builder();
+        b.connect(1, 2, 5).connect(2, 3, 1).connect(2, 1, 3).connect(1, 1, 2).connect(1, 3, -1).connect(3, 4, 1);
+        b.addNode(3).addNode(2).addNode(1).addNode(2);
+        WGraph_DS g = b.build();
+        assertEquals(3, g.nodeSize());
+        assertEquals(2, g.edgeSize());
+        assertEquals(3, g.getEdge(1, 2));
+        assertEquals(1, g.getEdge(3, 2));
+        assertEquals(-1, g.getEdge(1, 3));
+        assertEquals(3 + 3, g.getMC());
+        g.connect(1, 3, 2);
+        assertEquals(3, g.edgeSize());
+        g.removeNode(2);
+        assertEquals(1, g.edgeSize());
+        assertEquals(0, new WGraph_Builder().build().nodeSize());
+    }
+
+    /**
+     * The workload of Ex1Test.millionNodesTime at a tenth of its size, checked edge by edge
+     * (the build time is measured by WGraph_DSBench.builder, against addNode/connect).
+     */
+    @Test
+    void manyNodes() {
+        int times = 100000;
+        WGraph_Builder b = new WGraph_Builder(times, times * 10);
+        for (int i = 0; i < times; i++) {
+            b.addNode(i);
+        }
+        for (int i = 10; i < times; i++) {
+            for (int j = 0; j < 10; j++) {
+                b.connect(i - j, i, 0.1 * i);
+            }
+        }
+        for (int j = 0; j < 100; j++) {
+            b.connect(j, j + 20, 0.1 * j);
+        }
+        weighted_graph g = b.build();
+        WGraph_CSR csr = b.buildCSR();
+        assertEquals(times, g.nodeSize());
+        assertEquals(9 * (times - 10) + 100, g.edgeSize());
+        assertEquals(g.edgeSize(), csr.edgeSize());
+        assertEquals(g.getMC(), csr.getMC());
+        for (int i = 10; i < times; i++) {
+            for (int j = 1; j < 10; j++) {
+                assertEquals(0.1 * i, g.getEdge(i - j, i));
+                assertEquals(0.1 * i, csr.getEdge(i, i - j));
+            }
+        }
+        assertEquals(0.1 * 5, g.getEdge(25, 5));
+        assertFalse(g.hasEdge(0, 10));
+    }
+}
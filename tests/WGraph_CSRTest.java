@@ -0,0 +1,112 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link WGraph_CSR}
+ * every snapshot is checked against the {@link WGraph_DS} it was taken from.
+ */
+class WGraph_CSRTest {
+
+    private static WGraph_DS g;
+
+    @BeforeEach
+    void setUp() {
+        g = (WGraph_DS) Ex1Test.graph_creator(50, 200, 3);
+    }
+
+    @Test
+    void sameStructure() {
+        WGraph_CSR c = g.freeze();
+        assertEquals(g.nodeSize(), c.nodeSize());
+        assertEquals(g.edgeSize(), c.edgeSize());
+        assertEquals(g.getMC(), c.getMC());
+        for (node_info i : g.getV()) {
+            assertEquals(i, c.getNode(i.getKey()));
+            assertEquals(g.getV(i.getKey()).size(), c.getV(i.getKey()).size());
+            for (node_info j : g.getV()) {
+                assertEquals(g.hasEdge(i.getKey(), j.getKey()), c.hasEdge(i.getKey(), j.getKey()));
+                assertEquals(g.getEdge(i.getKey(), j.getKey()), c.getEdge(i.getKey(), j.getKey()));
+            }
+        }
+        assertNull(c.getNode(50));
+        assertNull(c.getV(-1));
+        assertEquals(-1, c.getEdge(0, 50));
+    }
+
+    @Test
+    void sparseKeys() {
+        WGraph_DS g1 = new WGraph_DS();
+        int[] keys = {-7, 3, 1000, 42, 1 << 30, 8};
+        for (int k : keys)
+            g1.addNode(k);
+        g1.connect(-7, 1 << 30, 1.5);
+        g1.connect(42, 3, 2.5);
+        g1.connect(42, 8, 0);
+        WGraph_CSR c = g1.freeze();
+        for (int k : keys)
+            assertEquals(k, c.getNode(k).getKey());
+        assertNull(c.getNode(4));
+        assertEquals(1.5, c.getEdge(1 << 30, -7));
+        assertEquals(0, c.getEdge(8, 42));
+        assertFalse(c.hasEdge(3, 8));
+        Collection<node_info> nei = c.getV(42);
+        assertArrayEquals(new node_info[]{c.getNode(3), c.getNode(8)}, nei.toArray());
+    }
+
+    @Test
+    void algorithms() {
+        weighted_graph_algorithms ga = new WGraph_Algo(g);
+        weighted_graph_algorithms gc = new WGraph_Algo(g.freeze());
+        assertEquals(ga.isConnected(), gc.isConnected());
+        for (int i = 0; i < 50; i += 7) {
+            for (int j = 0; j < 50; j += 5) {
+                double d = ga.shortestPathDist(i, j);
+                assertEquals(d, gc.shortestPathDist(i, j));
+                if (d != -1)
+                    assertEquals(d, pathWeight(gc.getGraph(), gc.shortestPath(i, j)), 1e-9);
+            }
+        }
+        assertEquals(g, gc.copy());
+    }
+
+    @Test
+    void immutable() {
+        WGraph_CSR c = g.freeze();
+        assertThrows(UnsupportedOperationException.class, () -> c.addNode(100));
+        assertThrows(UnsupportedOperationException.class, () -> c.connect(0, 1, 1));
+        assertThrows(UnsupportedOperationException.class, () -> c.removeNode(0));
+        assertThrows(UnsupportedOperationException.class, () -> c.removeEdge(0, 1));
+        assertThrows(UnsupportedOperationException.class, () -> c.getV().clear());
+    }
+
+    @Test
+    void snapshot() {
+        WGraph_CSR c = g.freeze();
+        int edges = c.edgeSize();
+        g.removeNode(0);
+        g.addNode(100);
+        assertEquals(edges, c.edgeSize());
+        assertNotNull(c.getNode(0));
+        assertNull(c.getNode(100));
+        c.getNode(1).setInfo("frozen");
+        assertEquals("", g.getNode(1).getInfo());
+    }
+
+    /**
+     * sum of the weights along path (ties between equal shortest paths may be broken differently)
+     */
+    static double pathWeight(weighted_graph g, List<node_info> path) {
+        double sum = 0;
+        for (int i = 1; i < path.size(); i++) {
+            double w = g.getEdge(path.get(i - 1).getKey(), path.get(i).getKey());
+            assertNotEquals(-1, w);
+            sum += w;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,182 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link WGraph_Concurrent}
+ * the sequential behaviour is checked against {@link WGraph_DS},
+ * and the stress tests run many threads on the same graph and then check the invariants of the graph.
+ */
+class WGraph_ConcurrentTest {
+
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    @Test
+    void sameAsWGraph_DS() {
+        weighted_graph g = new WGraph_DS();
+        weighted_graph c = new WGraph_Concurrent();
+        Random rnd = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            int a = rnd.nextInt(60), b = rnd.nextInt(60);
+            int op = rnd.nextInt(10);
+            if (op < 2) {
+                g.addNode(a);
+                c.addNode(a);
+            } else if (op < 7) {
+                g.connect(a, b, a + b);
+                c.connect(a, b, a + b);
+            } else if (op < 9) {
+                g.removeEdge(a, b);
+                c.removeEdge(a, b);
+            } else {
+                assertEquals(g.removeNode(a), c.removeNode(a));
+            }
+            assertEquals(g.hasEdge(a, b), c.hasEdge(a, b));
+            assertEquals(g.getEdge(b, a), c.getEdge(b, a));
+        }
+        assertEquals(g.nodeSize(), c.nodeSize());
+        assertEquals(g.edgeSize(), c.edgeSize());
+        assertEquals(g.getMC(), c.getMC());
+        assertEquals(new WGraph_DS(g), new WGraph_DS(c));
+    }
+
+    @Test
+    void concurrentConnectAndRemove() throws Exception {
+        WGraph_Concurrent c = new WGraph_Concurrent();
+        int n = 200;
+        for (int i = 0; i < n; i++)
+            c.addNode(i);
+        runThreads(t -> {
+            Random rnd = new Random(t);
+            for (int i = 0; i < 50000; i++) {
+                int a = rnd.nextInt(n), b = rnd.nextInt(n);
+                if (rnd.nextBoolean())
+                    c.connect(a, b, t);
+                else
+                    c.removeEdge(a, b);
+            }
+        });
+        checkInvariants(c);
+    }
+
+    @Test
+    void concurrentRemoveNode() throws Exception {
+        WGraph_Concurrent c = new WGraph_Concurrent(4);
+        int n = 100;
+        runThreads(t -> {
+            Random rnd = new Random(t);
+            for (int i = 0; i < 30000; i++) {
+                int a = rnd.nextInt(n), b = rnd.nextInt(n);
+                int op = rnd.nextInt(10);
+                if (op < 3)
+                    c.addNode(a);
+                else if (op < 8)
+                    c.connect(a, b, 1);
+                else if (op < 9)
+                    c.removeEdge(a, b);
+                else
+                    c.removeNode(a);
+            }
+        });
+        checkInvariants(c);
+    }
+
+    @Test
+    void consistentSnapshot() throws Exception {
+        WGraph_Concurrent c = new WGraph_Concurrent();
+        int n = 300;
+        for (int i = 0; i < n; i++)
+            c.addNode(i);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<?> writer = pool.submit(() -> {
+            Random rnd = new Random(1);
+            for (int i = 0; i < 200000; i++)
+                c.connect(rnd.nextInt(n), rnd.nextInt(n), 1);
+        });
+        WGraph_Algo ga = new WGraph_Algo(c);
+        while (!writer.isDone()) {
+            WGraph_CSR s = c.freeze();
+            int arcs = 0;
+            for (node_info i : s.getV())
+                arcs += s.getV(i.getKey()).size();
+            assertEquals(2 * s.edgeSize(), arcs);
+            double d = ga.shortestPathDist(0, 1);
+            assertTrue(d == -1 || d >= 1);
+        }
+        writer.get();
+        pool.shutdown();
+        checkInvariants(c);
+    }
+
+    /**
+     * A mixed connect/removeEdge/getEdge load of all the threads on many nodes keeps the invariants of the graph.
+     * Its throughput by the thread count is measured by WGraph_ConcurrentBench.
+     */
+    @Test
+    void mixedLoad() throws Exception {
+        int n = 10000, per = 50000;
+        WGraph_Concurrent c = new WGraph_Concurrent();
+        for (int i = 0; i < n; i++)
+            c.addNode(i);
+        runThreads(t -> {
+            Random rnd = new Random(t);
+            for (int i = 0; i < per; i++) {
+                int a = rnd.nextInt(n), b = rnd.nextInt(n);
+                int op = rnd.nextInt(4);
+                if (op == 0)
+                    c.connect(a, b, 1);
+                else if (op == 1)
+                    c.removeEdge(a, b);
+                else
+                    c.getEdge(a, b);
+            }
+        });
+        checkInvariants(c);
+    }
+
+    ////////////////////// Private Functions /////////////////////
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runThreads(Worker w) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        Future<?>[] f = new Future[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            f[t] = pool.submit(() -> {
+                start.await();
+                w.run(id);
+                return null;
+            });
+        }
+        for (Future<?> i : f)
+            i.get();
+        pool.shutdown();
+    }
+
+    /**
+     * every edge is symmetric with the same weight, connects two existing nodes,
+     * and the edge count is the number of edges.
+     */
+    private static void checkInvariants(weighted_graph c) {
+        int arcs = 0;
+        for (node_info i : c.getV()) {
+            for (node_info j : c.getV(i.getKey())) {
+                assertNotNull(c.getNode(j.getKey()));
+                assertTrue(c.hasEdge(j.getKey(), i.getKey()));
+                assertEquals(c.getEdge(i.getKey(), j.getKey()), c.getEdge(j.getKey(), i.getKey()));
+                arcs++;
+            }
+            int[] count = {0};
+            c.forEachNeighbor(i.getKey(), (key, w) -> count[0]++);
+            assertEquals(c.getV(i.getKey()).size(), count[0]);
+        }
+        assertEquals(2 * c.edgeSize(), arcs);
+    }
+}
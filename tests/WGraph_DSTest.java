@@ -2,6 +2,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Collection;
+import java.util.HashMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -145,6 +146,21 @@ class WGraph_DSTest {
         assertEquals(0, c.size());
     }
 
+    @Test
+    void forEachNeighbor() {
+        g = Ex1Test.graph_creator(10, 30, 1);
+        for (node_info n : g.getV()) {
+            HashMap<Integer, Double> visited = new HashMap<>();
+            g.forEachNeighbor(n.getKey(), (key, w) -> assertNull(visited.put(key, w)));
+            assertEquals(g.getV(n.getKey()).size(), visited.size());
+            for (node_info i : g.getV(n.getKey()))
+                assertEquals(g.getEdge(n.getKey(), i.getKey()), visited.get(i.getKey()));
+        }
+        g.removeNode(2);
+        g.forEachNeighbor(2, (key, w) -> fail());
+        g.forEachNeighbor(55, (key, w) -> fail());
+    }
+
     @Test
     void removeNode() {
         g.addNode(0);
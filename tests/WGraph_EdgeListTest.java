@@ -0,0 +1,91 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link WGraph_EdgeList}
+ */
+class WGraph_EdgeListTest {
+
+    @Test
+    void csv() throws IOException {
+        String file_name = "edgeTestCsv";
+        write(file_name, "from,to,weight\n"
+                + "# comment\n"
+                + "1,2,0.5\r\n"
+                + "\n"
+                + " 2 , 3 , 1e-3\n"
+                + "3,-4\n"
+                + "1,2,0.25\n"
+                + "2,1,0.75\n"
+                + "9,9,4\n"
+                + "3,1,12345678901.125");
+        WGraph_CSR g = WGraph_EdgeList.read(file_name, WGraph_EdgeList.Format.CSV);
+        assertEquals(5, g.nodeSize());
+        assertEquals(4, g.edgeSize());
+        assertEquals(0.25, g.getEdge(2, 1));
+        assertEquals(0.001, g.getEdge(3, 2));
+        assertEquals(1, g.getEdge(-4, 3));
+        assertEquals(12345678901.125, g.getEdge(1, 3));
+        assertNotNull(g.getNode(9));
+        assertEquals(-1, g.getEdge(9, 9));
+        new File(file_name).delete();
+    }
+
+    @Test
+    void dimacs() throws IOException {
+        String file_name = "edgeTestGr";
+        write(file_name, "c test\np sp 5 4\na 1 2 7\na 2 1 7\na 2 3 3\na 3 2 3\n");
+        WGraph_CSR g = WGraph_EdgeList.read(file_name, WGraph_EdgeList.Format.DIMACS);
+        assertEquals(5, g.nodeSize());
+        assertEquals(2, g.edgeSize());
+        assertEquals(10, new WGraph_Algo(g).shortestPathDist(1, 3));
+        assertNotNull(g.getNode(5));
+        new File(file_name).delete();
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        String file_name = "edgeTestRoundTrip";
+        weighted_graph g = Ex1Test.graph_creator(2000, 8000, 6);
+        g.addNode(5000);
+        for (WGraph_EdgeList.Format format : WGraph_EdgeList.Format.values()) {
+            WGraph_EdgeList.write(g, file_name, format);
+            WGraph_CSR parallel = WGraph_EdgeList.read(file_name, format, true);
+            WGraph_CSR sequential = WGraph_EdgeList.read(file_name, format, false);
+            assertEquals(new WGraph_DS(parallel), new WGraph_DS(sequential));
+            assertEquals(g.nodeSize(), parallel.nodeSize());
+            assertEquals(g.edgeSize(), parallel.edgeSize());
+            if (format != WGraph_EdgeList.Format.DIMACS)
+                assertEquals(g, new WGraph_DS(parallel));
+        }
+        new File(file_name).delete();
+    }
+
+    @Test
+    void malformed() throws IOException {
+        String file_name = "edgeTestMalformed";
+        write(file_name, "1,2,3\n2,3,-1\n");
+        assertThrows(IOException.class, () -> WGraph_EdgeList.read(file_name, WGraph_EdgeList.Format.CSV));
+        write(file_name, "1,2,3\nfrom,to\n");
+        assertThrows(IOException.class, () -> WGraph_EdgeList.read(file_name, WGraph_EdgeList.Format.CSV));
+        write(file_name, "1\t2\tx\n");
+        assertThrows(IOException.class, () -> WGraph_EdgeList.read(file_name, WGraph_EdgeList.Format.TSV));
+        write(file_name, "p sp 2 1\ne 1 2 3\n");
+        assertThrows(IOException.class, () -> WGraph_EdgeList.read(file_name, WGraph_EdgeList.Format.DIMACS));
+        new File(file_name).delete();
+        assertThrows(IOException.class, () -> WGraph_EdgeList.read(file_name, WGraph_EdgeList.Format.CSV));
+    }
+
+    ////////////////////// Private Functions /////////////////////
+
+    private static void write(String file_name, String text) throws IOException {
+        try (FileWriter w = new FileWriter(file_name)) {
+            w.write(text);
+        }
+    }
+}
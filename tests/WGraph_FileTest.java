@@ -0,0 +1,125 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link WGraph_File}
+ */
+class WGraph_FileTest {
+
+    @Test
+    void roundTrip() throws IOException {
+        weighted_graph g = Ex1Test.graph_creator(500, 2000, 3);
+        g.addNode(-7);
+        g.addNode(Integer.MAX_VALUE);
+        g.connect(-7, Integer.MAX_VALUE, 0.25);
+        g.getNode(3).setInfo("3.5,-1 \u05e9\u05dc\u05d5\u05dd");
+        g.getNode(4).setTag(2.5);
+        weighted_graph g1 = roundTrip(g);
+        assertEquals(g, g1);
+        assertEquals(g.getMC(), g1.getMC());
+        assertEquals(g.getEdge(-7, Integer.MAX_VALUE), g1.getEdge(-7, Integer.MAX_VALUE));
+        assertEquals(new WGraph_DS(), roundTrip(new WGraph_DS()));
+    }
+
+    @Test
+    void floatWeights() throws IOException {
+        WGraph_DS g = new WGraph_DS();
+        for (int i = 0; i < 100; i++) {
+            g.addNode(i * 1000);
+            if (i > 0)
+                g.connect(i * 1000, (i - 1) * 1000, i * 0.5);
+        }
+        int floats = bytes(g).length;
+        g.connect(0, 99000, 0.1);
+        assertEquals(g, roundTrip(g));
+        assertTrue(bytes(g).length > floats + 100 * 4 - 10);
+    }
+
+    @Test
+    void types() throws IOException {
+        weighted_graph g = Ex1Test.graph_creator(50, 100, 1);
+        WGraph_Concurrent c = new WGraph_Concurrent(g);
+        weighted_graph c1 = roundTrip(c);
+        assertTrue(c1 instanceof WGraph_Concurrent);
+        assertEquals(g, new WGraph_DS(c1));
+        weighted_graph s1 = roundTrip(WGraph_CSR.of(g));
+        assertTrue(s1 instanceof WGraph_CSR);
+        assertEquals(g, new WGraph_DS(s1));
+    }
+
+    @Test
+    void corrupt() throws IOException {
+        byte[] bytes = bytes(Ex1Test.graph_creator(100, 300, 2));
+        bytes[bytes.length / 2] ^= 1;
+        assertThrows(IOException.class, () -> WGraph_File.read(new ByteArrayInputStream(bytes)));
+        byte[] cut = java.util.Arrays.copyOf(bytes, bytes.length - 3);
+        assertThrows(IOException.class, () -> WGraph_File.read(new ByteArrayInputStream(cut)));
+        assertThrows(IOException.class, () -> WGraph_File.read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5})));
+    }
+
+    @Test
+    void hugeCounts() throws IOException {
+        // a header of 0x7FFFFFF0 nodes, and a single key
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(WGraph_File.MAGIC);
+        data.writeByte(WGraph_File.VERSION);
+        data.writeByte(0);
+        data.writeByte(2);
+        data.write(new byte[]{(byte) 0xF0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 0, 0});
+        data.write(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01});
+        byte[] header = out.toByteArray();
+        assertEquals(20, header.length);
+        assertThrows(IOException.class, () -> WGraph_File.read(new ByteArrayInputStream(header)));
+
+        // a count of neighbors or of info bytes past the end of the file
+        WGraph_DS g = new WGraph_DS();
+        g.addNode(1);
+        g.addNode(2);
+        g.getNode(1).setInfo("a");
+        byte[] bytes = bytes(g);
+        // header 10 bytes, keys 2 bytes, then the info length of node 1
+        assertEquals(1, bytes[12]);
+        bytes[12] = (byte) 0xFF;
+        byte[] info = java.util.Arrays.copyOf(bytes, bytes.length + 4);
+        info[13] = (byte) 0xFF;
+        info[14] = (byte) 0xFF;
+        info[15] = 0x07;
+        assertThrows(IOException.class, () -> WGraph_File.read(new ByteArrayInputStream(info)));
+        byte[] edges = bytes(g);
+        edges[8] = 5;
+        assertThrows(IOException.class, () -> WGraph_File.read(new ByteArrayInputStream(edges)));
+    }
+
+    @Test
+    void legacyFile() throws IOException {
+        String file_name = "saveTestLegacy";
+        weighted_graph g = Ex1Test.graph_creator(100, 300, 4);
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file_name))) {
+            oos.writeObject(g);
+        }
+        WGraph_Algo ga = new WGraph_Algo();
+        assertTrue(ga.load(file_name));
+        assertEquals(g, ga.getGraph());
+        assertTrue(ga.save(file_name));
+        assertTrue(new File(file_name).length() < 300 * 12 + 100 * 2 + 100);
+        assertTrue(ga.load(file_name));
+        assertEquals(g, ga.getGraph());
+        new File(file_name).delete();
+    }
+
+    ////////////////////// Private Functions /////////////////////
+
+    private static byte[] bytes(weighted_graph g) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WGraph_File.write(g, out);
+        return out.toByteArray();
+    }
+
+    private static weighted_graph roundTrip(weighted_graph g) throws IOException {
+        return WGraph_File.read(new ByteArrayInputStream(bytes(g)));
+    }
+}
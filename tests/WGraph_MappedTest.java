@@ -0,0 +1,113 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link WGraph_Mapped}
+ */
+class WGraph_MappedTest {
+
+    @Test
+    void roundTrip() throws IOException {
+        String file_name = "saveTestMapped1";
+        weighted_graph g = Ex1Test.graph_creator(300, 1000, 5);
+        g.getNode(7).setInfo("1.5,2.5");
+        WGraph_Mapped.write(g, file_name);
+        WGraph_Mapped m = WGraph_Mapped.open(file_name);
+        assertEquals(g.nodeSize(), m.nodeSize());
+        assertEquals(g.edgeSize(), m.edgeSize());
+        assertEquals(g.getMC(), m.getMC());
+        assertEquals("1.5,2.5", m.getNode(7).getInfo());
+        assertSame(m.getNode(7), m.getNode(7));
+        assertEquals(g, new WGraph_DS(m));
+        assertNull(m.getNode(1000));
+        assertThrows(UnsupportedOperationException.class, () -> m.connect(0, 1, 1));
+        new File(file_name).delete();
+    }
+
+    @Test
+    void sparseKeys() throws IOException {
+        String file_name = "saveTestMapped2";
+        WGraph_DS g = new WGraph_DS();
+        for (int i = -50; i < 50; i++)
+            g.addNode(i * 1000);
+        for (int i = -50; i < 49; i++)
+            g.connect(i * 1000, (i + 1) * 1000, 1.5);
+        WGraph_Mapped.write(g, file_name);
+        WGraph_Mapped m = WGraph_Mapped.open(file_name);
+        assertEquals(1.5, m.getEdge(-3000, -2000));
+        assertEquals(-1, m.getEdge(-3000, -1000));
+        assertNull(m.getNode(-2999));
+        assertEquals(g, new WGraph_DS(m));
+        new File(file_name).delete();
+    }
+
+    @Test
+    void algorithms() {
+        String file_name = "saveTestMapped3";
+        weighted_graph g = CoordinateHeuristicTest.geometric(30, 3);
+        WGraph_Algo ga = new WGraph_Algo(g);
+        ga.setMode(WGraph_Algo.Mode.CONTRACTION_HIERARCHY);
+        ga.getHierarchy();
+        assertTrue(ga.saveMapped(file_name));
+
+        WGraph_Algo gm = new WGraph_Algo();
+        gm.setMode(WGraph_Algo.Mode.CONTRACTION_HIERARCHY);
+        assertTrue(gm.load(file_name));
+        assertTrue(gm.getGraph() instanceof WGraph_Mapped);
+        assertTrue(gm.isConnected());
+        for (int i = 0; i < 900; i += 97) {
+            assertEquals(ga.shortestPathDist(0, i), gm.shortestPathDist(0, i), 1e-9);
+            assertEquals(ga.shortestPath(0, i), gm.shortestPath(0, i));
+        }
+        assertEquals(ga.getHierarchy().shortcutCount(), gm.getHierarchy().shortcutCount());
+        assertEquals(g, gm.copy());
+        new File(file_name).delete();
+        new File(file_name + ".ch").delete();
+    }
+
+    @Test
+    void notMapped() throws IOException {
+        String file_name = "saveTestMapped4";
+        try (FileOutputStream out = new FileOutputStream(file_name)) {
+            out.write(new byte[100]);
+        }
+        assertThrows(IOException.class, () -> WGraph_Mapped.open(file_name));
+        new WGraph_Algo(Ex1Test.graph_creator(10, 20, 1)).saveMapped(file_name);
+        try (RandomAccessFile f = new RandomAccessFile(file_name, "rw")) {
+            f.setLength(f.length() - 8);
+        }
+        assertThrows(IOException.class, () -> WGraph_Mapped.open(file_name));
+        new File(file_name).delete();
+    }
+
+    @Test
+    void corruptInfos() throws IOException {
+        String file_name = "saveTestMapped5";
+        weighted_graph g = Ex1Test.graph_creator(10, 20, 1);
+        g.getNode(3).setInfo("3,4");
+        WGraph_Mapped.write(g, file_name);
+        // the size of the infos is the last info offset, after the header, keys, offsets, neighbors and weights
+        try (RandomAccessFile f = new RandomAccessFile(file_name, "rw")) {
+            int n = 10, arcs = Integer.reverseBytes(readInt(f, 16));
+            long weights = (64 + 4L * n + 4L * (n + 1) + 4L * arcs + 7) & ~7L;
+            long last = weights + 8L * arcs + 4L * n;
+            for (int bytes : new int[]{-1, Integer.MAX_VALUE}) {
+                f.seek(last);
+                f.writeInt(Integer.reverseBytes(bytes));
+                assertThrows(IOException.class, () -> WGraph_Mapped.open(file_name));
+            }
+        }
+        assertFalse(new WGraph_Algo().load(file_name));
+        new File(file_name).delete();
+    }
+
+    ////////////////////// Private Functions /////////////////////
+
+    private static int readInt(RandomAccessFile f, long pos) throws IOException {
+        f.seek(pos);
+        return f.readInt();
+    }
+}
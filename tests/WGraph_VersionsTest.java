@@ -0,0 +1,133 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link WGraph_Versions}
+ */
+class WGraph_VersionsTest {
+
+    @Test
+    void publishAndReclaim() {
+        WGraph_DS g = new WGraph_DS();
+        g.addNode(1);
+        g.addNode(2);
+        WGraph_Versions versions = new WGraph_Versions(g);
+        assertEquals(1, versions.liveVersions());
+        assertFalse(versions.publish());
+
+        WGraph_Versions.Version v1 = versions.pin();
+        assertEquals(2, v1.version());
+        g.connect(1, 2, 4);
+        assertTrue(versions.publish());
+        assertEquals(3, versions.currentVersion());
+        assertEquals(2, versions.liveVersions());
+
+        try (WGraph_Versions.Version v2 = versions.pin()) {
+            assertFalse(v1.graph().hasEdge(1, 2));
+            assertEquals(4, v2.graph().getEdge(1, 2));
+        }
+        assertEquals(2, versions.liveVersions());
+        v1.close();
+        assertEquals(1, versions.liveVersions());
+        assertThrows(IllegalStateException.class, v1::graph);
+
+        g.removeNode(2);
+        assertTrue(versions.publish());
+        assertEquals(1, versions.liveVersions());
+    }
+
+    @Test
+    void closeTwice() {
+        WGraph_DS g = new WGraph_DS();
+        g.addNode(1);
+        WGraph_Versions versions = new WGraph_Versions(g);
+        WGraph_Versions.Version a = versions.pin();
+        WGraph_Versions.Version b = versions.pin();
+        assertNotSame(a, b);
+        g.addNode(2);
+        assertTrue(versions.publish());
+        assertEquals(2, versions.liveVersions());
+        // closing a twice must not release the pin of b
+        a.close();
+        a.close();
+        assertEquals(2, versions.liveVersions());
+        assertEquals(1, b.graph().nodeSize());
+        assertThrows(IllegalStateException.class, a::graph);
+        b.close();
+        assertEquals(1, versions.liveVersions());
+        assertEquals(b.version() + 1, versions.currentVersion());
+    }
+
+    @Test
+    void algorithms() {
+        WGraph_DS g = new WGraph_DS();
+        for (int i = 0; i < 4; i++)
+            g.addNode(i);
+        g.connect(0, 1, 1);
+        g.connect(1, 2, 1);
+        WGraph_Versions versions = new WGraph_Versions(g);
+        WGraph_Algo ga = new WGraph_Algo(versions);
+        assertSame(g, ga.getGraph());
+        assertEquals(2, ga.shortestPathDist(0, 2));
+        g.connect(2, 3, 1);
+        assertEquals(-1, ga.shortestPathDist(0, 3));
+        assertFalse(ga.isConnected());
+        versions.publish();
+        assertEquals(3, ga.shortestPathDist(0, 3));
+        assertEquals(4, ga.shortestPath(0, 3).size());
+        assertTrue(ga.isConnected());
+        weighted_graph c = ga.copy();
+        assertEquals(g.edgeSize(), c.edgeSize());
+        assertEquals(1, c.getEdge(3, 2));
+        assertEquals(1, versions.liveVersions());
+    }
+
+    /**
+     * A writer keeps adding a path 0-1-2-...-k and publishing, while readers query the distance of 0 to k
+     * on the version they pinned. Every reader must see exactly the graph of its version.
+     */
+    @Test
+    void readersNeverSeeTornGraph() throws Exception {
+        WGraph_Concurrent g = new WGraph_Concurrent();
+        int n = 2000;
+        for (int i = 0; i < n; i++)
+            g.addNode(i);
+        WGraph_Versions versions = new WGraph_Versions(g);
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        Future<?> writer = pool.submit(() -> {
+            for (int i = 1; i < n; i++) {
+                g.connect(i - 1, i, 1);
+                if (i % 10 == 0)
+                    versions.publish();
+            }
+            done.set(true);
+        });
+        Future<?>[] readers = new Future[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = pool.submit(() -> {
+                WGraph_Algo ga = new WGraph_Algo();
+                Random rnd = new Random();
+                while (!done.get()) {
+                    try (WGraph_Versions.Version v = versions.pin()) {
+                        ga.init(v.graph());
+                        int edges = v.graph().edgeSize();
+                        int k = rnd.nextInt(edges + 1);
+                        assertEquals(k, ga.shortestPathDist(0, k));
+                        assertEquals(-1, ga.shortestPathDist(0, edges + 1));
+                    }
+                }
+            });
+        }
+        writer.get();
+        for (Future<?> f : readers)
+            f.get();
+        pool.shutdown();
+        assertEquals(1, versions.liveVersions());
+    }
+}